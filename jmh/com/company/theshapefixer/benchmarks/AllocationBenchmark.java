@@ -0,0 +1,74 @@
+package com.company.theshapefixer.benchmarks;
+
+import com.company.theshapefixer.Shape2D;
+import com.company.theshapefixer.TheShapeFixer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Garbage of validating a batch of shapes again and again on one thread, to be read from the gc
+ * profiler the jmh task runs by default: gc.alloc.rate.norm is the bytes allocated per batch. The
+ * shapes are kept both packed and as lists of points, which the fixer copies into its scratch arrays.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AllocationBenchmark {
+
+    private static final int BATCH = 16;
+
+    @Param({"RANDOM_SIMPLE", "STAR", "NESTED"})
+    public ShapeKind kind;
+
+    @Param({"100", "10000"})
+    public int size;
+
+    private final TheShapeFixer fixer = new TheShapeFixer();
+    private final Shape2D[] packedShapes = new Shape2D[BATCH];
+    private final Shape2D[] pointShapes = new Shape2D[BATCH];
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        for (int i = 0; i < BATCH; i++) {
+            packedShapes[i] = ShapeGenerators.generate(kind, size, i);
+            pointShapes[i] = new Shape2D(packedShapes[i].getPoints());
+        }
+    }
+
+    @Benchmark
+    public void isValidPacked(Blackhole blackhole) {
+        for (Shape2D shape : packedShapes) {
+            blackhole.consume(fixer.isValid(shape));
+        }
+    }
+
+    @Benchmark
+    public void isValidPoints(Blackhole blackhole) {
+        for (Shape2D shape : pointShapes) {
+            blackhole.consume(fixer.isValid(shape));
+        }
+    }
+
+    @Benchmark
+    public void findOpenContours(Blackhole blackhole) {
+        for (Shape2D shape : pointShapes) {
+            blackhole.consume(fixer.findOpenContours(shape));
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.company.theshapefixer.benchmarks;
+
+import com.company.theshapefixer.IntShape2D;
+import com.company.theshapefixer.PackedShape2D;
+import com.company.theshapefixer.TheShapeFixer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Validation of one integer grid shape through the long arithmetic path and, converted to doubles,
+ * through the double checks
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IntegerValidationBenchmark {
+
+    private static final long SEED = 42;
+
+    @Param({"10", "1000", "100000", "1000000"})
+    public int size;
+
+    private final TheShapeFixer fixer = new TheShapeFixer();
+    private IntShape2D intShape;
+    private PackedShape2D doubleShape;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        intShape = ShapeGenerators.staircasePolygon(size, SEED);
+        doubleShape = PackedShape2D.of(intShape);
+    }
+
+    @Benchmark
+    public boolean intCoordinates() {
+        return fixer.isValid(intShape);
+    }
+
+    @Benchmark
+    public boolean doubleCoordinates() {
+        return fixer.isValid(doubleShape);
+    }
+}
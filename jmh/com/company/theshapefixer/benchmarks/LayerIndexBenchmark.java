@@ -0,0 +1,71 @@
+package com.company.theshapefixer.benchmarks;
+
+import com.company.theshapefixer.Point2D;
+import com.company.theshapefixer.Shape2D;
+import com.company.theshapefixer.ShapeLayerIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building a layer index over a grid of unit squares, and finding the neighbours of one square in it
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LayerIndexBenchmark {
+
+    @Param({"10000", "1000000"})
+    public int shapes;
+
+    private List<Shape2D> layer;
+    private ShapeLayerIndex index;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        int side = (int) Math.ceil(Math.sqrt(shapes));
+        layer = new ArrayList<>(shapes);
+        for (int i = 0; i < shapes; i++) {
+            double x = i % side;
+            double y = i / side;
+            layer.add(new Shape2D(List.of(new Point2D(x, y), new Point2D(x + 1, y), new Point2D(x + 1, y + 1),
+                    new Point2D(x, y + 1), new Point2D(x, y))));
+        }
+        index = new ShapeLayerIndex(layer);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public ShapeLayerIndex build() {
+        return new ShapeLayerIndex(layer);
+    }
+
+    @Benchmark
+    public int[] sharingEdge() {
+        next = (next + 7919) % shapes;
+        return index.sharingEdge(next);
+    }
+
+    @Benchmark
+    public boolean overlaps() {
+        next = (next + 7919) % shapes;
+        return index.overlaps(next, (next + 1) % shapes);
+    }
+}
@@ -0,0 +1,71 @@
+package com.company.theshapefixer.benchmarks;
+
+import com.company.theshapefixer.PackedShape2D;
+import com.company.theshapefixer.Shape2D;
+import com.company.theshapefixer.TheShapeFixer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of merging two shapes that share a vertical edge, the edge is the first one of both shapes
+ * so the benchmark measures the copying rather than the search for the edge
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MergeBenchmark {
+
+    @Param({"10", "1000", "100000", "1000000"})
+    public int size;
+
+    private final TheShapeFixer fixer = new TheShapeFixer();
+    private Shape2D left;
+    private Shape2D right;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        left = halfDisc(size / 2, -1);
+        right = halfDisc(size / 2, 1);
+    }
+
+    @Benchmark
+    public Shape2D mergeShapesWithCommonLine() {
+        return fixer.mergeShapesWithCommonLine(left, right);
+    }
+
+    /**
+     * Closed shape starting with the edge (0, 0)-(0, r) followed by an arc on the given side of the y axis
+     *
+     * @param points
+     * @param side   -1 for the left half, 1 for the right half
+     * @return
+     */
+    private static Shape2D halfDisc(int points, int side) {
+        int arc = Math.max(points - 2, 1);
+        double radius = arc;
+        PackedShape2D.Builder builder = new PackedShape2D.Builder(arc + 2);
+        builder.add(0, 0);
+        builder.add(0, 2 * radius);
+        for (int i = 1; i < arc; i++) {
+            double angle = Math.PI * i / arc;
+            builder.add(side * radius * Math.sin(angle), radius + radius * Math.cos(angle));
+        }
+        builder.add(0, 0);
+        return builder.build();
+    }
+}
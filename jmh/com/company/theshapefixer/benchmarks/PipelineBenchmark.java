@@ -0,0 +1,117 @@
+package com.company.theshapefixer.benchmarks;
+
+import com.company.theshapefixer.FixerStage;
+import com.company.theshapefixer.Shape2D;
+import com.company.theshapefixer.StageSettings;
+import com.company.theshapefixer.TheShapeFixer;
+import com.company.theshapefixer.ValidatedShape;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of a validate, repair and validate again pipeline fed a burst of small shapes from an
+ * in-memory publisher, against the same calls made one after the other on one thread
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PipelineBenchmark {
+
+    private static final int SHAPES = 1000;
+
+    @Param({"1", "4"})
+    public int parallelism;
+
+    @Param({"1", "32"})
+    public int batchSize;
+
+    private final TheShapeFixer fixer = new TheShapeFixer();
+    private final Shape2D[] shapes = new Shape2D[SHAPES];
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ShapeKind[] kinds = ShapeKind.values();
+        for (int i = 0; i < SHAPES; i++) {
+            shapes[i] = ShapeGenerators.generate(kinds[i % kinds.length], 100, i);
+        }
+    }
+
+    @Benchmark
+    public long pipeline() {
+        StageSettings settings = new StageSettings(parallelism, batchSize, 256);
+        FixerStage<Shape2D, ValidatedShape> validate = FixerStage.validating(fixer, settings);
+        FixerStage<ValidatedShape, Shape2D> repair = FixerStage.repairing(fixer, settings);
+        FixerStage<Shape2D, ValidatedShape> revalidate = FixerStage.validating(fixer, settings);
+        CountingSink sink = new CountingSink();
+        revalidate.subscribe(sink);
+        repair.subscribe(revalidate);
+        validate.subscribe(repair);
+        try (SubmissionPublisher<Shape2D> publisher = new SubmissionPublisher<>()) {
+            publisher.subscribe(validate);
+            for (Shape2D shape : shapes) {
+                publisher.submit(shape);
+            }
+        }
+        return sink.done.join();
+    }
+
+    @Benchmark
+    public long sequential() {
+        long valid = 0;
+        for (Shape2D shape : shapes) {
+            Shape2D repaired = fixer.isValid(shape) ? shape : fixer.repair(shape);
+            if (fixer.isValid(repaired)) {
+                valid++;
+            }
+        }
+        return valid;
+    }
+
+    /**
+     * Counts the valid shapes coming out of the pipeline
+     */
+    private static final class CountingSink implements Flow.Subscriber<ValidatedShape> {
+        private final CompletableFuture<Long> done = new CompletableFuture<>();
+        private long valid;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(ValidatedShape item) {
+            if (item.valid()) {
+                valid++;
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            done.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            done.complete(valid);
+        }
+    }
+}
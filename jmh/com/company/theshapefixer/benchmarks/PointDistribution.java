@@ -0,0 +1,22 @@
+package com.company.theshapefixer.benchmarks;
+
+/**
+ * Point sets for the predicate benchmark, all at UTM magnitude (about 5e5 east, 5e6 north)
+ */
+public enum PointDistribution {
+
+    /**
+     * Points spread uniformly over a 10 km square
+     */
+    RANDOM,
+
+    /**
+     * Points on a 1 km lattice, so many triples are exactly collinear
+     */
+    GRID,
+
+    /**
+     * Points on four long parallel lines, moved off them by a few ulps
+     */
+    DEGENERATE
+}
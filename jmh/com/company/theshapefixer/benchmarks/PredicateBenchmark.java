@@ -0,0 +1,126 @@
+package com.company.theshapefixer.benchmarks;
+
+import com.company.theshapefixer.GeometryPredicates;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the filtered exact predicates against plain double arithmetic. The exactEvaluations and
+ * predicateCalls counters show how often the double evaluation could not decide.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PredicateBenchmark {
+
+    private static final int POINTS = 1 << 12;
+
+    @Param({"RANDOM", "GRID", "DEGENERATE"})
+    public PointDistribution distribution;
+
+    private double[] xs;
+    private double[] ys;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        xs = new double[POINTS];
+        ys = new double[POINTS];
+        for (int i = 0; i < POINTS; i++) {
+            double x = random.nextDouble() * 1e4;
+            double y = random.nextDouble() * 1e4;
+            if (distribution == PointDistribution.GRID) {
+                x = Math.rint(x / 1000) * 1000;
+                y = Math.rint(y / 1000) * 1000;
+            } else if (distribution == PointDistribution.DEGENERATE) {
+                y = (i % 4) * 2500 + x * 0.5;
+            }
+            xs[i] = 500_000 + x;
+            ys[i] = 5_000_000 + y;
+            if (distribution == PointDistribution.DEGENERATE) {
+                ys[i] += Math.ulp(ys[i]) * (random.nextInt(5) - 2);
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    public int orientation(Counters counters) {
+        int sum = 0;
+        for (int i = 0; i < POINTS; i++) {
+            int j = (i + 1) & (POINTS - 1);
+            int k = (i + 7) & (POINTS - 1);
+            sum += GeometryPredicates.orientation(xs[i], ys[i], xs[j], ys[j], xs[k], ys[k]);
+        }
+        counters.predicateCalls += POINTS;
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    public int orientationPlainDouble() {
+        int sum = 0;
+        for (int i = 0; i < POINTS; i++) {
+            int j = (i + 1) & (POINTS - 1);
+            int k = (i + 7) & (POINTS - 1);
+            double cross = (xs[j] - xs[i]) * (ys[k] - ys[i]) - (xs[k] - xs[i]) * (ys[j] - ys[i]);
+            sum += (int) Math.signum(cross);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    public int pointOnSegment(Counters counters) {
+        int sum = 0;
+        for (int i = 0; i < POINTS; i++) {
+            int j = (i + 1) & (POINTS - 1);
+            int k = (i + 7) & (POINTS - 1);
+            sum += GeometryPredicates.isPointOnSegment(xs[k], ys[k], xs[i], ys[i], xs[j], ys[j]) ? 1 : 0;
+        }
+        counters.predicateCalls += POINTS;
+        return sum;
+    }
+
+    /**
+     * Predicate calls and exact evaluations of one iteration
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Counters {
+        public long predicateCalls;
+        public long exactEvaluations;
+        private long exactAtStart;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            predicateCalls = 0;
+            exactEvaluations = 0;
+            exactAtStart = GeometryPredicates.getExactEvaluationCount();
+        }
+
+        @TearDown(Level.Iteration)
+        public void collect() {
+            exactEvaluations = GeometryPredicates.getExactEvaluationCount() - exactAtStart;
+        }
+    }
+}
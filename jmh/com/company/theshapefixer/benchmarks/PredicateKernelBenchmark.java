@@ -0,0 +1,87 @@
+package com.company.theshapefixer.benchmarks;
+
+import com.company.theshapefixer.PredicateKernel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One segment against a run of points with the scalar kernel and with the vector kernel, per point. The
+ * fork adds the Vector API module; without it both benchmarks run the scalar kernel.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class PredicateKernelBenchmark {
+
+    private static final int POINTS = 1 << 12;
+
+    @Param({"RANDOM", "GRID", "DEGENERATE"})
+    public PointDistribution distribution;
+
+    private final PredicateKernel scalar = PredicateKernel.scalar();
+    private final PredicateKernel vector = PredicateKernel.preferred();
+    private double[] xs;
+    private double[] ys;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        xs = new double[POINTS];
+        ys = new double[POINTS];
+        for (int i = 0; i < POINTS; i++) {
+            double x = random.nextDouble() * 1e4;
+            double y = random.nextDouble() * 1e4;
+            if (distribution == PointDistribution.GRID) {
+                x = Math.rint(x / 1000) * 1000;
+                y = Math.rint(y / 1000) * 1000;
+            } else if (distribution == PointDistribution.DEGENERATE) {
+                y = x * 0.5;
+            }
+            xs[i] = x;
+            ys[i] = y;
+        }
+    }
+
+    // Every point is to the right of the line, so the whole run is scanned
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    public int sideChangeScalar() {
+        return scalar.nextSideChange(-1, 0, -1, 1e4, xs, ys, 0, POINTS);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    public int sideChangeVector() {
+        return vector.nextSideChange(-1, 0, -1, 1e4, xs, ys, 0, POINTS);
+    }
+
+    // The segment lies past every point, so the whole run is scanned
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    public int pointOnSegmentScalar() {
+        return scalar.nextPointOnSegment(2e4, 1e4, 3e4, 1.5e4, xs, ys, 0, POINTS);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    public int pointOnSegmentVector() {
+        return vector.nextPointOnSegment(2e4, 1e4, 3e4, 1.5e4, xs, ys, 0, POINTS);
+    }
+}
@@ -0,0 +1,57 @@
+package com.company.theshapefixer.benchmarks;
+
+import com.company.theshapefixer.RepairResult;
+import com.company.theshapefixer.SegmentPassingThroughPoint;
+import com.company.theshapefixer.Shape2D;
+import com.company.theshapefixer.TheShapeFixer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the repair paths, the input shape is never modified so every invocation does the same work
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RepairBenchmark {
+
+    private final TheShapeFixer fixer = new TheShapeFixer();
+
+    @Benchmark
+    public Shape2D repair(ShapeState state) {
+        return fixer.repair(state.shape);
+    }
+
+    @Benchmark
+    public RepairResult repairUntilValid(ShapeState state) {
+        return fixer.repairUntilValid(state.shape);
+    }
+
+    @Benchmark
+    public List<Shape2D> findOpenContours(ShapeState state) {
+        return fixer.findOpenContours(state.shape);
+    }
+
+    @Benchmark
+    public Shape2D repairShape(ShapeState state) {
+        return SegmentPassingThroughPoint.repairShape(state.shape);
+    }
+
+    @Benchmark
+    public Shape2D repairShapeConverged(ShapeState state) {
+        return SegmentPassingThroughPoint.repairShapeConverged(state.shape);
+    }
+}
@@ -0,0 +1,174 @@
+package com.company.theshapefixer.benchmarks;
+
+import com.company.theshapefixer.IntShape2D;
+import com.company.theshapefixer.PackedShape2D;
+import com.company.theshapefixer.Shape2D;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Deterministic generators of synthetic shapes, every shape is closed (the last point repeats the first one)
+ */
+public class ShapeGenerators {
+
+    private static final int POINTS_PER_NESTED_CONTOUR = 1000;
+
+    private ShapeGenerators() {
+    }
+
+    /**
+     * Method to generate a shape of the given kind
+     *
+     * @param kind
+     * @param size number of points, including the closing point
+     * @param seed
+     * @return
+     */
+    public static Shape2D generate(ShapeKind kind, int size, long seed) {
+        switch (kind) {
+            case RANDOM_SIMPLE:
+                return randomSimplePolygon(size, seed);
+            case STAR:
+                return starPolygon(size);
+            case NESTED:
+                return nestedContours(size);
+            case COLLINEAR:
+                return collinearRectangle(size);
+            default:
+                throw new IllegalArgumentException("Unknown shape kind " + kind);
+        }
+    }
+
+    /**
+     * Method to generate a simple polygon: vertices at sorted random angles never make edges cross
+     *
+     * @param size
+     * @param seed
+     * @return
+     */
+    public static Shape2D randomSimplePolygon(int size, long seed) {
+        int vertices = Math.max(size - 1, 3);
+        SplittableRandom random = new SplittableRandom(seed);
+        double[] angles = new double[vertices];
+        for (int i = 0; i < vertices; i++) {
+            angles[i] = random.nextDouble(0, 2 * Math.PI);
+        }
+        Arrays.sort(angles);
+
+        PackedShape2D.Builder builder = new PackedShape2D.Builder(vertices + 1);
+        for (int i = 0; i < vertices; i++) {
+            double radius = random.nextDouble(0.5, 1.0) * vertices;
+            builder.add(radius * Math.cos(angles[i]), radius * Math.sin(angles[i]));
+        }
+        return close(builder);
+    }
+
+    /**
+     * Method to generate a star polygon with evenly spaced spikes
+     *
+     * @param size
+     * @return
+     */
+    public static Shape2D starPolygon(int size) {
+        int vertices = Math.max((size - 1) & ~1, 4); // Even, one outer and one inner vertex per spike
+        PackedShape2D.Builder builder = new PackedShape2D.Builder(vertices + 1);
+        for (int i = 0; i < vertices; i++) {
+            double angle = 2 * Math.PI * i / vertices;
+            double radius = (i % 2 == 0 ? 1.0 : 0.5) * vertices;
+            builder.add(radius * Math.cos(angle), radius * Math.sin(angle));
+        }
+        return close(builder);
+    }
+
+    /**
+     * Method to generate concentric closed contours, each one repeats its start point to close itself
+     *
+     * @param size
+     * @return
+     */
+    public static Shape2D nestedContours(int size) {
+        int contours = Math.max(size / POINTS_PER_NESTED_CONTOUR, 2);
+        int perContour = Math.max(size / contours - 1, 3);
+        PackedShape2D.Builder builder = new PackedShape2D.Builder(contours * (perContour + 1));
+        for (int c = 0; c < contours; c++) {
+            double radius = (c + 1) * perContour;
+            int start = builder.size();
+            for (int i = 0; i < perContour; i++) {
+                double angle = 2 * Math.PI * i / perContour;
+                builder.add(radius * Math.cos(angle), radius * Math.sin(angle));
+            }
+            builder.add(builder.getX(start), builder.getY(start));
+        }
+        return builder.build();
+    }
+
+    /**
+     * Method to generate a rectangle with evenly spaced collinear vertices along its edges and, like the
+     * first example in Main, a spur that doubles back through a vertex of the shape
+     *
+     * @param size
+     * @return
+     */
+    public static Shape2D collinearRectangle(int size) {
+        int perSide = Math.max((size - 4) / 4, 3);
+        PackedShape2D.Builder builder = new PackedShape2D.Builder(4 * perSide + 4);
+        for (int i = 0; i < perSide; i++) {
+            builder.add(i, 0);
+        }
+        for (int i = 0; i < perSide; i++) {
+            builder.add(perSide, i);
+        }
+        // Spur on the top edge: down into the shape and back up through the vertex it left from
+        builder.add(perSide, perSide);
+        builder.add(perSide - 1, perSide);
+        builder.add(perSide - 1, perSide - 1);
+        builder.add(perSide - 1, perSide + 1);
+        builder.add(perSide - 2, perSide + 1);
+        for (int i = perSide - 2; i > 0; i--) {
+            builder.add(i, perSide);
+        }
+        for (int i = perSide; i > 0; i--) {
+            builder.add(0, i);
+        }
+        return close(builder);
+    }
+
+    /**
+     * Method to generate a simple rectilinear polygon on the integer grid: a staircase of random steps,
+     * closed by one horizontal and one vertical edge
+     *
+     * @param size
+     * @param seed
+     * @return
+     */
+    public static IntShape2D staircasePolygon(int size, long seed) {
+        int steps = Math.max((size - 3) / 2, 1);
+        SplittableRandom random = new SplittableRandom(seed);
+        int[] xs = new int[2 * steps + 3];
+        int[] ys = new int[2 * steps + 3];
+        int n = 0;
+        int x = 0;
+        int y = 0;
+        for (int i = 0; i < steps; i++) {
+            xs[n] = x;
+            ys[n++] = y;
+            x += random.nextInt(1, 4);
+            xs[n] = x;
+            ys[n++] = y;
+            y += random.nextInt(1, 4);
+        }
+        xs[n] = x;
+        ys[n++] = y;
+        xs[n] = 0;
+        ys[n++] = y;
+        xs[n] = 0;
+        ys[n++] = 0;
+        return new IntShape2D(xs, ys, n);
+    }
+
+    private static Shape2D close(PackedShape2D.Builder builder) {
+        builder.add(builder.getX(0), builder.getY(0));
+        return builder.build();
+    }
+}
@@ -0,0 +1,27 @@
+package com.company.theshapefixer.benchmarks;
+
+/**
+ * Families of synthetic shapes used by the benchmarks
+ */
+public enum ShapeKind {
+
+    /**
+     * Simple polygon with vertices at random angles and radii around the origin
+     */
+    RANDOM_SIMPLE,
+
+    /**
+     * Star polygon alternating between an outer and an inner radius
+     */
+    STAR,
+
+    /**
+     * Concentric closed contours written one after another
+     */
+    NESTED,
+
+    /**
+     * Rectangle with collinear vertices on its edges and a spur ending on one of them
+     */
+    COLLINEAR
+}
@@ -0,0 +1,30 @@
+package com.company.theshapefixer.benchmarks;
+
+import com.company.theshapefixer.Shape2D;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Generated input shared by the benchmarks, one shape per kind and size
+ */
+@State(Scope.Benchmark)
+public class ShapeState {
+
+    private static final long SEED = 42;
+
+    @Param({"RANDOM_SIMPLE", "STAR", "NESTED", "COLLINEAR"})
+    public ShapeKind kind;
+
+    @Param({"10", "1000", "100000", "1000000"})
+    public int size;
+
+    public Shape2D shape;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        shape = ShapeGenerators.generate(kind, size, SEED);
+    }
+}
@@ -0,0 +1,39 @@
+package com.company.theshapefixer.benchmarks;
+
+import com.company.theshapefixer.TheShapeFixer;
+import com.company.theshapefixer.TriangulatedShape;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of triangulating a shape on top of validating it
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TriangulationBenchmark {
+
+    private final TheShapeFixer fixer = new TheShapeFixer();
+
+    @Benchmark
+    public boolean isValid(ShapeState state) {
+        return fixer.isValid(state.shape);
+    }
+
+    @Benchmark
+    public TriangulatedShape triangulate(ShapeState state) {
+        return fixer.triangulate(state.shape);
+    }
+}
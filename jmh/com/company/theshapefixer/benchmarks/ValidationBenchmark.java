@@ -0,0 +1,50 @@
+package com.company.theshapefixer.benchmarks;
+
+import com.company.theshapefixer.HistogramFixerListener;
+import com.company.theshapefixer.IntersectionStrategy;
+import com.company.theshapefixer.SegmentPassingThroughPoint;
+import com.company.theshapefixer.TheShapeFixer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the validity checks
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ValidationBenchmark {
+
+    private final TheShapeFixer fixer = new TheShapeFixer();
+
+    // Same checks with per phase timings recorded, to compare with isValid
+    private final TheShapeFixer instrumentedFixer =
+            new TheShapeFixer(IntersectionStrategy.SWEEP_LINE, new HistogramFixerListener());
+
+    @Benchmark
+    public boolean isValid(ShapeState state) {
+        return fixer.isValid(state.shape);
+    }
+
+    @Benchmark
+    public boolean isValidInstrumented(ShapeState state) {
+        return instrumentedFixer.isValid(state.shape);
+    }
+
+    @Benchmark
+    public boolean hasSegmentPassingThroughPoint(ShapeState state) {
+        return SegmentPassingThroughPoint.hasSegmentPassingThroughPoint(state.shape);
+    }
+}
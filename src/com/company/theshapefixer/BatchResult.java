@@ -0,0 +1,21 @@
+package com.company.theshapefixer;
+
+import java.util.List;
+
+/**
+ * Per-shape results of a batch call, in input order, with the aggregate throughput
+ */
+public record BatchResult<T>(List<T> results, long elapsedNanos, long vertexCount) {
+
+    public int shapeCount() {
+        return results.size();
+    }
+
+    public double shapesPerSecond() {
+        return elapsedNanos == 0 ? 0 : results.size() * 1e9 / elapsedNanos;
+    }
+
+    public double verticesPerSecond() {
+        return elapsedNanos == 0 ? 0 : vertexCount * 1e9 / elapsedNanos;
+    }
+}
@@ -0,0 +1,39 @@
+package com.company.theshapefixer;
+
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Function;
+
+/**
+ * Fork-join task applying one operation to a range of shapes, every result goes to the slot of its shape
+ */
+@SuppressWarnings("serial") // Only ever run in the pool, never serialized
+class BatchTask<T> extends RecursiveAction {
+    private final Shape2D[] shapes;
+    private final Object[] results;
+    private final Function<Shape2D, T> operation;
+    private final int from;
+    private final int to;
+    private final int grain;
+
+    BatchTask(Shape2D[] shapes, Object[] results, Function<Shape2D, T> operation, int from, int to, int grain) {
+        this.shapes = shapes;
+        this.results = results;
+        this.operation = operation;
+        this.from = from;
+        this.to = to;
+        this.grain = grain;
+    }
+
+    @Override
+    protected void compute() {
+        if (to - from <= grain) {
+            for (int i = from; i < to; i++) {
+                results[i] = operation.apply(shapes[i]);
+            }
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        invokeAll(new BatchTask<>(shapes, results, operation, from, middle, grain),
+                new BatchTask<>(shapes, results, operation, middle, to, grain));
+    }
+}
@@ -0,0 +1,230 @@
+package com.company.theshapefixer;
+
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+/**
+ * Static R-tree over axis-aligned boxes, bulk loaded with Sort-Tile-Recursive packing: the boxes are sorted
+ * into vertical slices by the x of their centres, each slice by the y, and cut into full nodes; the nodes
+ * of every level are packed the same way into the level above. A search only opens nodes whose box meets
+ * the query, so it costs about the depth of the tree plus the boxes found.
+ * <p>
+ * Nodes live in flat arrays, leaves first and the root last. The children of a node are a range of
+ * entries for a leaf, or a range of nodes of the level below otherwise.
+ */
+final class BoxTree {
+
+    private static final int NODE_CAPACITY = 16;
+
+    // Boxes in entry order, and the index each box was given under
+    private final double[] entryMinX;
+    private final double[] entryMinY;
+    private final double[] entryMaxX;
+    private final double[] entryMaxY;
+    private final int[] entries;
+
+    private final double[] nodeMinX;
+    private final double[] nodeMinY;
+    private final double[] nodeMaxX;
+    private final double[] nodeMaxY;
+    private final int[] childStart;
+    private final int[] childEnd;
+    private final int leafCount;
+    private final int nodeCount;
+    private final int stackSize;
+
+    /**
+     * @param minX
+     * @param minY
+     * @param maxX
+     * @param maxY
+     * @param count number of boxes, searches report them by their index in the arrays
+     */
+    BoxTree(double[] minX, double[] minY, double[] maxX, double[] maxY, int count) {
+        entries = strOrder(minX, minY, maxX, maxY, identity(count), count);
+        entryMinX = new double[count];
+        entryMinY = new double[count];
+        entryMaxX = new double[count];
+        entryMaxY = new double[count];
+        for (int e = 0; e < count; e++) {
+            int box = entries[e];
+            entryMinX[e] = minX[box];
+            entryMinY[e] = minY[box];
+            entryMaxX[e] = maxX[box];
+            entryMaxY[e] = maxY[box];
+        }
+
+        // A level of k nodes has ceil(k / capacity) nodes above it, so all levels fit in twice the leaves
+        leafCount = (count + NODE_CAPACITY - 1) / NODE_CAPACITY;
+        int capacity = Math.max(2 * leafCount, 1);
+        nodeMinX = new double[capacity];
+        nodeMinY = new double[capacity];
+        nodeMaxX = new double[capacity];
+        nodeMaxY = new double[capacity];
+        childStart = new int[capacity];
+        childEnd = new int[capacity];
+
+        int nodes = 0;
+        for (int e = 0; e < count; e += NODE_CAPACITY) {
+            addNode(nodes++, e, Math.min(e + NODE_CAPACITY, count), entryMinX, entryMinY, entryMaxX, entryMaxY);
+        }
+        int levels = leafCount > 0 ? 1 : 0;
+        int levelStart = 0;
+        while (nodes - levelStart > 1) {
+            int levelEnd = nodes;
+            sortLevel(levelStart, levelEnd);
+            for (int c = levelStart; c < levelEnd; c += NODE_CAPACITY) {
+                addNode(nodes++, c, Math.min(c + NODE_CAPACITY, levelEnd), nodeMinX, nodeMinY, nodeMaxX, nodeMaxY);
+            }
+            levelStart = levelEnd;
+            levels++;
+        }
+        nodeCount = nodes;
+        stackSize = levels * NODE_CAPACITY + 1;
+    }
+
+    int size() {
+        return entries.length;
+    }
+
+    /**
+     * Method to visit every box meeting the query box, edges included
+     *
+     * @param minX
+     * @param minY
+     * @param maxX
+     * @param maxY
+     * @param visitor gets the index of each box, and returns false to end the search
+     * @return false if the visitor ended the search
+     */
+    boolean search(double minX, double minY, double maxX, double maxY, IntPredicate visitor) {
+        if (nodeCount == 0) {
+            return true;
+        }
+        int[] stack = new int[stackSize];
+        int top = 0;
+        stack[top++] = nodeCount - 1;
+        while (top > 0) {
+            int node = stack[--top];
+            if (nodeMinX[node] > maxX || nodeMaxX[node] < minX || nodeMinY[node] > maxY || nodeMaxY[node] < minY) {
+                continue;
+            }
+            if (node >= leafCount) {
+                for (int child = childStart[node]; child < childEnd[node]; child++) {
+                    stack[top++] = child;
+                }
+                continue;
+            }
+            for (int e = childStart[node]; e < childEnd[node]; e++) {
+                if (entryMinX[e] <= maxX && entryMaxX[e] >= minX && entryMinY[e] <= maxY && entryMaxY[e] >= minY
+                        && !visitor.test(entries[e])) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private void addNode(int node, int from, int to, double[] minX, double[] minY, double[] maxX, double[] maxY) {
+        double x0 = Double.POSITIVE_INFINITY;
+        double y0 = Double.POSITIVE_INFINITY;
+        double x1 = Double.NEGATIVE_INFINITY;
+        double y1 = Double.NEGATIVE_INFINITY;
+        for (int i = from; i < to; i++) {
+            x0 = Math.min(x0, minX[i]);
+            y0 = Math.min(y0, minY[i]);
+            x1 = Math.max(x1, maxX[i]);
+            y1 = Math.max(y1, maxY[i]);
+        }
+        nodeMinX[node] = x0;
+        nodeMinY[node] = y0;
+        nodeMaxX[node] = x1;
+        nodeMaxY[node] = y1;
+        childStart[node] = from;
+        childEnd[node] = to;
+    }
+
+    /**
+     * Method to put the nodes of one level in packing order, their children stay where they are
+     */
+    private void sortLevel(int from, int to) {
+        int count = to - from;
+        int[] ids = new int[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = from + i;
+        }
+        int[] order = strOrder(nodeMinX, nodeMinY, nodeMaxX, nodeMaxY, ids, count);
+        double[] x0 = new double[count];
+        double[] y0 = new double[count];
+        double[] x1 = new double[count];
+        double[] y1 = new double[count];
+        int[] start = new int[count];
+        int[] end = new int[count];
+        for (int i = 0; i < count; i++) {
+            int node = order[i];
+            x0[i] = nodeMinX[node];
+            y0[i] = nodeMinY[node];
+            x1[i] = nodeMaxX[node];
+            y1[i] = nodeMaxY[node];
+            start[i] = childStart[node];
+            end[i] = childEnd[node];
+        }
+        System.arraycopy(x0, 0, nodeMinX, from, count);
+        System.arraycopy(y0, 0, nodeMinY, from, count);
+        System.arraycopy(x1, 0, nodeMaxX, from, count);
+        System.arraycopy(y1, 0, nodeMaxY, from, count);
+        System.arraycopy(start, 0, childStart, from, count);
+        System.arraycopy(end, 0, childEnd, from, count);
+    }
+
+    /**
+     * Method to order boxes into vertical slices of whole nodes by the x of their centres, and each slice by
+     * the y of the centres
+     *
+     * @return the ids in packing order
+     */
+    private static int[] strOrder(double[] minX, double[] minY, double[] maxX, double[] maxY, int[] ids, int count) {
+        long[] keys = new long[count];
+        for (int i = 0; i < count; i++) {
+            int id = ids[i];
+            keys[i] = centreKey(minX[id], maxX[id], i);
+        }
+        Arrays.sort(keys);
+
+        int nodes = (count + NODE_CAPACITY - 1) / NODE_CAPACITY;
+        int slices = (int) Math.ceil(Math.sqrt(nodes));
+        int sliceSize = Math.max(1, (nodes + slices - 1) / slices) * NODE_CAPACITY;
+        for (int from = 0; from < count; from += sliceSize) {
+            int to = Math.min(from + sliceSize, count);
+            for (int k = from; k < to; k++) {
+                int i = (int) keys[k];
+                keys[k] = centreKey(minY[ids[i]], maxY[ids[i]], i);
+            }
+            Arrays.sort(keys, from, to);
+        }
+
+        int[] order = new int[count];
+        for (int k = 0; k < count; k++) {
+            order[k] = ids[(int) keys[k]];
+        }
+        return order;
+    }
+
+    /**
+     * Sort key of a centre coordinate with the position it belongs to in the low half. The centre is
+     * rounded to a float, which only changes how well the boxes are packed, not what a search finds.
+     */
+    private static long centreKey(double min, double max, int position) {
+        int bits = Float.floatToIntBits((float) (min / 2 + max / 2));
+        bits ^= (bits >> 31) & 0x7fffffff;  // Negative floats in increasing order
+        return (long) bits << 32 | position;
+    }
+
+    private static int[] identity(int count) {
+        int[] ids = new int[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = i;
+        }
+        return ids;
+    }
+}
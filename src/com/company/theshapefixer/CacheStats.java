@@ -0,0 +1,12 @@
+package com.company.theshapefixer;
+
+/**
+ * Counters of a shape cache at one point in time
+ */
+public record CacheStats(long hits, long misses, long evictions, long size) {
+
+    public double hitRate() {
+        long requests = hits + misses;
+        return requests == 0 ? 0 : (double) hits / requests;
+    }
+}
@@ -0,0 +1,77 @@
+package com.company.theshapefixer;
+
+/**
+ * Fixer that remembers validation verdicts and repaired shapes by shape content, for pipelines where the
+ * same shapes (templates, repeated tiles) come back again and again. A lookup costs one hash and one
+ * comparison over the coordinates. The caches are safe to share between threads, so the batch methods
+ * use them too.
+ * <p>
+ * Repaired shapes are returned from the cache as they are, they must be treated as read-only.
+ */
+public class CachingShapeFixer extends TheShapeFixer {
+
+    private final ShapeCache<Boolean> validationCache;
+    private final ShapeCache<Shape2D> repairCache;
+
+    public CachingShapeFixer(int maximumSize) {
+        this(IntersectionStrategy.SWEEP_LINE, maximumSize);
+    }
+
+    /**
+     * @param intersectionStrategy
+     * @param maximumSize number of shapes kept by each of the two caches
+     */
+    public CachingShapeFixer(IntersectionStrategy intersectionStrategy, int maximumSize) {
+        this(intersectionStrategy, maximumSize, null);
+    }
+
+    /**
+     * @param intersectionStrategy
+     * @param maximumSize number of shapes kept by each of the two caches
+     * @param listener receives the timings of the shapes not found in the caches, or null
+     */
+    public CachingShapeFixer(IntersectionStrategy intersectionStrategy, int maximumSize, FixerListener listener) {
+        super(intersectionStrategy, listener);
+        validationCache = new ShapeCache<>(maximumSize);
+        repairCache = new ShapeCache<>(maximumSize);
+    }
+
+    @Override
+    public boolean isValid(Shape2D shape, ExecutionMode mode) {
+        PackedShape2D packed = PackedShape2D.of(shape);
+        long hash = ShapeHash.of(packed);
+        Boolean cached = validationCache.get(packed, hash);
+        if (cached != null) {
+            return cached;
+        }
+        boolean valid = super.isValid(packed, mode);
+        validationCache.put(packed, hash, valid);
+        return valid;
+    }
+
+    @Override
+    public Shape2D repair(Shape2D shape) {
+        PackedShape2D packed = PackedShape2D.of(shape);
+        long hash = ShapeHash.of(packed);
+        Shape2D cached = repairCache.get(packed, hash);
+        if (cached != null) {
+            return cached;
+        }
+        Shape2D repaired = super.repair(packed); // Repair copies a result that is a view of the input
+        repairCache.put(packed, hash, repaired);
+        return repaired;
+    }
+
+    public CacheStats getValidationCacheStats() {
+        return validationCache.stats();
+    }
+
+    public CacheStats getRepairCacheStats() {
+        return repairCache.stats();
+    }
+
+    public void clearCaches() {
+        validationCache.clear();
+        repairCache.clear();
+    }
+}
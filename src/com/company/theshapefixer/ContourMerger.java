@@ -0,0 +1,473 @@
+package com.company.theshapefixer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Union of any number of contours that touch along their edges, like the cells of a tiling. Every contour
+ * is turned counter-clockwise, edges are grouped by the line they lie on, edges on a shared line are split
+ * at each other's vertices, and pieces that are walked both ways cancel out. What is left is stitched back
+ * into closed boundaries: outer ones counter-clockwise, holes clockwise.
+ * <p>
+ * Lines are hashed, so the work is O(n log n) in the total number of points instead of a scan over pairs
+ * of edges. Vertical and horizontal lines are keyed exactly. Other lines are keyed by their angle and
+ * offset rounded to about 20 bits. Collinear edges whose rounded keys differ are only cancelled where
+ * their end points match exactly. The contours are expected not to overlap in area.
+ */
+class ContourMerger {
+
+    // Rounding of the line keys of edges that are not axis-aligned, relative to a full turn and to the extent
+    private static final double KEY_STEPS = 1 << 20;
+
+    // Direction keys of axis-aligned lines, outside the range of the rounded angles
+    private static final double VERTICAL = 2 * KEY_STEPS;
+    private static final double HORIZONTAL = 3 * KEY_STEPS;
+
+    // Vertices, shared by all contours
+    private final PointCounter vertexIds = new PointCounter(); // Point to vertex index + 1
+    private double[] vx = new double[64];
+    private double[] vy = new double[64];
+    private int vertexCount;
+
+    // Edges of the oriented contours, and the pieces they are split into
+    private int[] edgeFrom = new int[64];
+    private int[] edgeTo = new int[64];
+    private int edgeCount;
+    private int[] pieceFrom = new int[64];
+    private int[] pieceTo = new int[64];
+    private int pieceCount;
+
+    private ContourMerger() {
+    }
+
+    /**
+     * Method to merge contours into the boundaries of their union
+     *
+     * @param contours closed contours
+     * @return closed boundaries
+     */
+    static List<Shape2D> merge(Collection<? extends Shape2D> contours) {
+        ContourMerger merger = new ContourMerger();
+        for (Shape2D contour : contours) {
+            merger.addContour(PackedShape2D.of(contour));
+        }
+        merger.splitCollinearEdges();
+        return merger.stitch(merger.cancelOppositePieces());
+    }
+
+    /**
+     * Method to add the edges of a contour in counter-clockwise order, leaving out repeated points
+     *
+     * @param contour
+     */
+    private void addContour(PackedShape2D contour) {
+        int n = contour.size();
+        if (n > 1 && contour.samePoint(0, n - 1)) {
+            n--;  // The closing point is the first one again
+        }
+        int[] ids = new int[n];
+        int count = 0;
+        for (int i = 0; i < n; i++) {
+            int id = vertexId(contour.getX(i), contour.getY(i));
+            if (count == 0 || ids[count - 1] != id) {
+                ids[count++] = id;
+            }
+        }
+        while (count > 1 && ids[count - 1] == ids[0]) {
+            count--;
+        }
+        if (count < 3) {
+            return;
+        }
+
+        double area = 0;
+        for (int i = 0; i < count; i++) {
+            int a = ids[i];
+            int b = ids[(i + 1) % count];
+            area += vx[a] * vy[b] - vx[b] * vy[a];
+        }
+        if (area == 0) {
+            return;
+        }
+        for (int i = 0; i < count; i++) {
+            int a = ids[i];
+            int b = ids[(i + 1) % count];
+            if (area > 0) {
+                addEdge(a, b);
+            } else {
+                addEdge(b, a);
+            }
+        }
+    }
+
+    private int vertexId(double x, double y) {
+        int id = vertexIds.count(x, y) - 1;
+        if (id >= 0) {
+            return id;
+        }
+        if (vertexCount == vx.length) {
+            vx = Arrays.copyOf(vx, vertexCount * 2);
+            vy = Arrays.copyOf(vy, vertexCount * 2);
+        }
+        vx[vertexCount] = x;
+        vy[vertexCount] = y;
+        vertexIds.replace(x, y, vertexCount + 1);
+        return vertexCount++;
+    }
+
+    private void addEdge(int from, int to) {
+        if (edgeCount == edgeFrom.length) {
+            edgeFrom = Arrays.copyOf(edgeFrom, edgeCount * 2);
+            edgeTo = Arrays.copyOf(edgeTo, edgeCount * 2);
+        }
+        edgeFrom[edgeCount] = from;
+        edgeTo[edgeCount] = to;
+        edgeCount++;
+    }
+
+    private void addPiece(int from, int to) {
+        if (pieceCount == pieceFrom.length) {
+            pieceFrom = Arrays.copyOf(pieceFrom, pieceCount * 2);
+            pieceTo = Arrays.copyOf(pieceTo, pieceCount * 2);
+        }
+        pieceFrom[pieceCount] = from;
+        pieceTo[pieceCount] = to;
+        pieceCount++;
+    }
+
+    /**
+     * Method to split every edge at the vertices of the other edges on its line, so that overlapping
+     * edges are made of the same pieces
+     */
+    private void splitCollinearEdges() {
+        double extent = 0;
+        for (int v = 0; v < vertexCount; v++) {
+            extent = Math.max(extent, Math.max(Math.abs(vx[v]), Math.abs(vy[v])));
+        }
+        double offsetStep = Math.max(extent, Double.MIN_NORMAL) / KEY_STEPS;
+
+        // Group the edges by line: a line index for every edge, then the edges of each line in a row
+        PointCounter lineIds = new PointCounter();
+        int[] edgeLine = new int[edgeCount];
+        int lineCount = 0;
+        for (int e = 0; e < edgeCount; e++) {
+            int a = edgeFrom[e];
+            int b = edgeTo[e];
+            double keyDirection;
+            double keyOffset;
+            if (vx[a] == vx[b]) {
+                keyDirection = VERTICAL;
+                keyOffset = vx[a] + 0.0; // -0.0 and 0.0 are the same line
+            } else if (vy[a] == vy[b]) {
+                keyDirection = HORIZONTAL;
+                keyOffset = vy[a] + 0.0;
+            } else {
+                double dx = vx[b] - vx[a];
+                double dy = vy[b] - vy[a];
+                if (dx < 0) {
+                    dx = -dx;
+                    dy = -dy;
+                }
+                double length = Math.hypot(dx, dy);
+                keyDirection = Math.rint(Math.atan2(dy, dx) / (2 * Math.PI) * KEY_STEPS) + 0.0;
+                keyOffset = Math.rint((vx[a] * dy - vy[a] * dx) / length / offsetStep) + 0.0;
+            }
+            int line = lineIds.count(keyDirection, keyOffset) - 1;
+            if (line < 0) {
+                line = lineCount++;
+                lineIds.replace(keyDirection, keyOffset, line + 1);
+            }
+            edgeLine[e] = line;
+        }
+        int[] lineStart = new int[lineCount + 1];
+        for (int e = 0; e < edgeCount; e++) {
+            lineStart[edgeLine[e] + 1]++;
+        }
+        for (int l = 0; l < lineCount; l++) {
+            lineStart[l + 1] += lineStart[l];
+        }
+        int[] lineEdges = new int[edgeCount];
+        int[] fill = Arrays.copyOf(lineStart, lineCount);
+        for (int e = 0; e < edgeCount; e++) {
+            lineEdges[fill[edgeLine[e]]++] = e;
+        }
+
+        int[] vertexSeen = new int[vertexCount];
+        Arrays.fill(vertexSeen, -1);
+        int[] lineVertices = new int[16];
+        double[] primary = new double[16];
+        double[] secondary = new double[16];
+        for (int l = 0; l < lineCount; l++) {
+            int from = lineStart[l];
+            int to = lineStart[l + 1];
+            if (to - from == 1) {
+                int e = lineEdges[from];
+                addPiece(edgeFrom[e], edgeTo[e]);
+                continue;
+            }
+
+            // Vertices of the line, sorted along its main axis
+            int first = lineEdges[from];
+            boolean steep = Math.abs(vy[edgeTo[first]] - vy[edgeFrom[first]])
+                    > Math.abs(vx[edgeTo[first]] - vx[edgeFrom[first]]);
+            int m = 0;
+            if (lineVertices.length < 2 * (to - from)) {
+                lineVertices = new int[2 * (to - from)];
+                primary = new double[2 * (to - from)];
+                secondary = new double[2 * (to - from)];
+            }
+            for (int k = from; k < to; k++) {
+                for (int end = 0; end < 2; end++) {
+                    int v = end == 0 ? edgeFrom[lineEdges[k]] : edgeTo[lineEdges[k]];
+                    if (vertexSeen[v] != l) {
+                        vertexSeen[v] = l;
+                        lineVertices[m] = v;
+                        primary[m] = steep ? vy[v] : vx[v];
+                        secondary[m] = steep ? vx[v] : vy[v];
+                        m++;
+                    }
+                }
+            }
+            int[] order = VertexOrder.sort(primary, secondary, m);
+            double[] sortedPrimary = new double[m];
+            for (int k = 0; k < m; k++) {
+                sortedPrimary[k] = primary[order[k]];
+            }
+
+            for (int k = from; k < to; k++) {
+                int e = lineEdges[k];
+                splitEdge(edgeFrom[e], edgeTo[e], steep, lineVertices, order, sortedPrimary, m);
+            }
+        }
+    }
+
+    /**
+     * Method to add the pieces of an edge between the vertices of its line that lie inside it
+     */
+    private void splitEdge(int a, int b, boolean steep, int[] lineVertices, int[] order, double[] sortedPrimary,
+                           int m) {
+        double start = steep ? vy[a] : vx[a];
+        double end = steep ? vy[b] : vx[b];
+        boolean ascending = start < end;
+        int low = upperBound(sortedPrimary, m, Math.min(start, end));
+        int high = lowerBound(sortedPrimary, m, Math.max(start, end));
+        int previous = a;
+        for (int k = 0; k < high - low; k++) {
+            int v = lineVertices[order[ascending ? low + k : high - 1 - k]];
+            if (v != a && v != b && SegmentPassingThroughPoint.isPointOnLineSegment(vx, vy, a, b, v)) {
+                addPiece(previous, v);
+                previous = v;
+            }
+        }
+        addPiece(previous, b);
+    }
+
+    private static int upperBound(double[] values, int count, double value) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (Double.compare(values[middle], value) <= 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static int lowerBound(double[] values, int count, double value) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (Double.compare(values[middle], value) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Method to drop the pieces that are walked both ways, they lie between two merged contours
+     *
+     * @return flags of the pieces that are left
+     */
+    private boolean[] cancelOppositePieces() {
+        int[] outStart = outgoingStarts();
+        int[] outPieces = outgoingPieces(outStart);
+        boolean[] alive = new boolean[pieceCount];
+        Arrays.fill(alive, true);
+        for (int p = 0; p < pieceCount; p++) {
+            if (!alive[p]) {
+                continue;
+            }
+            int a = pieceFrom[p];
+            int b = pieceTo[p];
+            for (int k = outStart[b]; k < outStart[b + 1]; k++) {
+                int q = outPieces[k];
+                if (alive[q] && pieceTo[q] == a) {
+                    alive[p] = false;
+                    alive[q] = false;
+                    break;
+                }
+            }
+        }
+        return alive;
+    }
+
+    private int[] outgoingStarts() {
+        int[] outStart = new int[vertexCount + 1];
+        for (int p = 0; p < pieceCount; p++) {
+            outStart[pieceFrom[p] + 1]++;
+        }
+        for (int v = 0; v < vertexCount; v++) {
+            outStart[v + 1] += outStart[v];
+        }
+        return outStart;
+    }
+
+    private int[] outgoingPieces(int[] outStart) {
+        int[] outPieces = new int[pieceCount];
+        int[] fill = Arrays.copyOf(outStart, vertexCount);
+        for (int p = 0; p < pieceCount; p++) {
+            outPieces[fill[pieceFrom[p]]++] = p;
+        }
+        return outPieces;
+    }
+
+    /**
+     * Method to join the pieces that are left into closed boundaries. Where several pieces leave a vertex,
+     * the one turning furthest to the left is taken, so regions that only touch at a vertex stay apart.
+     *
+     * @param alive
+     * @return
+     */
+    private List<Shape2D> stitch(boolean[] alive) {
+        int[] outStart = outgoingStarts();
+        int[] outPieces = outgoingPieces(outStart);
+        boolean[] used = new boolean[pieceCount];
+        List<Shape2D> boundaries = new ArrayList<>();
+        int[] loop = new int[16];
+        int[] positions = new int[vertexCount];
+        Arrays.fill(positions, -1);
+
+        for (int start = 0; start < pieceCount; start++) {
+            if (!alive[start] || used[start]) {
+                continue;
+            }
+            int length = 0;
+            int piece = start;
+            while (true) {
+                used[piece] = true;
+                if (length == loop.length) {
+                    loop = Arrays.copyOf(loop, length * 2);
+                }
+                loop[length++] = pieceFrom[piece];
+                int next = nextPiece(piece, start, alive, used, outStart, outPieces);
+                if (next < 0 || next == start) {
+                    break;
+                }
+                piece = next;
+            }
+            splitAtRepeatedVertices(loop, length, positions, boundaries);
+        }
+        return boundaries;
+    }
+
+    /**
+     * Method to cut a loop that passes a vertex twice, like two regions touching at a corner, into simple
+     * loops. Vertices are stacked, and coming back to a stacked vertex closes the part above it.
+     *
+     * @param loop
+     * @param length
+     * @param positions stack position of every vertex, -1 when it is not stacked, left all -1 again
+     * @param boundaries
+     */
+    private void splitAtRepeatedVertices(int[] loop, int length, int[] positions, List<Shape2D> boundaries) {
+        int[] stack = new int[length + 1];
+        int top = 0;
+        for (int k = 0; k <= length; k++) {
+            int v = loop[k % length];
+            int position = positions[v];
+            if (position >= 0) {
+                addBoundary(stack, position, top, boundaries);
+                for (int j = position + 1; j < top; j++) {
+                    positions[stack[j]] = -1;
+                }
+                top = position + 1;
+            } else {
+                positions[v] = top;
+                stack[top++] = v;
+            }
+        }
+        for (int j = 0; j < top; j++) {
+            positions[stack[j]] = -1;
+        }
+    }
+
+    private void addBoundary(int[] stack, int from, int to, List<Shape2D> boundaries) {
+        Shape2D boundary = toShape(Arrays.copyOfRange(stack, from, to), to - from);
+        if (boundary != null) {
+            boundaries.add(boundary);
+        }
+    }
+
+    private int nextPiece(int piece, int start, boolean[] alive, boolean[] used, int[] outStart, int[] outPieces) {
+        int v = pieceTo[piece];
+        double backX = vx[pieceFrom[piece]] - vx[v];
+        double backY = vy[pieceFrom[piece]] - vy[v];
+        double backAngle = Math.atan2(backY, backX);
+        int best = -1;
+        double bestTurn = Double.POSITIVE_INFINITY;
+        for (int k = outStart[v]; k < outStart[v + 1]; k++) {
+            int q = outPieces[k];
+            if (!alive[q] || (used[q] && q != start)) {
+                continue;
+            }
+            // Clockwise angle from the way back to the piece, the smallest one is the sharpest left turn
+            double turn = backAngle - Math.atan2(vy[pieceTo[q]] - vy[v], vx[pieceTo[q]] - vx[v]);
+            if (turn <= 0) {
+                turn += 2 * Math.PI;
+            }
+            if (turn < bestTurn) {
+                bestTurn = turn;
+                best = q;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Method to close a loop of vertices into a shape, dropping vertices in the middle of a straight run
+     *
+     * @param loop
+     * @param length
+     * @return the shape, or null when nothing is left of it
+     */
+    private Shape2D toShape(int[] loop, int length) {
+        PackedShape2D.Builder shape = new PackedShape2D.Builder(length + 1);
+        for (int k = 0; k < length; k++) {
+            int previous = loop[(k + length - 1) % length];
+            int v = loop[k];
+            int next = loop[(k + 1) % length];
+            double inX = vx[v] - vx[previous];
+            double inY = vy[v] - vy[previous];
+            double outX = vx[next] - vx[v];
+            double outY = vy[next] - vy[v];
+            if (inX * outY - inY * outX == 0 && inX * outX + inY * outY > 0) {
+                continue;
+            }
+            shape.add(vx[v], vy[v]);
+        }
+        if (shape.size() < 3) {
+            return null;
+        }
+        shape.add(shape.getX(0), shape.getY(0));
+        return shape.build();
+    }
+}
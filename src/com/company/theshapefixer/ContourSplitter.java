@@ -0,0 +1,171 @@
+package com.company.theshapefixer;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Splitting of a shape into contours at its repeated points, without recursion. A contour opens at a
+ * repeated point and closes at the next unvisited occurrence of that point; a different repeated point
+ * on the way opens a nested contour at its next occurrence, after which the outer contour carries on.
+ * Nested contours are kept on an explicit stack, so any nesting depth fits, and the next occurrence of
+ * every point is looked up in a table instead of by scanning.
+ * <p>
+ * A contour without a nested one is a run of consecutive points of the shape. Such contours are returned
+ * as views sharing the arrays of the shape, unless the shape only lives as long as the call; only
+ * contours with gaps are copied.
+ */
+class ContourSplitter {
+
+    private ContourSplitter() {
+    }
+
+    /**
+     * Method to find all contours of a shape, which must not be changed while its contours are in use
+     *
+     * @param shape
+     * @return contours in the order they close
+     */
+    static List<Shape2D> split(PackedShape2D shape) {
+        ValidatorContext context = ValidatorContext.acquire();
+        try {
+            return split(shape, context);
+        } finally {
+            context.release();
+        }
+    }
+
+    /**
+     * Method to find all contours of a shape, with the tables in the arrays of a context
+     *
+     * @param shape
+     * @param context
+     * @return contours in the order they close
+     */
+    static List<Shape2D> split(PackedShape2D shape, ValidatorContext context) {
+        int n = shape.size();
+        double[] xs = shape.xArray();
+        double[] ys = shape.yArray();
+        boolean shared = !context.holds(shape);
+
+        // Next occurrence of every point (n when there is none) and the points that occur more than once
+        int[] nextOccurrence = context.ints(ValidatorContext.NEXT_OCCURRENCE, n);
+        int[] repeated = context.clearedInts(ValidatorContext.REPEATED, n);
+        PointCounter lastSeen = PointCounter.forCurrentThread(n);
+        for (int i = n - 1; i >= 0; i--) {
+            int later = lastSeen.replace(xs[i], ys[i], i + 1) - 1;
+            if (later >= 0) {
+                nextOccurrence[i] = later;
+                repeated[i] = 1;
+                repeated[later] = 1;
+            } else {
+                nextOccurrence[i] = n;
+            }
+        }
+
+        // Skip pointers over the visited points, skip[i] leads to the first unvisited point at or after i
+        int[] skip = context.ints(ValidatorContext.SKIP, n + 1);
+        for (int i = 0; i <= n; i++) {
+            skip[i] = i;
+        }
+
+        List<Shape2D> contours = new ArrayList<>();
+        ArrayDeque<Frame> stack = new ArrayDeque<>();
+        stack.push(new Frame(0));
+        while (!stack.isEmpty()) {
+            Frame frame = stack.peek();
+            int i = firstUnvisited(skip, frame.position);
+            if (i >= n) {
+                // We reach the end of the points without closing the contour, so close it manually
+                if (frame.opening >= 0) {
+                    frame.add(shape, frame.opening);
+                    contours.add(frame.build(shape, shared));
+                }
+                stack.pop();
+                continue;
+            }
+            frame.position = i + 1;
+
+            if (repeated[i] != 0) {
+                if (frame.opening < 0) {
+                    // This is the opening point of a new contour
+                    frame.opening = i;
+                    frame.add(shape, i);
+                    skip[i] = i + 1;
+                } else if (shape.samePoint(i, frame.opening)) {
+                    // The contour closes here, the closing point stays unvisited for the outer contour
+                    frame.add(shape, i);
+                    contours.add(frame.build(shape, shared));
+                    stack.pop();
+                } else {
+                    // A nested contour starts at the next occurrence of this point
+                    frame.add(shape, i);
+                    skip[i] = i + 1;
+                    stack.push(new Frame(nextOccurrence[i]));
+                }
+            } else if (frame.opening >= 0) {
+                // Only add points to the contour once the contour is opened
+                frame.add(shape, i);
+                skip[i] = i + 1;
+            }
+        }
+        return contours;
+    }
+
+    private static int firstUnvisited(int[] skip, int index) {
+        while (skip[index] != index) {
+            skip[index] = skip[skip[index]]; // Path halving
+            index = skip[index];
+        }
+        return index;
+    }
+
+    /**
+     * A contour that is still open, with the position its scan continues from
+     */
+    private static final class Frame {
+        private PackedShape2D.Builder contour; // Only once the points stop being one run of the shape
+        private int runStart = -1;
+        private int runEnd;
+        private int position;
+        private int opening = -1;
+
+        Frame(int position) {
+            this.position = position;
+        }
+
+        void add(PackedShape2D shape, int index) {
+            if (contour == null) {
+                if (runStart < 0) {
+                    runStart = index;
+                    runEnd = index + 1;
+                    return;
+                }
+                if (index == runEnd) {
+                    runEnd++;
+                    return;
+                }
+                contour = new PackedShape2D.Builder(runEnd - runStart + 16);
+                for (int i = runStart; i < runEnd; i++) {
+                    contour.add(shape, i);
+                }
+            }
+            contour.add(shape, index);
+        }
+
+        Shape2D build(PackedShape2D shape, boolean shared) {
+            if (contour != null) {
+                return contour.build();
+            }
+            if (!shared) {
+                return new PackedShape2D(Arrays.copyOfRange(shape.xArray(), runStart, runEnd),
+                        Arrays.copyOfRange(shape.yArray(), runStart, runEnd));
+            }
+            if (runStart == 0) {
+                return runEnd == shape.size() ? shape : new PackedShape2D(shape.xArray(), shape.yArray(), runEnd);
+            }
+            return SlicedShape2D.of(shape, runStart, runEnd);
+        }
+    }
+}
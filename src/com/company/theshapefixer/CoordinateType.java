@@ -0,0 +1,27 @@
+package com.company.theshapefixer;
+
+/**
+ * How coordinates are stored in a binary shape file
+ */
+public enum CoordinateType {
+
+    /**
+     * 8-byte little-endian doubles
+     */
+    DOUBLE(8),
+
+    /**
+     * 4-byte little-endian ints, half the size for shapes on an integer grid like the ones in Main
+     */
+    INT(4);
+
+    private final int bytes;
+
+    CoordinateType(int bytes) {
+        this.bytes = bytes;
+    }
+
+    public int bytes() {
+        return bytes;
+    }
+}
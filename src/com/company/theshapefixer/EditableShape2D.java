@@ -0,0 +1,655 @@
+package com.company.theshapefixer;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Mutable shape that keeps its validity up to date while vertices are inserted, moved and removed.
+ * {@link #isValid()} gives the same answer as {@link TheShapeFixer#isValid(Shape2D)} in constant time.
+ * <p>
+ * The shape counts the pairs that make it invalid: repeated points, crossing edges and points lying on an
+ * edge. An edit only takes back and re-adds the contributions of the few vertices and edges around the
+ * changed index. Edges and points are found through a hashed grid, so an edit costs about the number of
+ * nearby vertices rather than the size of the shape (plus a shift of the index array on insert and remove).
+ * Vertices keep a stable id while their index moves, the grid and the counts refer to ids.
+ * <p>
+ * Not thread-safe.
+ */
+public class EditableShape2D extends Shape2D {
+
+    // Edges spanning more cells than this are kept in a list that every query checks
+    private static final int MAX_CELLS_PER_EDGE = 256;
+
+    // The grid is rebuilt with a new cell size when the shape has grown or shrunk by this factor
+    private static final int REBUILD_FACTOR = 2;
+
+    // Coordinates per vertex id, and the end vertex of the edge starting at each id
+    private double[] xs = new double[16];
+    private double[] ys = new double[16];
+    private int[] edgeEnd = new int[16];
+    private boolean[] pointIndexed = new boolean[16];
+    private boolean[] edgeIndexed = new boolean[16];
+    private boolean[] largeEdge = new boolean[16];
+    private int[] visited = new int[16];
+    private int visitStamp;
+
+    // Vertex ids in shape order, and ids freed by removals
+    private int[] ids = new int[16];
+    private int size;
+    private int[] freeIds = new int[16];
+    private int freeCount;
+    private int idCount;
+
+    private final Map<Long, IdList> pointCells = new HashMap<>();
+    private final Map<Long, IdList> edgeCells = new HashMap<>();
+    private final IdList largeEdges = new IdList();
+    private double cellSize = 1;
+    private long[] cellBuffer = new long[MAX_CELLS_PER_EDGE];
+    private int indexedSize;
+
+    // Occurrences of every point except the closing one, and the pairs that make the shape invalid
+    private final PointCounter pointCounts = new PointCounter();
+    private long repeatedPointPairs;
+    private long crossingEdgePairs;
+    private long pointOnEdgePairs;
+
+    public EditableShape2D() {
+    }
+
+    public EditableShape2D(Shape2D shape) {
+        PackedShape2D packed = PackedShape2D.of(shape);
+        int n = packed.size();
+        cellSize = cellSizeFor(packed.xArray(), packed.yArray(), n);
+        indexedSize = n;
+        if (!new TheShapeFixer().isValid(packed)) {
+            for (int i = 0; i < n; i++) {
+                add(packed.getX(i), packed.getY(i));
+            }
+            return;
+        }
+
+        // A valid shape has nothing to count, so it only has to be put into the grid
+        for (int i = 0; i < n; i++) {
+            int id = newId();
+            xs[id] = packed.getX(i);
+            ys[id] = packed.getY(i);
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+            indexPoint(id);
+            if (i < n - 1) {
+                pointCounts.add(xs[id], ys[id]);
+            }
+        }
+        for (int i = 0; i < n - 1; i++) {
+            edgeEnd[ids[i]] = ids[i + 1];
+            indexEdge(ids[i]);
+        }
+    }
+
+    /**
+     * Same result as {@link TheShapeFixer#isValid(Shape2D)} for the current points
+     *
+     * @return
+     */
+    public boolean isValid() {
+        return size > 0 && samePoint(ids[0], ids[size - 1])
+                && repeatedPointPairs == 0 && crossingEdgePairs == 0 && pointOnEdgePairs == 0;
+    }
+
+    /**
+     * Number of pairs of equal points, not counting the closing point
+     *
+     * @return
+     */
+    public long getRepeatedPointPairs() {
+        return repeatedPointPairs;
+    }
+
+    /**
+     * Number of pairs of edges that cross each other
+     *
+     * @return
+     */
+    public long getCrossingEdgePairs() {
+        return crossingEdgePairs;
+    }
+
+    /**
+     * Number of (edge, point) pairs where the point lies on the edge without being one of its ends
+     *
+     * @return
+     */
+    public long getPointOnEdgePairs() {
+        return pointOnEdgePairs;
+    }
+
+    public void add(double x, double y) {
+        insert(size, x, y);
+    }
+
+    /**
+     * Method to insert a point before the given index, an index equal to the size appends it
+     *
+     * @param index
+     * @param x
+     * @param y
+     */
+    public void insert(int index, double x, double y) {
+        if (index < 0 || index > size) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        removeContributions(index - 1, Math.min(index, size - 1));
+
+        int id = newId();
+        xs[id] = x;
+        ys[id] = y;
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, size * 2);
+        }
+        System.arraycopy(ids, index, ids, index + 1, size - index);
+        ids[index] = id;
+        size++;
+
+        addContributions(index - 1, Math.min(index + 1, size - 1));
+        rebuildIfResized();
+    }
+
+    /**
+     * Method to move the point at the given index
+     *
+     * @param index
+     * @param x
+     * @param y
+     */
+    public void move(int index, double x, double y) {
+        checkIndex(index);
+        removeContributions(index, index);
+        xs[ids[index]] = x;
+        ys[ids[index]] = y;
+        addContributions(index, index);
+    }
+
+    /**
+     * Method to remove the point at the given index
+     *
+     * @param index
+     */
+    public void remove(int index) {
+        checkIndex(index);
+        removeContributions(index - 1, Math.min(index + 1, size - 1));
+
+        int id = ids[index];
+        System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+        size--;
+        if (freeCount == freeIds.length) {
+            freeIds = Arrays.copyOf(freeIds, freeCount * 2);
+        }
+        freeIds[freeCount++] = id;
+
+        addContributions(index - 1, Math.min(index, size - 1));
+        rebuildIfResized();
+    }
+
+    @Override
+    public List<Point2D> getPoints() {
+        return new AbstractList<>() {
+            @Override
+            public Point2D get(int index) {
+                return new Point2D(EditableShape2D.this.getX(index), EditableShape2D.this.getY(index));
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public double getX(int index) {
+        checkIndex(index);
+        return xs[ids[index]];
+    }
+
+    @Override
+    public double getY(int index) {
+        checkIndex(index);
+        return ys[ids[index]];
+    }
+
+    /**
+     * Take back everything the points from index first to last and the edges touching them add to the
+     * counts. Edges are taken out of the grid one at a time, so a pair of changed edges is counted once.
+     *
+     * @param first
+     * @param last
+     */
+    private void removeContributions(int first, int last) {
+        first = Math.max(first, 0);
+        for (int i = Math.max(first - 1, 0); i <= Math.min(last, size - 2); i++) {
+            int edge = ids[i];
+            unindexEdge(edge);
+            crossingEdgePairs -= countCrossingEdges(edge);
+            pointOnEdgePairs -= countPointsOnEdge(edge);
+        }
+        for (int i = first; i <= last; i++) {
+            int point = ids[i];
+            unindexPoint(point);
+            pointOnEdgePairs -= countEdgesThroughPoint(point);
+            if (i < size - 1) {
+                repeatedPointPairs -= changePointCount(point, -1);
+            }
+        }
+    }
+
+    /**
+     * Add back the points from index first to last and the edges touching them, in reverse order of
+     * {@link #removeContributions(int, int)}
+     *
+     * @param first
+     * @param last
+     */
+    private void addContributions(int first, int last) {
+        first = Math.max(first, 0);
+        for (int i = first; i <= last; i++) {
+            int point = ids[i];
+            if (i < size - 1) {
+                repeatedPointPairs += changePointCount(point, 1);
+            }
+            pointOnEdgePairs += countEdgesThroughPoint(point);
+            indexPoint(point);
+        }
+        for (int i = Math.max(first - 1, 0); i <= Math.min(last, size - 2); i++) {
+            int edge = ids[i];
+            edgeEnd[edge] = ids[i + 1];
+            pointOnEdgePairs += countPointsOnEdge(edge);
+            crossingEdgePairs += countCrossingEdges(edge);
+            indexEdge(edge);
+        }
+    }
+
+    /**
+     * Change the occurrence count of a point
+     *
+     * @param point
+     * @param delta +1 or -1
+     * @return the change in the number of equal pairs
+     */
+    private long changePointCount(int point, int delta) {
+        if (delta > 0) {
+            return pointCounts.add(xs[point], ys[point]) - 1; // Pairs gained by the new occurrence
+        }
+        return pointCounts.remove(xs[point], ys[point]); // Pairs lost with the old one
+    }
+
+    /**
+     * Number of edges in the grid crossing the given edge
+     *
+     * @param edge
+     * @return
+     */
+    private long countCrossingEdges(int edge) {
+        int end = edgeEnd[edge];
+        long count = 0;
+        int stamp = nextVisitStamp();
+        int cells = collectEdgeCells(edge);
+        if (cells < 0) {
+            for (int i = 0; i < size - 1; i++) {
+                count += crossingIfNew(edge, end, ids[i], stamp);
+            }
+            return count;
+        }
+        for (int c = 0; c < cells; c++) {
+            IdList cell = edgeCells.get(cellBuffer[c]);
+            if (cell != null) {
+                for (int k = 0; k < cell.size; k++) {
+                    count += crossingIfNew(edge, end, cell.items[k], stamp);
+                }
+            }
+        }
+        for (int k = 0; k < largeEdges.size; k++) {
+            count += crossingIfNew(edge, end, largeEdges.items[k], stamp);
+        }
+        return count;
+    }
+
+    private int crossingIfNew(int edge, int end, int other, int stamp) {
+        if (other == edge || !edgeIndexed[other] || visited[other] == stamp) {
+            return 0;
+        }
+        visited[other] = stamp;
+        return TheShapeFixerUtils.linesIntersect(xs, ys, edge, end, other, edgeEnd[other]) ? 1 : 0;
+    }
+
+    /**
+     * Number of points in the grid lying on the given edge
+     *
+     * @param edge
+     * @return
+     */
+    private long countPointsOnEdge(int edge) {
+        long count = 0;
+        int cells = collectEdgeCells(edge);
+        if (cells < 0) {
+            for (int i = 0; i < size; i++) {
+                int point = ids[i];
+                if (pointIndexed[point] && isOnEdge(edge, point)) {
+                    count++;
+                }
+            }
+            return count;
+        }
+        int stamp = nextVisitStamp();
+        for (int c = 0; c < cells; c++) {
+            IdList cell = pointCells.get(cellBuffer[c]);
+            if (cell != null) {
+                for (int k = 0; k < cell.size; k++) {
+                    int point = cell.items[k];
+                    if (visited[point] != stamp) {
+                        visited[point] = stamp; // Different cells can share a hash bucket
+                        if (isOnEdge(edge, point)) {
+                            count++;
+                        }
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Number of edges in the grid that the given point lies on
+     *
+     * @param point
+     * @return
+     */
+    private long countEdgesThroughPoint(int point) {
+        long count = 0;
+        int stamp = nextVisitStamp();
+        IdList cell = edgeCells.get(cellKey(cellOf(xs[point]), cellOf(ys[point])));
+        if (cell != null) {
+            for (int k = 0; k < cell.size; k++) {
+                count += pointOnEdgeIfNew(cell.items[k], point, stamp);
+            }
+        }
+        for (int k = 0; k < largeEdges.size; k++) {
+            count += pointOnEdgeIfNew(largeEdges.items[k], point, stamp);
+        }
+        return count;
+    }
+
+    private int pointOnEdgeIfNew(int edge, int point, int stamp) {
+        if (!edgeIndexed[edge] || visited[edge] == stamp) {
+            return 0;
+        }
+        visited[edge] = stamp;
+        return isOnEdge(edge, point) ? 1 : 0;
+    }
+
+    /**
+     * Same test as the point on segment check of {@link SegmentPassingThroughPoint}
+     *
+     * @param edge
+     * @param point
+     * @return
+     */
+    private boolean isOnEdge(int edge, int point) {
+        int end = edgeEnd[edge];
+        if (samePoint(point, edge) || samePoint(point, end)) {
+            return false;
+        }
+        return SegmentPassingThroughPoint.isPointOnLineSegment(xs, ys, edge, end, point);
+    }
+
+    /**
+     * Distance from the edge within which the collinearity tolerance still accepts a point
+     *
+     * @param edge
+     * @param end
+     * @return
+     */
+    private double margin(int edge, int end) {
+        double dx = xs[end] - xs[edge];
+        double dy = ys[end] - ys[edge];
+        double scale = Math.max(Math.max(Math.abs(xs[edge]), Math.abs(xs[end])),
+                Math.max(Math.abs(ys[edge]), Math.abs(ys[end])));
+        return 2 * SegmentPassingThroughPoint.COLLINEARITY_EPSILON / Math.sqrt(dx * dx + dy * dy) + 4 * Math.ulp(scale);
+    }
+
+    private void indexPoint(int point) {
+        pointCells.computeIfAbsent(cellKey(cellOf(xs[point]), cellOf(ys[point])), key -> new IdList()).add(point);
+        pointIndexed[point] = true;
+    }
+
+    private void unindexPoint(int point) {
+        long key = cellKey(cellOf(xs[point]), cellOf(ys[point]));
+        IdList cell = pointCells.get(key);
+        cell.remove(point);
+        if (cell.size == 0) {
+            pointCells.remove(key);
+        }
+        pointIndexed[point] = false;
+    }
+
+    /**
+     * Register an edge in every cell along it, large edges go to their own list instead
+     *
+     * @param edge
+     */
+    private void indexEdge(int edge) {
+        edgeIndexed[edge] = true;
+        int cells = collectEdgeCells(edge);
+        largeEdge[edge] = cells < 0;
+        if (largeEdge[edge]) {
+            largeEdges.add(edge);
+            return;
+        }
+        for (int c = 0; c < cells; c++) {
+            edgeCells.computeIfAbsent(cellBuffer[c], key -> new IdList()).add(edge);
+        }
+    }
+
+    private void unindexEdge(int edge) {
+        edgeIndexed[edge] = false;
+        if (largeEdge[edge]) {
+            largeEdges.remove(edge);
+            return;
+        }
+        int cells = collectEdgeCells(edge);
+        for (int c = 0; c < cells; c++) {
+            IdList cell = edgeCells.get(cellBuffer[c]);
+            cell.remove(edge);
+            if (cell.size == 0) {
+                edgeCells.remove(cellBuffer[c]);
+            }
+        }
+    }
+
+    /**
+     * Collect the keys of the cells along an edge into the cell buffer, column by column like the vertex
+     * grid walk. The edge and every column are widened by the collinearity tolerance, so a point accepted
+     * by the point on segment test is always in one of the cells.
+     *
+     * @param edge
+     * @return number of cells, or -1 for a large edge: one over too many cells, or with no finite
+     * tolerance (zero length) so that every point may lie on it
+     */
+    private int collectEdgeCells(int edge) {
+        int end = edgeEnd[edge];
+        double x1 = xs[edge];
+        double y1 = ys[edge];
+        double x2 = xs[end];
+        double y2 = ys[end];
+        double margin = margin(edge, end);
+        double minX = Math.min(x1, x2) - margin;
+        double maxX = Math.max(x1, x2) + margin;
+        double minY = Math.min(y1, y2) - margin;
+        double maxY = Math.max(y1, y2) + margin;
+        double span = (Math.floor(maxX / cellSize) - Math.floor(minX / cellSize))
+                + (Math.floor(maxY / cellSize) - Math.floor(minY / cellSize));
+        if (!(span <= MAX_CELLS_PER_EDGE)) {
+            return -1;
+        }
+
+        double slope = (y2 - y1) / (x2 - x1);
+        int count = 0;
+        for (long cx = cellOf(minX), lastColumn = cellOf(maxX); cx <= lastColumn; cx++) {
+            double low = minY;
+            double high = maxY;
+            if (Double.isFinite(slope)) {
+                double fromX = Math.max(minX, cx * cellSize - margin);
+                double toX = Math.min(maxX, (cx + 1) * cellSize + margin);
+                double yFrom = y1 + (fromX - x1) * slope;
+                double yTo = y1 + (toX - x1) * slope;
+                low = Math.max(minY, Math.min(yFrom, yTo) - margin);
+                high = Math.min(maxY, Math.max(yFrom, yTo) + margin);
+            }
+            for (long cy = cellOf(low), lastRow = cellOf(high); cy <= lastRow; cy++) {
+                if (count == cellBuffer.length) {
+                    cellBuffer = Arrays.copyOf(cellBuffer, count * 2);
+                }
+                cellBuffer[count++] = cellKey(cx, cy);
+            }
+        }
+        return count;
+    }
+
+    private long cellOf(double value) {
+        return (long) Math.floor(value / cellSize);
+    }
+
+    private static long cellKey(long cx, long cy) {
+        return cx * 0x9E3779B97F4A7C15L + cy; // Collisions only add candidates, every candidate is tested
+    }
+
+    /**
+     * Start the grid again with a cell size fitting the current shape, the counts stay as they are
+     */
+    private void rebuildIfResized() {
+        if (size <= REBUILD_FACTOR * Math.max(indexedSize, 8) && size * REBUILD_FACTOR >= indexedSize) {
+            return;
+        }
+        int count = size;
+        double[] pointXs = new double[count];
+        double[] pointYs = new double[count];
+        for (int i = 0; i < count; i++) {
+            pointXs[i] = xs[ids[i]];
+            pointYs[i] = ys[ids[i]];
+        }
+        for (int i = 0; i < count - 1; i++) {
+            unindexEdge(ids[i]);
+        }
+        for (int i = 0; i < count; i++) {
+            unindexPoint(ids[i]);
+        }
+        cellSize = cellSizeFor(pointXs, pointYs, count);
+        indexedSize = count;
+        for (int i = 0; i < count; i++) {
+            indexPoint(ids[i]);
+        }
+        for (int i = 0; i < count - 1; i++) {
+            indexEdge(ids[i]);
+        }
+    }
+
+    /**
+     * About one vertex per cell like {@link VertexGridIndex}, capped by the mean edge length for vertices
+     * that follow a thin contour
+     *
+     * @param xs
+     * @param ys
+     * @param count
+     * @return
+     */
+    private static double cellSizeFor(double[] xs, double[] ys, int count) {
+        double lowX = Double.POSITIVE_INFINITY;
+        double lowY = Double.POSITIVE_INFINITY;
+        double highX = Double.NEGATIVE_INFINITY;
+        double highY = Double.NEGATIVE_INFINITY;
+        double perimeter = 0;
+        for (int i = 0; i < count; i++) {
+            lowX = Math.min(lowX, xs[i]);
+            lowY = Math.min(lowY, ys[i]);
+            highX = Math.max(highX, xs[i]);
+            highY = Math.max(highY, ys[i]);
+            if (i > 0) {
+                perimeter += Math.abs(xs[i] - xs[i - 1]) + Math.abs(ys[i] - ys[i - 1]);
+            }
+        }
+        double size = Math.sqrt((highX - lowX) * (highY - lowY) / Math.max(count, 1));
+        double meanEdge = perimeter / Math.max(count - 1, 1);
+        if (!(size > 0) || (meanEdge > 0 && meanEdge < size)) {
+            size = meanEdge;
+        }
+        return size > 0 && size < Double.POSITIVE_INFINITY ? size : 1;
+    }
+
+    private boolean samePoint(int a, int b) {
+        return Double.compare(xs[a], xs[b]) == 0 && Double.compare(ys[a], ys[b]) == 0;
+    }
+
+    private int nextVisitStamp() {
+        if (++visitStamp == 0) {
+            Arrays.fill(visited, 0);
+            visitStamp = 1;
+        }
+        return visitStamp;
+    }
+
+    private int newId() {
+        if (freeCount > 0) {
+            return freeIds[--freeCount];
+        }
+        if (idCount == xs.length) {
+            int capacity = idCount * 2;
+            xs = Arrays.copyOf(xs, capacity);
+            ys = Arrays.copyOf(ys, capacity);
+            edgeEnd = Arrays.copyOf(edgeEnd, capacity);
+            pointIndexed = Arrays.copyOf(pointIndexed, capacity);
+            edgeIndexed = Arrays.copyOf(edgeIndexed, capacity);
+            largeEdge = Arrays.copyOf(largeEdge, capacity);
+            visited = Arrays.copyOf(visited, capacity);
+        }
+        return idCount++;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(index);
+        }
+    }
+
+    /**
+     * Small unordered list of ids
+     */
+    private static class IdList {
+        private int[] items = new int[4];
+        private int size;
+
+        void add(int id) {
+            if (size == items.length) {
+                items = Arrays.copyOf(items, size * 2);
+            }
+            items[size++] = id;
+        }
+
+        void remove(int id) {
+            for (int k = 0; k < size; k++) {
+                if (items[k] == id) {
+                    items[k] = items[--size];
+                    return;
+                }
+            }
+        }
+    }
+}
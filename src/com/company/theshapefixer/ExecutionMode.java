@@ -0,0 +1,15 @@
+package com.company.theshapefixer;
+
+/**
+ * How a single shape is checked: on the calling thread, or split across the fork-join pool
+ */
+public enum ExecutionMode {
+
+    SEQUENTIAL,
+
+    /**
+     * Worth it for contours with hundreds of thousands of vertices, small shapes are better off
+     * sequential or in a batch call
+     */
+    PARALLEL
+}
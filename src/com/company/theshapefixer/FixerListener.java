@@ -0,0 +1,74 @@
+package com.company.theshapefixer;
+
+/**
+ * Receives timings and counts from a {@link TheShapeFixer} it is given to. Calls come from whichever thread
+ * runs the fixer, batch methods included, so implementations must be thread safe and quick. Without a
+ * listener the fixer does not read the clock at all.
+ */
+public interface FixerListener {
+
+    /**
+     * Called after each phase that ran
+     *
+     * @param phase
+     * @param nanos time spent in the phase
+     * @param vertices number of points the phase worked on
+     * @param edges number of edges the phase worked on
+     * @param comparisons points hashed or edge pairs screened before the phase decided, -1 for the phases
+     *                    that do not count them (sweep line, point on segment grid, repair phases)
+     */
+    default void phaseCompleted(FixerPhase phase, long nanos, int vertices, int edges, long comparisons) {
+    }
+
+    /**
+     * Called once per validation
+     *
+     * @param outcome
+     * @param failedPhase phase that found the shape invalid, null if it is valid or if a tier decided
+     *                    it before the full checks
+     * @param nanos total time
+     * @param vertices
+     */
+    default void validationCompleted(ValidationOutcome outcome, FixerPhase failedPhase, long nanos, int vertices) {
+    }
+
+    /**
+     * Called once per repair
+     *
+     * @param nanos total time
+     * @param vertices points of the shape
+     * @param contours closed contours found in it
+     * @param resultVertices points of the repaired shape
+     */
+    default void repairCompleted(long nanos, int vertices, int contours, int resultVertices) {
+    }
+
+    /**
+     * Method to pass every call to this listener and then to another one
+     *
+     * @param other
+     * @return
+     */
+    default FixerListener andThen(FixerListener other) {
+        FixerListener first = this;
+        return new FixerListener() {
+            @Override
+            public void phaseCompleted(FixerPhase phase, long nanos, int vertices, int edges, long comparisons) {
+                first.phaseCompleted(phase, nanos, vertices, edges, comparisons);
+                other.phaseCompleted(phase, nanos, vertices, edges, comparisons);
+            }
+
+            @Override
+            public void validationCompleted(ValidationOutcome outcome, FixerPhase failedPhase, long nanos, int vertices) {
+                first.validationCompleted(outcome, failedPhase, nanos, vertices);
+                other.validationCompleted(outcome, failedPhase, nanos, vertices);
+            }
+
+            @Override
+            public void repairCompleted(long nanos, int vertices, int contours, int resultVertices) {
+                first.repairCompleted(nanos, vertices, contours, resultVertices);
+                other.repairCompleted(nanos, vertices, contours, resultVertices);
+            }
+        };
+    }
+}
@@ -0,0 +1,48 @@
+package com.company.theshapefixer;
+
+/**
+ * Step of {@link TheShapeFixer#isValid(Shape2D)}, {@link TheShapeFixer#repair(Shape2D)} or
+ * {@link TheShapeFixer#triangulate(Shape2D)} reported to a {@link FixerListener}
+ */
+public enum FixerPhase {
+
+    /**
+     * Whether the last point is the first one again
+     */
+    CLOSURE,
+
+    /**
+     * Search for a repeated point
+     */
+    UNIQUENESS,
+
+    /**
+     * Search for crossing edges, the vertex sorting included with the sweep line strategy
+     */
+    INTERSECTION,
+
+    /**
+     * Search for crossing neighbouring edges, only run by the brute force strategy
+     */
+    INTERNAL_EDGES,
+
+    /**
+     * Search for vertices lying on edges, and their removal during a repair
+     */
+    SEGMENT_POINT,
+
+    /**
+     * Split of the shape into closed contours
+     */
+    CONTOUR_FINDING,
+
+    /**
+     * Merge of the repaired contours into the result
+     */
+    MERGE,
+
+    /**
+     * Triangulation of a valid shape by {@link TheShapeFixer#triangulate(Shape2D)}
+     */
+    TRIANGULATION
+}
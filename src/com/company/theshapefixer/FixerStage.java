@@ -0,0 +1,304 @@
+package com.company.theshapefixer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * Stage of a {@link Flow} pipeline applying one operation, such as a validation or a repair, to every item.
+ * Stages are chained by subscribing each one to the one before it, for example a queue consumer publishing
+ * shapes, then {@link #validating}, {@link #repairing} and {@link #validating} again, then a sink.
+ * <p>
+ * Memory stays bounded under bursty input: the stage holds at most its buffer capacity of items, counting
+ * those waiting, being processed and waiting for the subscriber, and only requests a new item from
+ * upstream once one has been passed on. A slow sink so holds back every stage before it, without any
+ * thread waiting. Incoming items are queued; up to parallelism workers each take what is waiting, at most
+ * one batch at a time. A burst is processed in full batches, a trickle item by item without waiting for a
+ * batch to fill.
+ * <p>
+ * With a parallelism above one, items come out in the order they are finished rather than the order they
+ * came in. A stage has one subscriber, items finished before it subscribes wait for it. Anything thrown
+ * by the operation cancels the upstream subscription and is passed on with onError.
+ */
+public final class FixerStage<T, R> implements Flow.Processor<T, R> {
+
+    private final Function<? super T, ? extends R> operation;
+    private final StageSettings settings;
+    private final ArrayBlockingQueue<T> input;
+    private final ConcurrentLinkedQueue<R> output = new ConcurrentLinkedQueue<>();
+
+    // Items received and not passed on yet, and items the subscriber asked for and has not received yet
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicLong demand = new AtomicLong();
+
+    // Workers running or about to, at most the parallelism of the stage
+    private final AtomicInteger workers = new AtomicInteger();
+
+    // Calls of emit still to be run, only the call that raised it from zero passes items on
+    private final AtomicInteger emitting = new AtomicInteger();
+
+    // The subscriber, and the same subscriber once its onSubscribe has returned
+    private final AtomicReference<Flow.Subscriber<? super R>> subscriber = new AtomicReference<>();
+    private volatile Flow.Subscriber<? super R> subscribed;
+    private final AtomicReference<Throwable> error = new AtomicReference<>();
+    private volatile Flow.Subscription subscription;
+    private volatile boolean upstreamDone;
+    private volatile boolean cancelled;
+    private boolean terminated; // Only used by the emitting thread
+
+    public FixerStage(Function<? super T, ? extends R> operation, StageSettings settings) {
+        this.operation = operation;
+        this.settings = settings;
+        input = new ArrayBlockingQueue<>(settings.bufferCapacity());
+    }
+
+    /**
+     * Stage checking every shape
+     *
+     * @param fixer
+     * @param settings
+     * @return
+     */
+    public static FixerStage<Shape2D, ValidatedShape> validating(TheShapeFixer fixer, StageSettings settings) {
+        return new FixerStage<>(shape -> new ValidatedShape(shape, fixer.isValid(shape)), settings);
+    }
+
+    /**
+     * Stage repairing the invalid shapes, valid shapes are passed on as they are
+     *
+     * @param fixer
+     * @param settings
+     * @return
+     */
+    public static FixerStage<ValidatedShape, Shape2D> repairing(TheShapeFixer fixer, StageSettings settings) {
+        return new FixerStage<>(checked -> checked.valid() ? checked.shape() : fixer.repair(checked.shape()),
+                settings);
+    }
+
+    /**
+     * Stage checking every shape and triangulating the valid ones in the same call, for example after a
+     * repairing stage instead of validating again
+     *
+     * @param fixer
+     * @param settings
+     * @return
+     */
+    public static FixerStage<Shape2D, TriangulatedShape> triangulating(TheShapeFixer fixer, StageSettings settings) {
+        return new FixerStage<>(fixer::triangulate, settings);
+    }
+
+    /**
+     * Stage merging every list of shapes into one, each shape after the first is merged with the result so
+     * far along their common line
+     *
+     * @param fixer
+     * @param settings
+     * @return
+     */
+    public static FixerStage<List<Shape2D>, Shape2D> merging(TheShapeFixer fixer, StageSettings settings) {
+        return new FixerStage<>(shapes -> {
+            if (shapes.isEmpty()) {
+                throw new IllegalArgumentException("No shapes to merge");
+            }
+            Shape2D merged = shapes.get(0);
+            for (int i = 1; i < shapes.size(); i++) {
+                merged = fixer.mergeShapesWithCommonLine(merged, shapes.get(i));
+            }
+            return merged;
+        }, settings);
+    }
+
+    public StageSettings getSettings() {
+        return settings;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super R> subscriber) {
+        if (!this.subscriber.compareAndSet(null, subscriber)) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException("The stage already has a subscriber"));
+            return;
+        }
+        subscriber.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+                if (n <= 0) {
+                    fail(new IllegalArgumentException("Requested " + n + " items"));
+                    return;
+                }
+                demand.getAndUpdate(current -> current + n < 0 ? Long.MAX_VALUE : current + n);
+                emit();
+            }
+
+            @Override
+            public void cancel() {
+                cancelled = true;
+                Flow.Subscription upstream = subscription;
+                if (upstream != null) {
+                    upstream.cancel();
+                }
+                emit();
+            }
+        });
+        subscribed = subscriber;
+        emit();
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        if (this.subscription != null || cancelled) {
+            subscription.cancel();  // A stage takes its items from one publisher only
+            return;
+        }
+        this.subscription = subscription;
+        subscription.request(settings.bufferCapacity());
+    }
+
+    @Override
+    public void onNext(T item) {
+        if (error.get() != null || cancelled) {
+            return;
+        }
+        pending.incrementAndGet();
+        if (!input.offer(item)) {
+            fail(new IllegalStateException("Received more items than requested"));
+            return;
+        }
+        if (claimWorker()) {
+            try {
+                settings.executor().execute(this::process);
+            } catch (RuntimeException e) {
+                workers.decrementAndGet();
+                fail(e);
+            }
+        }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        error.compareAndSet(null, throwable);
+        upstreamDone = true;
+        emit();
+    }
+
+    @Override
+    public void onComplete() {
+        upstreamDone = true;
+        emit();
+    }
+
+    private boolean claimWorker() {
+        while (true) {
+            int running = workers.get();
+            if (running >= settings.parallelism()) {
+                return false;
+            }
+            if (workers.compareAndSet(running, running + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Worker loop, takes batches from the queue until it is empty. Anything thrown by the operation, errors
+     * included, ends the stream with onError, so no worker stops without giving its place back.
+     */
+    private void process() {
+        List<T> batch = new ArrayList<>(settings.batchSize());
+        try {
+            while (error.get() == null && !cancelled) {
+                input.drainTo(batch, settings.batchSize());
+                if (batch.isEmpty()) {
+                    workers.decrementAndGet();
+
+                    // An item may have come in after the queue was drained while every worker was running
+                    if (input.isEmpty() || !claimWorker()) {
+                        return;
+                    }
+                    continue;
+                }
+                for (T item : batch) {
+                    output.add(operation.apply(item));
+                }
+                batch.clear();
+                emit();
+            }
+            workers.decrementAndGet();
+        } catch (Throwable e) {
+            workers.decrementAndGet();
+            fail(e);
+        }
+    }
+
+    /**
+     * Method to pass finished items on as far as the subscriber asked for them, then the end of the stream
+     * once every item is through. Calls made while another thread is passing items on are run by that thread.
+     */
+    private void emit() {
+        if (emitting.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        do {
+            Flow.Subscriber<? super R> target = subscribed;
+            if (target != null && !terminated) {
+                long requested = demand.get();
+                long delivered = 0;
+                R result;
+                while (delivered < requested && !cancelled && error.get() == null
+                        && (result = output.poll()) != null) {
+                    target.onNext(result);
+                    delivered++;
+                }
+                if (delivered > 0) {
+                    if (requested != Long.MAX_VALUE) {
+                        demand.addAndGet(-delivered);
+                    }
+                    pending.addAndGet((int) -delivered);
+                    if (!upstreamDone && !cancelled && error.get() == null) {
+                        subscription.request(delivered);
+                    }
+                }
+
+                Throwable failure = error.get();
+                if (cancelled || failure != null || upstreamDone && pending.get() == 0) {
+                    terminated = true;
+                    input.clear();
+                    output.clear();
+                    if (!cancelled) {  // A subscriber that cancelled gets nothing more
+                        if (failure != null) {
+                            target.onError(failure);
+                        } else {
+                            target.onComplete();
+                        }
+                    }
+                }
+            }
+            missed = emitting.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    private void fail(Throwable throwable) {
+        if (error.compareAndSet(null, throwable)) {
+            Flow.Subscription upstream = subscription;
+            if (upstream != null) {
+                upstream.cancel();
+            }
+        }
+        emit();
+    }
+}
@@ -0,0 +1,180 @@
+package com.company.theshapefixer;
+
+import java.math.BigDecimal;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Orientation and point on segment predicates that always give the answer of exact arithmetic on the
+ * input coordinates. The expression is first evaluated in double together with a bound on its rounding
+ * error (Shewchuk's bound for a sum of two products of differences); only when the result is closer to
+ * the decision value than the bound it is evaluated again exactly. The collinearity tolerance of the
+ * point on segment test stays an absolute bound on the cross product, but it is now compared exactly, so
+ * large coordinates no longer flip the result through rounding. The tolerance is deliberately not scaled
+ * by the extent of the segment, see {@link SegmentPassingThroughPoint#COLLINEARITY_EPSILON}.
+ */
+public class GeometryPredicates {
+
+    private static final double EPSILON = Math.ulp(1.0) / 2;
+
+    // Bound on the relative error of (a - b) * (c - d) + (e - f) * (g - h) in double
+    static final double ERROR_BOUND = (3 + 16 * EPSILON) * EPSILON;
+
+    private static final BigDecimal COLLINEARITY_EPSILON = new BigDecimal(SegmentPassingThroughPoint.COLLINEARITY_EPSILON);
+
+    private static final int UNDECIDED = 2;
+
+    // Below this magnitude a product can lose bits to underflow, and its fused multiply-add error is not exact
+    private static final double MIN_EXACT_PRODUCT = 0x1p-969;
+
+    private static final LongAdder EXACT_EVALUATIONS = new LongAdder();
+
+    private GeometryPredicates() {
+    }
+
+    /**
+     * Method to find on which side of the line from a to b the point c is
+     *
+     * @param ax
+     * @param ay
+     * @param bx
+     * @param by
+     * @param cx
+     * @param cy
+     * @return 1 when c is to the left, -1 when it is to the right and 0 when the three points are collinear
+     */
+    public static int orientation(double ax, double ay, double bx, double by, double cx, double cy) {
+        return signOfSum(bx, ax, cy, ay, cx, ax, ay, by);
+    }
+
+    static int orientation(double[] xs, double[] ys, int a, int b, int c) {
+        return orientation(xs[a], ys[a], xs[b], ys[b], xs[c], ys[c]);
+    }
+
+    /**
+     * Method to check if the point p lies on the segment from a to b: the cross product is within the
+     * collinearity tolerance and p projects onto the segment
+     *
+     * @param px
+     * @param py
+     * @param ax
+     * @param ay
+     * @param bx
+     * @param by
+     * @return
+     */
+    public static boolean isPointOnSegment(double px, double py, double ax, double ay, double bx, double by) {
+        return isCollinear(px, py, ax, ay, bx, by)
+                && signOfSum(px, ax, bx, ax, py, ay, by, ay) >= 0   // Not before a
+                && signOfSum(px, bx, bx, ax, py, by, by, ay) <= 0;  // Not past b
+    }
+
+    static boolean isPointOnSegment(double[] xs, double[] ys, int a, int b, int point) {
+        return isPointOnSegment(xs[point], ys[point], xs[a], ys[a], xs[b], ys[b]);
+    }
+
+    /**
+     * Number of evaluations, over all threads, that the double arithmetic could not decide and that were
+     * done with arbitrary precision
+     *
+     * @return
+     */
+    public static long getExactEvaluationCount() {
+        return EXACT_EVALUATIONS.sum();
+    }
+
+    /**
+     * Check |(py - ay) * (bx - ax) - (px - ax) * (by - ay)| <= tolerance
+     */
+    private static boolean isCollinear(double px, double py, double ax, double ay, double bx, double by) {
+        double left = (py - ay) * (bx - ax);
+        double right = (px - ax) * (by - ay);
+        double cross = Math.abs(left - right);
+        double error = 2 * ERROR_BOUND * (Math.abs(left) + Math.abs(right));
+        double tolerance = SegmentPassingThroughPoint.COLLINEARITY_EPSILON;
+        if (!(error < Double.POSITIVE_INFINITY)) {
+            return !(cross > tolerance);  // Not finite, there is no exact value to fall back on
+        }
+        if (cross - error > tolerance) {
+            return false;
+        }
+        if (cross + error <= tolerance) {
+            return true;
+        }
+        EXACT_EVALUATIONS.increment();
+        BigDecimal exact = product(py, ay, bx, ax).subtract(product(px, ax, by, ay));
+        return exact.abs().compareTo(COLLINEARITY_EPSILON) <= 0;
+    }
+
+    /**
+     * Sign of (a - b) * (c - d) + (e - f) * (g - h)
+     */
+    private static int signOfSum(double a, double b, double c, double d, double e, double f, double g, double h) {
+        double first = (a - b) * (c - d);
+        double second = (e - f) * (g - h);
+        double sum = first + second;
+        double error = ERROR_BOUND * (Math.abs(first) + Math.abs(second));
+        if (sum > error || -sum > error) {
+            return sum > 0 ? 1 : -1;
+        }
+        if (!(error < Double.POSITIVE_INFINITY)) {
+            return (int) Math.signum(sum);  // Not finite, there is no exact value to fall back on
+        }
+        if ((a == b || c == d) && (e == f || g == h)) {
+            return 0;  // Both products are exactly zero
+        }
+        if (e == a && f == b && g == d && h == c || e == c && f == d && g == b && h == a) {
+            return 0;  // The second product is the first one negated, as for a point equal to an end of the line
+        }
+        int sign = signOfExactProducts(a - b, c - d, e - f, g - h, a, b, c, d, e, f, g, h);
+        if (sign != UNDECIDED) {
+            return sign;
+        }
+        EXACT_EVALUATIONS.increment();
+        return product(a, b, c, d).add(product(e, f, g, h)).signum();
+    }
+
+    /**
+     * Second stage for inputs whose differences are exact, as with integer or lattice coordinates: each
+     * product is split into its rounded value and its error with a fused multiply-add, and the two rounded
+     * values are added without error, which decides the sign unless the parts still nearly cancel.
+     *
+     * @return the sign, or UNDECIDED
+     */
+    private static int signOfExactProducts(double x1, double y1, double x2, double y2,
+                                           double a, double b, double c, double d,
+                                           double e, double f, double g, double h) {
+        if (!isExactDifference(a, b, x1) || !isExactDifference(c, d, y1)
+                || !isExactDifference(e, f, x2) || !isExactDifference(g, h, y2)) {
+            return UNDECIDED;
+        }
+        double p1 = x1 * y1;
+        double e1 = Math.fma(x1, y1, -p1);
+        double p2 = x2 * y2;
+        double e2 = Math.fma(x2, y2, -p2);
+        if (Math.abs(p1) < MIN_EXACT_PRODUCT && x1 != 0 && y1 != 0
+                || Math.abs(p2) < MIN_EXACT_PRODUCT && x2 != 0 && y2 != 0) {
+            return UNDECIDED;
+        }
+
+        // Two-sum: sum + tail == p1 + p2 exactly
+        double sum = p1 + p2;
+        double virtual = sum - p1;
+        double tail = (p1 - (sum - virtual)) + (p2 - virtual);
+        if (sum == 0) {
+            return (int) Math.signum(e1 + e2);  // The tail is zero, and rounding keeps the sign of a sum of two
+        }
+        if (Math.abs(sum) > 2 * (Math.abs(tail) + Math.abs(e1) + Math.abs(e2))) {
+            return sum > 0 ? 1 : -1;
+        }
+        return UNDECIDED;
+    }
+
+    private static boolean isExactDifference(double a, double b, double difference) {
+        double virtual = a - difference;
+        return (a - (difference + virtual)) + (virtual - b) == 0;
+    }
+
+    private static BigDecimal product(double a, double b, double c, double d) {
+        return new BigDecimal(a).subtract(new BigDecimal(b)).multiply(new BigDecimal(c).subtract(new BigDecimal(d)));
+    }
+}
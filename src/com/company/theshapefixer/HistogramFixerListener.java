@@ -0,0 +1,226 @@
+package com.company.theshapefixer;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Listener keeping a time histogram per phase, for validations and for repairs, along with the work counts,
+ * the tiers that decided and the phases that found shapes invalid. Histogram buckets are 8 per power of two,
+ * so percentiles are within about 12% of the measured times. Recording takes a few atomic adds and never
+ * allocates.
+ */
+public class HistogramFixerListener implements FixerListener {
+
+    private static final double[] REPORTED_PERCENTILES = {50, 90, 99};
+
+    private final TimeHistogram[] phases = new TimeHistogram[FixerPhase.values().length];
+    private final LongAdder[] vertices = new LongAdder[phases.length];
+    private final LongAdder[] edges = new LongAdder[phases.length];
+    private final LongAdder[] comparisons = new LongAdder[phases.length];
+    private final LongAdder[] counted = new LongAdder[phases.length];  // Calls that counted comparisons
+    private final LongAdder[] failures = new LongAdder[phases.length];
+    private final LongAdder[] tiers = new LongAdder[ValidationTier.values().length];
+    private final TimeHistogram validation = new TimeHistogram();
+    private final TimeHistogram repair = new TimeHistogram();
+
+    public HistogramFixerListener() {
+        for (int i = 0; i < phases.length; i++) {
+            phases[i] = new TimeHistogram();
+            vertices[i] = new LongAdder();
+            edges[i] = new LongAdder();
+            comparisons[i] = new LongAdder();
+            counted[i] = new LongAdder();
+            failures[i] = new LongAdder();
+        }
+        for (int i = 0; i < tiers.length; i++) {
+            tiers[i] = new LongAdder();
+        }
+    }
+
+    @Override
+    public void phaseCompleted(FixerPhase phase, long nanos, int vertices, int edges, long comparisons) {
+        int p = phase.ordinal();
+        phases[p].record(nanos);
+        this.vertices[p].add(vertices);
+        this.edges[p].add(edges);
+        if (comparisons >= 0) {
+            this.comparisons[p].add(comparisons);
+            counted[p].increment();
+        }
+    }
+
+    @Override
+    public void validationCompleted(ValidationOutcome outcome, FixerPhase failedPhase, long nanos, int vertices) {
+        validation.record(nanos);
+        tiers[outcome.tier().ordinal()].increment();
+        if (failedPhase != null) {
+            failures[failedPhase.ordinal()].increment();
+        }
+    }
+
+    @Override
+    public void repairCompleted(long nanos, int vertices, int contours, int resultVertices) {
+        repair.record(nanos);
+    }
+
+    /**
+     * Method to get a percentile of the time spent in a phase
+     *
+     * @param phase
+     * @param percentile between 0 and 100
+     * @return nanoseconds, 0 if the phase never ran
+     */
+    public long percentile(FixerPhase phase, double percentile) {
+        return phases[phase.ordinal()].percentile(percentile);
+    }
+
+    /**
+     * Method to get a percentile of the time spent per validation
+     *
+     * @param percentile between 0 and 100
+     * @return nanoseconds, 0 if nothing was validated
+     */
+    public long validationPercentile(double percentile) {
+        return validation.percentile(percentile);
+    }
+
+    /**
+     * Method to get a percentile of the time spent per repair
+     *
+     * @param percentile between 0 and 100
+     * @return nanoseconds, 0 if nothing was repaired
+     */
+    public long repairPercentile(double percentile) {
+        return repair.percentile(percentile);
+    }
+
+    public long count(FixerPhase phase) {
+        return phases[phase.ordinal()].count();
+    }
+
+    /**
+     * Number of validations that stopped because of a phase
+     *
+     * @param phase
+     * @return
+     */
+    public long failures(FixerPhase phase) {
+        return failures[phase.ordinal()].sum();
+    }
+
+    public long tierCount(ValidationTier tier) {
+        return tiers[tier.ordinal()].sum();
+    }
+
+    /**
+     * Table of the percentiles, in microseconds, and of the average work per call
+     *
+     * @return
+     */
+    public String report() {
+        StringBuilder report = new StringBuilder(String.format("%-16s %10s %10s %10s %10s %10s %12s %12s %12s %10s%n",
+                "phase", "count", "p50 us", "p90 us", "p99 us", "max us", "vertices", "edges", "comparisons", "failures"));
+        for (FixerPhase phase : FixerPhase.values()) {
+            int p = phase.ordinal();
+            long count = phases[p].count();
+            if (count == 0 && failures[p].sum() == 0) {
+                continue;
+            }
+            appendTimes(report, phase.name(), phases[p]);
+            long countedCalls = counted[p].sum();
+            report.append(String.format(" %12.1f %12.1f %12s %10d%n", average(vertices[p], count),
+                    average(edges[p], count), countedCalls == 0 ? "-" : String.format("%.1f",
+                            average(comparisons[p], countedCalls)), failures[p].sum()));
+        }
+        appendTimes(report, "validation", validation);
+        report.append(System.lineSeparator());
+        appendTimes(report, "repair", repair);
+        report.append(System.lineSeparator());
+        report.append("tiers:");
+        for (ValidationTier tier : ValidationTier.values()) {
+            report.append(' ').append(tier.name()).append('=').append(tiers[tier.ordinal()].sum());
+        }
+        return report.append(System.lineSeparator()).toString();
+    }
+
+    @Override
+    public String toString() {
+        return report();
+    }
+
+    private static void appendTimes(StringBuilder report, String name, TimeHistogram histogram) {
+        report.append(String.format("%-16s %10d", name, histogram.count()));
+        for (double percentile : REPORTED_PERCENTILES) {
+            report.append(String.format(" %10.1f", histogram.percentile(percentile) / 1000.0));
+        }
+        report.append(String.format(" %10.1f", histogram.max() / 1000.0));
+    }
+
+    private static double average(LongAdder total, long count) {
+        return count == 0 ? 0 : (double) total.sum() / count;
+    }
+
+    /**
+     * Counts of times in buckets growing by powers of two, each cut into 8 buckets
+     */
+    static final class TimeHistogram {
+
+        private static final int SUB_BITS = 3;
+        private static final int SUB_BUCKETS = 1 << SUB_BITS;
+        private static final int BUCKETS = (65 - SUB_BITS) * SUB_BUCKETS;
+
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        private final LongAdder total = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        void record(long nanos) {
+            long value = Math.max(nanos, 0);
+            counts.incrementAndGet(bucketOf(value));
+            total.increment();
+            max.accumulate(value);
+        }
+
+        long count() {
+            return total.sum();
+        }
+
+        long max() {
+            return max.get();
+        }
+
+        long percentile(double percentile) {
+            long count = 0;
+            for (int b = 0; b < BUCKETS; b++) {
+                count += counts.get(b);
+            }
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+            long seen = 0;
+            for (int b = 0; b < BUCKETS; b++) {
+                seen += counts.get(b);
+                if (seen >= rank) {
+                    return Math.min(upperBound(b), max.get());
+                }
+            }
+            return 0;
+        }
+
+        // Values below 8 have a bucket each, above that the 4 leading bits pick the bucket
+        static int bucketOf(long value) {
+            if (value < SUB_BUCKETS) {
+                return (int) value;
+            }
+            int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+            return shift * SUB_BUCKETS + (int) (value >>> shift);
+        }
+
+        static long upperBound(int bucket) {
+            if (bucket < SUB_BUCKETS) {
+                return bucket;
+            }
+            int shift = bucket / SUB_BUCKETS - 1;
+            long leading = bucket % SUB_BUCKETS + SUB_BUCKETS;
+            return ((leading + 1) << shift) - 1;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.company.theshapefixer;
+
+import java.util.AbstractList;
+import java.util.List;
+
+/**
+ * Shape with integer coordinates, stored as two int arrays. {@link TheShapeFixer} validates it with exact
+ * long arithmetic, every other algorithm sees the coordinates as doubles. The arrays are used as given,
+ * without copying, and must not be changed while the shape is in use.
+ */
+public class IntShape2D extends Shape2D {
+    private final int[] xs;
+    private final int[] ys;
+    private final int size;
+
+    public IntShape2D(int[] xs, int[] ys) {
+        this(xs, ys, xs.length);
+    }
+
+    public IntShape2D(int[] xs, int[] ys, int size) {
+        if (size < 0 || size > xs.length || size > ys.length) {
+            throw new IllegalArgumentException("Size " + size + " does not fit the coordinate arrays");
+        }
+        this.xs = xs;
+        this.ys = ys;
+        this.size = size;
+    }
+
+    /**
+     * Method to build a shape from x, y pairs
+     *
+     * @param pointsArray
+     * @return
+     */
+    public static IntShape2D of(int[][] pointsArray) {
+        int n = pointsArray.length;
+        int[] xs = new int[n];
+        int[] ys = new int[n];
+        for (int i = 0; i < n; i++) {
+            xs[i] = pointsArray[i][0];
+            ys[i] = pointsArray[i][1];
+        }
+        return new IntShape2D(xs, ys, n);
+    }
+
+    /**
+     * Points are created on access, the algorithms in this package never call this
+     *
+     * @return
+     */
+    @Override
+    public List<Point2D> getPoints() {
+        return new AbstractList<>() {
+            @Override
+            public Point2D get(int index) {
+                return new Point2D(IntShape2D.this.getX(index), IntShape2D.this.getY(index));
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public double getX(int index) {
+        return xs[checkIndex(index)];
+    }
+
+    @Override
+    public double getY(int index) {
+        return ys[checkIndex(index)];
+    }
+
+    public int getIntX(int index) {
+        return xs[checkIndex(index)];
+    }
+
+    public int getIntY(int index) {
+        return ys[checkIndex(index)];
+    }
+
+    int[] xArray() {
+        return xs;
+    }
+
+    int[] yArray() {
+        return ys;
+    }
+
+    private int checkIndex(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return index;
+    }
+}
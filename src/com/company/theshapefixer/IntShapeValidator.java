@@ -0,0 +1,363 @@
+package com.company.theshapefixer;
+
+import java.util.Arrays;
+
+/**
+ * Validation of integer shapes without leaving integer arithmetic. Differences of coordinates up to
+ * {@link #MAX_COORDINATE} fit in an int and every cross or dot product of them fits in a long, so each
+ * predicate is exact with no error bound to check. The collinearity tolerance of the double path accepts
+ * cross products up to 1e-7, which for integers is exactly zero, so the answer is always the one the
+ * double checks give. Shapes with larger coordinates, or whose edges are too crowded for the grid, are
+ * passed back to the double checks.
+ */
+final class IntShapeValidator {
+
+    // Coordinates up to this magnitude keep every product of two differences inside a long
+    static final int MAX_COORDINATE = (1 << 30) - 1;
+
+    // Below this many edges the pairwise checks are faster than building the grid
+    private static final int GRID_THRESHOLD = 64;
+
+    // Cells visited per edge, and pairs tested per edge, before the grid gives up on the shape
+    private static final int CELLS_PER_EDGE = 8;
+    private static final int TESTS_PER_EDGE = 32;
+
+    private static final ValidationOutcome VALID = new ValidationOutcome(true, ValidationTier.INTEGER);
+    private static final ValidationOutcome INVALID = new ValidationOutcome(false, ValidationTier.INTEGER);
+
+    private IntShapeValidator() {
+    }
+
+    /**
+     * Method to validate an integer shape with the same rules as the double checks
+     *
+     * @param shape
+     * @param context
+     * @return the outcome, or null when the shape has to go through the double checks
+     */
+    static ValidationOutcome check(IntShape2D shape, ValidatorContext context) {
+        int[] xs = shape.xArray();
+        int[] ys = shape.yArray();
+        int n = shape.size();
+
+        // Check if the shape is closed (first point coincides with the last)
+        if (n == 0 || xs[0] != xs[n - 1] || ys[0] != ys[n - 1]) {
+            return INVALID;
+        }
+        for (int i = 0; i < n; i++) {
+            if (xs[i] < -MAX_COORDINATE || xs[i] > MAX_COORDINATE
+                    || ys[i] < -MAX_COORDINATE || ys[i] > MAX_COORDINATE) {
+                return null;  // The products could overflow
+            }
+        }
+
+        // Check for uniqueness of all points (except the first and last)
+        if (hasRepeatedPoint(xs, ys, n - 1, context)) {
+            return INVALID;
+        }
+
+        int edges = n - 1;
+        if (edges < GRID_THRESHOLD) {
+            for (int i = 0; i < edges; i++) {
+                for (int j = i + 1; j < edges; j++) {
+                    if (edgesCross(xs, ys, i, j)) {
+                        return INVALID;
+                    }
+                }
+                for (int p = 0; p < edges; p++) {
+                    if (isPointOnEdge(xs, ys, i, p)) {
+                        return INVALID;
+                    }
+                }
+            }
+            return VALID;
+        }
+
+        EdgeGrid grid = EdgeGrid.build(xs, ys, n, context);
+        if (grid == null) {
+            return null;
+        }
+        return grid.hasDefect() ? INVALID : VALID;
+    }
+
+    /**
+     * Check whether one of the first count points occurs twice, by sorting the points packed into longs
+     *
+     * @param xs
+     * @param ys
+     * @param count
+     * @param context
+     * @return
+     */
+    private static boolean hasRepeatedPoint(int[] xs, int[] ys, int count, ValidatorContext context) {
+        long[] keys = context.longs(count);
+        for (int i = 0; i < count; i++) {
+            keys[i] = (long) xs[i] << 32 | (ys[i] & 0xFFFFFFFFL);
+        }
+        Arrays.sort(keys, 0, count);
+        for (int i = 1; i < count; i++) {
+            if (keys[i] == keys[i - 1]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Method to check if the edges starting at points i and j cross at a point inside both of them
+     *
+     * @param xs
+     * @param ys
+     * @param i
+     * @param j
+     * @return
+     */
+    static boolean edgesCross(int[] xs, int[] ys, int i, int j) {
+        int d1 = orientation(xs, ys, j, j + 1, i);
+        int d2 = orientation(xs, ys, j, j + 1, i + 1);
+        int d3 = orientation(xs, ys, i, i + 1, j);
+        int d4 = orientation(xs, ys, i, i + 1, j + 1);
+        return d1 * d2 < 0 && d3 * d4 < 0;
+    }
+
+    /**
+     * Method to check if point p lies on the edge starting at point i, points equal to the ends of the edge
+     * do not count
+     *
+     * @param xs
+     * @param ys
+     * @param i
+     * @param p
+     * @return
+     */
+    static boolean isPointOnEdge(int[] xs, int[] ys, int i, int p) {
+        long px = xs[p];
+        long py = ys[p];
+        long ax = xs[i];
+        long ay = ys[i];
+        long bx = xs[i + 1];
+        long by = ys[i + 1];
+        if ((px == ax && py == ay) || (px == bx && py == by)) {
+            return false;
+        }
+        long dx = bx - ax;
+        long dy = by - ay;
+        return (py - ay) * dx == (px - ax) * dy
+                && (px - ax) * dx + (py - ay) * dy >= 0   // Not before a
+                && (px - bx) * dx + (py - by) * dy <= 0;  // Not past b
+    }
+
+    private static int orientation(int[] xs, int[] ys, int a, int b, int c) {
+        long ax = xs[a];
+        long ay = ys[a];
+        return Long.signum((xs[b] - ax) * (ys[c] - ay) - (xs[c] - ax) * (ys[b] - ay));
+    }
+
+    /**
+     * Edges and vertices bucketed by the grid cells they touch, so only edges and vertices sharing a
+     * cell are tested against each other. Two crossing edges both touch the cell of the crossing point,
+     * and an edge touches the cell of every point on it. Cells are hashed into two to four buckets per
+     * edge when the grid is larger than that, which only adds tests.
+     */
+    private static final class EdgeGrid {
+        private final int[] xs;
+        private final int[] ys;
+        private final int edges;
+        private final long minX;
+        private final long minY;
+        private final int cellShift;
+        private final long columns;
+        private final long rows;
+        private final int buckets;
+        private final int bucketBits;
+        private final int[] edgeStart;
+        private int[] edgeItems;
+        private final int[] vertexStart;
+        private final int[] vertexItems;
+
+        private final ValidatorContext context;
+
+        private EdgeGrid(int[] xs, int[] ys, int n, long minX, long minY, int cellShift, long width, long height,
+                         ValidatorContext context) {
+            this.xs = xs;
+            this.ys = ys;
+            this.edges = n - 1;
+            this.minX = minX;
+            this.minY = minY;
+            this.cellShift = cellShift;
+            this.columns = (width >> cellShift) + 1;
+            this.rows = (height >> cellShift) + 1;
+            this.bucketBits = 64 - Long.numberOfLeadingZeros(2L * edges - 1);  // At least two buckets per edge
+            this.buckets = 1 << bucketBits;
+            this.context = context;
+            edgeStart = context.clearedInts(ValidatorContext.BUCKET_EDGE_START, buckets + 1);
+            vertexStart = context.clearedInts(ValidatorContext.BUCKET_VERTEX_START, buckets + 1);
+            vertexItems = context.ints(ValidatorContext.BUCKET_VERTICES, edges);
+        }
+
+        /**
+         * Method to bucket the edges and vertices of a closed shape
+         *
+         * @param xs
+         * @param ys
+         * @param n
+         * @param context
+         * @return the grid, or null when the edges are too long or too crowded for it to pay off
+         */
+        static EdgeGrid build(int[] xs, int[] ys, int n, ValidatorContext context) {
+            long minX = xs[0];
+            long maxX = xs[0];
+            long minY = ys[0];
+            long maxY = ys[0];
+            long perimeter = 0;
+            for (int i = 1; i < n; i++) {
+                minX = Math.min(minX, xs[i]);
+                maxX = Math.max(maxX, xs[i]);
+                minY = Math.min(minY, ys[i]);
+                maxY = Math.max(maxY, ys[i]);
+                perimeter += Math.max(Math.abs((long) xs[i] - xs[i - 1]), Math.abs((long) ys[i] - ys[i - 1]));
+            }
+
+            // Cells about as large as an edge, so an edge touches a few of them, with a power of two side so
+            // cells are found by shifting
+            int cellShift = 63 - Long.numberOfLeadingZeros(Math.max(1, perimeter / (n - 1)));
+            EdgeGrid grid = new EdgeGrid(xs, ys, n, minX, minY, cellShift, maxX - minX, maxY - minY, context);
+
+            // Counting sort of the edges and vertices into their buckets
+            long touched = 0;
+            long limit = (long) CELLS_PER_EDGE * grid.edges;
+            for (int e = 0; e < grid.edges && touched <= limit; e++) {
+                touched += grid.visitCells(e, grid.edgeStart, null);
+            }
+            if (touched > limit) {
+                return null;
+            }
+            for (int p = 0; p < grid.edges; p++) {
+                grid.vertexStart[grid.bucketOfVertex(p) + 1]++;
+            }
+            long tests = 0;
+            for (int b = 1; b <= grid.buckets; b++) {
+                long edgesHere = grid.edgeStart[b];
+                tests += edgesHere * (edgesHere - 1) / 2 + edgesHere * grid.vertexStart[b];
+            }
+            if (tests > (long) TESTS_PER_EDGE * grid.edges) {
+                return null;
+            }
+            grid.fill((int) touched);
+            return grid;
+        }
+
+        boolean hasDefect() {
+            for (int b = 0; b < buckets; b++) {
+                for (int k = edgeStart[b]; k < edgeStart[b + 1]; k++) {
+                    int e = edgeItems[k];
+                    for (int l = k + 1; l < edgeStart[b + 1]; l++) {
+                        int f = edgeItems[l];
+                        if (e != f && edgesCross(xs, ys, e, f)) {
+                            return true;
+                        }
+                    }
+                    for (int l = vertexStart[b]; l < vertexStart[b + 1]; l++) {
+                        if (isPointOnEdge(xs, ys, e, vertexItems[l])) {
+                            return true;
+                        }
+                    }
+                }
+            }
+            return false;
+        }
+
+        private void fill(int touched) {
+            for (int b = 0; b < buckets; b++) {
+                edgeStart[b + 1] += edgeStart[b];
+                vertexStart[b + 1] += vertexStart[b];
+            }
+            edgeItems = context.ints(ValidatorContext.BUCKET_EDGES, touched);
+            int[] next = context.ints(ValidatorContext.BUCKET_NEXT, buckets);
+            System.arraycopy(edgeStart, 0, next, 0, buckets);
+            for (int e = 0; e < edges; e++) {
+                visitCells(e, next, edgeItems);
+            }
+            System.arraycopy(vertexStart, 0, next, 0, buckets);
+            for (int p = 0; p < edges; p++) {
+                vertexItems[next[bucketOfVertex(p)]++] = p;
+            }
+        }
+
+        /**
+         * Visit the cells along edge e, column by column. The part of the edge inside a column spans the
+         * rows between its heights at the column borders, rounded outwards.
+         *
+         * @param e
+         * @param counts bucket counts (shifted by one) to increment when items is null, otherwise the next
+         *               free position of every bucket
+         * @param items
+         * @return number of cells visited
+         */
+        private int visitCells(int e, int[] counts, int[] items) {
+            long u1 = xs[e] - minX;
+            long v1 = ys[e] - minY;
+            long u2 = xs[e + 1] - minX;
+            long v2 = ys[e + 1] - minY;
+            if (u1 > u2) {
+                long swap = u1;
+                u1 = u2;
+                u2 = swap;
+                swap = v1;
+                v1 = v2;
+                v2 = swap;
+            }
+            long du = u2 - u1;
+            long dv = v2 - v1;
+            long low = Math.min(v1, v2);
+            long high = Math.max(v1, v2);
+
+            int visited = 0;
+            for (long column = u1 >> cellShift, lastColumn = u2 >> cellShift; column <= lastColumn; column++) {
+                long fromRow = low >> cellShift;
+                long toRow = high >> cellShift;
+                if (du != 0 && dv != 0) {
+                    long from = (Math.max(u1, column << cellShift) - u1) * dv;
+                    long to = (Math.min(u2, column + 1 << cellShift) - u1) * dv;
+                    fromRow = Math.max(low, v1 + Math.floorDiv(Math.min(from, to), du)) >> cellShift;
+                    toRow = Math.min(high, v1 - Math.floorDiv(-Math.max(from, to), du)) >> cellShift;
+                }
+                for (long row = fromRow; row <= toRow; row++) {
+                    int bucket = bucket(column, row);
+                    if (items == null) {
+                        counts[bucket + 1]++;
+                    } else {
+                        items[counts[bucket]++] = e;
+                    }
+                    visited++;
+                }
+            }
+            return visited;
+        }
+
+        private int bucketOfVertex(int p) {
+            return bucket(xs[p] - minX >> cellShift, ys[p] - minY >> cellShift);
+        }
+
+        private int bucket(long column, long row) {
+            if (columns * rows <= buckets) {
+                return (int) (row * columns + column);
+            }
+            // Z-order of the cell with its high bits folded onto the low ones: neighbouring cells stay in
+            // nearby buckets, far apart ones spread over the table
+            long z = interleave(column) | interleave(row) << 1;
+            z ^= z >>> bucketBits;
+            z ^= z >>> 2 * bucketBits;
+            return (int) z & buckets - 1;
+        }
+
+        private static long interleave(long value) {
+            long v = value & 0xFFFFFFFFL;
+            v = (v | v << 16) & 0x0000FFFF0000FFFFL;
+            v = (v | v << 8) & 0x00FF00FF00FF00FFL;
+            v = (v | v << 4) & 0x0F0F0F0F0F0F0F0FL;
+            v = (v | v << 2) & 0x3333333333333333L;
+            return (v | v << 1) & 0x5555555555555555L;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.company.theshapefixer;
+
+/**
+ * Algorithm used by {@link TheShapeFixer} to look for crossing edges
+ */
+public enum IntersectionStrategy {
+
+    /**
+     * Original double loop over every pair of edges, O(n^2)
+     */
+    BRUTE_FORCE,
+
+    /**
+     * Shamos-Hoey sweep line, O(n log n)
+     */
+    SWEEP_LINE
+}
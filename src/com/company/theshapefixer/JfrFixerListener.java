@@ -0,0 +1,120 @@
+package com.company.theshapefixer;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Listener committing JDK Flight Recorder events, to be looked at next to the GC and CPU samples of a
+ * recording. The events are only built while a recording has them enabled, otherwise a call costs one
+ * check. Enable them with {@code -XX:StartFlightRecording} and the settings
+ * {@code com.company.theshapefixer.Phase#enabled=true} (and Validation, Repair), possibly with a threshold.
+ */
+public class JfrFixerListener implements FixerListener {
+
+    @Override
+    public void phaseCompleted(FixerPhase phase, long nanos, int vertices, int edges, long comparisons) {
+        PhaseEvent event = new PhaseEvent();
+        if (event.isEnabled()) {
+            event.phase = phase.name();
+            event.time = nanos;
+            event.vertices = vertices;
+            event.edges = edges;
+            event.comparisons = comparisons;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void validationCompleted(ValidationOutcome outcome, FixerPhase failedPhase, long nanos, int vertices) {
+        ValidationEvent event = new ValidationEvent();
+        if (event.isEnabled()) {
+            event.valid = outcome.valid();
+            event.tier = outcome.tier().name();
+            event.failedPhase = failedPhase == null ? null : failedPhase.name();
+            event.time = nanos;
+            event.vertices = vertices;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void repairCompleted(long nanos, int vertices, int contours, int resultVertices) {
+        RepairEvent event = new RepairEvent();
+        if (event.isEnabled()) {
+            event.time = nanos;
+            event.vertices = vertices;
+            event.contours = contours;
+            event.resultVertices = resultVertices;
+            event.commit();
+        }
+    }
+
+    @Name("com.company.theshapefixer.Phase")
+    @Label("Shape Fixer Phase")
+    @Category("Shape Fixer")
+    @StackTrace(false)
+    static class PhaseEvent extends Event {
+        @Label("Phase")
+        String phase;
+
+        @Label("Time")
+        @Timespan
+        long time;
+
+        @Label("Vertices")
+        int vertices;
+
+        @Label("Edges")
+        int edges;
+
+        @Label("Comparisons")
+        @Description("Points hashed or edge pairs screened, -1 when not counted")
+        long comparisons;
+    }
+
+    @Name("com.company.theshapefixer.Validation")
+    @Label("Shape Validation")
+    @Category("Shape Fixer")
+    @StackTrace(false)
+    static class ValidationEvent extends Event {
+        @Label("Valid")
+        boolean valid;
+
+        @Label("Tier")
+        String tier;
+
+        @Label("Failed Phase")
+        String failedPhase;
+
+        @Label("Time")
+        @Timespan
+        long time;
+
+        @Label("Vertices")
+        int vertices;
+    }
+
+    @Name("com.company.theshapefixer.Repair")
+    @Label("Shape Repair")
+    @Category("Shape Fixer")
+    @StackTrace(false)
+    static class RepairEvent extends Event {
+        @Label("Time")
+        @Timespan
+        long time;
+
+        @Label("Vertices")
+        int vertices;
+
+        @Label("Contours")
+        int contours;
+
+        @Label("Result Vertices")
+        int resultVertices;
+    }
+}
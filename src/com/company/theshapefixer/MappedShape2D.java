@@ -0,0 +1,86 @@
+package com.company.theshapefixer;
+
+import java.nio.ByteBuffer;
+import java.util.AbstractList;
+import java.util.List;
+
+/**
+ * Shape read straight from a memory-mapped shape file, nothing is copied until the shape is packed
+ */
+class MappedShape2D extends Shape2D {
+    private final ByteBuffer buffer;
+    private final int xOffset;
+    private final int yOffset;
+    private final int size;
+    private final boolean ints;
+
+    MappedShape2D(ByteBuffer buffer, int offset, int size, CoordinateType coordinateType) {
+        this.buffer = buffer;
+        this.size = size;
+        this.ints = coordinateType == CoordinateType.INT;
+        xOffset = offset;
+        yOffset = offset + size * coordinateType.bytes();
+    }
+
+    @Override
+    public List<Point2D> getPoints() {
+        return new AbstractList<>() {
+            @Override
+            public Point2D get(int index) {
+                return new Point2D(MappedShape2D.this.getX(index), MappedShape2D.this.getY(index));
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public double getX(int index) {
+        return coordinate(xOffset, index);
+    }
+
+    @Override
+    public double getY(int index) {
+        return coordinate(yOffset, index);
+    }
+
+    /**
+     * Method to copy the coordinates with bulk reads, used by {@link PackedShape2D#of(Shape2D)}
+     *
+     * @return
+     */
+    PackedShape2D toPacked() {
+        double[] xs = new double[size];
+        double[] ys = new double[size];
+        if (ints) {
+            int[] values = new int[size];
+            buffer.slice(xOffset, size * Integer.BYTES).order(buffer.order()).asIntBuffer().get(values);
+            for (int i = 0; i < size; i++) {
+                xs[i] = values[i];
+            }
+            buffer.slice(yOffset, size * Integer.BYTES).order(buffer.order()).asIntBuffer().get(values);
+            for (int i = 0; i < size; i++) {
+                ys[i] = values[i];
+            }
+        } else {
+            buffer.slice(xOffset, size * Double.BYTES).order(buffer.order()).asDoubleBuffer().get(xs);
+            buffer.slice(yOffset, size * Double.BYTES).order(buffer.order()).asDoubleBuffer().get(ys);
+        }
+        return new PackedShape2D(xs, ys, size);
+    }
+
+    private double coordinate(int base, int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return ints ? buffer.getInt(base + index * Integer.BYTES) : buffer.getDouble(base + index * Double.BYTES);
+    }
+}
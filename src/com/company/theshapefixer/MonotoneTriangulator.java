@@ -0,0 +1,384 @@
+package com.company.theshapefixer;
+
+import java.util.Arrays;
+import java.util.TreeSet;
+
+/**
+ * Triangulation of a valid shape in O(n log n). A sweep over the vertices in x, then y order adds the
+ * diagonals that cut the shape into x-monotone pieces, and every piece is then triangulated in one pass
+ * with a stack of the vertices still waiting for their triangles. The sweep order is the vertex order of
+ * the validation, so a shape checked with the sweep line is not sorted again, and every turn is decided
+ * with the exact orientation predicate.
+ * <p>
+ * Sweeping in x, then y order is the usual top to bottom sweep turned a quarter turn, with ties broken as
+ * if the shape was turned a little further, so no two vertices are ever level. The shape is walked
+ * counter-clockwise whatever its winding. Triangles are given as indices of the points of the shape, three
+ * per triangle and counter-clockwise, n - 3 triangles for a shape of n points with the closing point.
+ */
+final class MonotoneTriangulator {
+
+    private static final int[] NO_TRIANGLES = new int[0];
+
+    // Stands for the current vertex of the sweep in comparisons with the edges of the status
+    private static final int SWEEP_POINT = -1;
+
+    private final double[] xs;
+    private final double[] ys;
+    private final int m; // Vertices, the closing point left out
+    private final boolean clockwise;
+    private final int[] rank; // Position of every vertex in the sweep order
+    private int sweep;
+
+    // Diagonals cutting the shape into monotone pieces
+    private int[] diagonalFrom = new int[16];
+    private int[] diagonalTo = new int[16];
+    private int diagonalCount;
+
+    private final int[] triangles;
+    private int triangleCount; // Indices written so far
+
+    private MonotoneTriangulator(double[] xs, double[] ys, int m, int[] order) {
+        this.xs = xs;
+        this.ys = ys;
+        this.m = m;
+        rank = new int[m];
+        int position = 0;
+        for (int k = 0; k <= m; k++) {
+            if (order[k] != m) {
+                rank[order[k]] = position++;
+            }
+        }
+
+        // The first vertex of the sweep is convex, its turn gives the winding
+        int first = order[0] == m ? 0 : order[0];
+        clockwise = GeometryPredicates.orientation(xs, ys, (first + m - 1) % m, first, (first + 1) % m) < 0;
+        triangles = new int[3 * (m - 2)];
+    }
+
+    /**
+     * Method to triangulate a valid shape
+     *
+     * @param shape closed shape
+     * @param order indices of all points of the shape in x, then y order, see {@link VertexOrder}
+     * @return
+     */
+    static int[] triangulate(PackedShape2D shape, int[] order) {
+        int m = shape.size() - 1;
+        if (m < 3) {
+            return NO_TRIANGLES;
+        }
+        MonotoneTriangulator triangulator = new MonotoneTriangulator(shape.xArray(), shape.yArray(), m, order);
+        triangulator.addMonotoneDiagonals(order);
+        triangulator.triangulatePieces();
+        int[] result = triangulator.triangles;
+        return triangulator.triangleCount == result.length ? result : Arrays.copyOf(result, triangulator.triangleCount);
+    }
+
+    /**
+     * Method to triangulate a strictly convex shape as a fan from its first point, without sorting
+     *
+     * @param shape closed shape
+     * @return
+     */
+    static int[] fan(PackedShape2D shape) {
+        int m = shape.size() - 1;
+        if (m < 3) {
+            return NO_TRIANGLES;
+        }
+        boolean clockwise = GeometryPredicates.orientation(shape.xArray(), shape.yArray(), m - 1, 0, 1) < 0;
+        int[] result = new int[3 * (m - 2)];
+        for (int i = 1, t = 0; i < m - 1; i++, t += 3) {
+            result[t + 1] = clockwise ? i + 1 : i;
+            result[t + 2] = clockwise ? i : i + 1;
+        }
+        return result;
+    }
+
+    // Neighbours of a vertex when the shape is walked counter-clockwise
+    private int next(int v) {
+        return clockwise ? (v == 0 ? m - 1 : v - 1) : (v == m - 1 ? 0 : v + 1);
+    }
+
+    private int prev(int v) {
+        return clockwise ? (v == m - 1 ? 0 : v + 1) : (v == 0 ? m - 1 : v - 1);
+    }
+
+    private int orientation(int a, int b, int c) {
+        return GeometryPredicates.orientation(xs, ys, a, b, c);
+    }
+
+    /**
+     * Method to add the diagonals that leave only monotone pieces. The status holds the edges crossed by
+     * the sweep that have the inside of the shape above them, by the vertex they start at, from bottom to
+     * top; the helper of such an edge is the last vertex seen between it and the edge above it. A vertex
+     * with both neighbours to its right and a reflex angle (split) is joined to the helper of the edge
+     * below it, and a vertex with both neighbours to its left and a reflex angle (merge) is joined to the
+     * next vertex that takes over its place as helper.
+     *
+     * @param order
+     */
+    private void addMonotoneDiagonals(int[] order) {
+        int[] helper = new int[m];
+        boolean[] merge = new boolean[m];
+        TreeSet<Integer> status = new TreeSet<>(this::compareEdges);
+        for (int k = 0; k <= m; k++) {
+            int v = order[k];
+            if (v == m) {
+                continue;
+            }
+            sweep = v;
+            int prev = prev(v);
+            int next = next(v);
+            boolean prevBefore = rank[prev] < rank[v];
+            boolean nextBefore = rank[next] < rank[v];
+            boolean reflex = orientation(prev, v, next) <= 0;
+
+            if (prevBefore) {
+                // The edge from prev ends here
+                if (merge[helper[prev]]) {
+                    addDiagonal(v, helper[prev]);
+                }
+                status.remove(prev);
+            }
+            if (prevBefore == nextBefore && reflex || !prevBefore && nextBefore) {
+                // Split, merge, or a vertex with the inside below it: it helps the edge below
+                int below = status.lower(SWEEP_POINT);
+                if (merge[helper[below]] || !prevBefore && !nextBefore) {
+                    addDiagonal(v, helper[below]);
+                }
+                helper[below] = v;
+                merge[v] = prevBefore;
+            }
+            if (!nextBefore) {
+                // The edge to next starts here
+                status.add(v);
+                helper[v] = v;
+            }
+        }
+    }
+
+    /**
+     * Order of two edges of the status from bottom to top, or of an edge and the sweep vertex. Edges of
+     * the status never cross, so the one starting later is compared against the line of the other.
+     */
+    private int compareEdges(int a, int b) {
+        if (a == b) {
+            return 0;
+        }
+        if (a == SWEEP_POINT) {
+            return orientation(b, next(b), sweep);
+        }
+        if (b == SWEEP_POINT) {
+            return -orientation(a, next(a), sweep);
+        }
+        if (rank[a] < rank[b]) {
+            return -side(a, b);
+        }
+        return side(b, a);
+    }
+
+    // Side of the line of edge e that edge f is on, 1 above
+    private int side(int e, int f) {
+        int side = orientation(e, next(e), f);
+        return side != 0 ? side : orientation(e, next(e), next(f));
+    }
+
+    private void addDiagonal(int from, int to) {
+        if (diagonalCount == diagonalFrom.length) {
+            diagonalFrom = Arrays.copyOf(diagonalFrom, diagonalCount * 2);
+            diagonalTo = Arrays.copyOf(diagonalTo, diagonalCount * 2);
+        }
+        diagonalFrom[diagonalCount] = from;
+        diagonalTo[diagonalCount] = to;
+        diagonalCount++;
+    }
+
+    /**
+     * Method to walk the pieces the diagonals cut the shape into and triangulate each. Half edges are the
+     * edges of the shape walked counter-clockwise and the diagonals walked both ways, so every piece is on
+     * the left of its half edges. After reaching a vertex a piece goes on along the first half edge
+     * clockwise from the one it came in by.
+     */
+    private void triangulatePieces() {
+        int[] piece = new int[m];
+        Scratch scratch = new Scratch(m);
+        if (diagonalCount == 0) {
+            for (int i = 0, v = 0; i < m; i++, v = next(v)) {
+                piece[i] = v;
+            }
+            triangulateMonotone(piece, m, scratch);
+            return;
+        }
+
+        // Half edge h < m runs from vertex h to its next one, m + 2d and m + 2d + 1 run along diagonal d
+        int halfEdges = m + 2 * diagonalCount;
+        int[] outStart = new int[m + 1];
+        for (int h = 0; h < halfEdges; h++) {
+            outStart[origin(h) + 1]++;
+        }
+        for (int v = 0; v < m; v++) {
+            outStart[v + 1] += outStart[v];
+        }
+
+        // Half edges leaving every vertex counter-clockwise from the edge of the shape, which comes first
+        Integer[] diagonals = new Integer[2 * diagonalCount];
+        for (int d = 0; d < diagonals.length; d++) {
+            diagonals[d] = m + d;
+        }
+        Arrays.sort(diagonals, (a, b) -> {
+            int cmp = Integer.compare(origin(a), origin(b));
+            return cmp != 0 ? cmp : compareAround(origin(a), target(a), target(b));
+        });
+        int[] out = new int[halfEdges];
+        int[] position = new int[halfEdges];
+        int[] fill = Arrays.copyOf(outStart, m);
+        for (int v = 0; v < m; v++) {
+            position[v] = fill[v];
+            out[fill[v]++] = v;
+        }
+        for (int h : diagonals) {
+            int v = origin(h);
+            position[h] = fill[v];
+            out[fill[v]++] = h;
+        }
+
+        boolean[] used = new boolean[halfEdges];
+        for (int start = 0; start < halfEdges; start++) {
+            int length = 0;
+            for (int h = start; !used[h]; ) {
+                used[h] = true;
+                piece[length++] = origin(h);
+                int w = target(h);
+                h = h < m ? out[outStart[w + 1] - 1] : out[position[m + ((h - m) ^ 1)] - 1];
+            }
+            if (length > 0) {
+                triangulateMonotone(piece, length, scratch);
+            }
+        }
+    }
+
+    private int origin(int h) {
+        return h < m ? h : ((h - m) & 1) == 0 ? diagonalFrom[(h - m) >> 1] : diagonalTo[(h - m) >> 1];
+    }
+
+    private int target(int h) {
+        return h < m ? next(h) : ((h - m) & 1) == 0 ? diagonalTo[(h - m) >> 1] : diagonalFrom[(h - m) >> 1];
+    }
+
+    /**
+     * Order of the directions from vertex v to a and to b, counter-clockwise from its edge to the next
+     * vertex. The half turn on the left of that edge comes first, the straight angle opens the other half.
+     */
+    private int compareAround(int v, int a, int b) {
+        int halfA = orientation(v, next(v), a) > 0 ? 0 : 1;
+        int halfB = orientation(v, next(v), b) > 0 ? 0 : 1;
+        return halfA != halfB ? halfA - halfB : -orientation(v, a, b);
+    }
+
+    /**
+     * Method to triangulate a monotone piece. Its lower chain runs counter-clockwise from its first vertex
+     * in the sweep to its last, the upper chain back; the two are merged into sweep order. The stack holds
+     * a chain of vertices that can not be cut off yet: a vertex on the other chain sees all of them, a
+     * vertex on the same chain cuts off those it turns the right way against.
+     *
+     * @param piece vertices counter-clockwise
+     * @param k     number of vertices
+     * @param scratch
+     */
+    private void triangulateMonotone(int[] piece, int k, Scratch scratch) {
+        int first = 0;
+        for (int i = 1; i < k; i++) {
+            if (rank[piece[i]] < rank[piece[first]]) {
+                first = i;
+            }
+        }
+        int[] sorted = scratch.sorted;
+        boolean[] lower = scratch.lower;
+        sorted[0] = piece[first];
+        for (int j = 1, lo = first, up = first; j < k; j++) {
+            int nextLo = lo == k - 1 ? 0 : lo + 1;
+            int nextUp = up == 0 ? k - 1 : up - 1;
+            lower[j] = rank[piece[nextLo]] < rank[piece[nextUp]];
+            if (lower[j]) {
+                lo = nextLo;
+            } else {
+                up = nextUp;
+            }
+            sorted[j] = piece[lower[j] ? lo : up];
+        }
+
+        int[] stack = scratch.stack;
+        boolean[] stackLower = scratch.stackLower;
+        stack[0] = sorted[0];
+        stack[1] = sorted[1];
+        stackLower[1] = lower[1];
+        int top = 2;
+        for (int j = 2; j < k - 1; j++) {
+            int u = sorted[j];
+            if (lower[j] != stackLower[top - 1]) {
+                fan(u, lower[j], stack, top);
+                stack[0] = stack[top - 1];
+                stackLower[0] = stackLower[top - 1];
+                top = 1;
+            } else {
+                int last = stack[--top];
+                boolean lastLower = stackLower[top];
+                while (top > 0) {
+                    int turn = orientation(stack[top - 1], last, u);
+                    if (turn == 0 || turn > 0 != lower[j]) {
+                        break;
+                    }
+                    if (lower[j]) {
+                        addTriangle(stack[top - 1], last, u);
+                    } else {
+                        addTriangle(stack[top - 1], u, last);
+                    }
+                    last = stack[--top];
+                    lastLower = stackLower[top];
+                }
+                stack[top] = last;
+                stackLower[top++] = lastLower;
+            }
+            stack[top] = u;
+            stackLower[top++] = lower[j];
+        }
+        fan(sorted[k - 1], !stackLower[top - 1], stack, top);
+    }
+
+    /**
+     * Method to join a vertex to every stacked vertex, the stacked chain runs from left to right below the
+     * vertex when it is on the upper chain and above it otherwise
+     */
+    private void fan(int u, boolean uLower, int[] stack, int top) {
+        for (int i = 0; i < top - 1; i++) {
+            if (uLower) {
+                addTriangle(stack[i + 1], stack[i], u);
+            } else {
+                addTriangle(stack[i], stack[i + 1], u);
+            }
+        }
+    }
+
+    private void addTriangle(int a, int b, int c) {
+        triangles[triangleCount++] = a;
+        triangles[triangleCount++] = b;
+        triangles[triangleCount++] = c;
+    }
+
+    /**
+     * Arrays for one piece at a time, long enough for the whole shape
+     */
+    private static final class Scratch {
+        final int[] sorted;
+        final boolean[] lower;
+        final int[] stack;
+        final boolean[] stackLower;
+
+        Scratch(int m) {
+            sorted = new int[m];
+            lower = new boolean[m];
+            stack = new int[m];
+            stackLower = new boolean[m];
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package com.company.theshapefixer;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Shape stored as two primitive coordinate arrays (structure of arrays). The arrays are used as given,
+ * without copying, and must not be changed while the shape is in use.
+ */
+public class PackedShape2D extends Shape2D {
+    private final double[] xs;
+    private final double[] ys;
+    private final int size;
+
+    public PackedShape2D(double[] xs, double[] ys) {
+        this(xs, ys, xs.length);
+    }
+
+    public PackedShape2D(double[] xs, double[] ys, int size) {
+        if (size < 0 || size > xs.length || size > ys.length) {
+            throw new IllegalArgumentException("Size " + size + " does not fit the coordinate arrays");
+        }
+        this.xs = xs;
+        this.ys = ys;
+        this.size = size;
+    }
+
+    /**
+     * Method to get a packed form of any shape, packed shapes are returned as they are
+     *
+     * @param shape
+     * @return
+     */
+    public static PackedShape2D of(Shape2D shape) {
+        if (shape instanceof PackedShape2D packed) {
+            return packed;
+        }
+        if (shape instanceof MappedShape2D mapped) {
+            return mapped.toPacked();
+        }
+        if (shape instanceof SlicedShape2D sliced) {
+            return sliced.toPacked();
+        }
+        int n = shape.size();
+        double[] xs = new double[n];
+        double[] ys = new double[n];
+        for (int i = 0; i < n; i++) {
+            xs[i] = shape.getX(i);
+            ys[i] = shape.getY(i);
+        }
+        return new PackedShape2D(xs, ys, n);
+    }
+
+    /**
+     * Method to pack a list of points
+     *
+     * @param points
+     * @return
+     */
+    public static PackedShape2D of(List<Point2D> points) {
+        int n = points.size();
+        double[] xs = new double[n];
+        double[] ys = new double[n];
+        for (int i = 0; i < n; i++) {
+            Point2D point = points.get(i);
+            xs[i] = point.x();
+            ys[i] = point.y();
+        }
+        return new PackedShape2D(xs, ys, n);
+    }
+
+    /**
+     * Method to unpack interleaved x, y coordinates
+     *
+     * @param coordinates
+     * @return
+     */
+    public static PackedShape2D fromInterleaved(double[] coordinates) {
+        int n = coordinates.length / 2;
+        double[] xs = new double[n];
+        double[] ys = new double[n];
+        for (int i = 0; i < n; i++) {
+            xs[i] = coordinates[2 * i];
+            ys[i] = coordinates[2 * i + 1];
+        }
+        return new PackedShape2D(xs, ys, n);
+    }
+
+    /**
+     * Points are created on access, the algorithms in this package never call this
+     *
+     * @return
+     */
+    @Override
+    public List<Point2D> getPoints() {
+        return new AbstractList<>() {
+            @Override
+            public Point2D get(int index) {
+                return new Point2D(PackedShape2D.this.getX(index), PackedShape2D.this.getY(index));
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public double getX(int index) {
+        return xs[checkIndex(index)];
+    }
+
+    @Override
+    public double getY(int index) {
+        return ys[checkIndex(index)];
+    }
+
+    double[] xArray() {
+        return xs;
+    }
+
+    double[] yArray() {
+        return ys;
+    }
+
+    /**
+     * Same comparison as Point2D.equals
+     *
+     * @param i
+     * @param j
+     * @return
+     */
+    boolean samePoint(int i, int j) {
+        return Double.compare(xs[i], xs[j]) == 0 && Double.compare(ys[i], ys[j]) == 0;
+    }
+
+    private int checkIndex(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return index;
+    }
+
+    /**
+     * Growable coordinate buffer for building packed shapes
+     */
+    public static class Builder {
+        private double[] xs;
+        private double[] ys;
+        private int size;
+
+        public Builder() {
+            this(16);
+        }
+
+        public Builder(int capacity) {
+            xs = new double[Math.max(capacity, 1)];
+            ys = new double[Math.max(capacity, 1)];
+        }
+
+        public Builder add(double x, double y) {
+            if (size == xs.length) {
+                xs = Arrays.copyOf(xs, size * 2);
+                ys = Arrays.copyOf(ys, size * 2);
+            }
+            xs[size] = x;
+            ys[size] = y;
+            size++;
+            return this;
+        }
+
+        public Builder add(Shape2D shape, int index) {
+            return add(shape.getX(index), shape.getY(index));
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public double getX(int index) {
+            return xs[index];
+        }
+
+        public double getY(int index) {
+            return ys[index];
+        }
+
+        public void clear() {
+            size = 0;
+        }
+
+        /**
+         * Shape over the current contents without copying, it is only valid until the builder is changed
+         *
+         * @return
+         */
+        public PackedShape2D view() {
+            return new PackedShape2D(xs, ys, size);
+        }
+
+        /**
+         * The builder hands its arrays over to the shape and starts again with new ones
+         *
+         * @return
+         */
+        public PackedShape2D build() {
+            PackedShape2D shape = new PackedShape2D(xs, ys, size);
+            xs = new double[16];
+            ys = new double[16];
+            size = 0;
+            return shape;
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package com.company.theshapefixer;
+
+import java.util.Arrays;
+
+/**
+ * Occurrence counts of points in an open-addressing table keyed on the raw bits of the coordinates, so two
+ * points are the same exactly when Point2D.equals says so. Nothing is boxed, and clearing only starts a new
+ * generation instead of wiping the table, which lets one counter per thread be reused for every shape.
+ */
+final class PointCounter {
+
+    private static final int MIN_CAPACITY = 16;
+
+    // Tables up to this many slots are kept for the next shape on the same thread, larger ones are dropped
+    private static final int MAX_RETAINED_CAPACITY = 1 << 21;
+
+    // A slot is three longs next to each other, so a probe touches one cache line: the x bits, the y bits,
+    // and the generation of the slot in the high half with the count in the low half
+    private static final int SLOT = 3;
+
+    private static final ThreadLocal<PointCounter> CURRENT = ThreadLocal.withInitial(PointCounter::new);
+
+    private long[] table = new long[MIN_CAPACITY * SLOT];
+    private long generation = 1; // A slot is in use when it holds the current generation
+    private int mask = MIN_CAPACITY - 1;
+    private int size;
+
+    PointCounter() {
+    }
+
+    /**
+     * Method to get the empty counter of the current thread, sized for the given number of points. The
+     * counter stays in use until the next call on the same thread, so it must not be kept.
+     *
+     * @param expectedPoints
+     * @return
+     */
+    static PointCounter forCurrentThread(int expectedPoints) {
+        if (capacityFor(expectedPoints) > MAX_RETAINED_CAPACITY) {
+            PointCounter counter = new PointCounter();
+            counter.clear(expectedPoints);
+            return counter;
+        }
+        PointCounter counter = CURRENT.get();
+        counter.clear(expectedPoints);
+        return counter;
+    }
+
+    /**
+     * Method to remove all points and make room for the given number of them
+     *
+     * @param expectedPoints
+     */
+    void clear(int expectedPoints) {
+        int capacity = capacityFor(expectedPoints);
+        if (capacity * SLOT > table.length) {
+            allocate(capacity);
+        } else {
+            newGeneration();
+        }
+        mask = capacity - 1;
+        size = 0;
+    }
+
+    /**
+     * Number of distinct points
+     *
+     * @return
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Method to add one occurrence of a point
+     *
+     * @param x
+     * @param y
+     * @return occurrences after the call
+     */
+    int add(double x, double y) {
+        long xb = Double.doubleToLongBits(x);
+        long yb = Double.doubleToLongBits(y);
+        int slot = find(xb, yb);
+        if (inUse(slot)) {
+            return (int) ++table[slot + 2];
+        }
+        insert(slot, xb, yb, 1);
+        return 1;
+    }
+
+    /**
+     * Method to remove one occurrence of a point, a point that is not there is left alone
+     *
+     * @param x
+     * @param y
+     * @return occurrences after the call
+     */
+    int remove(double x, double y) {
+        int slot = find(Double.doubleToLongBits(x), Double.doubleToLongBits(y));
+        if (!inUse(slot)) {
+            return 0;
+        }
+        int after = (int) --table[slot + 2];
+        if (after == 0) {
+            delete(slot);
+        }
+        return after;
+    }
+
+    /**
+     * Method to store a number for a point in place of its count, so the table can serve as a point to
+     * int map. Stored numbers must be positive.
+     *
+     * @param x
+     * @param y
+     * @param value
+     * @return number stored before, 0 when the point was not there
+     */
+    int replace(double x, double y, int value) {
+        long xb = Double.doubleToLongBits(x);
+        long yb = Double.doubleToLongBits(y);
+        int slot = find(xb, yb);
+        if (inUse(slot)) {
+            int previous = (int) table[slot + 2];
+            table[slot + 2] = generation << 32 | value;
+            return previous;
+        }
+        insert(slot, xb, yb, value);
+        return 0;
+    }
+
+    /**
+     * Method to get the occurrences of a point
+     *
+     * @param x
+     * @param y
+     * @return
+     */
+    int count(double x, double y) {
+        int slot = find(Double.doubleToLongBits(x), Double.doubleToLongBits(y));
+        return inUse(slot) ? (int) table[slot + 2] : 0;
+    }
+
+    private boolean inUse(int slot) {
+        return table[slot + 2] >>> 32 == generation;
+    }
+
+    private void insert(int slot, long xb, long yb, int value) {
+        table[slot] = xb;
+        table[slot + 1] = yb;
+        table[slot + 2] = generation << 32 | value;
+        if (++size > (mask + 1) >>> 1) {
+            grow();
+        }
+    }
+
+    /**
+     * Linear probing from the hash slot up to the point or the first free slot
+     *
+     * @return offset of the slot in the table
+     */
+    private int find(long xb, long yb) {
+        int index = hash(xb, yb) & mask;
+        while (true) {
+            int slot = index * SLOT;
+            if (!inUse(slot) || (table[slot] == xb && table[slot + 1] == yb)) {
+                return slot;
+            }
+            index = (index + 1) & mask;
+        }
+    }
+
+    /**
+     * Backward shift deletion: later entries of the probe run move into the gap, so lookups never need
+     * tombstones
+     */
+    private void delete(int slot) {
+        int gap = slot / SLOT;
+        int next = (gap + 1) & mask;
+        while (inUse(next * SLOT)) {
+            int home = hash(table[next * SLOT], table[next * SLOT + 1]) & mask;
+            // The entry may fill the gap when its home slot is not inside (gap, next]
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                System.arraycopy(table, next * SLOT, table, gap * SLOT, SLOT);
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        table[gap * SLOT + 2] = 0;
+        size--;
+    }
+
+    private void grow() {
+        int oldCapacity = mask + 1;
+        long oldGeneration = generation;
+        long[] old;
+        int capacity = oldCapacity * 2;
+        if (capacity * SLOT > table.length) {
+            old = table;
+            allocate(capacity);
+        } else {
+            // A table that was sized for a larger shape before still has room, copy the live entries out first
+            old = Arrays.copyOf(table, oldCapacity * SLOT);
+            newGeneration();
+        }
+        mask = capacity - 1;
+        for (int i = 0; i < oldCapacity * SLOT; i += SLOT) {
+            if (old[i + 2] >>> 32 == oldGeneration) {
+                int slot = find(old[i], old[i + 1]);
+                table[slot] = old[i];
+                table[slot + 1] = old[i + 1];
+                table[slot + 2] = generation << 32 | (old[i + 2] & 0xFFFFFFFFL);
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        table = new long[capacity * SLOT];
+        generation = 1;
+    }
+
+    private void newGeneration() {
+        if (++generation > 0xFFFFFFFFL) {
+            // After 2^32 uses the stamps wrap around, old ones could look current again
+            Arrays.fill(table, 0);
+            generation = 1;
+        }
+    }
+
+    private static int capacityFor(int expectedPoints) {
+        // At most half full
+        long wanted = Math.max(MIN_CAPACITY, 2L * expectedPoints);
+        return (int) Math.min(1L << 28, Long.highestOneBit(wanted - 1) << 1);
+    }
+
+    private static int hash(long xb, long yb) {
+        long h = xb * 0x9E3779B97F4A7C15L ^ Long.rotateLeft(yb * 0xC2B2AE3D27D4EB4FL, 31);
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+}
@@ -0,0 +1,93 @@
+package com.company.theshapefixer;
+
+/**
+ * The orientation and point on segment predicates of {@link GeometryPredicates}, run for one segment
+ * against a run of points in packed coordinate arrays. The answers are always the exact ones; kernels only
+ * differ in how many points they look at a time. The vector kernel needs the incubating Vector API, which
+ * is only there when the JVM is started with {@code --add-modules jdk.incubator.vector}, otherwise the
+ * scalar kernel is used.
+ */
+public abstract class PredicateKernel {
+
+    private static final String VECTOR_MODULE = "jdk.incubator.vector";
+    private static final String VECTOR_KERNEL = "com.company.theshapefixer.VectorPredicateKernel";
+
+    private static final PredicateKernel PREFERRED = loadVectorKernel();
+
+    PredicateKernel() {
+    }
+
+    /**
+     * Method to get the fastest kernel this JVM can run
+     *
+     * @return
+     */
+    public static PredicateKernel preferred() {
+        return PREFERRED;
+    }
+
+    /**
+     * Method to get the kernel that tests one point at a time
+     *
+     * @return
+     */
+    public static PredicateKernel scalar() {
+        return ScalarPredicateKernel.INSTANCE;
+    }
+
+    /**
+     * Number of points tested at a time
+     *
+     * @return
+     */
+    public abstract int lanes();
+
+    /**
+     * Method to find the first point k from index from on, with k + 1 below index to, such that points k
+     * and k + 1 lie strictly on opposite sides of the line from a to b
+     *
+     * @param ax
+     * @param ay
+     * @param bx
+     * @param by
+     * @param xs
+     * @param ys
+     * @param from
+     * @param to
+     * @return the point index, or -1 if there is none
+     */
+    public abstract int nextSideChange(double ax, double ay, double bx, double by,
+                                       double[] xs, double[] ys, int from, int to);
+
+    /**
+     * Method to find the first point from index from (inclusive) to index to (exclusive) lying on the
+     * segment from a to b, points equal to a or b included
+     *
+     * @param ax
+     * @param ay
+     * @param bx
+     * @param by
+     * @param xs
+     * @param ys
+     * @param from
+     * @param to
+     * @return the point index, or -1 if there is none
+     */
+    public abstract int nextPointOnSegment(double ax, double ay, double bx, double by,
+                                           double[] xs, double[] ys, int from, int to);
+
+    private static PredicateKernel loadVectorKernel() {
+        if (ModuleLayer.boot().findModule(VECTOR_MODULE).isPresent()) {
+            try {
+                PredicateKernel kernel = (PredicateKernel) Class.forName(VECTOR_KERNEL)
+                        .getDeclaredConstructor().newInstance();
+                if (kernel.lanes() > 1) {
+                    return kernel;
+                }
+            } catch (ReflectiveOperationException | LinkageError e) {
+                // The module is there but can not be used, keep to the scalar kernel
+            }
+        }
+        return ScalarPredicateKernel.INSTANCE;
+    }
+}
@@ -0,0 +1,86 @@
+package com.company.theshapefixer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * What the single-pass repair of a shape reads about it: the contours the shape splits into, and the
+ * points of every contour lying inside one of its segments. A detailed validation records one, so
+ * {@link TheShapeFixer#repair(ValidationReport)} only has to remove those points and merge the contours.
+ * The contours may be views of the shape, which must not be changed while the plan is in use.
+ */
+final class RepairPlan {
+
+    private final List<PackedShape2D> contours;
+
+    // Points to remove from every contour, null for a contour that has none
+    private final List<boolean[]> removed;
+
+    private RepairPlan(List<PackedShape2D> contours, List<boolean[]> removed) {
+        this.contours = contours;
+        this.removed = removed;
+    }
+
+    /**
+     * Method to plan the repair of a shape that is one closed contour, from the vertices already found
+     * on its segments
+     *
+     * @param shape
+     * @param violations every violation of the shape
+     * @return
+     */
+    static RepairPlan ofSingleContour(PackedShape2D shape, List<Violation> violations) {
+        boolean[] invalid = null;
+        for (Violation violation : violations) {
+            if (violation.type() != ViolationType.VERTEX_ON_SEGMENT) {
+                continue;
+            }
+            if (invalid == null) {
+                invalid = new boolean[shape.size()];
+            }
+            invalid[violation.secondIndex()] = true;
+        }
+        List<boolean[]> removed = new ArrayList<>(1);
+        removed.add(invalid);
+        return new RepairPlan(List.of(shape), removed);
+    }
+
+    /**
+     * Method to split a shape into its contours and find the points lying on the segments of each
+     *
+     * @param shape
+     * @return
+     */
+    static RepairPlan of(PackedShape2D shape) {
+        ValidatorContext context = ValidatorContext.acquire();
+        try {
+            List<Shape2D> split = ContourSplitter.split(shape, context);
+            List<PackedShape2D> contours = new ArrayList<>(split.size());
+            List<boolean[]> removed = new ArrayList<>(split.size());
+            for (Shape2D contour : split) {
+                PackedShape2D packed = PackedShape2D.of(contour);
+                contours.add(packed);
+                removed.add(SegmentPassingThroughPoint.findPointsInsideSegments(packed, context));
+            }
+            return new RepairPlan(contours, removed);
+        } finally {
+            context.release();
+        }
+    }
+
+    /**
+     * Method to get every contour without its points that lie on segments, a contour without any
+     * comes back as it is
+     *
+     * @return
+     */
+    List<Shape2D> repairedContours() {
+        List<Shape2D> repaired = new ArrayList<>(contours.size());
+        for (int i = 0; i < contours.size(); i++) {
+            boolean[] invalid = removed.get(i);
+            repaired.add(invalid == null ? contours.get(i)
+                    : SegmentPassingThroughPoint.withoutPoints(contours.get(i), invalid, true));
+        }
+        return repaired;
+    }
+}
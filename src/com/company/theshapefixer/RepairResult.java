@@ -0,0 +1,12 @@
+package com.company.theshapefixer;
+
+/**
+ * Outcome of {@link TheShapeFixer#repairUntilValid(Shape2D)}: the repaired shape, the number of repair
+ * passes it took, and the violations left in it, none when the repair succeeded
+ */
+public record RepairResult(Shape2D shape, int passes, ValidationReport report) {
+
+    public boolean isValid() {
+        return report.isValid();
+    }
+}
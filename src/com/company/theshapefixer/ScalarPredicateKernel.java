@@ -0,0 +1,47 @@
+package com.company.theshapefixer;
+
+/**
+ * Kernel testing one point at a time, available on every JVM
+ */
+final class ScalarPredicateKernel extends PredicateKernel {
+
+    static final ScalarPredicateKernel INSTANCE = new ScalarPredicateKernel();
+
+    private ScalarPredicateKernel() {
+    }
+
+    @Override
+    public int lanes() {
+        return 1;
+    }
+
+    @Override
+    public int nextSideChange(double ax, double ay, double bx, double by,
+                              double[] xs, double[] ys, int from, int to) {
+        for (int k = from; k < to - 1; k++) {
+            if (changesSide(ax, ay, bx, by, xs, ys, k)) {
+                return k;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public int nextPointOnSegment(double ax, double ay, double bx, double by,
+                                  double[] xs, double[] ys, int from, int to) {
+        for (int k = from; k < to; k++) {
+            if (GeometryPredicates.isPointOnSegment(xs[k], ys[k], ax, ay, bx, by)) {
+                return k;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Check whether points k and k + 1 lie strictly on opposite sides of the line from a to b
+     */
+    static boolean changesSide(double ax, double ay, double bx, double by, double[] xs, double[] ys, int k) {
+        return GeometryPredicates.orientation(ax, ay, bx, by, xs[k], ys[k])
+                * GeometryPredicates.orientation(ax, ay, bx, by, xs[k + 1], ys[k + 1]) < 0;
+    }
+}
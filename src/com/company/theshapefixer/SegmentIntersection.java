@@ -0,0 +1,7 @@
+package com.company.theshapefixer;
+
+/**
+ * A pair of crossing edges, segment k runs from point k to point k + 1
+ */
+public record SegmentIntersection(int firstSegment, int secondSegment) {
+}
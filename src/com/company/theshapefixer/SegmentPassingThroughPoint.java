@@ -2,9 +2,27 @@ package com.company.theshapefixer;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntConsumer;
 
 public class SegmentPassingThroughPoint {
 
+    // Below this size the plain double loop is faster than building the grid
+    private static final int INDEX_THRESHOLD = 64;
+
+    // Segment ranges per worker thread in parallel mode
+    private static final int CHUNKS_PER_THREAD = 8;
+
+    // Absolute bound on the cross product (p - a) x (b - a), not scaled by the length of the segment: a point
+    // counts as on a segment of length L when it is within 1e-7 / L of its line. This is the rule shapes were
+    // always validated with. It is exact collinearity on integer coordinates, and the integer tier and the
+    // prefilter rely on that. Very small shapes get a generous band, large ones practically none.
+    static final double COLLINEARITY_EPSILON = 1e-7;
+
+    private static final PredicateKernel KERNEL = PredicateKernel.preferred();
+
     private SegmentPassingThroughPoint() {
     }
 
@@ -15,124 +33,536 @@ public class SegmentPassingThroughPoint {
      * @return
      */
     public static boolean hasSegmentPassingThroughPoint(List<Point2D> points) {
-        int n = points.size();
+        return hasSegmentPassingThroughPoint(PackedShape2D.of(points));
+    }
+
+    /**
+     * Method to check if any segment passes through a point it shouldn't
+     *
+     * @param shape
+     * @return
+     */
+    public static boolean hasSegmentPassingThroughPoint(Shape2D shape) {
+        ValidatorContext context = ValidatorContext.acquire();
+        try {
+            return hasSegmentPassingThroughPoint(context.pack(shape), context);
+        } finally {
+            context.release();
+        }
+    }
+
+    /**
+     * Same as hasSegmentPassingThroughPoint(Shape2D) with the grid in the arrays of a context
+     *
+     * @param shape
+     * @param context
+     * @return
+     */
+    static boolean hasSegmentPassingThroughPoint(PackedShape2D shape, ValidatorContext context) {
+        PointOnSegmentSearch search = new PointOnSegmentSearch(shape, context);
 
         // Loop through all segments formed by consecutive points
-        for (int i = 0; i < n - 1; i++) {
-            Point2D p1 = points.get(i);
-            Point2D p2 = points.get(i + 1);
+        for (int i = 0; i < search.n - 1; i++) {
+            if (search.firstPointOnSegment(i) >= 0) {
+                return true;  // Invalid intersection found
+            }
+        }
 
-            // Check if the segment intersects any other point
-            for (int j = 0; j < n; j++) {
-                Point2D pointToCheck = points.get(j);
+        return false;  // No invalid intersections found
+    }
 
-                // Skip the check if the point is one of the endpoints of the segment
-                if (pointToCheck.equals(p1) || pointToCheck.equals(p2)) {
-                    continue;
-                }
+    /**
+     * Method to check if any segment passes through a point it shouldn't, optionally with the segments
+     * split into ranges that are checked concurrently against the shared vertex grid. Consecutive
+     * segments of a contour are close together, so each range covers a compact area. The first range
+     * to find a point stops the others.
+     *
+     * @param shape
+     * @param mode
+     * @return
+     */
+    public static boolean hasSegmentPassingThroughPoint(Shape2D shape, ExecutionMode mode) {
+        if (mode == ExecutionMode.SEQUENTIAL) {
+            return hasSegmentPassingThroughPoint(shape);
+        }
 
-                // Check if pointToCheck lies on the segment p1-p2
-                if (isPointOnLineSegment(p1, p2, pointToCheck)) {
-                    return true;  // Invalid intersection found
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        PointOnSegmentSearch search = new PointOnSegmentSearch(PackedShape2D.of(shape), null);
+        int segments = Math.max(search.n - 1, 0);
+        int grain = Math.max(INDEX_THRESHOLD, segments / (pool.getParallelism() * CHUNKS_PER_THREAD));
+        AtomicBoolean found = new AtomicBoolean();
+        pool.invoke(new SegmentRangeTask(search, found, 0, segments, grain));
+        return found.get();
+    }
+
+    /**
+     * Method to list every vertex lying on a segment it is not an end of
+     *
+     * @param shape
+     * @return violations ordered by segment and then by vertex
+     */
+    static List<Violation> findPointsOnSegments(PackedShape2D shape) {
+        PointOnSegmentSearch search = new PointOnSegmentSearch(shape, null);
+        List<Violation> violations = new ArrayList<>();
+        List<Integer> points = new ArrayList<>();
+        for (int i = 0; i < search.n - 1; i++) {
+            points.clear();
+            search.collectPointsOnSegment(i, points::add);
+            points.sort(null);
+            for (int k = 0; k < points.size(); k++) {
+                int j = points.get(k);
+                if (k == 0 || j != points.get(k - 1)) {  // The grid may pass a point twice
+                    violations.add(new Violation(ViolationType.VERTEX_ON_SEGMENT, i, j,
+                            new Point2D(search.xs[j], search.ys[j])));
                 }
             }
         }
+        return violations;
+    }
 
-        return false;  // No invalid intersections found
+    /**
+     * Method to repair the shape by removing invalid points that pass through a segment
+     *
+     * @param points
+     * @return
+     */
+    public static List<Point2D> repairShape(List<Point2D> points) {
+        List<Point2D> repairedPoints = new ArrayList<>(points);
+        int invalidIndex = firstInvalidPoint(PackedShape2D.of(points));
+
+        if (invalidIndex >= 0) {
+            repairedPoints.remove(points.get(invalidIndex));  // Remove invalid point
+        }
+
+        return repairedPoints;
     }
 
     /**
-     * Method to check if a point lies on a line segment between two other points
+     * Method to repair the shape by removing the first invalid point that passes through a segment
      *
-     * @param p1
-     * @param p2
-     * @param point
+     * @param shape
      * @return
      */
-    private static boolean isPointOnLineSegment(Point2D p1, Point2D p2, Point2D point) {
-        // Check if the point is collinear with the line formed by p1 and p2 using the cross product
-        double crossProduct = (point.y() - p1.y()) * (p2.x() - p1.x()) - (point.x() - p1.x()) * (p2.y() - p1.y());
+    public static Shape2D repairShape(Shape2D shape) {
+        PackedShape2D packed = PackedShape2D.of(shape);
+        int invalidIndex = firstInvalidPoint(packed);
+        if (invalidIndex < 0) {
+            return packed;
+        }
 
-        if (Math.abs(crossProduct) > 1e-7) {
-            return false;  // Point is not on the line
+        // Like List.remove, drop the first point equal to the invalid one
+        boolean[] removed = new boolean[packed.size()];
+        for (int j = 0; j < packed.size(); j++) {
+            if (packed.samePoint(j, invalidIndex)) {
+                removed[j] = true;
+                break;
+            }
         }
+        return withoutPoints(packed, removed, false);
+    }
 
-        // Check that the point lies between p1 and p2
-        double dotProduct = (point.x() - p1.x()) * (p2.x() - p1.x()) + (point.y() - p1.y()) * (p2.y() - p1.y());
-        if (dotProduct < 0) {
-            return false;  // Point outside the segment
+    /**
+     * Method to repair the shape in one pass by removing every point that lies inside a segment.
+     * A closed shape stays closed even when its first point has to go.
+     *
+     * @param points
+     * @return
+     */
+    public static List<Point2D> repairShapeSinglePass(List<Point2D> points) {
+        int n = points.size();
+        boolean[] invalid = new boolean[n];
+        if (!markInvalidPoints(PackedShape2D.of(points), invalid)) {
+            return new ArrayList<>(points);
         }
 
-        double squaredLength = (p2.x() - p1.x()) * (p2.x() - p1.x()) + (p2.y() - p1.y()) * (p2.y() - p1.y());
-        if (dotProduct > squaredLength) {
-            return false;  // Point outside the segment
+        List<Point2D> repairedPoints = new ArrayList<>(n);
+        for (int j = 0; j < n; j++) {
+            if (!invalid[j]) {
+                repairedPoints.add(points.get(j));
+            }
         }
 
-        return true;  // The point lies on the segment
+        boolean closed = n > 1 && points.get(0).equals(points.get(n - 1));
+        if (closed && !repairedPoints.isEmpty()
+                && !repairedPoints.get(0).equals(repairedPoints.get(repairedPoints.size() - 1))) {
+            repairedPoints.add(repairedPoints.get(0));  // Close the shape again
+        }
+        return repairedPoints;
     }
 
     /**
-     * Method to repair the shape by removing invalid points that pass through a segment
+     * Method to repair the shape in one pass by removing every point that lies inside a segment
      *
-     * @param points
+     * @param shape
      * @return
      */
-    public static List<Point2D> repairShape(List<Point2D> points) {
-        List<Point2D> repairedPoints = new ArrayList<>(points);
+    public static Shape2D repairShapeSinglePass(Shape2D shape) {
+        PackedShape2D packed = PackedShape2D.of(shape);
+        boolean[] invalid = new boolean[packed.size()];
+        ValidatorContext context = ValidatorContext.acquire();
+        try {
+            if (!markInvalidPoints(packed, invalid, context)) {
+                return packed;
+            }
+        } finally {
+            context.release();
+        }
+        return withoutPoints(packed, invalid, true);
+    }
 
-        // Loop through all segments formed by consecutive points
-        for (int i = 0; i < points.size() - 1; i++) {
-            Point2D p1 = points.get(i);
-            Point2D p2 = points.get(i + 1);
+    /**
+     * Method to remove points lying inside segments until there are none left. Removing points joins
+     * their neighbours with a new edge, which may pass through other points, so only the new edges are
+     * searched again. A shape with many bad points takes a few linear passes instead of one repair per
+     * point. The result is the one repairShapeSinglePass gives when called again until nothing changes.
+     *
+     * @param shape
+     * @return
+     */
+    public static Shape2D repairShapeConverged(Shape2D shape) {
+        ValidatorContext context = ValidatorContext.acquire();
+        try {
+            return repairShapeConverged(PackedShape2D.of(shape), context);
+        } finally {
+            context.release();
+        }
+    }
 
-            // Loop through all points to check for invalid intersections
-            for (int j = 0; j < points.size(); j++) {
-                Point2D pointToCheck = points.get(j);
+    private static PackedShape2D repairShapeConverged(PackedShape2D shape, ValidatorContext context) {
+        PackedShape2D current = shape;
+        boolean[] invalid = new boolean[current.size()];
+        if (!markInvalidPoints(current, invalid, context)) {
+            return current;
+        }
+        while (true) {
+            int[] origin = new int[current.size() + 1];
+            PackedShape2D next = withoutPoints(current, invalid, true, origin);
 
-                // Skip if it's one of the endpoints of the segment
-                if (pointToCheck.equals(p1) || pointToCheck.equals(p2)) {
-                    continue;
+            // Edges between points that were not neighbours are new, the others were already searched
+            boolean[] nextInvalid = new boolean[next.size()];
+            boolean found = false;
+            PointOnSegmentSearch search = null;
+            for (int j = 0; j < next.size() - 1; j++) {
+                if (origin[j + 1] != origin[j] + 1) {
+                    if (search == null) {
+                        search = new PointOnSegmentSearch(next, context);
+                    }
+                    found |= search.markPointsOnSegment(j, nextInvalid);
                 }
+            }
+            if (!found) {
+                return next;
+            }
+            current = next;
+            invalid = nextInvalid;
+        }
+    }
+
+    /**
+     * Index of the point the double loop over segments and points finds first
+     *
+     * @param shape
+     * @return the point index, or -1 if the shape has no invalid point
+     */
+    private static int firstInvalidPoint(PackedShape2D shape) {
+        PointOnSegmentSearch search = new PointOnSegmentSearch(shape, null);
+
+        // Loop through all segments formed by consecutive points
+        for (int i = 0; i < search.n - 1; i++) {
+            int j = search.firstPointOnSegment(i);
+            if (j >= 0) {
+                return j;
+            }
+        }
+        return -1;
+    }
 
-                // If the point is strictly between p1 and p2 on the segment, remove it
-                if (isStrictlyBetween(p1, p2, pointToCheck)) {
-                    repairedPoints.remove(pointToCheck);  // Remove invalid point
-                    return repairedPoints;  // Return repaired shape immediately after fixing
+    /**
+     * Method to flag every point that lies inside a segment, the points repairShapeSinglePass removes
+     *
+     * @param shape
+     * @param context arrays for the grid
+     * @return the flags, or null if there is no such point
+     */
+    static boolean[] findPointsInsideSegments(PackedShape2D shape, ValidatorContext context) {
+        boolean[] invalid = new boolean[shape.size()];
+        return markInvalidPoints(shape, invalid, context) ? invalid : null;
+    }
+
+    private static boolean markInvalidPoints(PackedShape2D shape, boolean[] invalid) {
+        return markInvalidPoints(shape, invalid, null);
+    }
+
+    private static boolean markInvalidPoints(PackedShape2D shape, boolean[] invalid, ValidatorContext context) {
+        PointOnSegmentSearch search = new PointOnSegmentSearch(shape, context);
+        boolean found = false;
+        for (int i = 0; i < search.n - 1; i++) {
+            found |= search.markPointsOnSegment(i, invalid);
+        }
+        return found;
+    }
+
+    static PackedShape2D withoutPoints(PackedShape2D shape, boolean[] removed, boolean keepClosed) {
+        return withoutPoints(shape, removed, keepClosed, null);
+    }
+
+    /**
+     * Method to copy a shape without some of its points
+     *
+     * @param shape
+     * @param removed
+     * @param keepClosed
+     * @param origin if not null, receives the index in the shape of every point kept, and the size of the
+     *               shape for a closing point added again
+     * @return
+     */
+    static PackedShape2D withoutPoints(PackedShape2D shape, boolean[] removed, boolean keepClosed, int[] origin) {
+        int n = shape.size();
+        PackedShape2D.Builder builder = new PackedShape2D.Builder(n + 1);
+        for (int j = 0; j < n; j++) {
+            if (!removed[j]) {
+                if (origin != null) {
+                    origin[builder.size()] = j;
                 }
+                builder.add(shape, j);
             }
         }
 
-        return repairedPoints;  // Return the repaired shape if no invalid point was found
+        int last = builder.size() - 1;
+        if (keepClosed && n > 1 && shape.samePoint(0, n - 1) && last > 0
+                && (Double.compare(builder.getX(0), builder.getX(last)) != 0
+                || Double.compare(builder.getY(0), builder.getY(last)) != 0)) {
+            if (origin != null) {
+                origin[builder.size()] = n;
+            }
+            builder.add(builder.getX(0), builder.getY(0));  // Close the shape again
+        }
+        return builder.build();
     }
 
     /**
-     * Helper method to check if a point lies strictly between two other points on a line segment
+     * Method to check if a point lies on a line segment between two other points
      *
+     * @param xs
+     * @param ys
      * @param p1
      * @param p2
      * @param point
      * @return
      */
-    private static boolean isStrictlyBetween(Point2D p1, Point2D p2, Point2D point) {
-        // Check if the point is collinear with the line formed by p1 and p2 using the cross-product
-        double crossProduct = (point.y() - p1.y()) * (p2.x() - p1.x()) - (point.x() - p1.x()) * (p2.y() - p1.y());
+    static boolean isPointOnLineSegment(double[] xs, double[] ys, int p1, int p2, int point) {
+        // The point is collinear with the line formed by p1 and p2 and lies between them, decided exactly
+        return GeometryPredicates.isPointOnSegment(xs, ys, p1, p2, point);
+    }
+
+    /**
+     * Point-on-segment search over packed coordinates. Small shapes use the double loop, larger ones only
+     * visit the vertices in the grid cells along each segment.
+     */
+    private static class PointOnSegmentSearch {
+        private final PackedShape2D shape;
+        private final double[] xs;
+        private final double[] ys;
+        private final int n;
+        private final VertexGridIndex grid;
+
+        /**
+         * @param shape
+         * @param context arrays for the grid, or null to allocate them
+         */
+        PointOnSegmentSearch(PackedShape2D shape, ValidatorContext context) {
+            this.shape = shape;
+            xs = shape.xArray();
+            ys = shape.yArray();
+            n = shape.size();
+            grid = n >= INDEX_THRESHOLD ? new VertexGridIndex(xs, ys, n, context) : null;
+        }
+
+        /**
+         * Lowest index of a point lying on segment i, the same point the double loop would report
+         *
+         * @param i
+         * @return the point index, or -1 if there is none
+         */
+        int firstPointOnSegment(int i) {
+            return grid == null ? scanAll(i, null, null) : scanSegment(i, null, null);
+        }
 
-        if (Math.abs(crossProduct) > 1e-7) {
-            return false;  // The point is not on the line
+        /**
+         * Flag every point lying on segment i
+         *
+         * @param i
+         * @param invalid
+         * @return true if a point was flagged
+         */
+        boolean markPointsOnSegment(int i, boolean[] invalid) {
+            return (grid == null ? scanAll(i, invalid, null) : scanSegment(i, invalid, null)) >= 0;
         }
 
-        // Check if the point is strictly between p1 and p2 (not equal to either endpoint)
-        if (point.equals(p1) || point.equals(p2)) {
-            return false;  // The point is an endpoint, not between
+        /**
+         * Pass every point lying on segment i to the consumer, a point may be passed more than once
+         *
+         * @param i
+         * @param points
+         */
+        void collectPointsOnSegment(int i, IntConsumer points) {
+            if (grid == null) {
+                scanAll(i, null, points);
+            } else {
+                scanSegment(i, null, points);
+            }
         }
 
-        // Ensure that the point lies within the bounds of the segment
-        double dotProduct = (point.x() - p1.x()) * (p2.x() - p1.x()) + (point.y() - p1.y()) * (p2.y() - p1.y());
-        if (dotProduct < 0 || dotProduct > (p2.x() - p1.x()) * (p2.x() - p1.x()) + (p2.y() - p1.y()) * (p2.y() - p1.y())) {
-            return false;  // The point is outside the segment
+        /**
+         * Visit the grid cells along segment i, column by column. The tolerance bounds the cross product,
+         * which is the distance of a point from the line times the length of the segment, so accepted
+         * points lie within the tolerance over the length of the line; the margin is twice that plus the
+         * rounding of the coordinates. The points of a column have their foot on the line within the
+         * margin of the column, so the line is followed over the column widened by the margin, and then
+         * widened by it again across. No point accepted by the double loop is missed, however steep.
+         *
+         * @param i
+         * @param invalid flags to set for every point found, or null to look for the lowest index only
+         * @param points receives every point found instead, when not null
+         * @return the lowest index found (any index when flagging or collecting), or -1
+         */
+        private int scanSegment(int i, boolean[] invalid, IntConsumer points) {
+            double x1 = xs[i];
+            double y1 = ys[i];
+            double x2 = xs[i + 1];
+            double y2 = ys[i + 1];
+            double dx = x2 - x1;
+            double dy = y2 - y1;
+            double margin = 2 * COLLINEARITY_EPSILON / Math.sqrt(dx * dx + dy * dy);
+            if (!(margin < Double.POSITIVE_INFINITY)) {
+                // Zero length segment, every other point passes the test
+                return scanAll(i, invalid, points);
+            }
+            margin += 4 * Math.ulp(Math.max(Math.max(Math.abs(x1), Math.abs(x2)), Math.max(Math.abs(y1), Math.abs(y2))));
+
+            double minX = Math.min(x1, x2) - margin;
+            double maxX = Math.max(x1, x2) + margin;
+            double minY = Math.min(y1, y2);
+            double maxY = Math.max(y1, y2);
+            double slope = dy / dx;
+
+            int found = -1;
+            for (int cx = grid.cellX(minX), lastColumn = grid.cellX(maxX); cx <= lastColumn; cx++) {
+                // Part of the line whose points may lie in this column
+                double fromX = Math.max(minX, grid.columnMinX(cx) - margin);
+                double toX = Math.min(maxX, grid.columnMinX(cx + 1) + margin);
+                double low = minY;
+                double high = maxY;
+                if (Double.isFinite(slope)) {
+                    double yFrom = y1 + (fromX - x1) * slope;
+                    double yTo = y1 + (toX - x1) * slope;
+                    low = Math.max(minY, Math.min(yFrom, yTo));
+                    high = Math.min(maxY, Math.max(yFrom, yTo));
+                }
+                for (int cy = grid.cellY(low - margin), lastRow = grid.cellY(high + margin); cy <= lastRow; cy++) {
+                    int cell = grid.cell(cx, cy);
+                    for (int k = grid.cellStart(cell); k < grid.cellEnd(cell); k++) {
+                        int j = grid.vertexAt(k);
+                        if (points != null) {
+                            if (isOnSegment(i, j)) {
+                                points.accept(j);
+                                found = j;
+                            }
+                        } else if (invalid != null) {
+                            if (!invalid[j] && isOnSegment(i, j)) {
+                                invalid[j] = true;
+                                found = j;
+                            }
+                        } else if ((found < 0 || j < found) && isOnSegment(i, j)) {
+                            found = j;
+                        }
+                    }
+                }
+            }
+            return found;
         }
 
-        return true;  // The point lies strictly between p1 and p2
+        /**
+         * Test every point against segment i, several at a time when the vector kernel is available
+         *
+         * @param i
+         * @param invalid flags to set for every point found, or null to look for the lowest index only
+         * @param points receives every point found instead, when not null
+         * @return the lowest index found (any index when flagging or collecting), or -1
+         */
+        private int scanAll(int i, boolean[] invalid, IntConsumer points) {
+            int found = -1;
+            for (int j = nextOnSegment(i, 0); j >= 0; j = nextOnSegment(i, j + 1)) {
+                if ((invalid != null && invalid[j]) || shape.samePoint(j, i) || shape.samePoint(j, i + 1)) {
+                    continue;  // Already flagged, or one of the segment ends
+                }
+                if (points != null) {
+                    points.accept(j);
+                } else if (invalid == null) {
+                    return j;
+                } else {
+                    invalid[j] = true;
+                }
+                found = j;
+            }
+            return found;
+        }
+
+        private int nextOnSegment(int i, int from) {
+            return KERNEL.nextPointOnSegment(xs[i], ys[i], xs[i + 1], ys[i + 1], xs, ys, from, n);
+        }
+
+        /**
+         * Skip the points equal to the segment ends, then test the rest
+         *
+         * @param i
+         * @param j
+         * @return
+         */
+        private boolean isOnSegment(int i, int j) {
+            if (shape.samePoint(j, i) || shape.samePoint(j, i + 1)) {
+                return false;
+            }
+            return isPointOnLineSegment(xs, ys, i, i + 1, j);
+        }
     }
 
+    @SuppressWarnings("serial") // Only ever run in the pool, never serialized
+    private static class SegmentRangeTask extends RecursiveAction {
+        private final PointOnSegmentSearch search;
+        private final AtomicBoolean found;
+        private final int from;
+        private final int to;
+        private final int grain;
+
+        SegmentRangeTask(PointOnSegmentSearch search, AtomicBoolean found, int from, int to, int grain) {
+            this.search = search;
+            this.found = found;
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+        }
+
+        @Override
+        protected void compute() {
+            if (found.get()) {
+                return;
+            }
+            if (to - from > grain) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new SegmentRangeTask(search, found, from, middle, grain),
+                        new SegmentRangeTask(search, found, middle, to, grain));
+                return;
+            }
+            for (int i = from; i < to; i++) {
+                if (search.firstPointOnSegment(i) >= 0) {
+                    found.set(true);
+                    return;
+                }
+                if ((i & 63) == 0 && found.get()) {
+                    return;  // Another range found a point
+                }
+            }
+        }
+    }
 }
@@ -1,20 +1,48 @@
 package com.company.theshapefixer;
 
-import java.util.ArrayList;
 import java.util.List;
 
 public class Shape2D {
     private List<Point2D> points;
 
+    /**
+     * Points are immutable, so only the list is copied, into an unmodifiable one. A list that is already
+     * unmodifiable, like the points of another shape, is shared instead. Later changes to the given list do
+     * not reach the shape.
+     *
+     * @param points
+     * @throws NullPointerException when the list or one of its points is null
+     */
     public Shape2D(List<Point2D> points) {
-        this.points = new ArrayList<>();
+        this.points = List.copyOf(points);
+    }
 
-        for (Point2D point : points) {
-            this.points.add(new Point2D(point.x(), point.y()));
-        }
+    /**
+     * Constructor for subclasses that keep their coordinates in another form
+     */
+    protected Shape2D() {
     }
 
+    /**
+     * Method to get the points of the shape. The list is unmodifiable, for this class and for every
+     * subclass: a changed shape is built as a new shape, e.g. from a copy of this list or with
+     * {@link EditableShape2D}.
+     *
+     * @return
+     */
     public List<Point2D> getPoints() {
         return points;
     }
+
+    public int size() {
+        return points.size();
+    }
+
+    public double getX(int index) {
+        return points.get(index).x();
+    }
+
+    public double getY(int index) {
+        return points.get(index).y();
+    }
 }
@@ -0,0 +1,158 @@
+package com.company.theshapefixer;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache from shape content to a value. Entries are spread over independently locked LRU segments
+ * by their content hash, so concurrent batch workers rarely wait for each other. Keys keep a copy of the
+ * coordinates and a hit compares them, a hash collision can never return the value of another shape.
+ *
+ * @param <V>
+ */
+class ShapeCache<V> {
+
+    private static final int MAX_SEGMENTS = 16;
+
+    private final Segment<V>[] segments;
+    private final int segmentMask;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    @SuppressWarnings("unchecked")
+    ShapeCache(int maximumSize) {
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("Cache size must be positive, got " + maximumSize);
+        }
+        // Power of two segments, each with at least one entry
+        int count = Integer.highestOneBit(Math.min(MAX_SEGMENTS, maximumSize));
+        segments = (Segment<V>[]) new Segment<?>[count];
+        for (int i = 0; i < count; i++) {
+            int capacity = maximumSize / count + (i < maximumSize % count ? 1 : 0);
+            segments[i] = new Segment<>(capacity, evictions);
+        }
+        segmentMask = count - 1;
+    }
+
+    /**
+     * Method to look up the value cached for a shape with the same points
+     *
+     * @param shape
+     * @param hash  content hash of the shape
+     * @return the value, or null
+     */
+    V get(PackedShape2D shape, long hash) {
+        Key probe = new Key(hash, shape.xArray(), shape.yArray(), shape.size());
+        V value = segmentFor(hash).get(probe);
+        if (value == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return value;
+    }
+
+    /**
+     * Method to cache a value, the coordinates are copied so the shape may change afterwards
+     *
+     * @param shape
+     * @param hash
+     * @param value
+     */
+    void put(PackedShape2D shape, long hash, V value) {
+        int n = shape.size();
+        Key key = new Key(hash, Arrays.copyOf(shape.xArray(), n), Arrays.copyOf(shape.yArray(), n), n);
+        segmentFor(hash).put(key, value);
+    }
+
+    void clear() {
+        for (Segment<V> segment : segments) {
+            segment.clear();
+        }
+    }
+
+    CacheStats stats() {
+        long size = 0;
+        for (Segment<V> segment : segments) {
+            size += segment.size();
+        }
+        return new CacheStats(hits.sum(), misses.sum(), evictions.sum(), size);
+    }
+
+    private Segment<V> segmentFor(long hash) {
+        return segments[(int) (hash >>> 32) & segmentMask];
+    }
+
+    /**
+     * Shape content as a map key, equal when all coordinates are equal in the Point2D.equals sense
+     */
+    private static final class Key {
+        private final long hash;
+        private final double[] xs;
+        private final double[] ys;
+        private final int size;
+
+        Key(long hash, double[] xs, double[] ys, int size) {
+            this.hash = hash;
+            this.xs = xs;
+            this.ys = ys;
+            this.size = size;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key key)) {
+                return false;
+            }
+            return hash == key.hash && size == key.size
+                    && Arrays.equals(xs, 0, size, key.xs, 0, size)
+                    && Arrays.equals(ys, 0, size, key.ys, 0, size);
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (hash ^ (hash >>> 32));
+        }
+    }
+
+    /**
+     * One LRU segment, a LinkedHashMap in access order guarded by its own lock
+     *
+     * @param <V>
+     */
+    private static final class Segment<V> {
+        private final Map<Key, V> entries;
+
+        Segment(int capacity, LongAdder evictions) {
+            entries = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Key, V> eldest) {
+                    if (size() > capacity) {
+                        evictions.increment();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        synchronized V get(Key key) {
+            return entries.get(key);
+        }
+
+        synchronized void put(Key key, V value) {
+            entries.put(key, value);
+        }
+
+        synchronized void clear() {
+            entries.clear();
+        }
+
+        synchronized int size() {
+            return entries.size();
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.company.theshapefixer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Binary shape file (see {@link ShapeFileFormat}) mapped into memory. Shapes are views over the mapping,
+ * so opening a file costs one pass over the offset table and no coordinate is parsed or copied up front.
+ * Files larger than 2 GB are mapped in several windows, each holding whole shapes.
+ * <p>
+ * The algorithms of {@link TheShapeFixer} do not read the mapping point by point: each call copies the
+ * shape into arrays once with a bulk read, and triangulate reuses the copy its validation made. To run
+ * several algorithms on the same shape, pack it once with {@link PackedShape2D#of(Shape2D)} and pass the
+ * packed shape instead.
+ * <p>
+ * The views stay readable after close as long as they are referenced, the mapping is released by the
+ * garbage collector. The file must not be changed while it is mapped.
+ */
+public class ShapeFile implements Closeable {
+
+    // Largest window, a single mapping is limited to 2 GB
+    private static final long MAX_WINDOW = Integer.MAX_VALUE & ~7L;
+
+    private final FileChannel channel;
+    private final long maxWindow;
+    private final CoordinateType coordinateType;
+    private final long shapeCount;
+    private final ByteBuffer table;
+
+    // Windows with the first shape and the file offset each of them starts at
+    private final List<ByteBuffer> windows = new ArrayList<>();
+    private long[] windowFirstShape;
+    private long[] windowStart;
+
+    private ShapeFile(FileChannel channel, long maxWindow) throws IOException {
+        this.channel = channel;
+        this.maxWindow = maxWindow;
+        long fileSize = channel.size();
+        if (fileSize < ShapeFileFormat.HEADER_SIZE) {
+            throw new IOException("Not a shape file, too short for the header");
+        }
+        ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, ShapeFileFormat.HEADER_SIZE)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        if (header.getInt(ShapeFileFormat.MAGIC_OFFSET) != ShapeFileFormat.MAGIC) {
+            throw new IOException("Not a shape file, wrong magic number");
+        }
+        short version = header.getShort(ShapeFileFormat.VERSION_OFFSET);
+        if (version != ShapeFileFormat.VERSION) {
+            throw new IOException("Unsupported shape file version " + version);
+        }
+        short type = header.getShort(ShapeFileFormat.COORDINATE_TYPE_OFFSET);
+        if (type < 0 || type >= CoordinateType.values().length) {
+            throw new IOException("Unknown coordinate type " + type);
+        }
+        coordinateType = CoordinateType.values()[type];
+        shapeCount = header.getLong(ShapeFileFormat.SHAPE_COUNT_OFFSET);
+        long tableOffset = header.getLong(ShapeFileFormat.TABLE_OFFSET_OFFSET);
+        if (tableOffset == 0) {
+            throw new IOException("Shape file was not closed, the offset table is missing");
+        }
+        long tableSize = (shapeCount + 1) * Long.BYTES;
+        if (shapeCount < 0 || tableOffset < ShapeFileFormat.HEADER_SIZE || tableOffset + tableSize > fileSize
+                || tableSize > MAX_WINDOW) {
+            throw new IOException("Corrupt shape file, the offset table does not fit the file");
+        }
+        table = channel.map(FileChannel.MapMode.READ_ONLY, tableOffset, tableSize).order(ByteOrder.LITTLE_ENDIAN);
+        mapWindows(tableOffset);
+    }
+
+    /**
+     * Method to open and map a shape file
+     *
+     * @param path
+     * @return
+     * @throws IOException when the file can not be read or is not a complete shape file
+     */
+    public static ShapeFile open(Path path) throws IOException {
+        return open(path, MAX_WINDOW);
+    }
+
+    /**
+     * Method to open and map a shape file in windows of at most the given size, smaller windows are for tests
+     *
+     * @param path
+     * @param maxWindow
+     * @return
+     * @throws IOException when the file can not be read, is not a complete shape file or has a shape larger
+     *                     than a window
+     */
+    static ShapeFile open(Path path, long maxWindow) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return new ShapeFile(channel, maxWindow);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public long getShapeCount() {
+        return shapeCount;
+    }
+
+    public CoordinateType getCoordinateType() {
+        return coordinateType;
+    }
+
+    /**
+     * Method to get a shape as a view over the mapped file
+     *
+     * @param index
+     * @return
+     */
+    public Shape2D get(long index) {
+        if (index < 0 || index >= shapeCount) {
+            throw new IndexOutOfBoundsException("Shape " + index + " of " + shapeCount);
+        }
+        int window = windowOf(index);
+        long start = offset(index);
+        int size = (int) ((offset(index + 1) - start) / (2L * coordinateType.bytes()));
+        return new MappedShape2D(windows.get(window), (int) (start - windowStart[window]), size, coordinateType);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private long offset(long index) {
+        return table.getLong((int) (index * Long.BYTES));
+    }
+
+    /**
+     * Split the shape data into windows of whole shapes, each at most maxWindow bytes
+     *
+     * @param dataEnd
+     * @throws IOException
+     */
+    private void mapWindows(long dataEnd) throws IOException {
+        List<long[]> bounds = new ArrayList<>(); // {first shape, start offset, end offset}
+        long previous = ShapeFileFormat.HEADER_SIZE;
+        for (long k = 0; k <= shapeCount; k++) {
+            long offset = offset(k);
+            if (offset < previous || offset > dataEnd
+                    || (k > 0 && (offset - previous) % (2L * coordinateType.bytes()) != 0)) {
+                throw new IOException("Corrupt shape file, bad offset for shape " + k);
+            }
+            if (offset - previous > maxWindow) {
+                throw new IOException("Shape " + (k - 1) + " is larger than " + maxWindow + " bytes");
+            }
+            if (!bounds.isEmpty()) {
+                bounds.get(bounds.size() - 1)[2] = offset;
+            }
+            if (k < shapeCount && (bounds.isEmpty() || offset(k + 1) - bounds.get(bounds.size() - 1)[1] > maxWindow)) {
+                bounds.add(new long[]{k, offset, offset});
+            }
+            previous = offset;
+        }
+
+        windowFirstShape = new long[bounds.size()];
+        windowStart = new long[bounds.size()];
+        for (int w = 0; w < bounds.size(); w++) {
+            long[] bound = bounds.get(w);
+            windowFirstShape[w] = bound[0];
+            windowStart[w] = bound[1];
+            MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, bound[1], bound[2] - bound[1]);
+            windows.add(window.order(ByteOrder.LITTLE_ENDIAN));
+        }
+    }
+
+    private int windowOf(long index) {
+        int low = 0;
+        int high = windowFirstShape.length - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (windowFirstShape[middle] <= index) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+}
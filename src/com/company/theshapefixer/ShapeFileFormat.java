@@ -0,0 +1,28 @@
+package com.company.theshapefixer;
+
+/**
+ * Layout of the binary shape file, all numbers are little-endian:
+ * <pre>
+ * header  int magic "SHP2", short version, short coordinate type, long shape count, long table offset,
+ *         long reserved (32 bytes)
+ * shapes  for every shape all its x coordinates followed by all its y coordinates
+ * table   shape count + 1 longs, the file offset where every shape starts plus the end of the last one
+ * </pre>
+ * The table is written last, so shapes can be streamed out without knowing their number up front. A file
+ * whose table offset is still 0 was not closed properly.
+ */
+class ShapeFileFormat {
+
+    static final int MAGIC = 'S' | 'H' << 8 | 'P' << 16 | '2' << 24;
+    static final short VERSION = 1;
+    static final int HEADER_SIZE = 32;
+
+    static final int MAGIC_OFFSET = 0;
+    static final int VERSION_OFFSET = 4;
+    static final int COORDINATE_TYPE_OFFSET = 6;
+    static final int SHAPE_COUNT_OFFSET = 8;
+    static final int TABLE_OFFSET_OFFSET = 16;
+
+    private ShapeFileFormat() {
+    }
+}
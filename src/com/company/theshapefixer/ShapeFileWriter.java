@@ -0,0 +1,142 @@
+package com.company.theshapefixer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Writer of binary shape files (see {@link ShapeFileFormat}), shapes are appended one by one, e.g. the
+ * output of {@link TheShapeFixer#repair(Shape2D)}, and the offset table is written on close
+ */
+public class ShapeFileWriter implements Closeable {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final FileChannel channel;
+    private final CoordinateType coordinateType;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private long[] offsets = new long[16];
+    private long shapeCount;
+    private long position = ShapeFileFormat.HEADER_SIZE;
+    private boolean closed;
+
+    public ShapeFileWriter(Path path) throws IOException {
+        this(path, CoordinateType.DOUBLE);
+    }
+
+    public ShapeFileWriter(Path path, CoordinateType coordinateType) throws IOException {
+        this.coordinateType = coordinateType;
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        // The header is filled in on close, until then the table offset stays 0
+        buffer.put(new byte[ShapeFileFormat.HEADER_SIZE]);
+    }
+
+    /**
+     * Method to append a shape
+     *
+     * @param shape
+     * @throws IOException
+     * @throws IllegalArgumentException when the file stores ints and a coordinate is not an int
+     */
+    public void write(Shape2D shape) throws IOException {
+        if (closed) {
+            throw new IOException("Writer is closed");
+        }
+        int n = shape.size();
+        if (coordinateType == CoordinateType.INT) {
+            for (int i = 0; i < n; i++) {
+                checkInt(shape.getX(i));
+                checkInt(shape.getY(i));
+            }
+        }
+        if (shapeCount == offsets.length) {
+            offsets = Arrays.copyOf(offsets, offsets.length * 2);
+        }
+        offsets[(int) shapeCount++] = position;
+
+        for (int i = 0; i < n; i++) {
+            putCoordinate(shape.getX(i));
+        }
+        for (int i = 0; i < n; i++) {
+            putCoordinate(shape.getY(i));
+        }
+    }
+
+    public long getShapeCount() {
+        return shapeCount;
+    }
+
+    /**
+     * Writes the offset table and the header
+     *
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            long tableOffset = position;
+            for (int k = 0; k < shapeCount; k++) {
+                putLong(offsets[k]);
+            }
+            putLong(tableOffset);
+            flush();
+
+            ByteBuffer header = ByteBuffer.allocate(ShapeFileFormat.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(ShapeFileFormat.MAGIC_OFFSET, ShapeFileFormat.MAGIC);
+            header.putShort(ShapeFileFormat.VERSION_OFFSET, ShapeFileFormat.VERSION);
+            header.putShort(ShapeFileFormat.COORDINATE_TYPE_OFFSET, (short) coordinateType.ordinal());
+            header.putLong(ShapeFileFormat.SHAPE_COUNT_OFFSET, shapeCount);
+            header.putLong(ShapeFileFormat.TABLE_OFFSET_OFFSET, tableOffset);
+            long at = 0;
+            while (header.hasRemaining()) {
+                at += channel.write(header, at);
+            }
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void putCoordinate(double value) throws IOException {
+        if (buffer.remaining() < Double.BYTES) {
+            flush();
+        }
+        if (coordinateType == CoordinateType.INT) {
+            buffer.putInt((int) value);
+            position += Integer.BYTES;
+        } else {
+            buffer.putDouble(value);
+            position += Double.BYTES;
+        }
+    }
+
+    private void putLong(long value) throws IOException {
+        if (buffer.remaining() < Long.BYTES) {
+            flush();
+        }
+        buffer.putLong(value);
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private static void checkInt(double value) {
+        if (Double.compare((int) value, value) != 0) { // Also keeps -0.0 out, it is a different point than 0.0
+            throw new IllegalArgumentException("Coordinate " + value + " is not an int");
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.company.theshapefixer;
+
+/**
+ * 64-bit content hash of the coordinate sequence of a shape. Shapes with the same points in the same order
+ * get the same hash; coordinates are hashed by their bits, so 0.0 and -0.0 differ just like they do for
+ * Point2D.equals.
+ */
+public class ShapeHash {
+
+    private static final long SEED = 0x2545F4914F6CDD1DL;
+    private static final long MULTIPLIER_1 = 0x9E3779B97F4A7C15L;
+    private static final long MULTIPLIER_2 = 0xC2B2AE3D27D4EB4FL;
+
+    private ShapeHash() {
+    }
+
+    /**
+     * Method to hash the points of a shape
+     *
+     * @param shape
+     * @return
+     */
+    public static long of(Shape2D shape) {
+        return of(PackedShape2D.of(shape));
+    }
+
+    static long of(PackedShape2D shape) {
+        double[] xs = shape.xArray();
+        double[] ys = shape.yArray();
+        int n = shape.size();
+        long h = SEED ^ (n * MULTIPLIER_1);
+        for (int i = 0; i < n; i++) {
+            h = Long.rotateLeft(h ^ (Double.doubleToLongBits(xs[i]) * MULTIPLIER_2), 27) * MULTIPLIER_1;
+            h = Long.rotateLeft(h ^ (Double.doubleToLongBits(ys[i]) * MULTIPLIER_2), 31) * MULTIPLIER_1;
+        }
+        return finish(h);
+    }
+
+    /**
+     * Final avalanche step of MurmurHash3, so every input bit affects every output bit
+     *
+     * @param h
+     * @return
+     */
+    private static long finish(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
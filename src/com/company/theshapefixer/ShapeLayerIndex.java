@@ -0,0 +1,553 @@
+package com.company.theshapefixer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+
+/**
+ * Index over a layer of closed shapes, to find the shapes that touch, share an edge with or overlap a shape
+ * without comparing every pair. The bounding boxes of the shapes are kept in an STR-packed R-tree, so the
+ * candidates for a shape are found in about logarithmic time; shapes with many edges also get an R-tree
+ * over their edges, so two candidates are compared edge against nearby edge. Edge contacts are decided
+ * with the exact orientation predicates.
+ * <p>
+ * Shapes are identified by their position in the list the index was built from. The index does not change
+ * once built and can be shared by any number of threads.
+ */
+public final class ShapeLayerIndex {
+
+    // Shapes with more edges than this get an edge tree, the edges of smaller ones are scanned
+    private static final int MIN_EDGES_FOR_TREE = 32;
+
+    // How two edges meet
+    private static final int NO_CONTACT = 0;
+    private static final int TOUCHING = 1;
+    private static final int CROSSING = 2;
+
+    private final List<Shape2D> shapes;
+    private final PackedShape2D[] packed;
+    private final double[] minX;
+    private final double[] minY;
+    private final double[] maxX;
+    private final double[] maxY;
+
+    // 1 for counter-clockwise shapes, -1 for clockwise ones and 0 for shapes without area
+    private final int[] winding;
+
+    private final BoxTree shapeTree;
+    private final BoxTree[] edgeTrees;
+
+    /**
+     * @param shapes closed shapes
+     */
+    public ShapeLayerIndex(List<? extends Shape2D> shapes) {
+        this.shapes = List.copyOf(shapes);
+        int count = this.shapes.size();
+        packed = new PackedShape2D[count];
+        minX = new double[count];
+        minY = new double[count];
+        maxX = new double[count];
+        maxY = new double[count];
+        winding = new int[count];
+        edgeTrees = new BoxTree[count];
+        for (int s = 0; s < count; s++) {
+            PackedShape2D shape = PackedShape2D.of(this.shapes.get(s));
+            packed[s] = shape;
+            double[] xs = shape.xArray();
+            double[] ys = shape.yArray();
+            int n = shape.size();
+            double x0 = Double.POSITIVE_INFINITY;
+            double y0 = Double.POSITIVE_INFINITY;
+            double x1 = Double.NEGATIVE_INFINITY;
+            double y1 = Double.NEGATIVE_INFINITY;
+            double area = 0;
+            for (int i = 0; i < n; i++) {
+                x0 = Math.min(x0, xs[i]);
+                y0 = Math.min(y0, ys[i]);
+                x1 = Math.max(x1, xs[i]);
+                y1 = Math.max(y1, ys[i]);
+                if (i < n - 1) {
+                    area += xs[i] * ys[i + 1] - xs[i + 1] * ys[i];
+                }
+            }
+            minX[s] = x0;
+            minY[s] = y0;
+            maxX[s] = x1;
+            maxY[s] = y1;
+            winding[s] = (int) Math.signum(area);
+            if (n - 1 > MIN_EDGES_FOR_TREE) {
+                edgeTrees[s] = edgeTree(xs, ys, n - 1);
+            }
+        }
+        shapeTree = new BoxTree(minX, minY, maxX, maxY, count);
+    }
+
+    public int size() {
+        return shapes.size();
+    }
+
+    public Shape2D getShape(int shape) {
+        return shapes.get(shape);
+    }
+
+    /**
+     * Method to find the shapes whose bounding box meets a box, edges included
+     *
+     * @param minX
+     * @param minY
+     * @param maxX
+     * @param maxY
+     * @return shape indexes in increasing order
+     */
+    public int[] search(double minX, double minY, double maxX, double maxY) {
+        IntStream.Builder found = IntStream.builder();
+        shapeTree.search(minX, minY, maxX, maxY, shape -> {
+            found.add(shape);
+            return true;
+        });
+        return found.build().sorted().toArray();
+    }
+
+    /**
+     * Method to find the shapes whose boundary has at least one point in common with the boundary of a shape
+     *
+     * @param shape
+     * @return shape indexes in increasing order
+     */
+    public int[] touching(int shape) {
+        return neighbours(shape, other -> touches(shape, other));
+    }
+
+    /**
+     * Method to find the shapes sharing a piece of boundary of positive length with a shape
+     *
+     * @param shape
+     * @return shape indexes in increasing order
+     */
+    public int[] sharingEdge(int shape) {
+        return neighbours(shape, other -> sharesEdge(shape, other));
+    }
+
+    /**
+     * Method to find the shapes whose inside overlaps the inside of a shape
+     *
+     * @param shape
+     * @return shape indexes in increasing order
+     */
+    public int[] overlapping(int shape) {
+        return neighbours(shape, other -> overlaps(shape, other));
+    }
+
+    /**
+     * Check whether the boundaries of two shapes have at least one point in common
+     *
+     * @param shape1
+     * @param shape2
+     * @return
+     */
+    public boolean touches(int shape1, int shape2) {
+        double[] xs1 = packed[shape1].xArray();
+        double[] ys1 = packed[shape1].yArray();
+        double[] xs2 = packed[shape2].xArray();
+        double[] ys2 = packed[shape2].yArray();
+        return anyEdgePair(shape1, shape2, (i, j) -> contact(xs1, ys1, i, xs2, ys2, j) != NO_CONTACT);
+    }
+
+    /**
+     * Check whether two shapes share a piece of boundary of positive length, as shapes merged along a
+     * common line do
+     *
+     * @param shape1
+     * @param shape2
+     * @return
+     */
+    public boolean sharesEdge(int shape1, int shape2) {
+        double[] xs1 = packed[shape1].xArray();
+        double[] ys1 = packed[shape1].yArray();
+        double[] xs2 = packed[shape2].xArray();
+        double[] ys2 = packed[shape2].yArray();
+        return anyEdgePair(shape1, shape2, (i, j) -> sharedDirection(xs1, ys1, i, xs2, ys2, j) != 0);
+    }
+
+    /**
+     * Check whether the insides of two shapes overlap: their boundaries cross, they share a piece of
+     * boundary with both insides on the same side of it, or a vertex of one lies strictly inside the other.
+     * Shapes that only touch, or lie on either side of a shared edge, do not overlap.
+     *
+     * @param shape1
+     * @param shape2
+     * @return
+     */
+    public boolean overlaps(int shape1, int shape2) {
+        double[] xs1 = packed[shape1].xArray();
+        double[] ys1 = packed[shape1].yArray();
+        double[] xs2 = packed[shape2].xArray();
+        double[] ys2 = packed[shape2].yArray();
+        int sameSide = winding[shape1] * winding[shape2];
+        boolean[] meet = {false};
+        boolean crossing = anyEdgePair(shape1, shape2, (i, j) -> {
+            int contact = contact(xs1, ys1, i, xs2, ys2, j);
+            if (contact == CROSSING) {
+                return true;
+            }
+            if (contact == TOUCHING) {
+                meet[0] = true;
+                // A shared piece with both insides on the same side of it
+                return sameSide != 0 && sharedDirection(xs1, ys1, i, xs2, ys2, j) == sameSide;
+            }
+            return false;
+        });
+        if (crossing) {
+            return true;
+        }
+
+        if (!meet[0]) {
+            // Without any contact one shape is wholly inside the other or apart, one vertex of each tells which
+            return isFirstVertexInside(shape1, shape2) || isFirstVertexInside(shape2, shape1);
+        }
+        return hasPieceInside(shape1, shape2) || hasPieceInside(shape2, shape1);
+    }
+
+    /**
+     * Method to group the shapes that are connected through shared edges
+     *
+     * @return the groups, each in increasing order, ordered by their first shape
+     */
+    public int[][] edgeSharingGroups() {
+        int count = size();
+        int[] parent = new int[count];
+        for (int s = 0; s < count; s++) {
+            parent[s] = s;
+        }
+        for (int s = 0; s < count; s++) {
+            int shape = s;
+            shapeTree.search(minX[s], minY[s], maxX[s], maxY[s], other -> {
+                if (other > shape && root(parent, other) != root(parent, shape) && sharesEdge(shape, other)) {
+                    parent[root(parent, other)] = root(parent, shape);
+                }
+                return true;
+            });
+        }
+
+        // Groups are numbered in the order of their first shape
+        int[] groupOfRoot = new int[count];
+        Arrays.fill(groupOfRoot, -1);
+        int[] groupOf = new int[count];
+        int[] groupSize = new int[count];
+        int groups = 0;
+        for (int s = 0; s < count; s++) {
+            int root = root(parent, s);
+            if (groupOfRoot[root] < 0) {
+                groupOfRoot[root] = groups++;
+            }
+            groupOf[s] = groupOfRoot[root];
+            groupSize[groupOf[s]]++;
+        }
+        int[][] result = new int[groups][];
+        for (int g = 0; g < groups; g++) {
+            result[g] = new int[groupSize[g]];
+            groupSize[g] = 0;
+        }
+        for (int s = 0; s < count; s++) {
+            int g = groupOf[s];
+            result[g][groupSize[g]++] = s;
+        }
+        return result;
+    }
+
+    /**
+     * Method to merge every group of shapes connected through shared edges into the boundaries of its union,
+     * see {@link TheShapeFixer#mergeShapes}. A shape sharing no edge comes back as it is.
+     *
+     * @return the boundaries of every group, in the order of edgeSharingGroups
+     */
+    public List<List<Shape2D>> mergeGroups() {
+        List<List<Shape2D>> merged = new ArrayList<>();
+        for (int[] group : edgeSharingGroups()) {
+            if (group.length == 1) {
+                merged.add(List.of(shapes.get(group[0])));
+                continue;
+            }
+            List<Shape2D> members = new ArrayList<>(group.length);
+            for (int shape : group) {
+                members.add(packed[shape]);
+            }
+            merged.add(ContourMerger.merge(members));
+        }
+        return merged;
+    }
+
+    /**
+     * Method to check the layer as a whole, listing every pair of shapes whose insides overlap
+     *
+     * @return pairs of shape indexes, the smaller first, in increasing order
+     */
+    public int[][] findOverlappingPairs() {
+        List<int[]> pairs = new ArrayList<>();
+        for (int s = 0; s < size(); s++) {
+            int shape = s;
+            int[] others = neighbours(shape, other -> other > shape && overlaps(shape, other));
+            for (int other : others) {
+                pairs.add(new int[]{shape, other});
+            }
+        }
+        return pairs.toArray(new int[0][]);
+    }
+
+    private int[] neighbours(int shape, IntPredicate test) {
+        IntStream.Builder found = IntStream.builder();
+        shapeTree.search(minX[shape], minY[shape], maxX[shape], maxY[shape], other -> {
+            if (other != shape && test.test(other)) {
+                found.add(other);
+            }
+            return true;
+        });
+        return found.build().sorted().toArray();
+    }
+
+    /**
+     * Check whether any edge of one shape and any edge of the other match, only edges whose boxes meet are
+     * compared. The edges of the shape with fewer points are taken one by one and looked up in the other.
+     */
+    private boolean anyEdgePair(int shape1, int shape2, EdgePair pair) {
+        double x0 = Math.max(minX[shape1], minX[shape2]);
+        double y0 = Math.max(minY[shape1], minY[shape2]);
+        double x1 = Math.min(maxX[shape1], maxX[shape2]);
+        double y1 = Math.min(maxY[shape1], maxY[shape2]);
+        if (x0 > x1 || y0 > y1) {
+            return false;
+        }
+        boolean swap = packed[shape1].size() > packed[shape2].size();
+        int outer = swap ? shape2 : shape1;
+        int inner = swap ? shape1 : shape2;
+        double[] xs = packed[outer].xArray();
+        double[] ys = packed[outer].yArray();
+        return !visitEdges(outer, x0, y0, x1, y1, i -> visitEdges(inner,
+                Math.min(xs[i], xs[i + 1]), Math.min(ys[i], ys[i + 1]),
+                Math.max(xs[i], xs[i + 1]), Math.max(ys[i], ys[i + 1]),
+                j -> swap ? !pair.matches(j, i) : !pair.matches(i, j)));
+    }
+
+    /**
+     * Method to visit the edges of a shape whose boxes meet a box
+     *
+     * @return false if the visitor ended the search
+     */
+    private boolean visitEdges(int shape, double x0, double y0, double x1, double y1, IntPredicate visitor) {
+        if (edgeTrees[shape] != null) {
+            return edgeTrees[shape].search(x0, y0, x1, y1, visitor);
+        }
+        double[] xs = packed[shape].xArray();
+        double[] ys = packed[shape].yArray();
+        for (int i = 0; i < packed[shape].size() - 1; i++) {
+            if (Math.min(xs[i], xs[i + 1]) <= x1 && Math.max(xs[i], xs[i + 1]) >= x0
+                    && Math.min(ys[i], ys[i + 1]) <= y1 && Math.max(ys[i], ys[i + 1]) >= y0
+                    && !visitor.test(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Check whether the first vertex of one shape lies strictly inside another, which for shapes whose
+     * boundaries do not meet tells whether the first is inside the second
+     *
+     * @param shape
+     * @param container
+     * @return
+     */
+    private boolean isFirstVertexInside(int shape, int container) {
+        return packed[shape].size() > 0
+                && isStrictlyInside(container, packed[shape].getX(0), packed[shape].getY(0));
+    }
+
+    /**
+     * Check whether a piece of the boundary of one shape runs strictly inside another. The edges are cut at
+     * the vertices of the other shape lying on them; between two cuts a piece has no point on the other
+     * boundary, unless it lies along it, so its middle tells on which side it is.
+     *
+     * @param shape
+     * @param container
+     * @return
+     */
+    private boolean hasPieceInside(int shape, int container) {
+        double[] xs = packed[shape].xArray();
+        double[] ys = packed[shape].yArray();
+        double[] cxs = packed[container].xArray();
+        double[] cys = packed[container].yArray();
+        double x0 = Math.max(minX[shape], minX[container]);
+        double y0 = Math.max(minY[shape], minY[container]);
+        double x1 = Math.min(maxX[shape], maxX[container]);
+        double y1 = Math.min(maxY[shape], maxY[container]);
+        return !visitEdges(shape, x0, y0, x1, y1, i -> {
+            double ax = xs[i];
+            double ay = ys[i];
+            double bx = xs[i + 1];
+            double by = ys[i + 1];
+            boolean alongX = Math.abs(bx - ax) >= Math.abs(by - ay);
+
+            // Cuts are the two ends and the vertices of the container on the edge, in order along the edge
+            List<double[]> cuts = new ArrayList<>();
+            cuts.add(new double[]{ax, ay});
+            cuts.add(new double[]{bx, by});
+            visitEdges(container, Math.min(ax, bx), Math.min(ay, by), Math.max(ax, bx), Math.max(ay, by), j -> {
+                for (int v = j; v <= j + 1; v++) {
+                    if (GeometryPredicates.orientation(ax, ay, bx, by, cxs[v], cys[v]) == 0
+                            && isWithinBox(cxs[v], cys[v], ax, ay, bx, by)) {
+                        cuts.add(new double[]{cxs[v], cys[v]});
+                    }
+                }
+                return true;
+            });
+            cuts.sort(Comparator.comparingDouble(cut -> alongX ? cut[0] : cut[1]));
+
+            for (int k = 0; k + 1 < cuts.size(); k++) {
+                double[] p = cuts.get(k);
+                double[] q = cuts.get(k + 1);
+                if (p[0] == q[0] && p[1] == q[1] || isAlongBoundary(container, p[0], p[1], q[0], q[1])) {
+                    continue;
+                }
+                if (isStrictlyInside(container, p[0] / 2 + q[0] / 2, p[1] / 2 + q[1] / 2)) {
+                    return false;
+                }
+            }
+            return true;
+        });
+    }
+
+    /**
+     * Even-odd test with a ray from the point towards increasing x, a point on the boundary is not inside
+     */
+    private boolean isStrictlyInside(int shape, double px, double py) {
+        double[] xs = packed[shape].xArray();
+        double[] ys = packed[shape].yArray();
+        int[] crossings = {0};
+        boolean offBoundary = visitEdges(shape, px, py, maxX[shape], py, i -> {
+            double ax = xs[i];
+            double ay = ys[i];
+            double bx = xs[i + 1];
+            double by = ys[i + 1];
+            int side = GeometryPredicates.orientation(ax, ay, bx, by, px, py);
+            if (side == 0 && isWithinBox(px, py, ax, ay, bx, by)) {
+                return false;  // On the boundary
+            }
+            if ((ay > py) != (by > py) && (by > ay ? side > 0 : side < 0)) {
+                crossings[0]++;
+            }
+            return true;
+        });
+        return offBoundary && crossings[0] % 2 == 1;
+    }
+
+    /**
+     * Check whether the segment from p to q lies along one edge of a shape
+     */
+    private boolean isAlongBoundary(int shape, double px, double py, double qx, double qy) {
+        double[] xs = packed[shape].xArray();
+        double[] ys = packed[shape].yArray();
+        return !visitEdges(shape, Math.min(px, qx), Math.min(py, qy), Math.max(px, qx), Math.max(py, qy), j ->
+                !(GeometryPredicates.orientation(xs[j], ys[j], xs[j + 1], ys[j + 1], px, py) == 0
+                        && GeometryPredicates.orientation(xs[j], ys[j], xs[j + 1], ys[j + 1], qx, qy) == 0
+                        && isWithinBox(px, py, xs[j], ys[j], xs[j + 1], ys[j + 1])
+                        && isWithinBox(qx, qy, xs[j], ys[j], xs[j + 1], ys[j + 1])));
+    }
+
+    private static BoxTree edgeTree(double[] xs, double[] ys, int edges) {
+        double[] x0 = new double[edges];
+        double[] y0 = new double[edges];
+        double[] x1 = new double[edges];
+        double[] y1 = new double[edges];
+        for (int i = 0; i < edges; i++) {
+            x0[i] = Math.min(xs[i], xs[i + 1]);
+            y0[i] = Math.min(ys[i], ys[i + 1]);
+            x1[i] = Math.max(xs[i], xs[i + 1]);
+            y1[i] = Math.max(ys[i], ys[i + 1]);
+        }
+        return new BoxTree(x0, y0, x1, y1, edges);
+    }
+
+    /**
+     * Method to find how edge i of one shape and edge j of another meet
+     *
+     * @return CROSSING when they cross at a point inside both, TOUCHING when they have other points in
+     * common, NO_CONTACT otherwise
+     */
+    private static int contact(double[] xs1, double[] ys1, int i, double[] xs2, double[] ys2, int j) {
+        double ax = xs1[i];
+        double ay = ys1[i];
+        double bx = xs1[i + 1];
+        double by = ys1[i + 1];
+        double cx = xs2[j];
+        double cy = ys2[j];
+        double dx = xs2[j + 1];
+        double dy = ys2[j + 1];
+        int d1 = GeometryPredicates.orientation(cx, cy, dx, dy, ax, ay);
+        int d2 = GeometryPredicates.orientation(cx, cy, dx, dy, bx, by);
+        int d3 = GeometryPredicates.orientation(ax, ay, bx, by, cx, cy);
+        int d4 = GeometryPredicates.orientation(ax, ay, bx, by, dx, dy);
+        if (d1 * d2 < 0 && d3 * d4 < 0) {
+            return CROSSING;
+        }
+        boolean touching = d1 == 0 && isWithinBox(ax, ay, cx, cy, dx, dy)
+                || d2 == 0 && isWithinBox(bx, by, cx, cy, dx, dy)
+                || d3 == 0 && isWithinBox(cx, cy, ax, ay, bx, by)
+                || d4 == 0 && isWithinBox(dx, dy, ax, ay, bx, by);
+        return touching ? TOUCHING : NO_CONTACT;
+    }
+
+    /**
+     * Method to compare the directions of edge i of one shape and edge j of another when they overlap along
+     * a piece of positive length
+     *
+     * @return 1 when they run the same way, -1 when they run opposite ways, 0 when they do not overlap so
+     */
+    private static int sharedDirection(double[] xs1, double[] ys1, int i, double[] xs2, double[] ys2, int j) {
+        double ax = xs1[i];
+        double ay = ys1[i];
+        double bx = xs1[i + 1];
+        double by = ys1[i + 1];
+        double cx = xs2[j];
+        double cy = ys2[j];
+        double dx = xs2[j + 1];
+        double dy = ys2[j + 1];
+        if (GeometryPredicates.orientation(ax, ay, bx, by, cx, cy) != 0
+                || GeometryPredicates.orientation(ax, ay, bx, by, dx, dy) != 0) {
+            return 0;
+        }
+
+        // On a common line, compare the edges along the axis the line runs most along
+        boolean alongX = Math.abs(bx - ax) >= Math.abs(by - ay);
+        double a = alongX ? ax : ay;
+        double b = alongX ? bx : by;
+        double c = alongX ? cx : cy;
+        double d = alongX ? dx : dy;
+        if (a == b || c == d || Math.max(Math.min(a, b), Math.min(c, d)) >= Math.min(Math.max(a, b), Math.max(c, d))) {
+            return 0;
+        }
+        return (a < b) == (c < d) ? 1 : -1;
+    }
+
+    private static boolean isWithinBox(double px, double py, double ax, double ay, double bx, double by) {
+        return px >= Math.min(ax, bx) && px <= Math.max(ax, bx) && py >= Math.min(ay, by) && py <= Math.max(ay, by);
+    }
+
+    private static int root(int[] parent, int shape) {
+        while (parent[shape] != shape) {
+            parent[shape] = parent[parent[shape]]; // Path halving
+            shape = parent[shape];
+        }
+        return shape;
+    }
+
+    /**
+     * Test on edge i of the first shape and edge j of the second
+     */
+    @FunctionalInterface
+    private interface EdgePair {
+        boolean matches(int i, int j);
+    }
+}
@@ -0,0 +1,326 @@
+package com.company.theshapefixer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Reader of newline-delimited shapes: every line holds the x y coordinates of one shape, separated by
+ * whitespace, commas or brackets ("0 0 2 0 2 2 0 0" and "{0, 0}, {2, 0}, {2, 2}, {0, 0}" are the same
+ * shape). Blank lines and lines starting with '#' are skipped.
+ * <p>
+ * Numbers are decimal: an optional sign, digits with an optional fraction and an optional exponent, like
+ * "-12", "0.5", ".5", "3." or "1.5e-3". The other forms Java accepts, such as "1f", "1d", "NaN",
+ * "Infinity" or hexadecimal "0x1p3", are rejected, as are numbers too large for a double.
+ * <p>
+ * Shapes are handed to the consumer one at a time as soon as their line ends. The shape is backed by a
+ * buffer that is reused for the next line, so it is only valid during the call; copy it with
+ * {@link PackedShape2D#of(java.util.List)} or a builder to keep it. Memory is bounded by the largest shape.
+ * A reader keeps the parsing state of one stream, use one reader per thread.
+ */
+public class ShapeStreamReader {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    // Size of the memory-mapped window, a mapping can not be larger than 2 GB
+    private static final long MAPPED_WINDOW = 1L << 28;
+
+    // Largest mantissa and power of ten that are exact in a double, so one multiply or divide rounds correctly
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+    private static final int MAX_EXACT_POWER = 22;
+    private static final double[] POWERS_OF_TEN = new double[MAX_EXACT_POWER + 1];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i <= MAX_EXACT_POWER; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private final long mappedWindow;
+    private final PackedShape2D.Builder shape = new PackedShape2D.Builder();
+    private Consumer<? super Shape2D> consumer;
+    private long shapeCount;
+    private long line;
+    private boolean comment;
+    private boolean lineStart;
+
+    // Coordinates of the line that still wait for their pair
+    private boolean hasPendingX;
+    private double pendingX;
+
+    // Current number token: the raw characters for the slow path and the decoded parts for the fast one
+    private char[] token = new char[32];
+    private int tokenLength;
+    private long mantissa;
+    private int mantissaExponent;
+    private boolean mantissaExact;
+    private boolean hasDigits;
+    private boolean hasExponentDigits;
+    private boolean negative;
+    private int exponent;
+    private boolean negativeExponent;
+    private int state;
+
+    private static final int STATE_SIGN = 0;
+    private static final int STATE_INTEGER = 1;
+    private static final int STATE_FRACTION = 2;
+    private static final int STATE_EXPONENT_SIGN = 3;
+    private static final int STATE_EXPONENT = 4;
+    private static final int STATE_OTHER = 5; // Anything else, not a number
+
+    public ShapeStreamReader() {
+        this(MAPPED_WINDOW);
+    }
+
+    /**
+     * Reader mapping files in windows of the given size, smaller windows are for tests
+     *
+     * @param mappedWindow
+     */
+    ShapeStreamReader(long mappedWindow) {
+        this.mappedWindow = mappedWindow;
+    }
+
+    /**
+     * Method to read all shapes of a byte stream, the bytes are taken as ASCII
+     *
+     * @param input
+     * @param consumer
+     * @return number of shapes read
+     * @throws IOException when reading fails or a line is malformed
+     */
+    public long read(InputStream input, Consumer<? super Shape2D> consumer) throws IOException {
+        start(consumer);
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int read;
+        while ((read = input.read(buffer)) >= 0) {
+            for (int i = 0; i < read; i++) {
+                accept((char) (buffer[i] & 0xFF));
+            }
+        }
+        return finish();
+    }
+
+    /**
+     * Method to read all shapes of a character stream
+     *
+     * @param input
+     * @param consumer
+     * @return number of shapes read
+     * @throws IOException when reading fails or a line is malformed
+     */
+    public long read(Reader input, Consumer<? super Shape2D> consumer) throws IOException {
+        start(consumer);
+        char[] buffer = new char[BUFFER_SIZE];
+        int read;
+        while ((read = input.read(buffer)) >= 0) {
+            for (int i = 0; i < read; i++) {
+                accept(buffer[i]);
+            }
+        }
+        return finish();
+    }
+
+    /**
+     * Method to read all shapes of a file through memory-mapped windows, from the start of the file to its
+     * current end. The channel position is not used or changed.
+     *
+     * @param channel
+     * @param consumer
+     * @return number of shapes read
+     * @throws IOException when reading fails or a line is malformed
+     */
+    public long read(FileChannel channel, Consumer<? super Shape2D> consumer) throws IOException {
+        start(consumer);
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long fileSize = channel.size();
+        for (long position = 0; position < fileSize; position += mappedWindow) {
+            long windowSize = Math.min(mappedWindow, fileSize - position);
+            MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, windowSize);
+            while (window.hasRemaining()) {
+                int read = Math.min(buffer.length, window.remaining());
+                window.get(buffer, 0, read);
+                for (int i = 0; i < read; i++) {
+                    accept((char) (buffer[i] & 0xFF));
+                }
+            }
+        }
+        return finish();
+    }
+
+    private void start(Consumer<? super Shape2D> consumer) {
+        this.consumer = consumer;
+        shapeCount = 0;
+        line = 1;
+        comment = false;
+        lineStart = true;
+        hasPendingX = false;
+        tokenLength = 0;
+        shape.clear();
+    }
+
+    private long finish() throws IOException {
+        endLine();
+        consumer = null;
+        return shapeCount;
+    }
+
+    private void accept(char c) throws IOException {
+        if (c == '\n') {
+            endLine();
+            line++;
+            lineStart = true;
+            comment = false;
+            return;
+        }
+        if (comment) {
+            return;
+        }
+        if (c == '#' && lineStart) {
+            comment = true;
+            return;
+        }
+        if (isSeparator(c)) {
+            endToken();
+            return;
+        }
+        lineStart = false;
+        appendToken(c);
+    }
+
+    private static boolean isSeparator(char c) {
+        return c == ' ' || c == ',' || c == '\t' || c == '\r' || c == '{' || c == '}'
+                || c == '[' || c == ']' || c == '(' || c == ')' || c == ';';
+    }
+
+    private void appendToken(char c) {
+        if (tokenLength == 0) {
+            mantissa = 0;
+            mantissaExponent = 0;
+            mantissaExact = true;
+            hasDigits = false;
+            hasExponentDigits = false;
+            negative = false;
+            exponent = 0;
+            negativeExponent = false;
+            state = STATE_SIGN;
+        }
+        if (tokenLength == token.length) {
+            token = Arrays.copyOf(token, tokenLength * 2);
+        }
+        token[tokenLength++] = c;
+
+        // Decimal state machine, digits beyond the exact range only switch off the fast path
+        if (c >= '0' && c <= '9') {
+            int digit = c - '0';
+            if (state <= STATE_FRACTION) {
+                hasDigits = true;
+            }
+            switch (state) {
+                case STATE_SIGN:
+                case STATE_INTEGER:
+                    state = STATE_INTEGER;
+                    addDigit(digit, 0);
+                    break;
+                case STATE_FRACTION:
+                    addDigit(digit, -1);
+                    break;
+                case STATE_EXPONENT_SIGN:
+                case STATE_EXPONENT:
+                    state = STATE_EXPONENT;
+                    hasExponentDigits = true;
+                    exponent = Math.min(exponent * 10 + digit, 100000);
+                    break;
+                default:
+                    break;
+            }
+        } else if (c == '.' && (state == STATE_SIGN || state == STATE_INTEGER)) {
+            state = STATE_FRACTION;
+        } else if ((c == 'e' || c == 'E') && (state == STATE_INTEGER || state == STATE_FRACTION)) {
+            state = STATE_EXPONENT_SIGN;
+        } else if ((c == '-' || c == '+') && tokenLength == 1) {
+            negative = c == '-';
+        } else if ((c == '-' || c == '+') && state == STATE_EXPONENT_SIGN) {
+            negativeExponent = c == '-';
+            state = STATE_EXPONENT;
+        } else {
+            state = STATE_OTHER;
+        }
+    }
+
+    private void addDigit(int digit, int exponentShift) {
+        if (mantissa == 0 && digit == 0) {
+            mantissaExponent += exponentShift; // Leading zeros only move the decimal point
+            return;
+        }
+        long next = mantissa * 10 + digit;
+        if (mantissaExact && next < MAX_EXACT_MANTISSA) {
+            mantissa = next;
+            mantissaExponent += exponentShift;
+        } else {
+            mantissaExact = false;
+        }
+    }
+
+    private void endToken() throws IOException {
+        if (tokenLength == 0) {
+            return;
+        }
+        double value = parseToken();
+        tokenLength = 0;
+        if (hasPendingX) {
+            shape.add(pendingX, value);
+            hasPendingX = false;
+        } else {
+            pendingX = value;
+            hasPendingX = true;
+        }
+    }
+
+    private double parseToken() throws IOException {
+        boolean complete = hasDigits && (state == STATE_INTEGER || state == STATE_FRACTION
+                || (state == STATE_EXPONENT && hasExponentDigits));
+        if (complete && mantissaExact) {
+            int power = mantissaExponent + (negativeExponent ? -exponent : exponent);
+            if (mantissa == 0) {
+                return negative ? -0.0 : 0.0;
+            }
+            if (power >= 0 && power <= MAX_EXACT_POWER) {
+                double value = mantissa * POWERS_OF_TEN[power];
+                return negative ? -value : value;
+            }
+            if (power < 0 && power >= -MAX_EXACT_POWER) {
+                double value = mantissa / POWERS_OF_TEN[-power];
+                return negative ? -value : value;
+            }
+        }
+        String text = new String(token, 0, tokenLength);
+        if (!complete) {
+            throw new IOException("Malformed number '" + text + "' on line " + line);
+        }
+
+        // The state machine checked the syntax, only the rounding of long mantissas and large powers is left
+        double value = Double.parseDouble(text);
+        if (Double.isInfinite(value)) {
+            throw new IOException("Number '" + text + "' on line " + line + " is too large");
+        }
+        return value;
+    }
+
+    private void endLine() throws IOException {
+        endToken();
+        if (hasPendingX) {
+            throw new IOException("Odd number of coordinates on line " + line);
+        }
+        if (shape.size() > 0) {
+            consumer.accept(shape.view());
+            shapeCount++;
+            shape.clear();
+        }
+    }
+}
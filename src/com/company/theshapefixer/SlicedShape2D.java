@@ -0,0 +1,274 @@
+package com.company.theshapefixer;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Immutable shape made of runs of the points of a packed shape, sharing its coordinate arrays. Slicing,
+ * removing points and moving a point give new shapes that share the same arrays; only the moved points
+ * are stored apart, in a small array copied on every move. The packed shape must not be changed while
+ * shapes over it are in use.
+ * <p>
+ * A point is found by a binary search over the runs, so algorithms that visit every point pack the shape
+ * first. A shape that is one run from the first point of the packed shape is packed without copying.
+ */
+public final class SlicedShape2D extends Shape2D {
+    private static final double[] NO_COORDINATES = new double[0];
+
+    private final double[] xs;
+    private final double[] ys;
+    private final int baseSize;
+
+    // Moved points, at source indices from baseSize + 1 on so that no run joins them to the last base point
+    private final double[] movedXs;
+    private final double[] movedYs;
+
+    // Source index of the first point of every run, and the index in this shape of the first point of
+    // every run followed by the size of the shape
+    private final int[] runSource;
+    private final int[] runStart;
+
+    private SlicedShape2D(double[] xs, double[] ys, int baseSize, double[] movedXs, double[] movedYs,
+                          int[] runSource, int[] runStart) {
+        this.xs = xs;
+        this.ys = ys;
+        this.baseSize = baseSize;
+        this.movedXs = movedXs;
+        this.movedYs = movedYs;
+        this.runSource = runSource;
+        this.runStart = runStart;
+    }
+
+    /**
+     * Method to get a view of the points from index from (inclusive) to index to (exclusive) of a packed shape
+     *
+     * @param shape
+     * @param from
+     * @param to
+     * @return
+     */
+    public static SlicedShape2D of(PackedShape2D shape, int from, int to) {
+        if (from < 0 || to > shape.size() || from > to) {
+            throw new IndexOutOfBoundsException("Range " + from + " to " + to + " of " + shape.size() + " points");
+        }
+        return new SlicedShape2D(shape.xArray(), shape.yArray(), shape.size(), NO_COORDINATES, NO_COORDINATES,
+                new int[]{from}, new int[]{0, to - from});
+    }
+
+    /**
+     * Method to get a view of all points of a packed shape
+     *
+     * @param shape
+     * @return
+     */
+    public static SlicedShape2D of(PackedShape2D shape) {
+        return of(shape, 0, shape.size());
+    }
+
+    /**
+     * Method to get the points from index from (inclusive) to index to (exclusive), sharing the arrays
+     *
+     * @param from
+     * @param to
+     * @return
+     */
+    public SlicedShape2D slice(int from, int to) {
+        if (from < 0 || to > size() || from > to) {
+            throw new IndexOutOfBoundsException("Range " + from + " to " + to + " of " + size() + " points");
+        }
+        Runs runs = new Runs(4);
+        for (int index = from; index < to; ) {
+            int run = runOf(index);
+            int end = Math.min(runStart[run + 1], to);
+            runs.add(runSource[run] + index - runStart[run], end - index);
+            index = end;
+        }
+        return withRuns(movedXs, movedYs, runs);
+    }
+
+    /**
+     * Method to get the shape without some of its points, sharing the arrays
+     *
+     * @param removed a flag for every point of this shape
+     * @return
+     */
+    public SlicedShape2D without(boolean[] removed) {
+        Runs runs = new Runs(runSource.length + 4);
+        for (int run = 0; run < runSource.length; run++) {
+            for (int index = runStart[run]; index < runStart[run + 1]; index++) {
+                if (!removed[index]) {
+                    runs.add(runSource[run] + index - runStart[run], 1);
+                }
+            }
+        }
+        return withRuns(movedXs, movedYs, runs);
+    }
+
+    /**
+     * Method to get the shape with one point moved, the arrays of the packed shape are left as they are
+     *
+     * @param index
+     * @param x
+     * @param y
+     * @return
+     */
+    public SlicedShape2D with(int index, double x, double y) {
+        int run = runOf(checkIndex(index));
+        int moved = movedXs.length;
+        double[] nextXs = Arrays.copyOf(movedXs, moved + 1);
+        double[] nextYs = Arrays.copyOf(movedYs, moved + 1);
+        nextXs[moved] = x;
+        nextYs[moved] = y;
+
+        Runs runs = new Runs(runSource.length + 2);
+        for (int r = 0; r < runSource.length; r++) {
+            int length = runStart[r + 1] - runStart[r];
+            if (r != run) {
+                runs.add(runSource[r], length);
+            } else {
+                int offset = index - runStart[r];
+                runs.add(runSource[r], offset);
+                runs.add(baseSize + 1 + moved, 1);
+                runs.add(runSource[r] + offset + 1, length - offset - 1);
+            }
+        }
+        return withRuns(nextXs, nextYs, runs);
+    }
+
+    /**
+     * Number of runs of consecutive source points the shape is made of
+     *
+     * @return
+     */
+    public int runCount() {
+        return runSource.length;
+    }
+
+    @Override
+    public List<Point2D> getPoints() {
+        return new AbstractList<>() {
+            @Override
+            public Point2D get(int index) {
+                return new Point2D(SlicedShape2D.this.getX(index), SlicedShape2D.this.getY(index));
+            }
+
+            @Override
+            public int size() {
+                return SlicedShape2D.this.size();
+            }
+        };
+    }
+
+    @Override
+    public int size() {
+        return runStart[runSource.length];
+    }
+
+    @Override
+    public double getX(int index) {
+        int source = sourceOf(index);
+        return source < baseSize ? xs[source] : movedXs[source - baseSize - 1];
+    }
+
+    @Override
+    public double getY(int index) {
+        int source = sourceOf(index);
+        return source < baseSize ? ys[source] : movedYs[source - baseSize - 1];
+    }
+
+    /**
+     * Method to copy the coordinates run by run into the start of two arrays
+     *
+     * @param targetXs
+     * @param targetYs
+     */
+    void copyTo(double[] targetXs, double[] targetYs) {
+        for (int run = 0; run < runSource.length; run++) {
+            int length = runStart[run + 1] - runStart[run];
+            int source = runSource[run];
+            if (source < baseSize) {
+                System.arraycopy(xs, source, targetXs, runStart[run], length);
+                System.arraycopy(ys, source, targetYs, runStart[run], length);
+            } else {
+                System.arraycopy(movedXs, source - baseSize - 1, targetXs, runStart[run], length);
+                System.arraycopy(movedYs, source - baseSize - 1, targetYs, runStart[run], length);
+            }
+        }
+    }
+
+    /**
+     * Method to pack the shape, used by {@link PackedShape2D#of(Shape2D)}
+     *
+     * @return
+     */
+    PackedShape2D toPacked() {
+        int n = size();
+        if (runSource.length == 1 && runSource[0] == 0) {
+            return new PackedShape2D(xs, ys, n);  // Same points as the start of the packed shape
+        }
+        double[] packedXs = new double[n];
+        double[] packedYs = new double[n];
+        copyTo(packedXs, packedYs);
+        return new PackedShape2D(packedXs, packedYs, n);
+    }
+
+    private SlicedShape2D withRuns(double[] nextMovedXs, double[] nextMovedYs, Runs runs) {
+        return new SlicedShape2D(xs, ys, baseSize, nextMovedXs, nextMovedYs,
+                Arrays.copyOf(runs.sources, runs.count), Arrays.copyOf(runs.starts, runs.count + 1));
+    }
+
+    private int sourceOf(int index) {
+        int run = runOf(checkIndex(index));
+        return runSource[run] + index - runStart[run];
+    }
+
+    /**
+     * Run holding a point, runs are never empty so their starts are increasing
+     */
+    private int runOf(int index) {
+        if (runSource.length == 1) {
+            return 0;
+        }
+        int run = Arrays.binarySearch(runStart, 0, runSource.length, index);
+        return run >= 0 ? run : -run - 2;
+    }
+
+    private int checkIndex(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return index;
+    }
+
+    /**
+     * Growable list of runs, a run continuing the one before it is joined to it and empty runs are dropped
+     */
+    private static final class Runs {
+        private int[] sources;
+        private int[] starts;
+        private int count;
+
+        Runs(int capacity) {
+            sources = new int[capacity];
+            starts = new int[capacity + 1];
+        }
+
+        void add(int source, int length) {
+            if (length == 0) {
+                return;
+            }
+            int end = starts[count];
+            if (count > 0 && sources[count - 1] + end - starts[count - 1] == source) {
+                starts[count] = end + length;
+                return;
+            }
+            if (count == sources.length) {
+                sources = Arrays.copyOf(sources, count * 2);
+                starts = Arrays.copyOf(starts, count * 2 + 1);
+            }
+            sources[count] = source;
+            starts[++count] = end + length;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.company.theshapefixer;
+
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Sizing of a {@link FixerStage}: how many batches run at once, how many items one batch takes at most,
+ * and how many items the stage holds at most, waiting, being processed or waiting for its subscriber
+ */
+public record StageSettings(int parallelism, int batchSize, int bufferCapacity, Executor executor) {
+
+    public StageSettings {
+        if (parallelism < 1 || batchSize < 1 || bufferCapacity < batchSize) {
+            throw new IllegalArgumentException("Parallelism " + parallelism + ", batch size " + batchSize
+                    + " and buffer capacity " + bufferCapacity + " do not fit together");
+        }
+        Objects.requireNonNull(executor);
+    }
+
+    /**
+     * Settings running on the common fork-join pool
+     *
+     * @param parallelism
+     * @param batchSize
+     * @param bufferCapacity
+     */
+    public StageSettings(int parallelism, int batchSize, int bufferCapacity) {
+        this(parallelism, batchSize, bufferCapacity, ForkJoinPool.commonPool());
+    }
+}
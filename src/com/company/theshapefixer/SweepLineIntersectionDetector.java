@@ -0,0 +1,594 @@
+package com.company.theshapefixer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Sweep line search for crossing edges of a polyline, segment k runs from point k to point k + 1.
+ * Only proper crossings are reported, the same as the pairwise check in {@link TheShapeFixer}.
+ */
+public class SweepLineIntersectionDetector {
+
+    private static final int NIL = -1;
+
+    private static final int[] NO_SEGMENTS = new int[0];
+
+    // Slabs per worker thread in parallel mode
+    private static final int SLABS_PER_THREAD = 2;
+
+    private final double[] xs;
+    private final double[] ys;
+    private final int pointCount;
+    private final int segmentCount;
+    private final int[] leftIndex;
+    private final int[] rightIndex;
+    private final int[] order;
+    private final int[] position;
+
+    private SweepLineIntersectionDetector(PackedShape2D shape, int[] order, ValidatorContext context) {
+        pointCount = shape.size();
+        segmentCount = Math.max(pointCount - 1, 0);
+        xs = shape.xArray();
+        ys = shape.yArray();
+
+        // Orient every segment from its lexicographically smaller end, zero length segments get NIL
+        leftIndex = context == null ? new int[segmentCount] : context.ints(ValidatorContext.SEGMENT_LEFT, segmentCount);
+        rightIndex = context == null ? new int[segmentCount] : context.ints(ValidatorContext.SEGMENT_RIGHT, segmentCount);
+        for (int s = 0; s < segmentCount; s++) {
+            int cmp = compareVertices(s, s + 1);
+            if (cmp == 0) {
+                leftIndex[s] = NIL;
+                rightIndex[s] = NIL;
+            } else {
+                leftIndex[s] = cmp < 0 ? s : s + 1;
+                rightIndex[s] = cmp < 0 ? s + 1 : s;
+            }
+        }
+
+        this.order = order;
+        position = context == null ? new int[pointCount] : context.ints(ValidatorContext.ORDER_POSITION, pointCount);
+        for (int k = 0; k < pointCount; k++) {
+            position[order[k]] = k;
+        }
+    }
+
+    /**
+     * Method to find a pair of crossing edges in O(n log n) (Shamos-Hoey). The pair returned is not
+     * necessarily the one with the lowest indices.
+     *
+     * @param shape
+     * @return the crossing pair, or null if the edges do not cross each other
+     */
+    public static SegmentIntersection findFirstIntersection(Shape2D shape) {
+        PackedShape2D packed = PackedShape2D.of(shape);
+        if (packed.size() < 4) {
+            return null;  // Fewer than three edges can't cross
+        }
+        return findFirstIntersection(packed, VertexOrder.sort(packed.xArray(), packed.yArray(), packed.size()));
+    }
+
+    /**
+     * Same as findFirstIntersection(Shape2D) with the vertex order already computed by the caller
+     *
+     * @param shape
+     * @param order
+     * @return
+     */
+    static SegmentIntersection findFirstIntersection(PackedShape2D shape, int[] order) {
+        return findFirstIntersection(shape, order, null);
+    }
+
+    /**
+     * Same as findFirstIntersection(PackedShape2D, int[]) with the sweep working in the arrays of a context
+     *
+     * @param shape
+     * @param order
+     * @param context or null to allocate
+     * @return
+     */
+    static SegmentIntersection findFirstIntersection(PackedShape2D shape, int[] order, ValidatorContext context) {
+        if (shape.size() < 4) {
+            return null;
+        }
+        SweepLineIntersectionDetector detector = new SweepLineIntersectionDetector(shape, order, context);
+        return detector.new SlabSweep(0, detector.pointCount, NO_SEGMENTS, context).run(null);
+    }
+
+    /**
+     * Method to find a pair of crossing edges using every worker of the pool. The x range is cut into
+     * vertical slabs holding the same number of vertices, and each slab is swept on its own. A slab
+     * starts with the edges that cross into it from the left, so every crossing lies inside a slab
+     * that knows both of its edges. The first worker to find a crossing stops all the others.
+     *
+     * @param shape
+     * @param order
+     * @param pool
+     * @return the crossing pair, or null if the edges do not cross each other
+     */
+    static SegmentIntersection findFirstIntersectionParallel(PackedShape2D shape, int[] order, ForkJoinPool pool) {
+        if (shape.size() < 4) {
+            return null;
+        }
+        SweepLineIntersectionDetector detector = new SweepLineIntersectionDetector(shape, order, null);
+        int[] slabStart = detector.slabBoundaries(pool.getParallelism() * SLABS_PER_THREAD);
+        int slabs = slabStart.length - 1;
+        if (slabs <= 1) {
+            return detector.new SlabSweep(0, detector.pointCount, NO_SEGMENTS, null).run(null);
+        }
+        int[][] crossingIn = detector.segmentsCrossingInto(slabStart);
+
+        AtomicBoolean stop = new AtomicBoolean();
+        AtomicReference<SegmentIntersection> result = new AtomicReference<>();
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(slabs);
+        for (int k = 0; k < slabs; k++) {
+            SlabSweep sweep = detector.new SlabSweep(slabStart[k], slabStart[k + 1], crossingIn[k], null);
+            tasks.add(ForkJoinTask.adapt(() -> {
+                SegmentIntersection found = sweep.run(stop);
+                if (found != null && result.compareAndSet(null, found)) {
+                    stop.set(true);  // Let the other slabs give up
+                }
+            }));
+        }
+        pool.invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                invokeAll(tasks);
+            }
+        });
+        return result.get();
+    }
+
+    /**
+     * Method to list every pair of crossing edges. Each edge is compared with every edge active when it
+     * enters the sweep, so after the O(n log n) sort the cost is O(n k), k being the largest number of
+     * edges whose x ranges overlap at one x. That is well below n^2 for shapes spread out along x, but
+     * reaches it when most edges span the same x range, like long zigzags.
+     *
+     * @param shape
+     * @return crossing pairs sorted by first and then second segment index
+     */
+    public static List<SegmentIntersection> findAllIntersections(Shape2D shape) {
+        PackedShape2D packed = PackedShape2D.of(shape);
+        if (packed.size() < 4) {
+            return new ArrayList<>();
+        }
+        int[] order = VertexOrder.sort(packed.xArray(), packed.yArray(), packed.size());
+        return new SweepLineIntersectionDetector(packed, order, null).sweepForAll();
+    }
+
+    /**
+     * Start positions (in the sorted vertex order) of the slabs, plus the end position. A group of equal
+     * vertices is never split between two slabs.
+     *
+     * @param slabs
+     * @return
+     */
+    private int[] slabBoundaries(int slabs) {
+        int[] boundaries = new int[slabs + 1];
+        int count = 1;
+        for (int k = 1; k < slabs; k++) {
+            int start = (int) ((long) pointCount * k / slabs);
+            while (start < pointCount && start > 0 && compareVertices(order[start - 1], order[start]) == 0) {
+                start++;
+            }
+            if (start > boundaries[count - 1] && start < pointCount) {
+                boundaries[count++] = start;
+            }
+        }
+        boundaries[count++] = pointCount;
+        return Arrays.copyOf(boundaries, count);
+    }
+
+    /**
+     * For every slab, the segments that start in an earlier slab and are still active when it begins
+     *
+     * @param slabStart
+     * @return segment lists sorted by segment index
+     */
+    private int[][] segmentsCrossingInto(int[] slabStart) {
+        int slabs = slabStart.length - 1;
+        int[] counts = new int[slabs];
+        for (int s = 0; s < segmentCount; s++) {
+            if (leftIndex[s] != NIL) {
+                for (int k = firstSlabCrossedInto(slabStart, s); k <= lastSlab(slabStart, s); k++) {
+                    counts[k]++;
+                }
+            }
+        }
+
+        int[][] lists = new int[slabs][];
+        for (int k = 0; k < slabs; k++) {
+            lists[k] = new int[counts[k]];
+            counts[k] = 0;
+        }
+        for (int s = 0; s < segmentCount; s++) {
+            if (leftIndex[s] != NIL) {
+                for (int k = firstSlabCrossedInto(slabStart, s); k <= lastSlab(slabStart, s); k++) {
+                    lists[k][counts[k]++] = s;
+                }
+            }
+        }
+        return lists;
+    }
+
+    private int firstSlabCrossedInto(int[] slabStart, int segment) {
+        return slabOf(slabStart, position[leftIndex[segment]]) + 1;
+    }
+
+    private int lastSlab(int[] slabStart, int segment) {
+        return slabOf(slabStart, position[rightIndex[segment]]);
+    }
+
+    private static int slabOf(int[] slabStart, int position) {
+        int k = Arrays.binarySearch(slabStart, position);
+        return k >= 0 ? k : -k - 2;
+    }
+
+    /**
+     * Sweep keeping the edges that cross the sweep line in an unordered set, a new edge is compared with
+     * every one of them whose y range overlaps its own
+     *
+     * @return
+     */
+    private List<SegmentIntersection> sweepForAll() {
+        List<SegmentIntersection> result = new ArrayList<>();
+        int[] active = new int[segmentCount];
+        int[] positionInActive = new int[segmentCount];
+        int activeCount = 0;
+
+        int g = 0;
+        while (g < pointCount) {
+            int groupEnd = g + 1;
+            while (groupEnd < pointCount && compareVertices(order[g], order[groupEnd]) == 0) {
+                groupEnd++;
+            }
+
+            for (int k = g; k < groupEnd; k++) {
+                int v = order[k];
+                for (int s = v - 1; s <= v; s++) {
+                    if (s >= 0 && s < segmentCount && rightIndex[s] == v) {
+                        // Swap remove from the active set
+                        int slot = positionInActive[s];
+                        int last = active[--activeCount];
+                        active[slot] = last;
+                        positionInActive[last] = slot;
+                    }
+                }
+            }
+
+            for (int k = g; k < groupEnd; k++) {
+                int v = order[k];
+                for (int s = v - 1; s <= v; s++) {
+                    if (s >= 0 && s < segmentCount && leftIndex[s] == v) {
+                        double minY = Math.min(ys[s], ys[s + 1]);
+                        double maxY = Math.max(ys[s], ys[s + 1]);
+                        for (int a = 0; a < activeCount; a++) {
+                            int other = active[a];
+                            if (Math.max(ys[other], ys[other + 1]) < minY
+                                    || Math.min(ys[other], ys[other + 1]) > maxY) {
+                                continue;  // The y ranges don't overlap
+                            }
+                            SegmentIntersection found = check(s, other);
+                            if (found != null) {
+                                result.add(found);
+                            }
+                        }
+                        positionInActive[s] = activeCount;
+                        active[activeCount++] = s;
+                    }
+                }
+            }
+
+            g = groupEnd;
+        }
+
+        result.sort(Comparator.comparingInt(SegmentIntersection::firstSegment)
+                .thenComparingInt(SegmentIntersection::secondSegment));
+        return result;
+    }
+
+    /**
+     * Check two segments for a proper crossing
+     *
+     * @param a
+     * @param b
+     * @return
+     */
+    private SegmentIntersection check(int a, int b) {
+        if (a == NIL || b == NIL) {
+            return null;
+        }
+        if (TheShapeFixerUtils.linesIntersect(xs, ys, a, a + 1, b, b + 1)) {
+            return new SegmentIntersection(Math.min(a, b), Math.max(a, b));
+        }
+        return null;
+    }
+
+    private int compareVertices(int i, int j) {
+        return VertexOrder.compare(xs, ys, i, j);
+    }
+
+    /**
+     * Order of two segments on the sweep line. The left end of the segment that starts later lies within
+     * the x range of the other one, so it is tested against that segment.
+     *
+     * @param a
+     * @param b
+     * @return
+     */
+    private int compareSegments(int a, int b) {
+        if (a == b) {
+            return 0;
+        }
+        if (compareVertices(leftIndex[a], leftIndex[b]) >= 0) {
+            int side = sideOf(b, leftIndex[a]);
+            if (side == 0) {
+                side = sideOf(b, rightIndex[a]);
+            }
+            if (side != 0) {
+                return side;
+            }
+        } else {
+            int side = sideOf(a, leftIndex[b]);
+            if (side == 0) {
+                side = sideOf(a, rightIndex[b]);
+            }
+            if (side != 0) {
+                return -side;
+            }
+        }
+        return Integer.compare(a, b);  // Collinear segments keep a stable order
+    }
+
+    /**
+     * Side of the segment a vertex is on, positive when it is above (left of the segment direction)
+     *
+     * @param segment
+     * @param vertex
+     * @return
+     */
+    private int sideOf(int segment, int vertex) {
+        return GeometryPredicates.orientation(xs, ys, leftIndex[segment], rightIndex[segment], vertex);
+    }
+
+    /**
+     * Shamos-Hoey sweep over the vertex positions [from, to) of the sorted order. The status is a treap
+     * ordered from bottom to top whose nodes are local ids, so a segment is removed without searching:
+     * the segments crossing in take ids 0..c-1 and a segment starting at position k takes
+     * c + 2 * (k - from), plus one when it starts at its own first point.
+     */
+    private class SlabSweep {
+        private final int from;
+        private final int to;
+        private final int[] crossingIn;
+        private final int[] segmentOf;
+        private final int[] left;
+        private final int[] right;
+        private final int[] parent;
+        private int root = NIL;
+
+        /**
+         * @param from
+         * @param to
+         * @param crossingIn
+         * @param context arrays for the treap, null to allocate them (slabs swept in parallel must)
+         */
+        SlabSweep(int from, int to, int[] crossingIn, ValidatorContext context) {
+            this.from = from;
+            this.to = to;
+            this.crossingIn = crossingIn;
+            int nodes = crossingIn.length + 2 * (to - from);
+            if (context == null) {
+                segmentOf = new int[nodes];
+                left = new int[nodes];
+                right = new int[nodes];
+                parent = new int[nodes];
+            } else {
+                segmentOf = context.ints(ValidatorContext.TREAP_SEGMENT, nodes);
+                left = context.ints(ValidatorContext.TREAP_LEFT, nodes);
+                right = context.ints(ValidatorContext.TREAP_RIGHT, nodes);
+                parent = context.ints(ValidatorContext.TREAP_PARENT, nodes);
+            }
+        }
+
+        SegmentIntersection run(AtomicBoolean stop) {
+            // Segments that are already active, the insertion order does not matter
+            for (int c = 0; c < crossingIn.length; c++) {
+                SegmentIntersection found = insertAndCheck(c, crossingIn[c]);
+                if (found != null) {
+                    return found;
+                }
+            }
+
+            int g = from;
+            while (g < to) {
+                if (stop != null && stop.get()) {
+                    return null;  // Another slab found a crossing
+                }
+
+                // Group all vertices at the same location, removals go before insertions
+                int groupEnd = g + 1;
+                while (groupEnd < to && compareVertices(order[g], order[groupEnd]) == 0) {
+                    groupEnd++;
+                }
+
+                for (int k = g; k < groupEnd; k++) {
+                    int v = order[k];
+                    for (int s = v - 1; s <= v; s++) {
+                        if (s >= 0 && s < segmentCount && rightIndex[s] == v) {
+                            int node = nodeOf(s);
+                            int below = predecessor(node);
+                            int above = successor(node);
+                            remove(node);
+                            SegmentIntersection found = check(segmentAt(below), segmentAt(above));
+                            if (found != null) {
+                                return found;
+                            }
+                        }
+                    }
+                }
+
+                for (int k = g; k < groupEnd; k++) {
+                    int v = order[k];
+                    for (int s = v - 1; s <= v; s++) {
+                        if (s >= 0 && s < segmentCount && leftIndex[s] == v) {
+                            SegmentIntersection found = insertAndCheck(nodeOf(s), s);
+                            if (found != null) {
+                                return found;
+                            }
+                        }
+                    }
+                }
+
+                g = groupEnd;
+            }
+            return null;
+        }
+
+        private SegmentIntersection insertAndCheck(int node, int segment) {
+            segmentOf[node] = segment;
+            insert(node);
+            SegmentIntersection found = check(segment, segmentAt(predecessor(node)));
+            if (found == null) {
+                found = check(segment, segmentAt(successor(node)));
+            }
+            return found;
+        }
+
+        private int nodeOf(int segment) {
+            int start = position[leftIndex[segment]];
+            if (start < from) {
+                return Arrays.binarySearch(crossingIn, segment);
+            }
+            return crossingIn.length + 2 * (start - from) + (leftIndex[segment] == segment ? 1 : 0);
+        }
+
+        private int segmentAt(int node) {
+            return node == NIL ? NIL : segmentOf[node];
+        }
+
+        private void insert(int node) {
+            left[node] = NIL;
+            right[node] = NIL;
+            int p = NIL;
+            int current = root;
+            boolean goLeft = false;
+            while (current != NIL) {
+                p = current;
+                goLeft = compareSegments(segmentOf[node], segmentOf[current]) < 0;
+                current = goLeft ? left[current] : right[current];
+            }
+            parent[node] = p;
+            if (p == NIL) {
+                root = node;
+            } else if (goLeft) {
+                left[p] = node;
+            } else {
+                right[p] = node;
+            }
+
+            // Restore the heap order of the priorities
+            while (parent[node] != NIL && priority(node) > priority(parent[node])) {
+                rotateUp(node);
+            }
+        }
+
+        private void remove(int node) {
+            // Rotate the node down until it becomes a leaf, then cut it off
+            while (left[node] != NIL || right[node] != NIL) {
+                int child;
+                if (left[node] == NIL) {
+                    child = right[node];
+                } else if (right[node] == NIL) {
+                    child = left[node];
+                } else {
+                    child = priority(left[node]) > priority(right[node]) ? left[node] : right[node];
+                }
+                rotateUp(child);
+            }
+            int p = parent[node];
+            if (p == NIL) {
+                root = NIL;
+            } else if (left[p] == node) {
+                left[p] = NIL;
+            } else {
+                right[p] = NIL;
+            }
+            parent[node] = NIL;
+        }
+
+        private void rotateUp(int node) {
+            int p = parent[node];
+            int grandParent = parent[p];
+            if (left[p] == node) {
+                int moved = right[node];
+                left[p] = moved;
+                if (moved != NIL) {
+                    parent[moved] = p;
+                }
+                right[node] = p;
+            } else {
+                int moved = left[node];
+                right[p] = moved;
+                if (moved != NIL) {
+                    parent[moved] = p;
+                }
+                left[node] = p;
+            }
+            parent[p] = node;
+            parent[node] = grandParent;
+            if (grandParent == NIL) {
+                root = node;
+            } else if (left[grandParent] == p) {
+                left[grandParent] = node;
+            } else {
+                right[grandParent] = node;
+            }
+        }
+
+        private int predecessor(int node) {
+            if (left[node] != NIL) {
+                node = left[node];
+                while (right[node] != NIL) {
+                    node = right[node];
+                }
+                return node;
+            }
+            int p = parent[node];
+            while (p != NIL && left[p] == node) {
+                node = p;
+                p = parent[p];
+            }
+            return p;
+        }
+
+        private int successor(int node) {
+            if (right[node] != NIL) {
+                node = right[node];
+                while (left[node] != NIL) {
+                    node = left[node];
+                }
+                return node;
+            }
+            int p = parent[node];
+            while (p != NIL && right[p] == node) {
+                node = p;
+                p = parent[p];
+            }
+            return p;
+        }
+    }
+
+    private static int priority(int node) {
+        // Fixed pseudo random priority per node
+        int h = node * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
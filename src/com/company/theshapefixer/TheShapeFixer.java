@@ -1,9 +1,69 @@
 package com.company.theshapefixer;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.*;
-
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.LongConsumer;
+
+/**
+ * Validation and repair of 2D shapes. A fixer keeps no state between calls apart from statistics, so one
+ * instance can be shared by any number of threads, which is what the batch methods do.
+ */
 public class TheShapeFixer {
 
+    // Number of chunks per worker thread, so uneven shapes still balance across the pool
+    private static final int CHUNKS_PER_THREAD = 8;
+
+    private static final ValidationOutcome VALID_FULL = new ValidationOutcome(true, ValidationTier.FULL);
+    private static final ValidationOutcome INVALID_FULL = new ValidationOutcome(false, ValidationTier.FULL);
+
+    private static final int[] NO_TRIANGLES = new int[0];
+
+    private static final PredicateKernel KERNEL = PredicateKernel.preferred();
+
+    // Whole repairs tried by repairUntilValid before it reports what is left
+    private static final int MAX_REPAIR_PASSES = 8;
+
+    private final IntersectionStrategy intersectionStrategy;
+
+    // Timings and counts are only taken when set
+    private final FixerListener listener;
+
+    // Shapes decided per validation tier
+    private final LongAdder[] tierCounts = new LongAdder[ValidationTier.values().length];
+
+    public TheShapeFixer() {
+        this(IntersectionStrategy.SWEEP_LINE);
+    }
+
+    public TheShapeFixer(IntersectionStrategy intersectionStrategy) {
+        this(intersectionStrategy, null);
+    }
+
+    /**
+     * @param intersectionStrategy
+     * @param listener receives the timings and counts of every phase, or null
+     */
+    public TheShapeFixer(IntersectionStrategy intersectionStrategy, FixerListener listener) {
+        this.intersectionStrategy = intersectionStrategy;
+        this.listener = listener;
+        for (int i = 0; i < tierCounts.length; i++) {
+            tierCounts[i] = new LongAdder();
+        }
+    }
+
+    public IntersectionStrategy getIntersectionStrategy() {
+        return intersectionStrategy;
+    }
+
+    public FixerListener getListener() {
+        return listener;
+    }
+
     /**
      * Checking if a shape is valid
      *
@@ -11,96 +71,436 @@ public class TheShapeFixer {
      * @return
      */
     public boolean isValid(Shape2D shape) {
-        List<Point2D> points = shape.getPoints();
-        int n = points.size();
+        return isValid(shape, ExecutionMode.SEQUENTIAL);
+    }
+
+    /**
+     * Checking if a shape is valid, in parallel mode the sorting, the sweep line and the point on segment
+     * check are split across the common fork-join pool. The brute force strategy always runs sequentially.
+     *
+     * @param shape
+     * @param mode
+     * @return
+     */
+    public boolean isValid(Shape2D shape, ExecutionMode mode) {
+        return validateWithTier(shape, mode).valid();
+    }
+
+    /**
+     * Checking if a shape is valid, and which tier decided it
+     *
+     * @param shape
+     * @return
+     */
+    public ValidationOutcome validateWithTier(Shape2D shape) {
+        return validateWithTier(shape, ExecutionMode.SEQUENTIAL);
+    }
+
+    /**
+     * Checking if a shape is valid, and which tier decided it. Integer shapes are checked with long
+     * arithmetic on their own coordinates, sequentially. Otherwise linear time tiers (tiny, convex and
+     * rectangular shapes) go first, the full checks only run when they can not tell.
+     *
+     * @param shape
+     * @param mode
+     * @return
+     */
+    public ValidationOutcome validateWithTier(Shape2D shape, ExecutionMode mode) {
+        ValidatorContext context = ValidatorContext.acquire();
+        try {
+            return validate(shape, mode, context);
+        } finally {
+            context.release();
+        }
+    }
+
+    /**
+     * Method to validate a shape and triangulate it in the same call. The triangulation works on the
+     * coordinates the validation packed and sweeps in the vertex order it sorted, so with the sweep line
+     * strategy the shape is not sorted twice; convex shapes are cut into a fan without sorting at all.
+     * Repaired shapes can be passed as they are, they are checked again first.
+     *
+     * @param shape
+     * @return the shape with its triangles as indices of its points, three per triangle and
+     * counter-clockwise, none when the shape is not valid
+     */
+    public TriangulatedShape triangulate(Shape2D shape) {
+        ValidatorContext context = ValidatorContext.acquire();
+        try {
+            ValidationOutcome outcome = validate(shape, ExecutionMode.SEQUENTIAL, context);
+            if (!outcome.valid()) {
+                return new TriangulatedShape(shape, false, NO_TRIANGLES);
+            }
+            long start = listener == null ? 0 : System.nanoTime();
+            // The form validate packed, the context hands it back without copying; only integer shapes the
+            // integer tier decided are packed here for the first time
+            PackedShape2D packed = context.pack(shape);
+            int n = packed.size();
+            int[] triangles = outcome.tier() == ValidationTier.CONVEX
+                    ? MonotoneTriangulator.fan(packed)
+                    : MonotoneTriangulator.triangulate(packed,
+                    VertexOrder.sorted(packed.xArray(), packed.yArray(), n, context));
+            phaseCompleted(FixerPhase.TRIANGULATION, start, n, -1);
+            return new TriangulatedShape(shape, true, triangles);
+        } finally {
+            context.release();
+        }
+    }
+
+    /**
+     * The validation tiers in order, reported to the listener
+     *
+     * @param shape
+     * @param mode
+     * @param context
+     * @return
+     */
+    private ValidationOutcome validate(Shape2D shape, ExecutionMode mode, ValidatorContext context) {
+        long start = listener == null ? 0 : System.nanoTime();
+        FixerPhase failedPhase = null;
+        ValidationOutcome outcome = shape instanceof IntShape2D ints ? IntShapeValidator.check(ints, context) : null;
+        if (outcome == null) {
+            PackedShape2D packed = context.pack(shape);
+            outcome = ValidationPrefilter.check(packed, context);
+            if (outcome == null) {
+                failedPhase = findFailedPhase(packed, mode, context);
+                outcome = failedPhase == null ? VALID_FULL : INVALID_FULL;
+            }
+        }
+        tierCounts[outcome.tier().ordinal()].increment();
+        if (listener != null) {
+            listener.validationCompleted(outcome, failedPhase, System.nanoTime() - start, shape.size());
+        }
+        return outcome;
+    }
+
+    /**
+     * Method to find every reason a shape is not valid, instead of stopping at the first one: the shape
+     * is open, points are repeated or close nested contours, edges cross, or vertices lie on edges.
+     * The report is valid exactly when isValid returns true. It also records the contours of the shape and
+     * the points lying on their segments, which is all repair(ValidationReport) needs.
+     *
+     * @param shape
+     * @return
+     */
+    public ValidationReport validateDetailed(Shape2D shape) {
+        PackedShape2D packed = PackedShape2D.of(shape);
+        return ValidationDiagnostics.inspect(packed, findIntersections(packed));
+    }
+
+    /**
+     * Number of shapes decided by a tier since this fixer was created
+     *
+     * @param tier
+     * @return
+     */
+    public long getTierCount(ValidationTier tier) {
+        return tierCounts[tier.ordinal()].sum();
+    }
+
+    /**
+     * The full checks, in order
+     *
+     * @param packed
+     * @param mode
+     * @param context scratch arrays for the sequential checks
+     * @return the phase that found the shape invalid, null if it is valid
+     */
+    private FixerPhase findFailedPhase(PackedShape2D packed, ExecutionMode mode, ValidatorContext context) {
+        boolean parallel = mode == ExecutionMode.PARALLEL;
+        int n = packed.size();
+        long start = listener == null ? 0 : System.nanoTime();
 
         // Check if the shape is closed (first point coincides with the last)
-        if (n == 0 || !points.get(0).equals(points.get(n - 1))) {
-            return false;
+        if (n == 0 || !packed.samePoint(0, n - 1)) {
+            return FixerPhase.CLOSURE;
         }
 
         // Check for uniqueness of all points (except the first and last)
-        Set<Point2D> seenPoints = new HashSet<>();
-        for (int i = 0; i < n - 1; i++) { // We don't check the last point
-            if (!seenPoints.add(points.get(i))) {
-                // If the point is already in the set, the shape is invalid
-                return false;
-            }
+        int repeated = findRepeatedPoint(packed);
+        start = phaseCompleted(FixerPhase.UNIQUENESS, start, n, repeated < 0 ? n - 1 : repeated + 1);
+        if (repeated >= 0) {
+            return FixerPhase.UNIQUENESS;
         }
 
-        // Check for self-intersection of edges
-        for (int i = 0; i < n - 1; i++) {
-            for (int j = i + 2; j < n - 1; j++) {
-                if (linesIntersect(points.get(i), points.get(i + 1), points.get(j), points.get(j + 1))) {
-                    return false;
-                }
+        if (intersectionStrategy == IntersectionStrategy.SWEEP_LINE) {
+            // The sweep compares every pair of edges, adjacent ones included, so it covers both
+            // the self-intersection and the internal edges check in one pass
+            int[] order = parallel
+                    ? VertexOrder.sortParallel(packed.xArray(), packed.yArray(), n, ForkJoinPool.commonPool())
+                    : VertexOrder.sort(packed.xArray(), packed.yArray(), n, context);
+            SegmentIntersection intersection = parallel
+                    ? SweepLineIntersectionDetector.findFirstIntersectionParallel(packed, order, ForkJoinPool.commonPool())
+                    : SweepLineIntersectionDetector.findFirstIntersection(packed, order, context);
+            start = phaseCompleted(FixerPhase.INTERSECTION, start, n, -1);
+            if (intersection != null) {
+                return FixerPhase.INTERSECTION;
+            }
+        } else {
+            // Check for self-intersection of edges
+            int crossing = findCrossingEdges(packed, 2);
+            start = phaseCompleted(FixerPhase.INTERSECTION, start, n, pairsScreened(n, 2, crossing));
+            if (crossing >= 0) {
+                return FixerPhase.INTERSECTION;
             }
+
+            // Check for internal edges or connection of two shapes
+            crossing = findInternalEdges(packed);
+            start = phaseCompleted(FixerPhase.INTERNAL_EDGES, start, n, pairsScreened(n, 1, crossing));
+            if (crossing >= 0) {
+                return FixerPhase.INTERNAL_EDGES;
+            }
+        }
+
+        boolean pointOnSegment = parallel
+                ? SegmentPassingThroughPoint.hasSegmentPassingThroughPoint(packed, mode)
+                : SegmentPassingThroughPoint.hasSegmentPassingThroughPoint(packed, context);
+        phaseCompleted(FixerPhase.SEGMENT_POINT, start, n, -1);
+        if (pointOnSegment) {
+            return FixerPhase.SEGMENT_POINT;
         }
 
-        // Check for internal edges or connection of two shapes
-        if (hasInternalEdges(points)) {
-            return false;
+        return null;
+    }
+
+    /**
+     * Method to report a phase of a shape with n points to the listener
+     *
+     * @param phase
+     * @param start time the phase started at
+     * @param n
+     * @param comparisons
+     * @return time the phase ended at, the start of the next one
+     */
+    private long phaseCompleted(FixerPhase phase, long start, int n, long comparisons) {
+        if (listener == null) {
+            return 0;
         }
+        long end = System.nanoTime();
+        listener.phaseCompleted(phase, end - start, n, Math.max(n - 1, 0), comparisons);
+        return end;
+    }
 
-        if (SegmentPassingThroughPoint.hasSegmentPassingThroughPoint(points)) {
-            return false;
+    /**
+     * Method to report a phase that worked on a list of contours to the listener
+     *
+     * @param phase
+     * @param start time the phase started at
+     * @param contours
+     * @return time the phase ended at, the start of the next one
+     */
+    private long phaseCompleted(FixerPhase phase, long start, List<Shape2D> contours) {
+        if (listener == null) {
+            return 0;
+        }
+        long end = System.nanoTime();
+        int vertices = 0;
+        int edges = 0;
+        for (Shape2D contour : contours) {
+            vertices += contour.size();
+            edges += Math.max(contour.size() - 1, 0);
         }
+        listener.phaseCompleted(phase, end - start, vertices, edges, -1);
+        return end;
+    }
 
-        return true;
+    /**
+     * Number of edge pairs the kernel screens when the brute force search with the given gap stops after
+     * edge last, or runs through all edges when last is negative
+     */
+    private static long pairsScreened(int n, int gap, int last) {
+        long later = Math.max(n - 1 - gap, 0);  // Edges after the first one, the gap left out
+        long searched = Math.min(last < 0 ? n - 1 : last + 1, later);
+        return searched * later - searched * (searched - 1) / 2;
     }
 
+    /**
+     * Method to validate many shapes in parallel on the common fork-join pool
+     *
+     * @param shapes
+     * @return validity of every shape, in input order
+     */
+    public BatchResult<Boolean> validateAll(Collection<? extends Shape2D> shapes) {
+        return validateAll(shapes, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Method to validate many shapes in parallel on the given pool
+     *
+     * @param shapes
+     * @param pool
+     * @return validity of every shape, in input order
+     */
+    public BatchResult<Boolean> validateAll(Collection<? extends Shape2D> shapes, ForkJoinPool pool) {
+        return runBatch(shapes, pool, this::isValid);
+    }
+
+    /**
+     * Method to repair many shapes in parallel on the common fork-join pool
+     *
+     * @param shapes
+     * @return repaired shapes, in input order
+     */
+    public BatchResult<Shape2D> repairAll(Collection<? extends Shape2D> shapes) {
+        return repairAll(shapes, ForkJoinPool.commonPool());
+    }
 
     /**
-     * Method for checking line intersection
+     * Method to repair many shapes in parallel on the given pool
      *
-     * @param p1
-     * @param p2
-     * @param p3
-     * @param p4
+     * @param shapes
+     * @param pool
+     * @return repaired shapes, in input order
+     */
+    public BatchResult<Shape2D> repairAll(Collection<? extends Shape2D> shapes, ForkJoinPool pool) {
+        return runBatch(shapes, pool, this::repair);
+    }
+
+    /**
+     * Method to validate the shapes of a newline-delimited coordinate stream one line at a time, see
+     * {@link ShapeStreamReader} for the format. Only the current shape is kept in memory.
+     *
+     * @param input
+     * @param invalidShapes receives the zero-based line index of every invalid shape
+     * @return number of shapes read
+     * @throws IOException
+     */
+    public long validateStream(InputStream input, LongConsumer invalidShapes) throws IOException {
+        long[] index = {0};
+        return new ShapeStreamReader().read(input, shape -> {
+            if (!isValid(shape)) {
+                invalidShapes.accept(index[0]);
+            }
+            index[0]++;
+        });
+    }
+
+    /**
+     * Method to repair the shapes of a newline-delimited coordinate stream one line at a time. The repaired
+     * shapes have their own points, they can be kept after the call.
+     *
+     * @param input
+     * @param repairedShapes
+     * @return number of shapes read
+     * @throws IOException
+     */
+    public long repairStream(InputStream input, Consumer<? super Shape2D> repairedShapes) throws IOException {
+        return new ShapeStreamReader().read(input, shape -> repairedShapes.accept(repair(shape)));
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> BatchResult<T> runBatch(Collection<? extends Shape2D> shapes, ForkJoinPool pool,
+                                        Function<Shape2D, T> operation) {
+        Shape2D[] input = shapes.toArray(new Shape2D[0]);
+        Object[] results = new Object[input.length];
+        long vertexCount = 0;
+        for (Shape2D shape : input) {
+            vertexCount += shape.size();
+        }
+
+        long start = System.nanoTime();
+        if (input.length > 0) {
+            int grain = Math.max(1, input.length / (pool.getParallelism() * CHUNKS_PER_THREAD));
+            pool.invoke(new BatchTask<>(input, results, operation, 0, input.length, grain));
+        }
+        long elapsed = System.nanoTime() - start;
+
+        return new BatchResult<>((List<T>) Collections.unmodifiableList(Arrays.asList(results)), elapsed, vertexCount);
+    }
+
+    /**
+     * Method to find a point other than the closing one that occurs twice
+     *
+     * @param shape
+     * @return index of the second occurrence, or -1
+     */
+    private int findRepeatedPoint(PackedShape2D shape) {
+        double[] xs = shape.xArray();
+        double[] ys = shape.yArray();
+        int last = shape.size() - 1;
+        PointCounter counter = PointCounter.forCurrentThread(last);
+        for (int i = 0; i < last; i++) {
+            if (counter.add(xs[i], ys[i]) > 1) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Method to list every pair of crossing edges with the configured strategy
+     *
+     * @param shape
      * @return
      */
-    private boolean linesIntersect(Point2D p1, Point2D p2, Point2D p3, Point2D p4) {
-        double d1 = direction(p3, p4, p1);
-        double d2 = direction(p3, p4, p2);
-        double d3 = direction(p1, p2, p3);
-        double d4 = direction(p1, p2, p4);
+    public List<SegmentIntersection> findIntersections(Shape2D shape) {
+        if (intersectionStrategy == IntersectionStrategy.SWEEP_LINE) {
+            return SweepLineIntersectionDetector.findAllIntersections(shape);
+        }
 
-        return (((d1 > 0 && d2 < 0) || (d1 < 0 && d2 > 0))
-                && ((d3 > 0 && d4 < 0) || (d3 < 0 && d4 > 0)));
+        PackedShape2D packed = PackedShape2D.of(shape);
+        List<SegmentIntersection> intersections = new ArrayList<>();
+        for (int i = 0; i < packed.size() - 1; i++) {
+            for (int j = i + 1; j < packed.size() - 1; j++) {
+                if (linesIntersect(packed, i, j)) {
+                    intersections.add(new SegmentIntersection(i, j));
+                }
+            }
+        }
+        return intersections;
     }
 
     /**
-     * Method for calculating the direction of a vector (determining which side a point is on)
+     * Method for checking intersection of the segments starting at points i and j
      *
-     * @param pi
-     * @param pj
-     * @param pk
+     * @param shape
+     * @param i
+     * @param j
      * @return
      */
-    private double direction(Point2D pi, Point2D pj, Point2D pk) {
-        return (pj.x() - pi.x()) * (pk.y() - pi.y()) - (pk.x() - pi.x()) * (pj.y() - pi.y());
+    private boolean linesIntersect(PackedShape2D shape, int i, int j) {
+        return TheShapeFixerUtils.linesIntersect(shape.xArray(), shape.yArray(), i, i + 1, j, j + 1);
     }
 
     /**
      * Check for internal edges or connected shapes
      *
-     * @param points
-     * @return
+     * @param shape
+     * @return the first segment crossing another one, or -1
      */
-    private boolean hasInternalEdges(List<Point2D> points) {
-        int n = points.size();
+    private int findInternalEdges(PackedShape2D shape) {
+        // If an internal edge is found that intersects an external contour
+        return findCrossingEdges(shape, 1);
+    }
 
-        // Using DFS (Depth-First Search)
+    /**
+     * Method to find a segment crossing one starting at least gap points after it. The kernel finds the
+     * later segments whose ends lie on opposite sides of the segment, only those need the other two
+     * orientations.
+     *
+     * @param shape
+     * @param gap
+     * @return the segment, or -1
+     */
+    private int findCrossingEdges(PackedShape2D shape, int gap) {
+        int n = shape.size();
+        double[] xs = shape.xArray();
+        double[] ys = shape.yArray();
         for (int i = 0; i < n - 1; i++) {
-            for (int j = i + 1; j < n - 1; j++) {
-                if (linesIntersect(points.get(i), points.get(i + 1), points.get(j), points.get(j + 1))) {
-                    // If an internal edge is found that intersects an external contour
-                    return true;
+            for (int j = nextSideChange(shape, i, i + gap); j >= 0; j = nextSideChange(shape, i, j + 1)) {
+                if (GeometryPredicates.orientation(xs, ys, j, j + 1, i)
+                        * GeometryPredicates.orientation(xs, ys, j, j + 1, i + 1) < 0) {
+                    return i;
                 }
             }
         }
+        return -1;
+    }
 
-        return false;
+    private static int nextSideChange(PackedShape2D shape, int i, int from) {
+        double[] xs = shape.xArray();
+        double[] ys = shape.yArray();
+        return KERNEL.nextSideChange(xs[i], ys[i], xs[i + 1], ys[i + 1], xs, ys, from, shape.size());
     }
 
     /**
@@ -110,160 +510,180 @@ public class TheShapeFixer {
      * @return
      */
     public Shape2D repair(Shape2D shape) {
-        List<Shape2D> closedContours = findOpenContours(shape);
+        return repair(shape, false);
+    }
 
-        for (int i = 0; i < closedContours.size(); i++) {
-            Shape2D contour = closedContours.get(i);
-            List<Point2D> points = contour.getPoints();
-            if (SegmentPassingThroughPoint.hasSegmentPassingThroughPoint(points)) {
-                List<Point2D> repairPoints = SegmentPassingThroughPoint.repairShape(points);
-                closedContours.set(i, new Shape2D(repairPoints));
+    /**
+     * Method to repair a shape in one call: the points lying on segments are removed until none is left,
+     * and the whole repair runs again while the result is still invalid and keeps changing
+     *
+     * @param shape
+     * @return the repaired shape, with the violations left in it when it could not be made valid
+     */
+    public RepairResult repairUntilValid(Shape2D shape) {
+        PackedShape2D current = PackedShape2D.of(shape);
+        for (int pass = 1; ; pass++) {
+            PackedShape2D repaired = PackedShape2D.of(repair(current, true));
+            if (isValid(repaired)) {
+                return new RepairResult(repaired, pass, new ValidationReport(repaired, List.of()));
             }
+            if (pass == MAX_REPAIR_PASSES || sameCoordinates(repaired, current)) {
+                return new RepairResult(repaired, pass, validateDetailed(repaired));
+            }
+            current = repaired;
         }
+    }
 
-        Shape2D mergeCommonLines;
-        if (closedContours.size() > 1) {
-            mergeCommonLines = mergeShapesWithCommonLine(closedContours.get(1), closedContours.get(0));
-            return mergeCommonLines;
-        }
-
-        // Join all closed contours into one list
-        List<Point2D> result = new ArrayList<>();
-        for (Shape2D contour : closedContours) {
-            result.addAll(contour.getPoints());
-        }
-
-        return new Shape2D(result);
-
+    private static boolean sameCoordinates(PackedShape2D shape1, PackedShape2D shape2) {
+        int n = shape1.size();
+        return n == shape2.size()
+                && Arrays.equals(shape1.xArray(), 0, n, shape2.xArray(), 0, n)
+                && Arrays.equals(shape1.yArray(), 0, n, shape2.yArray(), 0, n);
     }
 
     /**
-     * Method to find contours with nested contour handling using recursion
+     * Method to repair a shape, removing the points that lie on segments once or until none is left
      *
      * @param shape
+     * @param converge
      * @return
      */
-    public List<Shape2D> findOpenContours(Shape2D shape) {
-        List<Point2D> points = shape.getPoints();  // Get the points from the shape
-        List<Point2D> startAndEndPoints = findStartAndEndPoints(shape);  // Find duplicate points
-        Set<Point2D> startAndEndPointSet = new HashSet<>(startAndEndPoints);  // Use a set for quick lookups
-        List<Shape2D> contours = new ArrayList<>();
-        boolean[] visited = new boolean[points.size()];  // Track visited points to avoid reprocessing
+    private Shape2D repair(Shape2D shape, boolean converge) {
+        long start = listener == null ? 0 : System.nanoTime();
+        List<Shape2D> closedContours = findOpenContours(shape);
+        int contours = closedContours.size();
+        long phaseStart = phaseCompleted(FixerPhase.CONTOUR_FINDING, start, shape.size(), -1);
 
-        // Start processing the main outer contour
-        processContour(points, contours, startAndEndPointSet, visited, 0, null);
+        // One search per contour finds and removes the points lying on segments, a contour without any
+        // comes back as it is
+        for (int i = 0; i < closedContours.size(); i++) {
+            Shape2D contour = closedContours.get(i);
+            closedContours.set(i, converge
+                    ? SegmentPassingThroughPoint.repairShapeConverged(contour)
+                    : SegmentPassingThroughPoint.repairShapeSinglePass(contour));
+        }
+        phaseStart = phaseCompleted(FixerPhase.SEGMENT_POINT, phaseStart, closedContours);
 
-        return contours;  // Return all found contours
+        Shape2D repaired = notViewOf(shape, mergeContours(closedContours));
+        phaseCompleted(FixerPhase.MERGE, phaseStart, closedContours);
+        if (listener != null) {
+            listener.repairCompleted(System.nanoTime() - start, shape.size(), contours, repaired.size());
+        }
+        return repaired;
     }
 
     /**
-     * Recursive method to process contours
+     * Method to copy a repaired shape that is still a view of the input, as a contour the search left as it
+     * was can be, since the caller may change the input later
      *
-     * @param points
-     * @param contours
-     * @param startAndEndPointSet
-     * @param visited
-     * @param startIndex
-     * @param openingPoint
+     * @param shape
+     * @param repaired
      * @return
      */
-    private int processContour(List<Point2D> points, List<Shape2D> contours, Set<Point2D> startAndEndPointSet,
-                               boolean[] visited, int startIndex, Point2D openingPoint) {
-        List<Point2D> currentContour = new ArrayList<>();
-
-        for (int i = startIndex; i < points.size(); i++) {
-            Point2D point = points.get(i);
+    private static Shape2D notViewOf(Shape2D shape, Shape2D repaired) {
+        if (shape instanceof PackedShape2D input && repaired instanceof PackedShape2D result
+                && result.xArray() == input.xArray()) {
+            return new PackedShape2D(Arrays.copyOf(result.xArray(), result.size()),
+                    Arrays.copyOf(result.yArray(), result.size()));
+        }
+        return repaired;
+    }
 
-            // Skip if already visited
-            if (visited[i]) {
-                continue;
+    /**
+     * Method to put the repaired contours of a shape back together
+     *
+     * @param closedContours
+     * @return
+     */
+    private Shape2D mergeContours(List<Shape2D> closedContours) {
+        Shape2D mergeCommonLines;
+        if (closedContours.size() > 2) {
+            // Merge all of them at once when together they make up one region
+            List<Shape2D> merged = ContourMerger.merge(closedContours);
+            if (merged.size() == 1) {
+                return merged.get(0);
             }
+        }
+        if (closedContours.size() > 1) {
+            mergeCommonLines = mergeShapesWithCommonLine(closedContours.get(1), closedContours.get(0));
+            return mergeCommonLines;
+        }
 
-            // Check if the point is a duplicate and opens/closes a contour
-            if (startAndEndPointSet.contains(point)) {
-                if (openingPoint == null) {
-                    // This is the opening point of a new contour, so we add it and continue
-                    openingPoint = point;
-                    currentContour.add(point);  // Add the opening point
-                    visited[i] = true;
-                } else if (point.equals(openingPoint)) {
-                    // We've closed the current contour
-                    currentContour.add(point);  // Add the closing point
-                    contours.add(new Shape2D(currentContour));
-                    return i;  // Return the index where the contour closed
-                } else {
-                    // This is a nested contour, first add the point to the current contour
-                    currentContour.add(point);
-                    visited[i] = true;
-
-                    // Find the starting index of the nested contour
-                    int nestedContourStartIndex = findPointIndex(points, point, i + 1);
+        if (closedContours.size() == 1) {
+            return closedContours.get(0);  // May still be a view of the input, repair copies it then
+        }
 
-                    // Process the nested contour recursively
-                    int endIndex = processContour(
-                            points, contours, startAndEndPointSet, visited, nestedContourStartIndex, null);
-                    //i = endIndex;  // Skip the points already processed in the nested contour
-                }
-            } else if (openingPoint != null) {
-                // Only add points to the contour once the contour is opened
-                currentContour.add(point);
-                visited[i] = true;
+        // Join all closed contours into one shape
+        PackedShape2D.Builder result = new PackedShape2D.Builder();
+        for (Shape2D contour : closedContours) {
+            for (int i = 0; i < contour.size(); i++) {
+                result.add(contour, i);
             }
         }
 
-        // If we reach the end of the points without closing the contour
-        if (openingPoint != null) {
-            currentContour.add(openingPoint);  // Close the contour manually
-            contours.add(new Shape2D(currentContour));
-        }
+        return result.build();
 
-        return points.size();  // Return the final index if we processed all points
     }
 
     /**
-     * Method to find the index of the next occurrence of a point
+     * Method to repair a shape checked with validateDetailed. The report holds the contours of the shape and
+     * the points lying on their segments, so these points are removed and the contours merged without
+     * searching the shape again. The result is the same as repair(report.shape()).
      *
-     * @param points
-     * @param targetPoint
-     * @param startIndex
+     * @param report
      * @return
      */
-    private int findPointIndex(List<Point2D> points, Point2D targetPoint, int startIndex) {
-        for (int i = startIndex; i < points.size(); i++) {
-            if (points.get(i).equals(targetPoint)) {
-                return i;  // Return the index of the next occurrence of the target point
-            }
+    public Shape2D repair(ValidationReport report) {
+        long start = listener == null ? 0 : System.nanoTime();
+        List<Shape2D> contours = report.repairPlan().repairedContours();
+        Shape2D repaired = notViewOf(report.shape(), mergeContours(contours));
+        if (listener != null) {
+            listener.repairCompleted(System.nanoTime() - start, report.shape().size(), contours.size(),
+                    repaired.size());
         }
-        return points.size();  // If not found, return the end of the list
+        return repaired;
     }
 
     /**
-     * Existing method to find duplicate points
+     * Method to find contours with nested contour handling, in one pass without recursion. Contours of a
+     * packed shape that are runs of its points share its arrays.
+     *
+     * @param shape
+     * @return
+     */
+    public List<Shape2D> findOpenContours(Shape2D shape) {
+        ValidatorContext context = ValidatorContext.acquire();
+        try {
+            return ContourSplitter.split(context.pack(shape), context);
+        } finally {
+            context.release();
+        }
+    }
+
+    /**
+     * Existing method to find duplicate points, each repeated point is reported once, in the order of
+     * its second occurrence
      *
      * @param shape
      * @return
      */
     public List<Point2D> findStartAndEndPoints(Shape2D shape) {
-        List<Point2D> points = shape.getPoints();
-        Map<Point2D, Integer> pointCount = new HashMap<>();
+        PackedShape2D packed = PackedShape2D.of(shape);
+        double[] xs = packed.xArray();
+        double[] ys = packed.yArray();
+        int n = packed.size();
+        PointCounter counter = PointCounter.forCurrentThread(n);
         List<Point2D> duplicates = new ArrayList<>();
 
-        // Count occurrences of each point
-        for (Point2D point : points) {
-            pointCount.put(point, pointCount.getOrDefault(point, 0) + 1);
-        }
-
-        // Find points that occur more than once
-        for (Map.Entry<Point2D, Integer> entry : pointCount.entrySet()) {
-            if (entry.getValue() > 1) {
-                duplicates.add(entry.getKey());
+        for (int i = 0; i < n; i++) {
+            if (counter.add(xs[i], ys[i]) == 2) {
+                duplicates.add(new Point2D(xs[i], ys[i]));
             }
         }
 
         return duplicates;
     }
 
-
     private List<Shape2D> getShape2DS(Shape2D shape) {
         List<Point2D> points = shape.getPoints();
         List<Shape2D> closedContours = new ArrayList<>(); // To store all closed contours
@@ -300,6 +720,17 @@ public class TheShapeFixer {
         return closedContours;
     }
 
+    /**
+     * Method to merge any number of shapes that touch along their edges into the boundaries of their
+     * union, outer boundaries counter-clockwise and holes clockwise
+     *
+     * @param shapes closed shapes that do not overlap in area
+     * @return closed boundaries
+     */
+    public List<Shape2D> mergeShapes(Collection<? extends Shape2D> shapes) {
+        return ContourMerger.merge(shapes);
+    }
+
     /**
      * Method to detect matching lines and merge shapes
      *
@@ -308,33 +739,35 @@ public class TheShapeFixer {
      * @return
      */
     public Shape2D mergeShapesWithCommonLine(Shape2D shape1, Shape2D shape2) {
-        List<Point2D> points1 = shape1.getPoints();
-        List<Point2D> points2 = shape2.getPoints();
+        PackedShape2D points1 = PackedShape2D.of(shape1);
+        PackedShape2D points2 = PackedShape2D.of(shape2);
 
-        // Finding a matching line
-        List<Point2D> commonLine = findCommonLine(points1, points2);
+        // Finding a matching line as {x, yStart, yEnd}
+        double[] commonLine = findCommonLine(points1, points2);
 
         // Find a matching vertical line
         if (commonLine != null) {
-            List<Point2D> newPoints = new ArrayList<>();
+            double lineX = commonLine[0];
+            double lineStartY = commonLine[1];
+            double lineEndY = commonLine[2];
+            PackedShape2D.Builder newPoints = new PackedShape2D.Builder(points1.size() + points2.size());
 
             //Go through the first figure to the point before the matching line
             int i = 0;
-            while (i < points1.size() && !points1.get(i).equals(commonLine.get(0))) {
-                newPoints.add(points1.get(i));
+            while (i < points1.size() && !isSamePoint(points1, i, lineX, lineStartY)) {
+                newPoints.add(points1, i);
                 i++;
             }
 
             // go through the points of the second figure until we find a point that falls on the line
             int j = 0;
             while (j < points2.size()) {
-                Point2D currentPoint = points2.get(j);
-                if (!isPointOnLine(currentPoint, commonLine.get(0), commonLine.get(1))) {
-                    newPoints.add(currentPoint);
+                if (!isPointOnLine(points2, j, lineX, lineStartY, lineEndY)) {
+                    newPoints.add(points2, j);
                 } else {
-                    newPoints.add(currentPoint);
+                    newPoints.add(points2, j);
                     // If the point falls on the line and is not the beginning of the line, we complete the cycle
-                    if (!currentPoint.equals(commonLine.get(0))) {
+                    if (!isSamePoint(points2, j, lineX, lineStartY)) {
                         break;
                     }
                 }
@@ -342,16 +775,16 @@ public class TheShapeFixer {
             }
 
             // As soon as the point of the second figure hits the line, add the combined line
-            newPoints.add(commonLine.get(1));
+            newPoints.add(lineX, lineEndY);
 
             // Continue adding the remaining points of the first figure after the intersection
             i += 2;
             while (i < points1.size()) {
-                newPoints.add(points1.get(i));
+                newPoints.add(points1, i);
                 i++;
             }
 
-            return new Shape2D(newPoints);
+            return newPoints.build();
         }
 
         // If the common line is not found, return the first figure
@@ -363,24 +796,22 @@ public class TheShapeFixer {
      *
      * @param points1
      * @param points2
-     * @return
+     * @return the line as {x, yStart, yEnd}, or null
      */
-    private List<Point2D> findCommonLine(List<Point2D> points1, List<Point2D> points2) {
-        for (int i = 0; i < points1.size() - 1; i++) {
-            Point2D p1 = points1.get(i);
-            Point2D p2 = points1.get(i + 1);
+    private double[] findCommonLine(PackedShape2D points1, PackedShape2D points2) {
+        double[] xs1 = points1.xArray();
+        double[] ys1 = points1.yArray();
+        double[] xs2 = points2.xArray();
+        double[] ys2 = points2.yArray();
 
-            if (p1.x() == p2.x()) { // Vertical line
+        for (int i = 0; i < points1.size() - 1; i++) {
+            if (xs1[i] == xs1[i + 1]) { // Vertical line
                 for (int j = 0; j < points2.size() - 1; j++) {
-                    Point2D q1 = points2.get(j);
-                    Point2D q2 = points2.get(j + 1);
-
-                    if (q1.x() == q2.x() && p1.x() == q1.x()) { // Vertical line on the same axis
-                        if (linesOverlap(p1, p2, q1, q2)) {
-                            return List.of(
-                                    new Point2D(p1.x(), Math.min(p1.y(), q1.y())),
-                                    new Point2D(p1.x(), Math.max(p2.y(), q2.y()))
-                            );
+                    if (xs2[j] == xs2[j + 1] && xs1[i] == xs2[j]) { // Vertical line on the same axis
+                        if (linesOverlap(ys1[i], ys1[i + 1], ys2[j], ys2[j + 1])) {
+                            return new double[]{
+                                    xs1[i], Math.min(ys1[i], ys2[j]), Math.max(ys1[i + 1], ys2[j + 1])
+                            };
                         }
                     }
                 }
@@ -389,34 +820,38 @@ public class TheShapeFixer {
         return null; // Common line not found
     }
 
+    private boolean isSamePoint(PackedShape2D shape, int index, double x, double y) {
+        return Double.compare(shape.getX(index), x) == 0 && Double.compare(shape.getY(index), y) == 0;
+    }
 
     /**
      * Check if a point is on a vertical line between two other points
      *
-     * @param point
-     * @param lineStart
-     * @param lineEnd
+     * @param shape
+     * @param index
+     * @param lineX
+     * @param lineStartY
+     * @param lineEndY
      * @return
      */
-    private boolean isPointOnLine(Point2D point, Point2D lineStart, Point2D lineEnd) {
-        return point.x() == lineStart.x() &&
-                point.y() >= Math.min(lineStart.y(), lineEnd.y()) &&
-                point.y() <= Math.max(lineStart.y(), lineEnd.y());
+    private boolean isPointOnLine(PackedShape2D shape, int index, double lineX, double lineStartY, double lineEndY) {
+        return shape.getX(index) == lineX &&
+                shape.getY(index) >= Math.min(lineStartY, lineEndY) &&
+                shape.getY(index) <= Math.max(lineStartY, lineEndY);
     }
 
     /**
      * Check if two vertical segments intersect
      *
-     * @param p1
-     * @param p2
-     * @param q1
-     * @param q2
+     * @param p1y
+     * @param p2y
+     * @param q1y
+     * @param q2y
      * @return
      */
-    private boolean linesOverlap(Point2D p1, Point2D p2, Point2D q1, Point2D q2) {
-        return Math.max(p1.y(), p2.y()) >= Math.min(q1.y(), q2.y()) &&
-                Math.max(q1.y(), q2.y()) >= Math.min(p1.y(), p2.y());
+    private boolean linesOverlap(double p1y, double p2y, double q1y, double q2y) {
+        return Math.max(p1y, p2y) >= Math.min(q1y, q2y) &&
+                Math.max(q1y, q2y) >= Math.min(p1y, p2y);
     }
 
 }
-
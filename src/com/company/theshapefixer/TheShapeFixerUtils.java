@@ -15,4 +15,34 @@ public class TheShapeFixerUtils {
         }
         return points;
     }
+
+    /**
+     * Method to keep integer coordinates as they are, so validation can use exact long arithmetic
+     *
+     * @param pointsArray
+     * @return
+     */
+    public static IntShape2D convertToIntShape(int[][] pointsArray) {
+        return IntShape2D.of(pointsArray);
+    }
+
+    /**
+     * Method for checking line intersection of segments p1-p2 and p3-p4, given as point indices
+     *
+     * @param xs
+     * @param ys
+     * @param p1
+     * @param p2
+     * @param p3
+     * @param p4
+     * @return
+     */
+    static boolean linesIntersect(double[] xs, double[] ys, int p1, int p2, int p3, int p4) {
+        int d1 = GeometryPredicates.orientation(xs, ys, p3, p4, p1);
+        int d2 = GeometryPredicates.orientation(xs, ys, p3, p4, p2);
+        int d3 = GeometryPredicates.orientation(xs, ys, p1, p2, p3);
+        int d4 = GeometryPredicates.orientation(xs, ys, p1, p2, p4);
+
+        return d1 * d2 < 0 && d3 * d4 < 0;
+    }
 }
@@ -0,0 +1,8 @@
+package com.company.theshapefixer;
+
+/**
+ * Shape with its validity and its triangles, as indices of its points, three per triangle and
+ * counter-clockwise. A shape that is not valid has no triangles.
+ */
+public record TriangulatedShape(Shape2D shape, boolean valid, int[] triangles) {
+}
@@ -0,0 +1,7 @@
+package com.company.theshapefixer;
+
+/**
+ * Shape passed on by a validating {@link FixerStage}, together with its validity
+ */
+public record ValidatedShape(Shape2D shape, boolean valid) {
+}
@@ -0,0 +1,104 @@
+package com.company.theshapefixer;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The checks of {@link TheShapeFixer#isValid(Shape2D)} run to the end, collecting every violation with
+ * its indices and location instead of stopping at the first one
+ */
+final class ValidationDiagnostics {
+
+    private static final Comparator<Violation> ORDER = Comparator.comparing(Violation::type)
+            .thenComparingInt(Violation::firstIndex)
+            .thenComparingInt(Violation::secondIndex);
+
+    private ValidationDiagnostics() {
+    }
+
+    /**
+     * Method to collect all violations of a shape
+     *
+     * @param shape
+     * @param crossings every pair of crossing edges of the shape
+     * @return
+     */
+    static ValidationReport inspect(PackedShape2D shape, List<SegmentIntersection> crossings) {
+        double[] xs = shape.xArray();
+        double[] ys = shape.yArray();
+        int n = shape.size();
+        List<Violation> violations = new ArrayList<>();
+
+        // Check if the shape is closed (first point coincides with the last)
+        boolean closed = n > 0 && shape.samePoint(0, n - 1);
+        if (!closed) {
+            violations.add(new Violation(ViolationType.OPEN_SHAPE, 0, n - 1,
+                    n == 0 ? null : new Point2D(xs[n - 1], ys[n - 1])));
+        }
+
+        // Every repeated point, paired with its occurrence before (the closing point is not a repeat)
+        int last = closed ? n - 1 : n;
+        PointCounter lastSeen = PointCounter.forCurrentThread(last);
+        for (int j = 0; j < last; j++) {
+            int previous = lastSeen.replace(xs[j], ys[j], j + 1) - 1;
+            if (previous >= 0) {
+                ViolationType type = j - previous > 2 ? ViolationType.NESTED_CONTOUR : ViolationType.DUPLICATE_VERTEX;
+                violations.add(new Violation(type, previous, j, new Point2D(xs[j], ys[j])));
+            }
+        }
+
+        for (SegmentIntersection crossing : crossings) {
+            int i = crossing.firstSegment();
+            int j = crossing.secondSegment();
+            violations.add(new Violation(ViolationType.CROSSING_EDGES, i, j, crossingPoint(xs, ys, i, j)));
+        }
+
+        violations.addAll(SegmentPassingThroughPoint.findPointsOnSegments(shape));
+
+        violations.sort(ORDER);
+
+        // The contours and their points on segments are what the repair reads, a single contour has them already
+        RepairPlan plan = isSingleContour(n, violations)
+                ? RepairPlan.ofSingleContour(shape, violations)
+                : RepairPlan.of(shape);
+        return new ValidationReport(shape, violations, plan);
+    }
+
+    /**
+     * Check whether the shape is one closed contour without repeated points, so the contour search of
+     * the repair would give back the shape itself
+     *
+     * @param n
+     * @param violations
+     * @return
+     */
+    private static boolean isSingleContour(int n, List<Violation> violations) {
+        if (n < 2) {
+            return false;
+        }
+        for (Violation violation : violations) {
+            ViolationType type = violation.type();
+            if (type == ViolationType.OPEN_SHAPE || type == ViolationType.DUPLICATE_VERTEX
+                    || type == ViolationType.NESTED_CONTOUR) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Where the edges starting at points i and j cross, in double arithmetic
+     */
+    private static Point2D crossingPoint(double[] xs, double[] ys, int i, int j) {
+        double rx = xs[i + 1] - xs[i];
+        double ry = ys[i + 1] - ys[i];
+        double sx = xs[j + 1] - xs[j];
+        double sy = ys[j + 1] - ys[j];
+        double t = ((xs[j] - xs[i]) * sy - (ys[j] - ys[i]) * sx) / (rx * sy - ry * sx);
+        if (!(t >= 0 && t <= 1)) {
+            t = 0.5;  // Nearly parallel edges, the division is not reliable
+        }
+        return new Point2D(xs[i] + t * rx, ys[i] + t * ry);
+    }
+}
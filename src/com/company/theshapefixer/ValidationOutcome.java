@@ -0,0 +1,7 @@
+package com.company.theshapefixer;
+
+/**
+ * Validity of a shape together with the tier that decided it
+ */
+public record ValidationOutcome(boolean valid, ValidationTier tier) {
+}
@@ -0,0 +1,304 @@
+package com.company.theshapefixer;
+
+/**
+ * Linear time checks run by {@link TheShapeFixer} before the full validation. Each tier either decides a
+ * shape with exactly the answer the full checks would give, or returns null to pass it on. Tiers that
+ * accept a shape rely on geometry (convexity, sides of a rectangle) instead of looking at every pair, so
+ * they only accept when every rounding and tolerance case is provably clear of the thresholds.
+ */
+class ValidationPrefilter {
+
+    // Up to this many points the pairwise checks are cheaper than anything else
+    static final int TINY_SIZE = 8;
+
+    // Bound on the rounding error of a cross product against an edge, relative to the extent of the shape
+    // times the length of the edge (a few units in the last place, with room to spare)
+    private static final double ROUNDING_GUARD = 1e-14;
+
+    private static final double EPS = SegmentPassingThroughPoint.COLLINEARITY_EPSILON;
+
+    // Bound on the relative rounding error of a product of two differences
+    private static final double PRODUCT_ROUNDING = 4 * Math.ulp(1.0);
+
+    private static final ValidationOutcome VALID_TRIVIAL = new ValidationOutcome(true, ValidationTier.TRIVIAL);
+    private static final ValidationOutcome INVALID_TRIVIAL = new ValidationOutcome(false, ValidationTier.TRIVIAL);
+    private static final ValidationOutcome VALID_CONVEX = new ValidationOutcome(true, ValidationTier.CONVEX);
+    private static final ValidationOutcome VALID_RECTILINEAR = new ValidationOutcome(true, ValidationTier.RECTILINEAR);
+    private static final ValidationOutcome INVALID_RECTILINEAR = new ValidationOutcome(false, ValidationTier.RECTILINEAR);
+
+    private ValidationPrefilter() {
+    }
+
+    /**
+     * Method to decide a shape in linear time if one of the fast tiers applies
+     *
+     * @param shape
+     * @param context
+     * @return the outcome, or null when only the full checks can tell
+     */
+    static ValidationOutcome check(PackedShape2D shape, ValidatorContext context) {
+        int n = shape.size();
+        if (n == 0 || !shape.samePoint(0, n - 1)) {
+            return INVALID_TRIVIAL;
+        }
+        if (n <= TINY_SIZE) {
+            return isValidTiny(shape) ? VALID_TRIVIAL : INVALID_TRIVIAL;
+        }
+        if (hasNeighbourDefect(shape)) {
+            return INVALID_TRIVIAL;
+        }
+        if (isStrictlyConvex(shape)) {
+            return VALID_CONVEX;
+        }
+        return checkRectangle(shape, context);
+    }
+
+    /**
+     * The pairwise checks of the full validation, for shapes with only a few points
+     *
+     * @param shape
+     * @return
+     */
+    private static boolean isValidTiny(PackedShape2D shape) {
+        double[] xs = shape.xArray();
+        double[] ys = shape.yArray();
+        int n = shape.size();
+        for (int i = 0; i < n - 1; i++) {
+            for (int j = i + 1; j < n - 1; j++) {
+                if (shape.samePoint(i, j) || TheShapeFixerUtils.linesIntersect(xs, ys, i, i + 1, j, j + 1)) {
+                    return false;
+                }
+            }
+        }
+        for (int i = 0; i < n - 1; i++) {
+            for (int j = 0; j < n; j++) {
+                if (isOnSegment(shape, i, i + 1, j)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Look for defects between three consecutive points a, b, c: b equal to c, or an edge turning back so
+     * that c lies on edge a-b or a lies on edge b-c. The full checks report the same pairs.
+     *
+     * @param shape
+     * @return
+     */
+    private static boolean hasNeighbourDefect(PackedShape2D shape) {
+        int m = shape.size() - 1; // Distinct positions, the last point closes the shape
+        for (int b = 0; b < m; b++) {
+            int a = b == 0 ? m - 1 : b - 1;
+            int c = b + 1 == m ? 0 : b + 1;
+            if (shape.samePoint(b, c) || isOnSegment(shape, a, b, c) || isOnSegment(shape, b, c, a)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Strictly convex test: all turns have the same sign and the x and y directions each change sign at
+     * most twice, so the boundary winds around once. Every vertex that is not an end of an edge is then
+     * at least as far from the edge as the two vertices next to it, so checking those two against the
+     * collinearity tolerance, with room for rounding, clears the point on segment check. The same margin
+     * keeps the computed sides of non-adjacent edges exact, so no crossing can be reported.
+     *
+     * @param shape
+     * @return
+     */
+    private static boolean isStrictlyConvex(PackedShape2D shape) {
+        double[] xs = shape.xArray();
+        double[] ys = shape.yArray();
+        int m = shape.size() - 1;
+        double extent = extent(xs, ys, m);
+        if (!(extent < Double.POSITIVE_INFINITY)) {
+            return false;
+        }
+
+        int turnSign = 0;
+        int xFlips = 0;
+        int yFlips = 0;
+        double firstX = 0;
+        double firstY = 0;
+        double lastX = 0;
+        double lastY = 0;
+        for (int b = 0; b < m; b++) {
+            int a = b == 0 ? m - 1 : b - 1;
+            int c = b + 1 == m ? 0 : b + 1;
+            int d = c + 1 == m ? 0 : c + 1;
+
+            int turn = GeometryPredicates.orientation(xs, ys, a, b, c);
+            if (turn == 0 || (turnSign != 0 && turn != turnSign)) {
+                return false;
+            }
+            turnSign = turn;
+
+            double sx = Math.signum(xs[c] - xs[b]);
+            if (sx != 0) {
+                xFlips += lastX != 0 && sx != lastX ? 1 : 0;
+                firstX = firstX == 0 ? sx : firstX;
+                lastX = sx;
+            }
+            double sy = Math.signum(ys[c] - ys[b]);
+            if (sy != 0) {
+                yFlips += lastY != 0 && sy != lastY ? 1 : 0;
+                firstY = firstY == 0 ? sy : firstY;
+                lastY = sy;
+            }
+
+            // Neighbours of edge b-c, with b-c in the order the full check uses
+            int from = b;
+            int to = b + 1;
+            double threshold = EPS + ROUNDING_GUARD * extent * (Math.abs(xs[to] - xs[from]) + Math.abs(ys[to] - ys[from]));
+            if (Math.abs(cross(xs, ys, from, to, a)) <= threshold || Math.abs(cross(xs, ys, from, to, d)) <= threshold) {
+                return false;
+            }
+        }
+        xFlips += lastX != firstX ? 1 : 0;
+        yFlips += lastY != firstY ? 1 : 0;
+        return xFlips <= 2 && yFlips <= 2;
+    }
+
+    /**
+     * Rectangle tier: every edge is axis-aligned and lies on the bounding box, and the boundary turns the
+     * same way exactly four times, so the shape is the box with extra points along its sides. With axis
+     * aligned edges each cross and dot product has a single non-zero term, so every point can be placed
+     * against an edge exactly by checking the points next to the edge, the sides before and after it and
+     * the opposite side.
+     *
+     * @param shape
+     * @param context
+     * @return the outcome, or null if the shape is not such a rectangle or a check is too close to call
+     */
+    private static ValidationOutcome checkRectangle(PackedShape2D shape, ValidatorContext context) {
+        double[] xs = shape.xArray();
+        double[] ys = shape.yArray();
+        int m = shape.size() - 1;
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < m; i++) {
+            if (!Double.isFinite(xs[i]) || !Double.isFinite(ys[i])) {
+                return null;
+            }
+            minX = Math.min(minX, xs[i]);
+            minY = Math.min(minY, ys[i]);
+            maxX = Math.max(maxX, xs[i]);
+            maxY = Math.max(maxY, ys[i]);
+        }
+
+        // Direction of every edge as 0 = +x, 1 = +y, 2 = -x, 3 = -y, on a side of the box
+        int[] directions = context.ints(ValidatorContext.DIRECTIONS, m);
+        for (int b = 0; b < m; b++) {
+            int c = b + 1;
+            double dx = xs[c] - xs[b];
+            double dy = ys[c] - ys[b];
+            if (dy == 0 && dx != 0 && (ys[b] == minY || ys[b] == maxY)) {
+                directions[b] = dx > 0 ? 0 : 2;
+            } else if (dx == 0 && dy != 0 && (xs[b] == minX || xs[b] == maxX)) {
+                directions[b] = dy > 0 ? 1 : 3;
+            } else {
+                return null;
+            }
+        }
+        int turns = 0;
+        int turnSign = 0;
+        for (int b = 0; b < m; b++) {
+            int turn = (directions[b] - directions[b == 0 ? m - 1 : b - 1]) & 3;
+            if (turn == 2 || (turn != 0 && turnSign != 0 && turn != turnSign)) {
+                return null;
+            }
+            if (turn != 0) {
+                turns++;
+                turnSign = turn;
+            }
+        }
+        if (turns != 4) {
+            return null;
+        }
+
+        for (int b = 0; b < m; b++) {
+            int a = b == 0 ? m - 1 : b - 1;
+            int c = b + 1;
+            int d = c == m ? 1 : c + 1;
+            if (isOnSegment(shape, b, c, a) || isOnSegment(shape, b, c, d)) {
+                return INVALID_RECTILINEAR;
+            }
+            boolean horizontal = (directions[b] & 1) == 0;
+            double[] along = horizontal ? xs : ys;
+            double[] across = horizontal ? ys : xs;
+            double low = horizontal ? minX : minY;
+            double high = horizontal ? maxX : maxY;
+            double sideLow = horizontal ? minY : minX;
+            double sideHigh = horizontal ? maxY : maxX;
+            double opposite = across[b] == sideLow ? sideHigh : sideLow;
+            double length = along[c] - along[b];
+            boolean forward = length > 0;
+
+            // Points on the opposite side are too far from the line to be within the tolerance, with room
+            // for the rounding of the product
+            if (!(Math.abs((opposite - across[b]) * length) * (1 - PRODUCT_ROUNDING) > EPS)) {
+                return null;
+            }
+            // Points on the side behind the edge project before its start, unless the edge starts at a corner
+            boolean startsAtCorner = directions[a] != directions[b];
+            if (!startsAtCorner && !(((forward ? low : high) - along[b]) * length < 0)) {
+                return null;
+            }
+            // Points on the side ahead project past its end, unless the edge ends at a corner
+            boolean endsAtCorner = directions[c == m ? 0 : c] != directions[b];
+            if (!endsAtCorner && !(((forward ? high : low) - along[c]) * length > 0)) {
+                return null;
+            }
+        }
+        return VALID_RECTILINEAR;
+    }
+
+    /**
+     * The point on segment test of the full check, points equal to an end of the segment are skipped
+     *
+     * @param shape
+     * @param p1
+     * @param p2
+     * @param point
+     * @return
+     */
+    private static boolean isOnSegment(PackedShape2D shape, int p1, int p2, int point) {
+        if (shape.samePoint(point, p1) || shape.samePoint(point, p2)) {
+            return false;
+        }
+        return SegmentPassingThroughPoint.isPointOnLineSegment(shape.xArray(), shape.yArray(), p1, p2, point);
+    }
+
+    /**
+     * Cross product computed the same way as in the point on segment test
+     *
+     * @param xs
+     * @param ys
+     * @param p1
+     * @param p2
+     * @param point
+     * @return
+     */
+    private static double cross(double[] xs, double[] ys, int p1, int p2, int point) {
+        return (ys[point] - ys[p1]) * (xs[p2] - xs[p1]) - (xs[point] - xs[p1]) * (ys[p2] - ys[p1]);
+    }
+
+    private static double extent(double[] xs, double[] ys, int count) {
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < count; i++) {
+            minX = Math.min(minX, xs[i]);
+            minY = Math.min(minY, ys[i]);
+            maxX = Math.max(maxX, xs[i]);
+            maxY = Math.max(maxY, ys[i]);
+        }
+        return Math.max(maxX - minX, maxY - minY);
+    }
+}
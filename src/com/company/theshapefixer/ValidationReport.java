@@ -0,0 +1,97 @@
+package com.company.theshapefixer;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Every problem found in a shape by {@link TheShapeFixer#validateDetailed(Shape2D)}, ordered by type and
+ * then by index. The shape is valid exactly when there are none. The report can be passed to
+ * {@link TheShapeFixer#repair(ValidationReport)} so the problems are not searched for again.
+ */
+public final class ValidationReport {
+
+    private final Shape2D shape;
+    private final List<Violation> violations;
+
+    // What the repair reads, recorded by the detailed validation; null for a report built by hand
+    private final RepairPlan repairPlan;
+
+    public ValidationReport(Shape2D shape, List<Violation> violations) {
+        this(shape, violations, null);
+    }
+
+    ValidationReport(Shape2D shape, List<Violation> violations, RepairPlan repairPlan) {
+        this.shape = shape;
+        this.violations = List.copyOf(violations);
+        this.repairPlan = repairPlan;
+    }
+
+    public Shape2D shape() {
+        return shape;
+    }
+
+    public List<Violation> violations() {
+        return violations;
+    }
+
+    public boolean isValid() {
+        return violations.isEmpty();
+    }
+
+    /**
+     * Method to get the violations of one type
+     *
+     * @param type
+     * @return
+     */
+    public List<Violation> violations(ViolationType type) {
+        List<Violation> found = new ArrayList<>();
+        for (Violation violation : violations) {
+            if (violation.type() == type) {
+                found.add(violation);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Number of violations per type, for logging
+     *
+     * @return
+     */
+    public Map<ViolationType, Integer> counts() {
+        Map<ViolationType, Integer> counts = new EnumMap<>(ViolationType.class);
+        for (Violation violation : violations) {
+            counts.merge(violation.type(), 1, Integer::sum);
+        }
+        return counts;
+    }
+
+    /**
+     * The repair plan recorded with the report, or a new one for a report built without it
+     *
+     * @return
+     */
+    RepairPlan repairPlan() {
+        return repairPlan != null ? repairPlan : RepairPlan.of(PackedShape2D.of(shape));
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof ValidationReport report && Objects.equals(shape, report.shape)
+                && violations.equals(report.violations);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(shape, violations);
+    }
+
+    @Override
+    public String toString() {
+        return "ValidationReport[shape=" + shape + ", violations=" + violations + "]";
+    }
+}
@@ -0,0 +1,33 @@
+package com.company.theshapefixer;
+
+/**
+ * Stage of {@link TheShapeFixer#isValid(Shape2D)} that decided a shape
+ */
+public enum ValidationTier {
+
+    /**
+     * Open or empty shapes, shapes with a handful of points, and shapes with a defect between neighbouring
+     * points (a repeated point or an edge that turns back over its neighbour)
+     */
+    TRIVIAL,
+
+    /**
+     * Strictly convex shapes, simple by construction, accepted in one pass over the turns
+     */
+    CONVEX,
+
+    /**
+     * Axis-aligned rectangles with extra points along their sides, decided in one pass
+     */
+    RECTILINEAR,
+
+    /**
+     * Integer shapes, decided completely with exact long arithmetic
+     */
+    INTEGER,
+
+    /**
+     * Everything else, decided by the sorting, sweep line and point on segment checks
+     */
+    FULL
+}
@@ -0,0 +1,204 @@
+package com.company.theshapefixer;
+
+import java.util.Arrays;
+
+/**
+ * Scratch arrays for the sorting, sweep line, grids and contour splitting of one validation or repair, kept
+ * per thread so checking shape after shape allocates nothing once the arrays have grown to the largest
+ * shape seen. An array handed out may be longer than asked for and holds whatever the last user left in
+ * it, unless it is asked for cleared.
+ * <p>
+ * A context belongs to one call from acquire to release. A call made on the same thread in between, from a
+ * listener for example, gets a context of its own.
+ */
+final class ValidatorContext {
+
+    // Arrays up to this many elements are kept for the next shape, larger ones are dropped after use, the
+    // sort and sweep of such a shape cost far more than allocating them
+    private static final int MAX_RETAINED_LENGTH = 1 << 18;
+
+    static final int ORDER = 0;
+    static final int ORDER_BUFFER = 1;
+    static final int SEGMENT_LEFT = 2;
+    static final int SEGMENT_RIGHT = 3;
+    static final int ORDER_POSITION = 4;
+    static final int TREAP_SEGMENT = 5;
+    static final int TREAP_LEFT = 6;
+    static final int TREAP_RIGHT = 7;
+    static final int TREAP_PARENT = 8;
+    static final int GRID_START = 9;
+    static final int GRID_ITEMS = 10;
+    static final int GRID_CELL = 11;
+    static final int GRID_FILL = 12;
+    static final int NEXT_OCCURRENCE = 13;
+    static final int REPEATED = 14;
+    static final int SKIP = 15;
+    static final int DIRECTIONS = 16;
+    static final int BUCKET_EDGE_START = 17;
+    static final int BUCKET_EDGES = 18;
+    static final int BUCKET_VERTEX_START = 19;
+    static final int BUCKET_VERTICES = 20;
+    static final int BUCKET_NEXT = 21;
+    private static final int INT_SLOTS = 22;
+
+    private static final ThreadLocal<ValidatorContext> CURRENT = ThreadLocal.withInitial(ValidatorContext::new);
+
+    private final int[][] ints = new int[INT_SLOTS][];
+    private long[] longs;
+    private double[] xs;
+    private double[] ys;
+    private boolean inUse;
+
+    // Last shape packed and last vertex order sorted during the current call, kept for later steps
+    private Shape2D packedShape;
+    private PackedShape2D packedForm;
+    private double[] orderedXs;
+    private int orderedCount;
+    private int[] order;
+
+    private ValidatorContext() {
+    }
+
+    /**
+     * Method to take the context of the current thread, to be given back with release
+     *
+     * @return
+     */
+    static ValidatorContext acquire() {
+        ValidatorContext context = CURRENT.get();
+        if (context.inUse) {
+            context = new ValidatorContext();
+        }
+        context.inUse = true;
+        return context;
+    }
+
+    void release() {
+        inUse = false;
+        packedShape = null;
+        packedForm = null;
+        orderedXs = null;
+        order = null;
+    }
+
+    /**
+     * Method to get the int array of a slot with room for length elements
+     *
+     * @param slot
+     * @param length
+     * @return
+     */
+    int[] ints(int slot, int length) {
+        int[] array = ints[slot];
+        if (array != null && array.length >= length) {
+            return array;
+        }
+        array = new int[length];
+        if (length <= MAX_RETAINED_LENGTH) {
+            ints[slot] = array;
+        }
+        return array;
+    }
+
+    /**
+     * Same as ints with the first length elements set to zero
+     *
+     * @param slot
+     * @param length
+     * @return
+     */
+    int[] clearedInts(int slot, int length) {
+        int[] array = ints(slot, length);
+        Arrays.fill(array, 0, length, 0);
+        return array;
+    }
+
+    long[] longs(int length) {
+        if (longs != null && longs.length >= length) {
+            return longs;
+        }
+        long[] array = new long[length];
+        if (length <= MAX_RETAINED_LENGTH) {
+            longs = array;
+        }
+        return array;
+    }
+
+    /**
+     * Method to get a packed form of a shape, other shapes than packed and mapped ones are copied into the
+     * arrays of the context, so the result is only good until the context is released. Packing the same
+     * shape again during a call gives the same result without copying.
+     *
+     * @param shape
+     * @return
+     */
+    PackedShape2D pack(Shape2D shape) {
+        if (shape instanceof PackedShape2D packed) {
+            return packed;
+        }
+        if (shape == packedShape) {
+            return packedForm;
+        }
+        if (shape instanceof MappedShape2D mapped) {
+            packedShape = shape;
+            packedForm = mapped.toPacked();
+            return packedForm;
+        }
+        int n = shape.size();
+        double[] packedXs = xs;
+        double[] packedYs = ys;
+        if (packedXs == null || packedXs.length < n) {
+            packedXs = new double[n];
+            packedYs = new double[n];
+            if (n <= MAX_RETAINED_LENGTH) {
+                xs = packedXs;
+                ys = packedYs;
+            }
+        }
+        if (shape instanceof SlicedShape2D sliced) {
+            sliced.copyTo(packedXs, packedYs);
+        } else {
+            for (int i = 0; i < n; i++) {
+                packedXs[i] = shape.getX(i);
+                packedYs[i] = shape.getY(i);
+            }
+        }
+        packedShape = shape;
+        packedForm = new PackedShape2D(packedXs, packedYs, n);
+        return packedForm;
+    }
+
+    /**
+     * Method to remember the vertex order sorted for the first n points of a coordinate array
+     *
+     * @param xs
+     * @param n
+     * @param order
+     */
+    void ordered(double[] xs, int n, int[] order) {
+        orderedXs = xs;
+        orderedCount = n;
+        this.order = order;
+    }
+
+    /**
+     * The vertex order last sorted during the current call for the first n points of a coordinate array
+     *
+     * @param xs
+     * @param n
+     * @return the order, or null if it was not sorted
+     */
+    int[] order(double[] xs, int n) {
+        return orderedXs == xs && orderedCount == n ? order : null;
+    }
+
+    /**
+     * Check whether a shape was packed into the arrays of this context, so it does not outlive the call
+     *
+     * @param shape
+     * @return
+     */
+    boolean holds(PackedShape2D shape) {
+        return xs != null && shape.xArray() == xs;
+    }
+}
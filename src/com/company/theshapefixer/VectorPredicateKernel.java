@@ -0,0 +1,123 @@
+package com.company.theshapefixer;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Kernel testing as many points at a time as the widest vector of the CPU holds. Each lane runs the double
+ * evaluation and error bound of {@link GeometryPredicates} with the same operations in the same order, so
+ * it decides exactly the points the scalar predicate decides without arbitrary precision; the few lanes
+ * left undecided are passed to the scalar predicate. Only loaded by {@link PredicateKernel} when the
+ * Vector API module is present.
+ */
+final class VectorPredicateKernel extends PredicateKernel {
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    private static final double ERROR_BOUND = GeometryPredicates.ERROR_BOUND;
+
+    private static final double TOLERANCE = SegmentPassingThroughPoint.COLLINEARITY_EPSILON;
+
+    private static final long ALL_LANES = SPECIES.length() == 64 ? -1L : (1L << SPECIES.length()) - 1;
+
+    VectorPredicateKernel() {
+    }
+
+    @Override
+    public int lanes() {
+        return SPECIES.length();
+    }
+
+    @Override
+    public int nextSideChange(double ax, double ay, double bx, double by,
+                              double[] xs, double[] ys, int from, int to) {
+        double dx = bx - ax;
+        double dy = ay - by;
+        int lanes = SPECIES.length();
+        int k = from;
+        // Each block compares points k to k + lanes - 1 with the points right after them
+        for (int bound = from + SPECIES.loopBound(Math.max(to - 1 - from, 0)); k < bound; k += lanes) {
+            // (bx - ax) * (cy - ay) + (cx - ax) * (ay - by) with its error bound
+            DoubleVector first = DoubleVector.fromArray(SPECIES, ys, k).sub(ay).mul(dx);
+            DoubleVector second = DoubleVector.fromArray(SPECIES, xs, k).sub(ax).mul(dy);
+            DoubleVector sum = first.add(second);
+            DoubleVector error = first.abs().add(second.abs()).mul(ERROR_BOUND);
+            first = DoubleVector.fromArray(SPECIES, ys, k + 1).sub(ay).mul(dx);
+            second = DoubleVector.fromArray(SPECIES, xs, k + 1).sub(ax).mul(dy);
+            DoubleVector nextSum = first.add(second);
+            DoubleVector nextError = first.abs().add(second.abs()).mul(ERROR_BOUND);
+
+            // Pairs clearly on the same side, the others are looked at one by one
+            VectorMask<Double> sameSide = sum.compare(VectorOperators.GT, error)
+                    .and(nextSum.compare(VectorOperators.GT, nextError))
+                    .or(sum.neg().compare(VectorOperators.GT, error)
+                            .and(nextSum.neg().compare(VectorOperators.GT, nextError)));
+            if (sameSide.allTrue()) {
+                continue;
+            }
+            for (int point = k; point < k + lanes; point++) {
+                if (ScalarPredicateKernel.changesSide(ax, ay, bx, by, xs, ys, point)) {
+                    return point;
+                }
+            }
+        }
+        for (; k < to - 1; k++) {
+            if (ScalarPredicateKernel.changesSide(ax, ay, bx, by, xs, ys, k)) {
+                return k;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public int nextPointOnSegment(double ax, double ay, double bx, double by,
+                                  double[] xs, double[] ys, int from, int to) {
+        double dx = bx - ax;
+        double dy = by - ay;
+        int lanes = SPECIES.length();
+        int k = from;
+        for (int bound = from + SPECIES.loopBound(to - from); k < bound; k += lanes) {
+            DoubleVector px = DoubleVector.fromArray(SPECIES, xs, k);
+            DoubleVector py = DoubleVector.fromArray(SPECIES, ys, k);
+            DoubleVector fromAx = px.sub(ax);
+            DoubleVector fromAy = py.sub(ay);
+
+            // Clearly off the line
+            DoubleVector left = fromAy.mul(dx);
+            DoubleVector right = fromAx.mul(dy);
+            DoubleVector error = left.abs().add(right.abs()).mul(2 * ERROR_BOUND);
+            VectorMask<Double> rejected = left.sub(right).abs().sub(error).compare(VectorOperators.GT, TOLERANCE);
+
+            // Clearly before a
+            DoubleVector first = fromAx.mul(dx);
+            DoubleVector second = fromAy.mul(dy);
+            DoubleVector sum = first.add(second);
+            error = first.abs().add(second.abs()).mul(ERROR_BOUND);
+            rejected = rejected.or(sum.neg().compare(VectorOperators.GT, error));
+
+            // Clearly past b
+            first = px.sub(bx).mul(dx);
+            second = py.sub(by).mul(dy);
+            sum = first.add(second);
+            error = first.abs().add(second.abs()).mul(ERROR_BOUND);
+            rejected = rejected.or(sum.compare(VectorOperators.GT, error));
+            if (rejected.allTrue()) {
+                continue;
+            }
+            for (long candidates = ~rejected.toLong() & ALL_LANES; candidates != 0; candidates &= candidates - 1) {
+                int point = k + Long.numberOfTrailingZeros(candidates);
+                if (GeometryPredicates.isPointOnSegment(xs[point], ys[point], ax, ay, bx, by)) {
+                    return point;
+                }
+            }
+        }
+        for (; k < to; k++) {
+            if (GeometryPredicates.isPointOnSegment(xs[k], ys[k], ax, ay, bx, by)) {
+                return k;
+            }
+        }
+        return -1;
+    }
+}
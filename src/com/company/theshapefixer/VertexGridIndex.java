@@ -0,0 +1,137 @@
+package com.company.theshapefixer;
+
+/**
+ * Uniform grid over the vertices of a shape, stored as flat arrays (cell start offsets + vertex indices)
+ */
+class VertexGridIndex {
+
+    private static final int MAX_CELLS_PER_AXIS = 1 << 30;
+
+    private final double minX;
+    private final double minY;
+    private final double cellSize;
+    private final int columns;
+    private final int rows;
+    private final int cells;
+    private final int[] cellStart;
+    private final int[] cellItems;
+
+    VertexGridIndex(double[] xs, double[] ys, int count) {
+        this(xs, ys, count, null);
+    }
+
+    /**
+     * Grid kept in the arrays of a context, only good until the context is released
+     *
+     * @param xs
+     * @param ys
+     * @param count
+     * @param context or null to allocate
+     */
+    VertexGridIndex(double[] xs, double[] ys, int count, ValidatorContext context) {
+        double lowX = Double.POSITIVE_INFINITY;
+        double lowY = Double.POSITIVE_INFINITY;
+        double highX = Double.NEGATIVE_INFINITY;
+        double highY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < count; i++) {
+            lowX = Math.min(lowX, xs[i]);
+            lowY = Math.min(lowY, ys[i]);
+            highX = Math.max(highX, xs[i]);
+            highY = Math.max(highY, ys[i]);
+        }
+        minX = lowX;
+        minY = lowY;
+
+        // Roughly one vertex per cell. The spread over the bounding box overestimates the cell for
+        // vertices that follow a thin contour, so the mean edge length caps it
+        double width = highX - lowX;
+        double height = highY - lowY;
+        double size = Math.sqrt(width * height / Math.max(count, 1));
+        if (!(size > 0)) {
+            size = Math.max(width, height) / Math.max(count, 1);
+        }
+        double perimeter = 0;
+        for (int i = 1; i < count; i++) {
+            perimeter += Math.abs(xs[i] - xs[i - 1]) + Math.abs(ys[i] - ys[i - 1]);
+        }
+        double meanEdge = perimeter / Math.max(count - 1, 1);
+        if (meanEdge > 0 && meanEdge < size) {
+            size = meanEdge;
+        }
+        if (!(size > 0) || Double.isInfinite(size)) {
+            size = 1;  // All vertices at one location or no vertices at all
+        }
+        cellSize = size;
+        columns = (int) Math.min(width / size + 1, MAX_CELLS_PER_AXIS);
+        rows = (int) Math.min(height / size + 1, MAX_CELLS_PER_AXIS);
+        cells = (int) Math.min((long) columns * rows, 2L * count + 1);
+
+        // Counting sort of the vertices into their cells
+        cellStart = context == null ? new int[cells + 1] : context.clearedInts(ValidatorContext.GRID_START, cells + 1);
+        int[] cellOfVertex = context == null ? new int[count] : context.ints(ValidatorContext.GRID_CELL, count);
+        for (int i = 0; i < count; i++) {
+            cellOfVertex[i] = cellOf(cellX(xs[i]), cellY(ys[i]), cells);
+            cellStart[cellOfVertex[i] + 1]++;
+        }
+        for (int c = 0; c < cells; c++) {
+            cellStart[c + 1] += cellStart[c];
+        }
+        cellItems = context == null ? new int[count] : context.ints(ValidatorContext.GRID_ITEMS, count);
+        int[] fill = context == null ? new int[cells] : context.clearedInts(ValidatorContext.GRID_FILL, cells);
+        for (int i = 0; i < count; i++) {
+            int c = cellOfVertex[i];
+            cellItems[cellStart[c] + fill[c]++] = i;
+        }
+    }
+
+    int cellX(double x) {
+        return clamp((int) ((x - minX) / cellSize), columns);
+    }
+
+    int cellY(double y) {
+        return clamp((int) ((y - minY) / cellSize), rows);
+    }
+
+    double columnMinX(int cx) {
+        return minX + cx * cellSize;
+    }
+
+    /**
+     * Cell index of grid coordinates, hashed into the table when the grid has more cells than vertices
+     *
+     * @param cx
+     * @param cy
+     * @return
+     */
+    int cell(int cx, int cy) {
+        return cellOf(cx, cy, cells);
+    }
+
+    int cellStart(int cell) {
+        return cellStart[cell];
+    }
+
+    int cellEnd(int cell) {
+        return cellStart[cell + 1];
+    }
+
+    int vertexAt(int position) {
+        return cellItems[position];
+    }
+
+    private int cellOf(int cx, int cy, int cells) {
+        if ((long) columns * rows <= cells) {
+            return cy * columns + cx;
+        }
+        long h = (cx * 0x9E3779B97F4A7C15L) ^ (cy * 0xC2B2AE3D27D4EB4FL);
+        h ^= h >>> 29;
+        return (int) Math.floorMod(h, (long) cells);
+    }
+
+    private static int clamp(int value, int size) {
+        if (value < 0) {
+            return 0;
+        }
+        return Math.min(value, size - 1);
+    }
+}
@@ -0,0 +1,155 @@
+package com.company.theshapefixer;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Lexicographic (x, then y) ordering of vertex indices, equal points end up next to each other
+ */
+class VertexOrder {
+
+    private VertexOrder() {
+    }
+
+    static int compare(double[] xs, double[] ys, int i, int j) {
+        int cmp = Double.compare(xs[i], xs[j]);
+        return cmp != 0 ? cmp : Double.compare(ys[i], ys[j]);
+    }
+
+    /**
+     * Method to sort the indices 0..n-1 by their coordinates, equal points keep their index order
+     *
+     * @param xs
+     * @param ys
+     * @param n
+     * @return
+     */
+    static int[] sort(double[] xs, double[] ys, int n) {
+        return sort(xs, ys, n, null);
+    }
+
+    /**
+     * Same as sort(xs, ys, n) in the arrays of a context, the order is only good until the context is
+     * released and may be longer than n
+     *
+     * @param xs
+     * @param ys
+     * @param n
+     * @param context or null to allocate
+     * @return
+     */
+    static int[] sort(double[] xs, double[] ys, int n, ValidatorContext context) {
+        int[] order = context == null ? new int[n] : context.ints(ValidatorContext.ORDER, n);
+        int[] buffer = context == null ? new int[n] : context.ints(ValidatorContext.ORDER_BUFFER, n);
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        mergeSort(xs, ys, order, buffer, 0, n);
+        if (context != null) {
+            context.ordered(xs, n, order);
+        }
+        return order;
+    }
+
+    /**
+     * Same as sort(xs, ys, n, context), without sorting again when the context already holds the order
+     *
+     * @param xs
+     * @param ys
+     * @param n
+     * @param context
+     * @return
+     */
+    static int[] sorted(double[] xs, double[] ys, int n, ValidatorContext context) {
+        int[] order = context.order(xs, n);
+        return order != null ? order : sort(xs, ys, n, context);
+    }
+
+    /**
+     * Method to sort the indices 0..n-1 by their coordinates with the halves sorted in parallel
+     *
+     * @param xs
+     * @param ys
+     * @param n
+     * @param pool
+     * @return
+     */
+    static int[] sortParallel(double[] xs, double[] ys, int n, ForkJoinPool pool) {
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        pool.invoke(new ParallelMergeSort(xs, ys, order, new int[n], 0, n));
+        return order;
+    }
+
+    private static void mergeSort(double[] xs, double[] ys, int[] a, int[] buffer, int from, int to) {
+        if (to - from < 16) {
+            // Insertion sort for short runs
+            for (int i = from + 1; i < to; i++) {
+                int value = a[i];
+                int j = i - 1;
+                while (j >= from && compare(xs, ys, a[j], value) > 0) {
+                    a[j + 1] = a[j];
+                    j--;
+                }
+                a[j + 1] = value;
+            }
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        mergeSort(xs, ys, a, buffer, from, middle);
+        mergeSort(xs, ys, a, buffer, middle, to);
+        merge(xs, ys, a, buffer, from, middle, to);
+    }
+
+    private static void merge(double[] xs, double[] ys, int[] a, int[] buffer, int from, int middle, int to) {
+        if (compare(xs, ys, a[middle - 1], a[middle]) <= 0) {
+            return;  // Already in order
+        }
+        System.arraycopy(a, from, buffer, from, to - from);
+        int i = from;
+        int j = middle;
+        for (int k = from; k < to; k++) {
+            if (j >= to || (i < middle && compare(xs, ys, buffer[i], buffer[j]) <= 0)) {
+                a[k] = buffer[i++];
+            } else {
+                a[k] = buffer[j++];
+            }
+        }
+    }
+
+    @SuppressWarnings("serial") // Only ever run in the pool, never serialized
+    private static class ParallelMergeSort extends RecursiveAction {
+        // Below this size a range is sorted on the current thread
+        private static final int SEQUENTIAL_THRESHOLD = 1 << 13;
+
+        private final double[] xs;
+        private final double[] ys;
+        private final int[] a;
+        private final int[] buffer;
+        private final int from;
+        private final int to;
+
+        ParallelMergeSort(double[] xs, double[] ys, int[] a, int[] buffer, int from, int to) {
+            this.xs = xs;
+            this.ys = ys;
+            this.a = a;
+            this.buffer = buffer;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= SEQUENTIAL_THRESHOLD) {
+                mergeSort(xs, ys, a, buffer, from, to);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new ParallelMergeSort(xs, ys, a, buffer, from, middle),
+                    new ParallelMergeSort(xs, ys, a, buffer, middle, to));
+            merge(xs, ys, a, buffer, from, middle, to);
+        }
+    }
+}
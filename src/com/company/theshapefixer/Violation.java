@@ -0,0 +1,10 @@
+package com.company.theshapefixer;
+
+/**
+ * One problem of a shape. The two indices depend on the type: the first and last point of an open shape,
+ * the previous and the current occurrence of a repeated point, the start points of two crossing edges
+ * (edge k runs from point k to point k + 1), or the start point of an edge and the vertex lying on it.
+ * The location is the point concerned, or where the two edges cross; it is null for a shape without points.
+ */
+public record Violation(ViolationType type, int firstIndex, int secondIndex, Point2D location) {
+}
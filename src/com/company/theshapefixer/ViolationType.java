@@ -0,0 +1,32 @@
+package com.company.theshapefixer;
+
+/**
+ * Kind of problem reported by {@link TheShapeFixer#validateDetailed(Shape2D)}
+ */
+public enum ViolationType {
+
+    /**
+     * The last point is not the first one again, or the shape has no points
+     */
+    OPEN_SHAPE,
+
+    /**
+     * A point occurs again right after itself or one point later
+     */
+    DUPLICATE_VERTEX,
+
+    /**
+     * A point occurs again further on, the points in between form a contour of their own
+     */
+    NESTED_CONTOUR,
+
+    /**
+     * Two edges cross at a point inside both of them
+     */
+    CROSSING_EDGES,
+
+    /**
+     * A vertex lies on an edge without being one of its ends
+     */
+    VERTEX_ON_SEGMENT
+}
@@ -0,0 +1,115 @@
+package com.company.theshapefixer;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * The batch methods run one fixer on many threads at once, their results must be those of the same calls
+ * made one after the other
+ */
+class BatchThreadSafetyTest {
+
+    private static final int SHAPES = 3000;
+
+    // More workers than cores, so shapes are checked concurrently even on a small machine
+    private static ForkJoinPool pool;
+    private static List<Shape2D> shapes;
+
+    @BeforeAll
+    static void setUp() {
+        pool = new ForkJoinPool(4);
+        shapes = randomShapes(new Random(42));
+    }
+
+    @AfterAll
+    static void tearDown() {
+        pool.shutdown();
+    }
+
+    @Test
+    void validateAllMatchesSequentialValidation() {
+        for (IntersectionStrategy strategy : IntersectionStrategy.values()) {
+            TheShapeFixer fixer = new TheShapeFixer(strategy);
+            assertEquals(validateEach(new TheShapeFixer(strategy)), fixer.validateAll(shapes, pool).results());
+        }
+    }
+
+    @Test
+    void repairAllMatchesSequentialRepair() {
+        TheShapeFixer fixer = new TheShapeFixer();
+        assertEquals(repairEach(new TheShapeFixer()), pointsOf(fixer.repairAll(shapes, pool).results()));
+    }
+
+    @Test
+    void sharedCachingFixerMatchesSequentialCalls() {
+        List<Boolean> expectedValidity = validateEach(new TheShapeFixer());
+        List<List<Point2D>> expectedRepairs = repairEach(new TheShapeFixer());
+
+        // Small enough that entries are evicted while other workers look them up
+        CachingShapeFixer fixer = new CachingShapeFixer(64);
+        for (int round = 0; round < 2; round++) {
+            assertEquals(expectedValidity, fixer.validateAll(shapes, pool).results());
+            assertEquals(expectedRepairs, pointsOf(fixer.repairAll(shapes, pool).results()));
+        }
+    }
+
+    private static List<Boolean> validateEach(TheShapeFixer fixer) {
+        List<Boolean> results = new ArrayList<>();
+        for (Shape2D shape : shapes) {
+            results.add(fixer.isValid(shape));
+        }
+        return results;
+    }
+
+    private static List<List<Point2D>> repairEach(TheShapeFixer fixer) {
+        List<Shape2D> results = new ArrayList<>();
+        for (Shape2D shape : shapes) {
+            results.add(fixer.repair(shape));
+        }
+        return pointsOf(results);
+    }
+
+    private static List<List<Point2D>> pointsOf(List<Shape2D> results) {
+        List<List<Point2D>> points = new ArrayList<>();
+        for (Shape2D shape : results) {
+            points.add(List.copyOf(shape.getPoints()));
+        }
+        return points;
+    }
+
+    /**
+     * Stars, which are mostly valid, and random polygons on a small grid, which mostly are not. Every
+     * shape comes back a few times so the caches get hits.
+     */
+    private static List<Shape2D> randomShapes(Random random) {
+        List<Shape2D> distinct = new ArrayList<>();
+        for (int s = 0; s < SHAPES / 4; s++) {
+            int n = 3 + random.nextInt(40);
+            List<Point2D> points = new ArrayList<>();
+            for (int i = 0; i < n; i++) {
+                if (s % 2 == 0) {
+                    double angle = 2 * Math.PI * i / n;
+                    double radius = 100 * (0.3 + random.nextDouble());
+                    points.add(new Point2D(Math.round(radius * Math.cos(angle)), Math.round(radius * Math.sin(angle))));
+                } else {
+                    points.add(new Point2D(random.nextInt(20), random.nextInt(20)));
+                }
+            }
+            points.add(points.get(0));
+            distinct.add(s % 3 == 0 ? PackedShape2D.of(points) : new Shape2D(points));
+        }
+        List<Shape2D> result = new ArrayList<>();
+        for (int i = 0; i < SHAPES; i++) {
+            result.add(distinct.get(random.nextInt(distinct.size())));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,165 @@
+package com.company.theshapefixer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unions of contours that touch along their edges: outer boundaries counter-clockwise, holes clockwise, and
+ * no vertex left in the middle of a straight run
+ */
+class ContourMergerTest {
+
+    @Test
+    void gridOfSquaresMergesToOneSquare() {
+        List<Shape2D> cells = new ArrayList<>();
+        for (int x = 0; x < 10; x++) {
+            for (int y = 0; y < 10; y++) {
+                cells.add(square(x, y, 1, (x + y) % 2 == 0));  // Both windings
+            }
+        }
+
+        List<Shape2D> merged = ContourMerger.merge(cells);
+        assertEquals(1, merged.size());
+        assertBoundary(merged.get(0), 100, new double[][]{{0, 0}, {10, 0}, {10, 10}, {0, 10}});
+    }
+
+    @Test
+    void gridWithoutABlockHasAClockwiseHole() {
+        List<Shape2D> cells = new ArrayList<>();
+        for (int x = 0; x < 6; x++) {
+            for (int y = 0; y < 6; y++) {
+                if (x < 2 || x > 3 || y < 2 || y > 3) {
+                    cells.add(square(x, y, 1, true));
+                }
+            }
+        }
+
+        List<Shape2D> merged = ContourMerger.merge(cells);
+        assertEquals(2, merged.size());
+        Shape2D outer = signedArea(merged.get(0)) > 0 ? merged.get(0) : merged.get(1);
+        Shape2D hole = outer == merged.get(0) ? merged.get(1) : merged.get(0);
+        assertBoundary(outer, 36, new double[][]{{0, 0}, {6, 0}, {6, 6}, {0, 6}});
+        assertBoundary(hole, -4, new double[][]{{2, 2}, {4, 2}, {4, 4}, {2, 4}});
+    }
+
+    @Test
+    void edgesEndingInsideOtherEdgesAreMerged() {
+        // Two squares on top of a rectangle, their shared side ends in the middle of its top edge
+        List<Shape2D> merged = ContourMerger.merge(List.of(
+                polygon(0, 0, 2, 0, 2, 1, 0, 1),
+                square(0, 1, 1, true),
+                square(1, 1, 1, false)));
+        assertEquals(1, merged.size());
+        assertBoundary(merged.get(0), 4, new double[][]{{0, 0}, {2, 0}, {2, 2}, {0, 2}});
+    }
+
+    @Test
+    void collinearDiagonalEdgesAreMerged() {
+        for (double scale : new double[]{1, 0.1, 1000, 1e-3}) {
+            // The rectangle cut along its diagonal, with one half cut again at a point inside the diagonal
+            List<Shape2D> merged = ContourMerger.merge(List.of(
+                    polygon(0, 0, 6 * scale, 2 * scale, 0, 2 * scale),
+                    polygon(0, 0, 6 * scale, 0, 3 * scale, scale),
+                    polygon(3 * scale, scale, 6 * scale, 0, 6 * scale, 2 * scale)));
+            assertEquals(1, merged.size(), "scale " + scale);
+            assertBoundary(merged.get(0), 12 * scale * scale,
+                    new double[][]{{0, 0}, {6 * scale, 0}, {6 * scale, 2 * scale}, {0, 2 * scale}});
+        }
+    }
+
+    @Test
+    void disjointContoursStayApart() {
+        List<Shape2D> merged = ContourMerger.merge(List.of(square(0, 0, 1, true), square(5, 5, 2, false)));
+        assertEquals(2, merged.size());
+        assertEquals(5, signedArea(merged.get(0)) + signedArea(merged.get(1)), 1e-12);
+        assertTrue(signedArea(merged.get(0)) > 0 && signedArea(merged.get(1)) > 0);
+    }
+
+    @Test
+    void contoursTouchingAtACornerStayApart() {
+        List<Shape2D> merged = ContourMerger.merge(List.of(square(0, 0, 1, true), square(1, 1, 1, true)));
+        assertEquals(2, merged.size());
+        for (Shape2D boundary : merged) {
+            assertEquals(5, boundary.size());
+            assertEquals(1, signedArea(boundary), 1e-12);
+        }
+
+        // A checkerboard of four cells, the two pairs only touch at the middle
+        merged = ContourMerger.merge(List.of(square(0, 0, 1, true), square(1, 1, 1, true),
+                square(2, 0, 1, true), square(1, -1, 1, true)));
+        assertEquals(4, merged.size());
+    }
+
+    @Test
+    void randomCellsKeepTheirArea() {
+        Random random = new Random(14);
+        for (int t = 0; t < 300; t++) {
+            List<Shape2D> cells = new ArrayList<>();
+            for (int x = 0; x < 8; x++) {
+                for (int y = 0; y < 8; y++) {
+                    if (random.nextInt(3) > 0) {
+                        cells.add(square(x, y, 1, random.nextBoolean()));
+                    }
+                }
+            }
+
+            double area = 0;
+            for (Shape2D boundary : ContourMerger.merge(cells)) {
+                assertSimpleClosed(boundary);
+                area += signedArea(boundary);
+            }
+            assertEquals(cells.size(), area, 1e-9);
+        }
+    }
+
+    private static Shape2D square(double x, double y, double size, boolean counterClockwise) {
+        return counterClockwise
+                ? polygon(x, y, x + size, y, x + size, y + size, x, y + size)
+                : polygon(x, y, x, y + size, x + size, y + size, x + size, y);
+    }
+
+    /**
+     * Closed shape through the given x, y pairs
+     */
+    private static Shape2D polygon(double... coordinates) {
+        PackedShape2D.Builder builder = new PackedShape2D.Builder();
+        for (int i = 0; i < coordinates.length; i += 2) {
+            builder.add(coordinates[i], coordinates[i + 1]);
+        }
+        builder.add(coordinates[0], coordinates[1]);
+        return builder.build();
+    }
+
+    private static double signedArea(Shape2D shape) {
+        double area = 0;
+        for (int i = 0; i < shape.size() - 1; i++) {
+            area += shape.getX(i) * shape.getY(i + 1) - shape.getX(i + 1) * shape.getY(i);
+        }
+        return area / 2;
+    }
+
+    private static void assertBoundary(Shape2D boundary, double area, double[][] corners) {
+        assertSimpleClosed(boundary);
+        assertEquals(area, signedArea(boundary), Math.abs(area) * 1e-12);
+        Set<Point2D> expected = new HashSet<>();
+        for (double[] corner : corners) {
+            expected.add(new Point2D(corner[0], corner[1]));
+        }
+        assertEquals(expected, new HashSet<>(boundary.getPoints()));
+        assertEquals(corners.length + 1, boundary.size());
+    }
+
+    private static void assertSimpleClosed(Shape2D boundary) {
+        int n = boundary.size();
+        assertEquals(boundary.getPoints().get(0), boundary.getPoints().get(n - 1));
+        assertEquals(n - 1, new HashSet<>(boundary.getPoints().subList(0, n - 1)).size(), "Repeated vertex");
+    }
+}
@@ -0,0 +1,195 @@
+package com.company.theshapefixer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * A shape made of closed contours, each one written out after the contour it is nested in and starting at
+ * one of its points, must split into exactly those contours; joining them back at their opening points
+ * gives the shape again. Nesting far deeper than the call stack allows must work too.
+ */
+class ContourSplitterTest {
+
+    @Test
+    void splitThenJoinGivesBackTheShape() {
+        Random random = new Random(13);
+        for (int t = 0; t < 2000; t++) {
+            int contours = 1 + random.nextInt(random.nextBoolean() ? 4 : 60);
+            ContourTree tree = new ContourTree(random, contours, random.nextInt(3) == 0);
+            assertSplitAndJoin(tree, "shape " + t);
+        }
+    }
+
+    @Test
+    void deepNestingNeedsNoRecursion() {
+        Random random = new Random(14);
+        // Every contour nested in the one before, far deeper than the call stack
+        assertSplitAndJoin(new ContourTree(random, 200000, true), "chain");
+        // Deep chains with side branches
+        for (int t = 0; t < 5; t++) {
+            assertSplitAndJoin(new ContourTree(random, 50000, random.nextInt(4) > 0 ? 0.9 : 0.5), "branches " + t);
+        }
+    }
+
+    private static void assertSplitAndJoin(ContourTree tree, String where) {
+        PackedShape2D shape = tree.shape();
+        List<Shape2D> split = ContourSplitter.split(shape);
+
+        // Contours come out in the order they close, so every contour after the ones nested in it
+        List<List<Point2D>> expected = tree.closingOrder();
+        assertEquals(expected.size(), split.size(), where);
+        for (int c = 0; c < split.size(); c++) {
+            assertEquals(expected.get(c), split.get(c).getPoints(), where + " contour " + c);
+        }
+        assertEquals(shape.getPoints(), join(split), where);
+    }
+
+    /**
+     * Inverse of the split: the last contour to close is the outermost one, and every other contour is
+     * written out right after the contour holding its opening point, in the order of those points
+     */
+    private static List<Point2D> join(List<Shape2D> contours) {
+        Map<Point2D, Deque<List<Point2D>>> byOpening = new HashMap<>();
+        for (int c = 0; c < contours.size() - 1; c++) {
+            List<Point2D> points = contours.get(c).getPoints();
+            byOpening.computeIfAbsent(points.get(0), p -> new ArrayDeque<>()).add(points);
+        }
+        List<Point2D> joined = new ArrayList<>();
+        // Contours still being written, with the position of the next of their points to look at
+        Deque<List<Point2D>> open = new ArrayDeque<>();
+        Deque<Integer> positions = new ArrayDeque<>();
+        List<Point2D> outer = contours.get(contours.size() - 1).getPoints();
+        joined.addAll(outer);
+        open.push(outer);
+        positions.push(1);
+        while (!open.isEmpty()) {
+            List<Point2D> contour = open.peek();
+            int position = positions.pop();
+            if (position >= contour.size() - 1) {
+                open.pop();
+                continue;
+            }
+            positions.push(position + 1);
+            Deque<List<Point2D>> nested = byOpening.get(contour.get(position));
+            if (nested != null && !nested.isEmpty()) {
+                List<Point2D> next = nested.poll();
+                joined.addAll(next);
+                open.push(next);
+                positions.push(1);
+            }
+        }
+        return joined;
+    }
+
+    /**
+     * Random tree of closed contours with distinct points, apart from the point a contour shares with the
+     * one it is nested in. The shape writes the contours out in depth-first order.
+     */
+    private static final class ContourTree {
+        private final List<List<Point2D>> contours = new ArrayList<>();
+        private final List<List<Integer>> children = new ArrayList<>();
+        private int nextPoint;
+
+        ContourTree(Random random, int count, boolean chain) {
+            this(random, count, chain ? 1.0 : 0.0);
+        }
+
+        /**
+         * @param deepening chance that a new contour is nested in the newest one rather than in any of them
+         */
+        ContourTree(Random random, int count, double deepening) {
+            contours.add(newContour(random, null));
+            children.add(new ArrayList<>());
+            for (int c = 1; c < count; c++) {
+                int parent = random.nextDouble() < deepening ? c - 1 : random.nextInt(c);
+                List<Point2D> contour = contours.get(parent);
+                // A new vertex of the parent, so that no two contours open at the same point
+                Point2D opening = point();
+                contour.add(1 + random.nextInt(contour.size() - 1), opening);
+                contours.add(newContour(random, opening));
+                children.add(new ArrayList<>());
+                children.get(parent).add(c);
+            }
+        }
+
+        private List<Point2D> newContour(Random random, Point2D opening) {
+            List<Point2D> contour = new ArrayList<>();
+            contour.add(opening != null ? opening : point());
+            for (int i = random.nextInt(4); i > 0; i--) {
+                contour.add(point());
+            }
+            contour.add(contour.get(0));
+            return contour;
+        }
+
+        private Point2D point() {
+            int id = nextPoint++;
+            return new Point2D(id % 1000, id / 1000);
+        }
+
+        /**
+         * Contours in depth-first order, each one's nested contours in the order of their opening points
+         */
+        private List<Integer> writingOrder() {
+            List<Integer> order = new ArrayList<>();
+            Deque<Integer> stack = new ArrayDeque<>();
+            stack.push(0);
+            while (!stack.isEmpty()) {
+                int c = stack.pop();
+                order.add(c);
+                List<Integer> nested = new ArrayList<>(children.get(c));
+                List<Point2D> points = contours.get(c);
+                nested.sort((a, b) -> Integer.compare(points.indexOf(contours.get(a).get(0)),
+                        points.indexOf(contours.get(b).get(0))));
+                for (int k = nested.size() - 1; k >= 0; k--) {
+                    stack.push(nested.get(k));
+                }
+            }
+            return order;
+        }
+
+        PackedShape2D shape() {
+            PackedShape2D.Builder builder = new PackedShape2D.Builder();
+            for (int c : writingOrder()) {
+                for (Point2D point : contours.get(c)) {
+                    builder.add(point.x(), point.y());
+                }
+            }
+            return builder.build();
+        }
+
+        /**
+         * A contour closes after all contours nested in it, and before the next contour of its parent opens
+         */
+        List<List<Point2D>> closingOrder() {
+            List<Integer> order = writingOrder();
+            Map<Integer, Integer> parent = new HashMap<>();
+            for (int c = 0; c < children.size(); c++) {
+                for (int child : children.get(c)) {
+                    parent.put(child, c);
+                }
+            }
+            List<List<Point2D>> closing = new ArrayList<>();
+            Deque<Integer> open = new ArrayDeque<>();
+            for (int c : order) {
+                while (!open.isEmpty() && !open.peek().equals(parent.get(c))) {
+                    closing.add(contours.get(open.pop()));
+                }
+                open.push(c);
+            }
+            while (!open.isEmpty()) {
+                closing.add(contours.get(open.pop()));
+            }
+            return closing;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.company.theshapefixer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * After every edit the validity kept up to date must be the one of the points checked from scratch, and
+ * the pair counts those of a shape built from the same points
+ */
+class EditableShape2DTest {
+
+    private static final int RUNS = 300;
+    private static final int EDITS = 40;
+
+    @Test
+    void validityAfterEachEditMatchesTheRebuiltShape() {
+        Random random = new Random(9);
+        TheShapeFixer fixer = new TheShapeFixer();
+        int validAfterEdit = 0;
+        int invalidAfterEdit = 0;
+        for (int run = 0; run < RUNS; run++) {
+            boolean grid = random.nextBoolean();
+            EditableShape2D shape = random.nextInt(10) > 0
+                    ? new EditableShape2D(star(random, 3 + random.nextInt(random.nextBoolean() ? 10 : 150), grid))
+                    : new EditableShape2D();
+            for (int edit = 0; edit < EDITS; edit++) {
+                edit(random, shape, grid);
+
+                PackedShape2D rebuilt = PackedShape2D.of(shape.getPoints());
+                String where = "run " + run + " edit " + edit;
+                assertEquals(fixer.isValid(rebuilt), shape.isValid(), where);
+                EditableShape2D fresh = new EditableShape2D();
+                for (int i = 0; i < rebuilt.size(); i++) {
+                    fresh.add(rebuilt.getX(i), rebuilt.getY(i));
+                }
+                assertEquals(fresh.getRepeatedPointPairs(), shape.getRepeatedPointPairs(), where);
+                assertEquals(fresh.getCrossingEdgePairs(), shape.getCrossingEdgePairs(), where);
+                assertEquals(fresh.getPointOnEdgePairs(), shape.getPointOnEdgePairs(), where);
+                if (shape.isValid()) {
+                    validAfterEdit++;
+                } else {
+                    invalidAfterEdit++;
+                }
+            }
+        }
+        assertTrue(validAfterEdit > RUNS * EDITS / 10 && invalidAfterEdit > RUNS * EDITS / 20,
+                validAfterEdit + " valid, " + invalidAfterEdit + " invalid");
+    }
+
+    /**
+     * One random edit. Most of them keep a valid shape valid: a point inserted just beside the middle of an
+     * edge, a small step, a point removed. The others insert or move points onto other points, onto edges or
+     * anywhere, and close or reopen the shape.
+     */
+    private static void edit(Random random, EditableShape2D shape, boolean grid) {
+        int n = shape.size();
+        double step = grid ? 1 : 0.01;
+        int kind = n < 2 ? 0 : random.nextInt(20);
+        switch (kind) {
+            case 0 -> {
+                double[] point = randomPoint(random, shape, grid);
+                shape.insert(random.nextInt(n + 1), point[0], point[1]);
+            }
+            case 1 -> {
+                double[] point = randomPoint(random, shape, grid);
+                shape.move(random.nextInt(n), point[0], point[1]);
+            }
+            case 2, 3, 4, 5, 6, 7 -> {
+                int i = random.nextInt(n - 1);
+                double x = (shape.getX(i) + shape.getX(i + 1)) / 2;
+                double y = (shape.getY(i) + shape.getY(i + 1)) / 2;
+                if (grid) {
+                    x = Math.floor(x);
+                    y = Math.floor(y);
+                }
+                shape.insert(i + 1, x + (random.nextInt(3) - 1) * step, y + (random.nextInt(3) - 1) * step);
+            }
+            case 8, 9, 10, 11, 12, 13, 14, 15 -> {
+                int index = random.nextInt(n);
+                shape.move(index, shape.getX(index) + (random.nextInt(3) - 1) * step,
+                        shape.getY(index) + (random.nextInt(3) - 1) * step);
+            }
+            case 16, 17, 18 -> shape.remove(1 + random.nextInt(n - 1));
+            default -> {
+                if (shape.getX(0) == shape.getX(n - 1) && shape.getY(0) == shape.getY(n - 1)) {
+                    shape.remove(n - 1);
+                } else {
+                    shape.add(shape.getX(0), shape.getY(0));
+                }
+            }
+        }
+    }
+
+    /**
+     * A point on an edge, on another point, or anywhere
+     */
+    private static double[] randomPoint(Random random, EditableShape2D shape, boolean grid) {
+        int n = shape.size();
+        int kind = random.nextInt(3);
+        if (n > 1 && kind == 0) {
+            int i = random.nextInt(n - 1);
+            double s = grid ? 0.5 : random.nextDouble();
+            return new double[]{shape.getX(i) + s * (shape.getX(i + 1) - shape.getX(i)),
+                    shape.getY(i) + s * (shape.getY(i + 1) - shape.getY(i))};
+        }
+        if (n > 0 && kind == 1) {
+            int i = random.nextInt(n);
+            return new double[]{shape.getX(i), shape.getY(i)};
+        }
+        return grid
+                ? new double[]{random.nextInt(20), random.nextInt(20)}
+                : new double[]{random.nextDouble() * 20, random.nextDouble() * 20};
+    }
+
+    /**
+     * Closed star around (10, 10), with its vertices rounded to even grid points when on the grid
+     */
+    private static Shape2D star(Random random, int points, boolean grid) {
+        PackedShape2D.Builder builder = new PackedShape2D.Builder();
+        double turn = 2 * Math.PI / points;
+        for (int i = 0; i < points; i++) {
+            double angle = (i + random.nextDouble() * 0.8) * turn;
+            double radius = 10 * (0.5 + random.nextDouble() / 2);
+            double x = 10 + radius * Math.cos(angle);
+            double y = 10 + radius * Math.sin(angle);
+            builder.add(grid ? 2 * Math.round(x * 5) : x, grid ? 2 * Math.round(y * 5) : y);
+        }
+        builder.add(builder.view().getX(0), builder.view().getY(0));
+        return builder.build();
+    }
+}
@@ -0,0 +1,299 @@
+package com.company.theshapefixer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A stage fed by an in-memory publisher must pass every item on once, within the subscriber's demand and
+ * its own buffer, and end the stream the way the Flow rules say
+ */
+class FixerStageTest {
+
+    private static final long TIMEOUT_SECONDS = 10;
+
+    @Test
+    void deliversEveryItemOnceThenCompletes() throws Exception {
+        FixerStage<Integer, Integer> stage = new FixerStage<>(x -> 2 * x, new StageSettings(1, 8, 32));
+        Collector collector = new Collector(Long.MAX_VALUE);
+        stage.subscribe(collector);
+        try (SubmissionPublisher<Integer> publisher = new SubmissionPublisher<>()) {
+            publisher.subscribe(stage);
+            for (int i = 0; i < 1000; i++) {
+                publisher.submit(i);
+            }
+        }
+
+        assertTrue(collector.done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertNull(collector.error.get());
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            expected.add(2 * i);
+        }
+        assertEquals(expected, collector.items());  // One worker keeps the order
+        assertEquals(1000, collector.itemsAtTermination.get());
+        assertEquals(1, collector.terminations.get());
+    }
+
+    @Test
+    void holdsNoMoreThanRequestedAndBuffered() throws Exception {
+        int capacity = 16;
+        FixerStage<Integer, Integer> stage = new FixerStage<>(x -> x, new StageSettings(2, 4, capacity));
+        Collector collector = new Collector(5);
+        stage.subscribe(collector);
+        try (SubmissionPublisher<Integer> publisher = new SubmissionPublisher<>(ForkJoinPool.commonPool(), 256)) {
+            CountingUpstream upstream = new CountingUpstream(stage, collector, capacity);
+            publisher.subscribe(upstream);
+            for (int i = 0; i < 200; i++) {
+                publisher.submit(i);
+            }
+
+            // The subscriber asked for five, the stage fills its buffer and then waits
+            await(() -> collector.count() == 5 && upstream.requested.get() == 5 + capacity);
+            Thread.sleep(100);
+            assertEquals(5, collector.count());
+            assertEquals(5 + capacity, upstream.requested.get());
+
+            collector.request(100);
+            await(() -> collector.count() == 105);
+            collector.request(Long.MAX_VALUE);
+            publisher.close();
+            assertTrue(collector.done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+            assertEquals(200, collector.count());
+            assertNull(upstream.violation.get(), upstream.violation::get);
+        }
+    }
+
+    @Test
+    void losesNothingWithSeveralWorkers() throws Exception {
+        int count = 20000;
+        FixerStage<Integer, Integer> stage = new FixerStage<>(x -> x, new StageSettings(4, 8, 64));
+        Collector collector = new Collector(Long.MAX_VALUE);
+        stage.subscribe(collector);
+        try (SubmissionPublisher<Integer> publisher = new SubmissionPublisher<>()) {
+            publisher.subscribe(stage);
+            for (int i = 0; i < count; i++) {
+                publisher.submit(i);
+            }
+        }
+
+        assertTrue(collector.done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        List<Integer> items = collector.items();
+        Collections.sort(items);
+        for (int i = 0; i < count; i++) {
+            assertEquals(i, items.get(i));
+        }
+        assertEquals(count, items.size());
+        assertEquals(count, collector.itemsAtTermination.get());
+    }
+
+    @Test
+    void exceptionOfTheOperationFailsTheStreamAndCancelsUpstream() throws Exception {
+        assertFailure(new IllegalArgumentException("Bad item"));
+    }
+
+    @Test
+    void errorOfTheOperationFailsTheStreamAndCancelsUpstream() throws Exception {
+        assertFailure(new AssertionError("Bad item"));
+    }
+
+    private static void assertFailure(Throwable failure) throws Exception {
+        FixerStage<Integer, Integer> stage = new FixerStage<>(x -> {
+            if (x == 50) {
+                sneakyThrow(failure);
+            }
+            return x;
+        }, new StageSettings(2, 4, 16));
+        Collector collector = new Collector(Long.MAX_VALUE);
+        stage.subscribe(collector);
+        try (SubmissionPublisher<Integer> publisher = new SubmissionPublisher<>()) {
+            publisher.subscribe(stage);
+            for (int i = 0; i < 100 && publisher.isSubscribed(stage); i++) {
+                publisher.offer(i, null);
+            }
+
+            assertTrue(collector.done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+            assertInstanceOf(failure.getClass(), collector.error.get());
+            assertEquals(1, collector.terminations.get());
+            await(() -> !publisher.isSubscribed(stage));
+        }
+    }
+
+    @Test
+    void cancelStopsDelivery() throws Exception {
+        FixerStage<Integer, Integer> stage = new FixerStage<>(x -> x, new StageSettings(2, 4, 16));
+        Collector collector = new Collector(1) {
+            @Override
+            public void onNext(Integer item) {
+                super.onNext(item);
+                if (count() == 10) {
+                    subscription.cancel();
+                } else {
+                    subscription.request(1);
+                }
+            }
+        };
+        stage.subscribe(collector);
+        try (SubmissionPublisher<Integer> publisher = new SubmissionPublisher<>()) {
+            publisher.subscribe(stage);
+            for (int i = 0; i < 100 && publisher.isSubscribed(stage); i++) {
+                publisher.offer(i, null);
+            }
+
+            await(() -> !publisher.isSubscribed(stage));
+            Thread.sleep(100);
+            assertEquals(10, collector.count());
+            assertEquals(0, collector.terminations.get());
+        }
+    }
+
+    @Test
+    void secondSubscriberIsRefused() {
+        FixerStage<Integer, Integer> stage = new FixerStage<>(x -> x, new StageSettings(1, 1, 1));
+        stage.subscribe(new Collector(1));
+        Collector second = new Collector(1);
+        stage.subscribe(second);
+        assertInstanceOf(IllegalStateException.class, second.error.get());
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Timed out");
+            Thread.sleep(1);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <E extends Throwable> void sneakyThrow(Throwable throwable) throws E {
+        throw (E) throwable;
+    }
+
+    /**
+     * Sink keeping what it receives, checking that nothing comes after the end of the stream
+     */
+    private static class Collector implements Flow.Subscriber<Integer> {
+        private final long initialRequest;
+        private final List<Integer> items = Collections.synchronizedList(new ArrayList<>());
+        final CountDownLatch done = new CountDownLatch(1);
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+        final AtomicInteger terminations = new AtomicInteger();
+        final AtomicInteger itemsAtTermination = new AtomicInteger(-1);
+        volatile Flow.Subscription subscription;
+
+        Collector(long initialRequest) {
+            this.initialRequest = initialRequest;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(initialRequest);
+        }
+
+        @Override
+        public void onNext(Integer item) {
+            assertEquals(0, terminations.get(), "Item after the end of the stream");
+            items.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error.set(throwable);
+            terminate();
+        }
+
+        @Override
+        public void onComplete() {
+            terminate();
+        }
+
+        private void terminate() {
+            itemsAtTermination.set(count());
+            terminations.incrementAndGet();
+            done.countDown();
+        }
+
+        void request(long n) {
+            subscription.request(n);
+        }
+
+        int count() {
+            return items.size();
+        }
+
+        List<Integer> items() {
+            synchronized (items) {
+                return new ArrayList<>(items);
+            }
+        }
+    }
+
+    /**
+     * Passes a publisher's items on to a stage, recording how many the stage asked for. The stage must never
+     * ask for more than the sink took plus its buffer capacity.
+     */
+    private static class CountingUpstream implements Flow.Subscriber<Integer> {
+        private final FixerStage<Integer, Integer> stage;
+        private final Collector sink;
+        private final int capacity;
+        final AtomicLong requested = new AtomicLong();
+        final AtomicReference<String> violation = new AtomicReference<>();
+
+        CountingUpstream(FixerStage<Integer, Integer> stage, Collector sink, int capacity) {
+            this.stage = stage;
+            this.sink = sink;
+            this.capacity = capacity;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            stage.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                    long total = requested.addAndGet(n);
+                    if (total > sink.count() + capacity) {
+                        violation.compareAndSet(null, "Requested " + total + " with " + sink.count() + " taken");
+                    }
+                    subscription.request(n);
+                }
+
+                @Override
+                public void cancel() {
+                    subscription.cancel();
+                }
+            });
+        }
+
+        @Override
+        public void onNext(Integer item) {
+            stage.onNext(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            stage.onError(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            stage.onComplete();
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.company.theshapefixer;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The predicates must answer like exact arithmetic on the input coordinates, at every magnitude, and the
+ * collinearity tolerance is an absolute bound on the cross product whatever the size of the segment
+ */
+class GeometryPredicatesTest {
+
+    private static final BigDecimal TOLERANCE = new BigDecimal(SegmentPassingThroughPoint.COLLINEARITY_EPSILON);
+
+    @Test
+    void matchesExactArithmeticAtEveryMagnitude() {
+        Random random = new Random(15);
+        for (int t = 0; t < 200000; t++) {
+            double scale = Math.pow(10, random.nextInt(22) - 8);
+            double offset = random.nextBoolean() ? 0 : scale * Math.pow(10, random.nextInt(6));
+            double ax = offset + (random.nextDouble() - 0.5) * scale;
+            double ay = offset + (random.nextDouble() - 0.5) * scale;
+            double bx = offset + (random.nextDouble() - 0.5) * scale;
+            double by = offset + (random.nextDouble() - 0.5) * scale;
+
+            // On the line within rounding, near its ends, or nudged off it by a few units in the last place
+            double s = random.nextInt(4) == 0 ? random.nextInt(3) / 2.0 : random.nextDouble() * 1.4 - 0.2;
+            double px = ax + s * (bx - ax);
+            double py = ay + s * (by - ay);
+            for (int k = random.nextInt(4); k > 0; k--) {
+                py = random.nextBoolean() ? Math.nextUp(py) : Math.nextDown(py);
+            }
+            if (random.nextInt(8) == 0) {
+                py += (random.nextDouble() - 0.5) * 4 * SegmentPassingThroughPoint.COLLINEARITY_EPSILON
+                        / Math.max(Math.abs(bx - ax), Double.MIN_NORMAL);
+            }
+
+            String where = px + " " + py + " on " + ax + " " + ay + " " + bx + " " + by;
+            assertEquals(exactOrientation(ax, ay, bx, by, px, py),
+                    GeometryPredicates.orientation(ax, ay, bx, by, px, py), where);
+            assertEquals(exactPointOnSegment(px, py, ax, ay, bx, by),
+                    GeometryPredicates.isPointOnSegment(px, py, ax, ay, bx, by), where);
+        }
+    }
+
+    @Test
+    void toleranceIsAbsoluteAtLargeMagnitudes() {
+        // Coordinates around 1e9 are spaced about 1e-7 apart, one step off the line moves the cross
+        // product by the length of the segment times that, far beyond the tolerance
+        double ax = 1e9;
+        double ay = 1e9;
+        double bx = 1e9 + 4096;
+        double by = 1e9 + 2048;
+        double px = 1e9 + 1024;
+        double py = 1e9 + 512;
+        assertTrue(GeometryPredicates.isPointOnSegment(px, py, ax, ay, bx, by));
+        assertFalse(GeometryPredicates.isPointOnSegment(px, Math.nextUp(py), ax, ay, bx, by));
+        assertFalse(GeometryPredicates.isPointOnSegment(px, Math.nextDown(py), ax, ay, bx, by));
+        assertEquals(1, GeometryPredicates.orientation(ax, ay, bx, by, px, Math.nextUp(py)));
+
+        // At 1e15 the spacing is 0.125, still decided exactly and not by rounding
+        double big = 1e15;
+        assertTrue(GeometryPredicates.isPointOnSegment(big + 3, big + 3, big, big, big + 6, big + 6));
+        assertFalse(GeometryPredicates.isPointOnSegment(big + 3, big + 3.125, big, big, big + 6, big + 6));
+    }
+
+    @Test
+    void toleranceIsAbsoluteAtSmallMagnitudes() {
+        // A segment 1e-4 long: points up to 1e-3 away from its line have a cross product of at most 1e-7
+        // and count as on it
+        assertTrue(GeometryPredicates.isPointOnSegment(5e-5, 9.99e-4, 0, 0, 1e-4, 0));
+        assertTrue(GeometryPredicates.isPointOnSegment(5e-5, -9.99e-4, 0, 0, 1e-4, 0));
+        assertFalse(GeometryPredicates.isPointOnSegment(5e-5, 1.01e-3, 0, 0, 1e-4, 0));
+        // They must still project onto the segment
+        assertFalse(GeometryPredicates.isPointOnSegment(1.01e-4, 1e-4, 0, 0, 1e-4, 0));
+
+        // A segment of length 1 only accepts points within 1e-7 of its line
+        assertTrue(GeometryPredicates.isPointOnSegment(0.5, 0.99e-7, 0, 0, 1, 0));
+        assertFalse(GeometryPredicates.isPointOnSegment(0.5, 1.01e-7, 0, 0, 1, 0));
+
+        // Orientation has no tolerance at any size
+        assertEquals(1, GeometryPredicates.orientation(0, 0, 1e-4, 0, 5e-5, 1e-300));
+        assertEquals(-1, GeometryPredicates.orientation(0, 0, 1e-4, 0, 5e-5, -1e-300));
+    }
+
+    @Test
+    void productsBelowTheNormalRangeKeepTheirSign() {
+        // 1e-4 times the smallest double underflows to zero, exact arithmetic still sees the point off the line
+        assertEquals(-1, GeometryPredicates.orientation(0, 0, 1e-4, 0, 5e-5, -Double.MIN_VALUE));
+        assertEquals(1, GeometryPredicates.orientation(0, 0, 1e-4, 0, 5e-5, Double.MIN_VALUE));
+        assertEquals(1, GeometryPredicates.orientation(0, 0, 1, Double.MIN_VALUE, 1, Double.MIN_NORMAL));
+
+        Random random = new Random(16);
+        for (int t = 0; t < 100000; t++) {
+            double scale = Math.scalb(1.0, -random.nextInt(560));  // Products down to the subnormal range
+            double ax = (random.nextDouble() - 0.5) * scale;
+            double ay = (random.nextDouble() - 0.5) * scale;
+            double bx = (random.nextDouble() - 0.5) * scale;
+            double by = random.nextBoolean() ? ay : (random.nextDouble() - 0.5) * scale;
+            double cx = (random.nextDouble() - 0.5) * scale;
+            double cy = ay + (random.nextInt(5) - 2) * Double.MIN_VALUE * (1 + random.nextInt(1 << 20));
+            String where = cx + " " + cy + " to " + ax + " " + ay + " " + bx + " " + by;
+            assertEquals(exactOrientation(ax, ay, bx, by, cx, cy),
+                    GeometryPredicates.orientation(ax, ay, bx, by, cx, cy), where);
+        }
+    }
+
+    private static int exactOrientation(double ax, double ay, double bx, double by, double cx, double cy) {
+        return product(bx, ax, cy, ay).subtract(product(by, ay, cx, ax)).signum();
+    }
+
+    private static boolean exactPointOnSegment(double px, double py, double ax, double ay, double bx, double by) {
+        BigDecimal cross = product(py, ay, bx, ax).subtract(product(px, ax, by, ay));
+        return cross.abs().compareTo(TOLERANCE) <= 0
+                && product(px, ax, bx, ax).add(product(py, ay, by, ay)).signum() >= 0
+                && product(px, bx, bx, ax).add(product(py, by, by, ay)).signum() <= 0;
+    }
+
+    private static BigDecimal product(double a, double b, double c, double d) {
+        return new BigDecimal(a).subtract(new BigDecimal(b)).multiply(new BigDecimal(c).subtract(new BigDecimal(d)));
+    }
+}
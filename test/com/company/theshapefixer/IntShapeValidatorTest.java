@@ -0,0 +1,238 @@
+package com.company.theshapefixer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Whenever the integer validator answers, it must answer like the double checks, for shapes checked
+ * pairwise and for shapes checked through the grid. Beyond MAX_COORDINATE it must leave the shape to the
+ * double checks.
+ */
+class IntShapeValidatorTest {
+
+    private static final int SHAPES = 3000;
+    private static final int MAX = IntShapeValidator.MAX_COORDINATE;
+
+    @Test
+    void matchesDoubleChecksOnRandomShapes() {
+        Random random = new Random(16);
+        TheShapeFixer fixer = new TheShapeFixer();
+        // Answered shapes per tier, pairwise then grid, and how many of them were valid
+        int[] answered = new int[2];
+        int[] valid = new int[2];
+        for (int t = 0; t < SHAPES; t++) {
+            boolean large = random.nextBoolean();
+            IntShape2D shape = randomShape(random, large ? 64 + random.nextInt(200) : 3 + random.nextInt(60));
+            ValidationOutcome outcome = check(shape);
+            if (outcome == null) {
+                continue;
+            }
+            int tier = shape.size() - 1 < 64 ? 0 : 1;
+            answered[tier]++;
+            if (outcome.valid()) {
+                valid[tier]++;
+            }
+            assertEquals(ValidationTier.INTEGER, outcome.tier());
+            assertEquals(fixer.isValid(PackedShape2D.of(shape)), outcome.valid(), "shape " + t);
+        }
+        for (int tier = 0; tier < 2; tier++) {
+            assertTrue(valid[tier] > SHAPES / 20 && answered[tier] - valid[tier] > SHAPES / 20,
+                    "tier " + tier + ": " + valid[tier] + " of " + answered[tier] + " valid");
+        }
+    }
+
+    @Test
+    void findsVertexOnAnotherEdgeInBothTiers() {
+        Random random = new Random(61);
+        TheShapeFixer fixer = new TheShapeFixer();
+        for (int t = 0; t < 400; t++) {
+            int bottom = random.nextBoolean() ? 3 + random.nextInt(50) : 70 + random.nextInt(200);
+            boolean touching = random.nextBoolean();
+            IntShape2D shape = comb(bottom, 1 + random.nextInt(bottom - 2), touching, 1 + random.nextInt(1000));
+            ValidationOutcome outcome = check(shape);
+            assertNotNull(outcome, "shape " + t);
+            assertEquals(!touching, outcome.valid(), "shape " + t);
+            assertEquals(!touching, fixer.isValid(PackedShape2D.of(shape)), "shape " + t);
+        }
+    }
+
+    @Test
+    void answersAtMaxCoordinate() {
+        for (int size : new int[]{4, 100}) {
+            IntShape2D square = polygon(MAX, size, false);
+            assertEquals(true, check(square).valid());
+            IntShape2D bowtie = polygon(MAX, size, true);
+            assertEquals(false, check(bowtie).valid());
+            assertEquals(false, new TheShapeFixer().isValid(PackedShape2D.of(bowtie)));
+        }
+    }
+
+    @Test
+    void leavesShapesBeyondMaxCoordinateToTheDoubleChecks() {
+        for (int size : new int[]{4, 100}) {
+            assertNull(check(polygon(MAX + 1, size, false)));
+            assertNull(check(polygon(MAX + 1, size, true)));
+            assertNull(check(polygon(Integer.MAX_VALUE, size, false)));
+        }
+
+        // A single coordinate past the bound, on either side and on either axis
+        for (int k = 0; k < 4; k++) {
+            int[] xs = {0, 10, 10, 0, 0};
+            int[] ys = {0, 0, 10, 10, 0};
+            int[] axis = k < 2 ? xs : ys;
+            axis[2] = k % 2 == 0 ? MAX + 1 : -MAX - 1;
+            assertNull(check(new IntShape2D(xs, ys)));
+            axis[2] = k % 2 == 0 ? MAX : -MAX;
+            assertNotNull(check(new IntShape2D(xs, ys)));
+        }
+    }
+
+    @Test
+    void openAndEmptyShapesAreInvalid() {
+        assertEquals(false, check(new IntShape2D(new int[0], new int[0])).valid());
+        assertEquals(false, check(new IntShape2D(new int[]{0, 10, 10, 0}, new int[]{0, 0, 10, 10})).valid());
+    }
+
+    private static ValidationOutcome check(IntShape2D shape) {
+        ValidatorContext context = ValidatorContext.acquire();
+        try {
+            return IntShapeValidator.check(shape, context);
+        } finally {
+            context.release();
+        }
+    }
+
+    /**
+     * Closed shape around the square from -extent to extent with size edges, the top corners swapped
+     * into a bowtie when twisted. Extra vertices are spread along the bottom side.
+     */
+    private static IntShape2D polygon(int extent, int size, boolean twisted) {
+        int[] xs = new int[size + 1];
+        int[] ys = new int[size + 1];
+        int along = size - 3;
+        for (int i = 0; i < along; i++) {
+            xs[i] = (int) (-extent + 2L * extent * i / along);
+            ys[i] = -extent;
+        }
+        xs[along] = extent;
+        ys[along] = -extent;
+        xs[along + 1] = twisted ? -extent : extent;
+        ys[along + 1] = extent;
+        xs[along + 2] = twisted ? extent : -extent;
+        ys[along + 2] = extent;
+        xs[size] = xs[0];
+        ys[size] = ys[0];
+        return new IntShape2D(xs, ys);
+    }
+
+    /**
+     * Rectangle with the given number of edges along its bottom side and a spike hanging from its top side
+     * down to the bottom edge at the given index, which is neither the first nor the last, its tip inside that edge when touching and just above it
+     * otherwise. No edges cross.
+     */
+    private static IntShape2D comb(int bottom, int edge, boolean touching, int scale) {
+        int size = bottom + 7;
+        int[] xs = new int[size];
+        int[] ys = new int[size];
+        int k = 0;
+        for (int i = 0; i <= bottom; i++, k++) {
+            xs[k] = 2 * i;
+        }
+        int height = 2 * bottom;
+        int[][] rest = {{2 * bottom, height}, {2 * edge + 2, height}, {2 * edge + 1, touching ? 0 : 1},
+                {2 * edge, height}, {0, height}, {0, 0}};
+        for (int[] point : rest) {
+            xs[k] = point[0];
+            ys[k++] = point[1];
+        }
+        for (int i = 0; i < size; i++) {
+            xs[i] *= scale;
+            ys[i] *= scale;
+        }
+        return new IntShape2D(xs, ys);
+    }
+
+    /**
+     * A star around the origin, valid unless rounding to the grid made it touch itself, then sometimes
+     * broken: two vertices swapped, a vertex repeated or moved onto another edge, the shape left open or
+     * replaced by random points. Coordinates are scaled and moved so both small and large values occur.
+     */
+    private static IntShape2D randomShape(Random random, int edges) {
+        int radius = 5 * edges + random.nextInt(1000);
+        double[] angles = new double[edges];
+        for (int i = 0; i < edges; i++) {
+            angles[i] = random.nextDouble() * 2 * Math.PI;
+        }
+        Arrays.sort(angles);
+        int[] xs = new int[edges + 1];
+        int[] ys = new int[edges + 1];
+        for (int i = 0; i < edges; i++) {
+            double r = radius * (0.5 + random.nextDouble() / 2);
+            xs[i] = (int) Math.round(r * Math.cos(angles[i]));
+            ys[i] = (int) Math.round(r * Math.sin(angles[i]));
+        }
+        switch (random.nextInt(6)) {
+            case 0 -> {
+                int i = random.nextInt(edges);
+                int j = random.nextInt(edges);
+                int swap = xs[i];
+                xs[i] = xs[j];
+                xs[j] = swap;
+                swap = ys[i];
+                ys[i] = ys[j];
+                ys[j] = swap;
+            }
+            case 1 -> {
+                int i = random.nextInt(edges);
+                int j = random.nextInt(edges);
+                xs[i] = xs[j];
+                ys[i] = ys[j];
+            }
+            case 2 -> {
+                // Onto the middle of an edge between two vertices of even coordinates
+                int i = random.nextInt(edges - 1);
+                xs[i] &= ~1;
+                ys[i] &= ~1;
+                xs[i + 1] &= ~1;
+                ys[i + 1] &= ~1;
+                int p = (i + 2 + random.nextInt(edges - 2)) % edges;
+                xs[p] = (xs[i] + xs[i + 1]) / 2;
+                ys[p] = (ys[i] + ys[i + 1]) / 2;
+            }
+            case 3 -> {
+                int grid = 2 + random.nextInt(edges);
+                for (int i = 0; i < edges; i++) {
+                    xs[i] = random.nextInt(grid);
+                    ys[i] = random.nextInt(grid);
+                }
+            }
+            default -> {
+            }
+        }
+        xs[edges] = xs[0];
+        ys[edges] = ys[0];
+        if (random.nextInt(20) == 0) {
+            xs[edges]++;
+        }
+
+        int scale = 1 + random.nextInt(3) * random.nextInt(1000);
+        int offsetX = random.nextInt(2 * MAX / 4) - MAX / 4;
+        int offsetY = random.nextInt(2 * MAX / 4) - MAX / 4;
+        if (random.nextBoolean()) {
+            offsetX = 0;
+            offsetY = 0;
+        }
+        for (int i = 0; i <= edges; i++) {
+            xs[i] = xs[i] * scale + offsetX;
+            ys[i] = ys[i] * scale + offsetY;
+        }
+        return new IntShape2D(xs, ys);
+    }
+}
@@ -0,0 +1,201 @@
+package com.company.theshapefixer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The triangles of a valid shape are all counter-clockwise, cover its area, and fit together: every edge
+ * of the shape belongs to one triangle and every diagonal to two, once in each direction
+ */
+class MonotoneTriangulatorTest {
+
+    @Test
+    void trianglesCoverTheShape() {
+        Random random = new Random(25);
+        TheShapeFixer fixer = new TheShapeFixer();
+        for (int t = 0; t < 6000; t++) {
+            List<double[]> corners = switch (t % 3) {
+                case 0 -> star(random);
+                case 1 -> comb(random);
+                default -> ellipse(random);
+            };
+            if (random.nextBoolean()) {
+                Collections.reverse(corners);
+            }
+            // Not smaller, the collinearity tolerance would find points on edges
+            double scale = Math.pow(10, random.nextInt(4));
+            PackedShape2D shape = closed(corners, scale, random.nextBoolean() ? 0 : scale * 1000);
+            TriangulatedShape triangulated = fixer.triangulate(shape);
+            String where = "shape " + t + " " + shape.getPoints();
+            assertTrue(triangulated.valid(), where);
+            assertTriangulation(shape, triangulated.triangles(), where);
+        }
+    }
+
+    @Test
+    void convexShapesAreCutIntoAFan() {
+        Random random = new Random(26);
+        ValidatorContext context = ValidatorContext.acquire();
+        try {
+            for (int t = 0; t < 200; t++) {
+                List<double[]> corners = ellipse(random);
+                if (random.nextBoolean()) {
+                    Collections.reverse(corners);
+                }
+                PackedShape2D shape = closed(corners, 1, 0);
+                assertEquals(ValidationTier.CONVEX, ValidationPrefilter.check(shape, context).tier());
+                String where = "shape " + t + " " + shape.getPoints();
+                assertTriangulation(shape, MonotoneTriangulator.fan(shape), where);
+                assertTriangulation(shape, MonotoneTriangulator.triangulate(shape,
+                        VertexOrder.sorted(shape.xArray(), shape.yArray(), shape.size(), context)), where);
+            }
+        } finally {
+            context.release();
+        }
+    }
+
+    @Test
+    void invalidShapesHaveNoTriangles() {
+        TheShapeFixer fixer = new TheShapeFixer();
+        PackedShape2D crossing = closed(List.of(new double[]{0, 0}, new double[]{2, 2}, new double[]{2, 0},
+                new double[]{0, 2}), 1, 0);
+        TriangulatedShape triangulated = fixer.triangulate(crossing);
+        assertFalse(triangulated.valid());
+        assertEquals(0, triangulated.triangles().length);
+
+        PackedShape2D open = PackedShape2D.of(List.of(new Point2D(0, 0), new Point2D(1, 0), new Point2D(1, 1)));
+        assertEquals(0, fixer.triangulate(open).triangles().length);
+    }
+
+    private static void assertTriangulation(PackedShape2D shape, int[] triangles, String where) {
+        int m = shape.size() - 1;
+        double[] xs = shape.xArray();
+        double[] ys = shape.yArray();
+        assertEquals(3 * (m - 2), triangles.length, where);
+
+        double area = 0;
+        double magnitude = 0;
+        // Directed edges of the triangles, as from * m + to, with how often each one is used
+        Map<Long, Integer> edges = new HashMap<>();
+        for (int t = 0; t < triangles.length; t += 3) {
+            int a = triangles[t];
+            int b = triangles[t + 1];
+            int c = triangles[t + 2];
+            assertTrue(a >= 0 && a < m && b >= 0 && b < m && c >= 0 && c < m, where);
+            assertEquals(1, GeometryPredicates.orientation(xs, ys, a, b, c), where + " triangle " + t / 3);
+            double twice = (xs[b] - xs[a]) * (ys[c] - ys[a]) - (ys[b] - ys[a]) * (xs[c] - xs[a]);
+            area += twice / 2;
+            magnitude += Math.abs(twice / 2);
+            edges.merge((long) a * m + b, 1, Integer::sum);
+            edges.merge((long) b * m + c, 1, Integer::sum);
+            edges.merge((long) c * m + a, 1, Integer::sum);
+        }
+
+        // Measured from the first point, far from the origin the products would cancel out
+        double shapeArea = 0;
+        for (int i = 1; i < m; i++) {
+            shapeArea += ((xs[i] - xs[0]) * (ys[i + 1] - ys[0]) - (xs[i + 1] - xs[0]) * (ys[i] - ys[0])) / 2;
+        }
+        boolean clockwise = shapeArea < 0;
+        assertEquals(Math.abs(shapeArea), area, 1e-9 * magnitude, where);
+
+        // The edges of the shape walked counter-clockwise, once each and never backwards
+        for (int i = 0; i < m; i++) {
+            int from = clockwise ? i + 1 == m ? 0 : i + 1 : i;
+            int to = clockwise ? i : i + 1 == m ? 0 : i + 1;
+            assertEquals(1, edges.remove((long) from * m + to), where + " edge " + from + " " + to);
+            assertFalse(edges.containsKey((long) to * m + from), where + " edge " + to + " " + from);
+        }
+        // The diagonals, once in each direction
+        for (Map.Entry<Long, Integer> edge : edges.entrySet()) {
+            long from = edge.getKey() / m;
+            long to = edge.getKey() % m;
+            assertEquals(1, edge.getValue(), where + " diagonal " + from + " " + to);
+            assertEquals(1, edges.get(to * m + from), where + " diagonal " + to + " " + from);
+        }
+    }
+
+    /**
+     * Points around the origin in angle order at random distances, so with many reflex vertices
+     */
+    private static List<double[]> star(Random random) {
+        int points = 3 + random.nextInt(random.nextBoolean() ? 10 : 200);
+        List<double[]> corners = new ArrayList<>();
+        for (int i = 0; i < points; i++) {
+            double angle = (i + random.nextDouble() * 0.8) * 2 * Math.PI / points;
+            double radius = 0.1 + random.nextDouble();
+            corners.add(new double[]{radius * Math.cos(angle), radius * Math.sin(angle)});
+        }
+        return corners;
+    }
+
+    /**
+     * Axis-aligned teeth of different lengths on a common back, pointing along x or along y, so that many
+     * vertices share an x or a y coordinate and the sweep meets split and merge vertices. Some edges have
+     * an extra vertex in their middle.
+     */
+    private static List<double[]> comb(Random random) {
+        int teeth = 1 + random.nextInt(random.nextBoolean() ? 5 : 60);
+        List<double[]> corners = new ArrayList<>();
+        corners.add(new double[]{0, 0});
+        for (int i = 0; i < teeth; i++) {
+            int length = 1 + random.nextInt(20);
+            corners.add(new double[]{length, 2 * i});
+            corners.add(new double[]{length, 2 * i + 1});
+            if (i + 1 < teeth) {
+                corners.add(new double[]{0.5, 2 * i + 1});
+                corners.add(new double[]{0.5, 2 * i + 2});
+            }
+        }
+        corners.add(new double[]{0, 2 * teeth - 1});
+        // Vertices in the middle of some edges, with a straight angle
+        for (int i = corners.size() - 1; i >= 0; i--) {
+            if (random.nextInt(4) == 0) {
+                double[] from = corners.get(i);
+                double[] to = corners.get((i + 1) % corners.size());
+                corners.add(i + 1, new double[]{(from[0] + to[0]) / 2, (from[1] + to[1]) / 2});
+            }
+        }
+        if (random.nextBoolean()) {
+            for (double[] corner : corners) {
+                double x = corner[0];
+                corner[0] = corner[1];
+                corner[1] = x;
+            }
+        }
+        return corners;
+    }
+
+    /**
+     * Points on an ellipse in angle order, a convex shape
+     */
+    private static List<double[]> ellipse(Random random) {
+        int points = ValidationPrefilter.TINY_SIZE + 1 + random.nextInt(60);
+        double width = 1 + random.nextDouble() * 10;
+        List<double[]> corners = new ArrayList<>();
+        for (int i = 0; i < points; i++) {
+            double angle = (i + random.nextDouble() * 0.5) * 2 * Math.PI / points;
+            corners.add(new double[]{width * Math.cos(angle), Math.sin(angle)});
+        }
+        return corners;
+    }
+
+    private static PackedShape2D closed(List<double[]> corners, double scale, double offset) {
+        PackedShape2D.Builder builder = new PackedShape2D.Builder();
+        for (double[] corner : corners) {
+            builder.add(offset + corner[0] * scale, offset + corner[1] * scale);
+        }
+        builder.add(offset + corners.get(0)[0] * scale, offset + corners.get(0)[1] * scale);
+        return builder.build();
+    }
+}
@@ -0,0 +1,132 @@
+package com.company.theshapefixer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * The test task runs without the Vector API module, so the scalar kernel must be the one picked; the
+ * vectorTest task runs with it, and the vector kernel must then answer exactly like the scalar one
+ */
+class PredicateKernelTest {
+
+    private static final boolean VECTOR_MODULE = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+
+    @Test
+    void scalarKernelIsPreferredWithoutTheVectorModule() {
+        if (!VECTOR_MODULE) {
+            assertSame(PredicateKernel.scalar(), PredicateKernel.preferred());
+        }
+        assertEquals(1, PredicateKernel.scalar().lanes());
+    }
+
+    @Test
+    void squareIsValidWithThePreferredKernel() {
+        TheShapeFixer fixer = new TheShapeFixer(IntersectionStrategy.BRUTE_FORCE);
+        assertEquals(true, fixer.isValid(new PackedShape2D(new double[]{0, 10, 10, 0, 0}, new double[]{0, 0, 10, 10, 0})));
+        assertEquals(false, fixer.isValid(new PackedShape2D(new double[]{0, 10, 0, 10, 0}, new double[]{0, 10, 10, 0, 0})));
+    }
+
+    @Test
+    void vectorKernelMatchesScalarKernelOnRandomPoints() {
+        PredicateKernel vector = vectorKernel();
+        Random random = new Random(17);
+        for (int t = 0; t < 2000; t++) {
+            int n = random.nextInt(70);
+            double scale = Math.pow(10, random.nextInt(13) - 6);
+            double[] xs = new double[n];
+            double[] ys = new double[n];
+            for (int i = 0; i < n; i++) {
+                xs[i] = (random.nextDouble() - 0.5) * scale;
+                ys[i] = (random.nextDouble() - 0.5) * scale;
+            }
+            double[] segment = {(random.nextDouble() - 0.5) * scale, (random.nextDouble() - 0.5) * scale,
+                    (random.nextDouble() - 0.5) * scale, (random.nextDouble() - 0.5) * scale};
+            assertSameAnswers(vector, segment, xs, ys);
+        }
+    }
+
+    @Test
+    void vectorKernelMatchesScalarKernelOnGridPoints() {
+        PredicateKernel vector = vectorKernel();
+        Random random = new Random(18);
+        for (int t = 0; t < 2000; t++) {
+            int n = random.nextInt(70);
+            int grid = 1 + random.nextInt(5);
+            double[] xs = new double[n];
+            double[] ys = new double[n];
+            for (int i = 0; i < n; i++) {
+                xs[i] = random.nextInt(grid * 2 + 1) - grid;
+                ys[i] = random.nextInt(grid * 2 + 1) - grid;
+            }
+            // Segments between grid points, often through many of the points, sometimes of zero length
+            double[] segment = {random.nextInt(grid * 2 + 1) - grid, random.nextInt(grid * 2 + 1) - grid,
+                    random.nextInt(grid * 2 + 1) - grid, random.nextInt(grid * 2 + 1) - grid};
+            assertSameAnswers(vector, segment, xs, ys);
+        }
+    }
+
+    @Test
+    void vectorKernelMatchesScalarKernelOnDegeneratePoints() {
+        PredicateKernel vector = vectorKernel();
+        Random random = new Random(19);
+        double tolerance = SegmentPassingThroughPoint.COLLINEARITY_EPSILON;
+        for (int t = 0; t < 2000; t++) {
+            int n = random.nextInt(70);
+            double ax = random.nextInt(100);
+            double ay = random.nextInt(100);
+            double bx = random.nextInt(3) == 0 ? ax : ax + 1 + random.nextInt(1000);
+            double by = random.nextInt(3) == 0 ? ay : ay + random.nextInt(1000) - 500;
+            double[] xs = new double[n];
+            double[] ys = new double[n];
+            for (int i = 0; i < n; i++) {
+                // On the line inside, beyond or at the ends of the segment, then moved by about the tolerance
+                double s = random.nextInt(4) == 0 ? random.nextInt(3) - 0.5 : random.nextDouble() * 3 - 1;
+                xs[i] = ax + s * (bx - ax);
+                ys[i] = ay + s * (by - ay);
+                switch (random.nextInt(4)) {
+                    case 0 -> ys[i] += (random.nextInt(5) - 2) * tolerance / 2;
+                    case 1 -> xs[i] = Math.nextUp(xs[i]);
+                    case 2 -> {
+                        xs[i] = random.nextBoolean() ? ax : bx;
+                        ys[i] = xs[i] == ax ? ay : by;
+                    }
+                    default -> {
+                    }
+                }
+            }
+            assertSameAnswers(vector, new double[]{ax, ay, bx, by}, xs, ys);
+        }
+    }
+
+    private static PredicateKernel vectorKernel() {
+        if (Boolean.getBoolean("theshapefixer.expectVectorKernel")) {
+            assertTrue(VECTOR_MODULE, "The vectorTest task must run with the Vector API module");
+        }
+        assumeTrue(VECTOR_MODULE, "The Vector API module is not loaded");
+        PredicateKernel vector = PredicateKernel.preferred();
+        assertTrue(vector.lanes() > 1, "The vector kernel is not used");
+        return vector;
+    }
+
+    /**
+     * Every start index and a few ends, so the runs are of every length and mostly not a multiple of the lanes
+     */
+    private static void assertSameAnswers(PredicateKernel vector, double[] segment, double[] xs, double[] ys) {
+        PredicateKernel scalar = PredicateKernel.scalar();
+        int n = xs.length;
+        for (int from = 0; from <= n; from++) {
+            for (int to : new int[]{n, Math.max(from, n - 1), Math.min(n, from + 5)}) {
+                assertEquals(scalar.nextPointOnSegment(segment[0], segment[1], segment[2], segment[3], xs, ys, from, to),
+                        vector.nextPointOnSegment(segment[0], segment[1], segment[2], segment[3], xs, ys, from, to));
+                assertEquals(scalar.nextSideChange(segment[0], segment[1], segment[2], segment[3], xs, ys, from, to),
+                        vector.nextSideChange(segment[0], segment[1], segment[2], segment[3], xs, ys, from, to));
+            }
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.company.theshapefixer;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The grid search must find every point the collinearity tolerance accepts, the same as testing all pairs
+ */
+class SegmentPassingThroughPointTest {
+
+    private static final int POINTS = 10000;
+
+    // Steep segment from the origin, its slope turns the tolerance across it into a long way up or down
+    private static final double END_X = 1;
+    private static final double END_Y = 1000;
+
+    @Test
+    void pointNextToSteepSegmentAcrossColumnEdgeIsFound() {
+        double length = Math.hypot(END_X, END_Y);
+        double tolerance = SegmentPassingThroughPoint.COLLINEARITY_EPSILON / length;  // As a distance
+        double[] xs = new double[POINTS];
+        double[] ys = new double[POINTS];
+        xs[1] = END_X;
+        ys[1] = END_Y;
+        xs[3] = 4;
+
+        // Short edges around a circle away from the segment make the cells small
+        for (int i = 4; i < POINTS; i++) {
+            double angle = 2 * Math.PI * i / POINTS;
+            xs[i] = 5 + 0.5 * Math.cos(angle);
+            ys[i] = 500 + 0.5 * Math.sin(angle);
+        }
+
+        // Point 2 lies just right of the segment, in the column after its foot, and the lowest point puts a
+        // row edge between point 2 and where the segment enters that column. The cell size depends on both
+        // points, so they are placed a few times over.
+        VertexGridIndex grid = null;
+        for (int round = 0; round < 6; round++) {
+            grid = new VertexGridIndex(xs, ys, POINTS, null);
+            double cellSize = grid.columnMinX(1) - grid.columnMinX(0);
+            double footX = grid.columnMinX(1) - 0.3 * tolerance;
+            xs[2] = footX + 0.9 * tolerance * END_Y / length;
+            ys[2] = footX * END_Y / END_X - 0.9 * tolerance * END_X / length;
+
+            // Row edge END_Y / END_X cells above the lowest point, just below the entry of the segment
+            double entry = grid.columnMinX(1) * END_Y / END_X;
+            ys[3] = entry - 2e-8 - END_Y / END_X * cellSize;
+        }
+        grid = new VertexGridIndex(xs, ys, POINTS, null);
+        double entry = grid.columnMinX(1) * END_Y / END_X;
+        assertTrue(grid.cellX(xs[2]) == 1 && grid.cellX(grid.columnMinX(1) - tolerance) == 0);
+        assertNotEquals(grid.cellY(entry), grid.cellY(ys[2]));
+        assertTrue(GeometryPredicates.isPointOnSegment(xs[2], ys[2], 0, 0, END_X, END_Y));
+
+        assertTrue(SegmentPassingThroughPoint.hasSegmentPassingThroughPoint(new PackedShape2D(xs, ys)));
+    }
+
+    @Test
+    void pointsAroundCircleAreNotOnItsEdges() {
+        double[] xs = new double[POINTS];
+        double[] ys = new double[POINTS];
+        for (int i = 0; i < POINTS; i++) {
+            double angle = 2 * Math.PI * i / POINTS;
+            xs[i] = Math.cos(angle);
+            ys[i] = Math.sin(angle);
+        }
+        assertFalse(SegmentPassingThroughPoint.hasSegmentPassingThroughPoint(new PackedShape2D(xs, ys)));
+    }
+}
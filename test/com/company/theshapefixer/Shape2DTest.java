@@ -0,0 +1,56 @@
+package com.company.theshapefixer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * The points of every kind of shape are read-only, and a shape built from a list does not follow later
+ * changes of that list
+ */
+class Shape2DTest {
+
+    private static final List<Point2D> SQUARE = List.of(new Point2D(0, 0), new Point2D(1, 0), new Point2D(1, 1),
+            new Point2D(0, 1), new Point2D(0, 0));
+
+    @Test
+    void pointsAreCopiedOnce() {
+        List<Point2D> points = new ArrayList<>(SQUARE);
+        Shape2D shape = new Shape2D(points);
+        points.set(1, new Point2D(5, 5));
+        points.add(new Point2D(7, 7));
+        assertEquals(SQUARE, shape.getPoints());
+
+        // An unmodifiable list, like the points of another shape, is shared
+        assertSame(shape.getPoints(), new Shape2D(shape.getPoints()).getPoints());
+    }
+
+    @Test
+    void nullPointsAreRejected() {
+        assertThrows(NullPointerException.class, () -> new Shape2D(null));
+        assertThrows(NullPointerException.class, () -> new Shape2D(Arrays.asList(new Point2D(0, 0), null)));
+    }
+
+    @Test
+    void pointsOfEveryShapeAreUnmodifiable() {
+        Shape2D[] shapes = {
+                new Shape2D(SQUARE),
+                PackedShape2D.of(SQUARE),
+                IntShape2D.of(new int[][]{{0, 0}, {1, 0}, {1, 1}, {0, 1}, {0, 0}}),
+                new EditableShape2D(new Shape2D(SQUARE))};
+        for (Shape2D shape : shapes) {
+            List<Point2D> points = shape.getPoints();
+            assertEquals(SQUARE, points);
+            assertThrows(UnsupportedOperationException.class, () -> points.add(new Point2D(2, 2)));
+            assertThrows(UnsupportedOperationException.class, () -> points.set(0, new Point2D(2, 2)));
+            assertThrows(UnsupportedOperationException.class, () -> points.remove(0));
+            assertEquals(SQUARE, shape.getPoints());
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.company.theshapefixer;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Cached entries must not depend on arrays the caller still owns
+ */
+class ShapeCacheTest {
+
+    private static final double[] SQUARE_XS = {0, 10, 10, 0, 0};
+    private static final double[] SQUARE_YS = {0, 0, 10, 10, 0};
+
+    // A square followed by a point that does not close it, so the repair goes through the contour search
+    private static final double[] OPEN_XS = {0, 10, 10, 0, 0, 20};
+    private static final double[] OPEN_YS = {0, 0, 10, 10, 0, 20};
+
+    @Test
+    void keyIsNotChangedByTheInputArrays() {
+        double[] xs = SQUARE_XS.clone();
+        double[] ys = SQUARE_YS.clone();
+        PackedShape2D shape = new PackedShape2D(xs, ys);
+        ShapeCache<String> cache = new ShapeCache<>(4);
+        cache.put(shape, ShapeHash.of(shape), "square");
+
+        xs[1] = 20;
+        xs[2] = 20;
+        assertNull(cache.get(shape, ShapeHash.of(shape)));
+        PackedShape2D square = new PackedShape2D(SQUARE_XS.clone(), SQUARE_YS.clone());
+        assertEquals("square", cache.get(square, ShapeHash.of(square)));
+    }
+
+    @Test
+    void validityIsNotChangedByTheInputArrays() {
+        double[] xs = SQUARE_XS.clone();
+        double[] ys = SQUARE_YS.clone();
+        CachingShapeFixer fixer = new CachingShapeFixer(4);
+        assertTrue(fixer.isValid(new PackedShape2D(xs, ys)));
+
+        // A bow tie in the same arrays, then the square again from other arrays
+        xs[1] = 10;
+        ys[1] = 10;
+        xs[2] = 10;
+        ys[2] = 0;
+        assertFalse(fixer.isValid(new PackedShape2D(xs, ys)));
+        assertTrue(fixer.isValid(new PackedShape2D(SQUARE_XS.clone(), SQUARE_YS.clone())));
+        assertEquals(1, fixer.getValidationCacheStats().hits());
+    }
+
+    @Test
+    void repairIsNotChangedByTheStreamBuffer() throws Exception {
+        CachingShapeFixer fixer = new CachingShapeFixer(4);
+        String lines = "0 0 10 0 10 10 0 10 0 0 20 20\n0 0 5 0 5 5 0 5 0 0 20 20\n";
+        List<Shape2D> streamed = new ArrayList<>();
+        fixer.repairStream(new ByteArrayInputStream(lines.getBytes(StandardCharsets.US_ASCII)), streamed::add);
+
+        assertCoordinates(SQUARE_XS, SQUARE_YS, streamed.get(0));
+        assertCoordinates(SQUARE_XS, SQUARE_YS, fixer.repair(new PackedShape2D(OPEN_XS.clone(), OPEN_YS.clone())));
+        assertEquals(1, fixer.getRepairCacheStats().hits());
+    }
+
+    @Test
+    void repairIsNotChangedByTheInputArrays() {
+        double[] xs = OPEN_XS.clone();
+        double[] ys = OPEN_YS.clone();
+        Shape2D repaired = new TheShapeFixer().repair(new PackedShape2D(xs, ys));
+
+        xs[1] = 5;
+        xs[2] = 5;
+        assertCoordinates(SQUARE_XS, SQUARE_YS, repaired);
+    }
+
+    private static void assertCoordinates(double[] xs, double[] ys, Shape2D shape) {
+        PackedShape2D packed = PackedShape2D.of(shape);
+        assertEquals(xs.length, packed.size());
+        assertArrayEquals(xs, Arrays.copyOf(packed.xArray(), packed.size()));
+        assertArrayEquals(ys, Arrays.copyOf(packed.yArray(), packed.size()));
+    }
+}
@@ -0,0 +1,243 @@
+package com.company.theshapefixer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Shapes written to a file must be mapped back with the same coordinates, bit for bit, whatever the
+ * coordinate type and however the file is split into windows
+ */
+class ShapeFileTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void doublesRoundTrip() throws IOException {
+        Random random = new Random(8);
+        List<PackedShape2D> shapes = new ArrayList<>();
+        for (int s = 0; s < 500; s++) {
+            shapes.add(randomShape(random, random.nextInt(300), false));
+        }
+        shapes.add(new PackedShape2D(new double[]{-0.0, Double.NaN, Double.POSITIVE_INFINITY, Double.MIN_VALUE},
+                new double[]{Double.MAX_VALUE, -Double.MIN_NORMAL, Double.NEGATIVE_INFINITY, 0.0}));
+
+        Path path = write(shapes, CoordinateType.DOUBLE);
+        assertEquals(ShapeFileFormat.HEADER_SIZE + 16L * totalPoints(shapes) + 8L * (shapes.size() + 1),
+                Files.size(path));
+        try (ShapeFile file = ShapeFile.open(path)) {
+            assertEquals(CoordinateType.DOUBLE, file.getCoordinateType());
+            assertShapes(shapes, file);
+        }
+    }
+
+    @Test
+    void intsRoundTrip() throws IOException {
+        Random random = new Random(9);
+        List<PackedShape2D> shapes = new ArrayList<>();
+        for (int s = 0; s < 500; s++) {
+            shapes.add(randomShape(random, random.nextInt(300), true));
+        }
+        shapes.add(new PackedShape2D(new double[]{Integer.MIN_VALUE, Integer.MAX_VALUE, 0},
+                new double[]{Integer.MAX_VALUE, -1, Integer.MIN_VALUE}));
+
+        Path path = write(shapes, CoordinateType.INT);
+        assertEquals(ShapeFileFormat.HEADER_SIZE + 8L * totalPoints(shapes) + 8L * (shapes.size() + 1),
+                Files.size(path));
+        try (ShapeFile file = ShapeFile.open(path)) {
+            assertEquals(CoordinateType.INT, file.getCoordinateType());
+            assertShapes(shapes, file);
+        }
+    }
+
+    @Test
+    void intWriterRejectsOtherCoordinates() throws IOException {
+        try (ShapeFileWriter writer = new ShapeFileWriter(directory.resolve("ints.shp"), CoordinateType.INT)) {
+            for (double value : new double[]{0.5, -0.0, 1e10, -2147483649.0, Double.NaN, Double.POSITIVE_INFINITY}) {
+                PackedShape2D shape = new PackedShape2D(new double[]{0, value}, new double[]{0, 0});
+                assertThrows(IllegalArgumentException.class, () -> writer.write(shape), Double.toString(value));
+            }
+            assertEquals(0, writer.getShapeCount());
+        }
+    }
+
+    @Test
+    void emptyFilesAndShapesRoundTrip() throws IOException {
+        for (CoordinateType type : CoordinateType.values()) {
+            try (ShapeFile file = ShapeFile.open(write(List.of(), type))) {
+                assertEquals(0, file.getShapeCount());
+                assertThrows(IndexOutOfBoundsException.class, () -> file.get(0));
+            }
+
+            PackedShape2D empty = new PackedShape2D(new double[0], new double[0]);
+            PackedShape2D square = new PackedShape2D(new double[]{0, 1, 1, 0, 0}, new double[]{0, 0, 1, 1, 0});
+            List<PackedShape2D> shapes = List.of(empty, square, empty, empty);
+            try (ShapeFile file = ShapeFile.open(write(shapes, type))) {
+                assertShapes(shapes, file);
+                assertThrows(IndexOutOfBoundsException.class, () -> file.get(-1));
+                assertThrows(IndexOutOfBoundsException.class, () -> file.get(4));
+            }
+        }
+    }
+
+    @Test
+    void shapesAcrossWindowBoundariesMoveToTheNextWindow() throws IOException {
+        Random random = new Random(10);
+        for (CoordinateType type : CoordinateType.values()) {
+            List<PackedShape2D> shapes = new ArrayList<>();
+            int largest = 0;
+            for (int s = 0; s < 400; s++) {
+                PackedShape2D shape = randomShape(random, random.nextInt(40), type == CoordinateType.INT);
+                shapes.add(shape);
+                largest = Math.max(largest, 2 * type.bytes() * shape.size());
+            }
+            Path path = write(shapes, type);
+            // The smallest window only fits the largest shape, the others split the file at odd offsets
+            for (long window : new long[]{largest, largest + 1, 1000, 4099, 1 << 20}) {
+                try (ShapeFile file = ShapeFile.open(path, window)) {
+                    assertShapes(shapes, file);
+                }
+            }
+            long tooSmall = largest - 1;
+            assertThrows(IOException.class, () -> ShapeFile.open(path, tooSmall));
+        }
+    }
+
+    @Test
+    void incompleteFilesAreRejected() throws IOException {
+        Random random = new Random(11);
+        List<PackedShape2D> shapes = List.of(randomShape(random, 20, false), randomShape(random, 30, false));
+        Path path = write(shapes, CoordinateType.DOUBLE);
+        byte[] bytes = Files.readAllBytes(path);
+
+        for (int length : new int[]{0, 10, ShapeFileFormat.HEADER_SIZE, bytes.length - 1}) {
+            Path truncated = directory.resolve("truncated" + length + ".shp");
+            Files.write(truncated, Arrays.copyOf(bytes, length));
+            assertThrows(IOException.class, () -> ShapeFile.open(truncated), "length " + length);
+        }
+
+        // A file whose writer was not closed has no offset table
+        Path unclosed = directory.resolve("unclosed.shp");
+        byte[] header = Arrays.copyOf(bytes, bytes.length);
+        for (int i = ShapeFileFormat.TABLE_OFFSET_OFFSET; i < ShapeFileFormat.TABLE_OFFSET_OFFSET + 8; i++) {
+            header[i] = 0;
+        }
+        Files.write(unclosed, header);
+        assertThrows(IOException.class, () -> ShapeFile.open(unclosed));
+    }
+
+    @Test
+    void eachCallCopiesAMappedShapeOnce() {
+        TheShapeFixer fixer = new TheShapeFixer();
+        PackedShape2D[] shapes = {
+                new PackedShape2D(new double[]{0, 10, 10, 5, 0, 0}, new double[]{0, 0, 10, 5, 10, 0}),   // Concave
+                new PackedShape2D(new double[]{0, 10, 10, 0, 0}, new double[]{0, 0, 10, 10, 0}),         // Convex
+                new PackedShape2D(new double[]{0, 10, 0, 10, 0}, new double[]{0, 10, 10, 0, 0})};        // Crossing
+        for (PackedShape2D shape : shapes) {
+            CountingShape mapped = new CountingShape(shape);
+            assertEquals(fixer.isValid(shape), fixer.isValid(mapped));
+            assertEquals(1, mapped.copies);
+
+            mapped.copies = 0;
+            TriangulatedShape triangulated = fixer.triangulate(mapped);
+            assertEquals(1, mapped.copies);
+            assertArrayEquals(fixer.triangulate(shape).triangles(), triangulated.triangles());
+
+            mapped.copies = 0;
+            assertEquals(fixer.repair(shape).getPoints(), fixer.repair(mapped).getPoints());
+            assertEquals(1, mapped.copies);
+        }
+    }
+
+        private Path write(List<PackedShape2D> shapes, CoordinateType type) throws IOException {
+        Path path = Files.createTempFile(directory, "shapes", ".shp");
+        try (ShapeFileWriter writer = new ShapeFileWriter(path, type)) {
+            for (PackedShape2D shape : shapes) {
+                writer.write(shape);
+            }
+            assertEquals(shapes.size(), writer.getShapeCount());
+        }
+        return path;
+    }
+
+    private static void assertShapes(List<PackedShape2D> expected, ShapeFile file) {
+        assertEquals(expected.size(), file.getShapeCount());
+        for (int s = 0; s < expected.size(); s++) {
+            PackedShape2D shape = expected.get(s);
+            Shape2D mapped = file.get(s);
+            assertEquals(shape.size(), mapped.size(), "shape " + s);
+            for (int i = 0; i < shape.size(); i++) {
+                // Compares the bits, so NaN, -0.0 and infinities must come back as they were
+                assertEquals(shape.getX(i), mapped.getX(i), "shape " + s);
+                assertEquals(shape.getY(i), mapped.getY(i), "shape " + s);
+            }
+            assertEquals(shape.getPoints(), mapped.getPoints(), "shape " + s);
+            assertEquals(shape.getPoints(), PackedShape2D.of(mapped).getPoints(), "shape " + s);
+        }
+    }
+
+    private static long totalPoints(List<PackedShape2D> shapes) {
+        long points = 0;
+        for (PackedShape2D shape : shapes) {
+            points += shape.size();
+        }
+        return points;
+    }
+
+    private static PackedShape2D randomShape(Random random, int size, boolean ints) {
+        double[] xs = new double[size];
+        double[] ys = new double[size];
+        for (int i = 0; i < size; i++) {
+            if (ints) {
+                xs[i] = random.nextInt() >> random.nextInt(32);
+                ys[i] = random.nextInt() >> random.nextInt(32);
+            } else {
+                xs[i] = (random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(40) - 20);
+                ys[i] = (random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(40) - 20);
+            }
+        }
+        return new PackedShape2D(xs, ys);
+    }
+
+    /**
+     * Mapped shape over a heap buffer, counting how often it is copied into arrays
+     */
+    private static final class CountingShape extends MappedShape2D {
+        int copies;
+
+        CountingShape(PackedShape2D shape) {
+            super(buffer(shape), 0, shape.size(), CoordinateType.DOUBLE);
+        }
+
+        @Override
+        PackedShape2D toPacked() {
+            copies++;
+            return super.toPacked();
+        }
+
+        private static ByteBuffer buffer(PackedShape2D shape) {
+            ByteBuffer buffer = ByteBuffer.allocate(16 * shape.size()).order(ByteOrder.LITTLE_ENDIAN);
+            for (int i = 0; i < shape.size(); i++) {
+                buffer.putDouble(shape.getX(i));
+            }
+            for (int i = 0; i < shape.size(); i++) {
+                buffer.putDouble(shape.getY(i));
+            }
+            return buffer;
+        }
+    }
+}
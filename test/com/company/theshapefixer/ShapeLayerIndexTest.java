@@ -0,0 +1,246 @@
+package com.company.theshapefixer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The index must answer like a check of every pair of shapes and every pair of their edges. The shapes are
+ * staircases of grid cells, so two of them overlap exactly when they have a cell in common; a shear of the
+ * whole layer turns their edges diagonal without changing any answer.
+ */
+class ShapeLayerIndexTest {
+
+    private static final int LAYERS = 60;
+    private static final int SHAPES = 40;
+
+    @Test
+    void indexMatchesPairwiseChecks() {
+        Random random = new Random(24);
+        int small = 0;
+        int large = 0;
+        for (int t = 0; t < LAYERS; t++) {
+            int shear = random.nextInt(3) - 1;
+            List<Staircase> staircases = new ArrayList<>();
+            List<Shape2D> shapes = new ArrayList<>();
+            for (int s = 0; s < SHAPES; s++) {
+                Staircase staircase = new Staircase(random, shear);
+                staircases.add(staircase);
+                shapes.add(staircase.shape);
+                if (staircase.shape.size() - 1 > 32) {  // Shapes with an edge tree in the index
+                    large++;
+                } else {
+                    small++;
+                }
+            }
+            ShapeLayerIndex index = new ShapeLayerIndex(shapes);
+
+            List<int[]> overlappingPairs = new ArrayList<>();
+            int[] parent = new int[SHAPES];
+            for (int s = 0; s < SHAPES; s++) {
+                parent[s] = s;
+            }
+            for (int s = 0; s < SHAPES; s++) {
+                List<Integer> touching = new ArrayList<>();
+                List<Integer> sharing = new ArrayList<>();
+                List<Integer> overlapping = new ArrayList<>();
+                for (int o = 0; o < SHAPES; o++) {
+                    if (o == s) {
+                        continue;
+                    }
+                    Staircase a = staircases.get(s);
+                    Staircase b = staircases.get(o);
+                    if (touches(a.shape, b.shape)) {
+                        touching.add(o);
+                    }
+                    if (sharesEdge(a.shape, b.shape)) {
+                        sharing.add(o);
+                        parent[root(parent, o)] = root(parent, s);
+                    }
+                    if (a.overlaps(b)) {
+                        overlapping.add(o);
+                        if (o > s) {
+                            overlappingPairs.add(new int[]{s, o});
+                        }
+                    }
+                }
+                String where = "layer " + t + " shape " + s;
+                assertArrayEquals(toArray(touching), index.touching(s), where);
+                assertArrayEquals(toArray(sharing), index.sharingEdge(s), where);
+                assertArrayEquals(toArray(overlapping), index.overlapping(s), where);
+            }
+
+            int[][] pairs = index.findOverlappingPairs();
+            assertEquals(overlappingPairs.size(), pairs.length);
+            for (int k = 0; k < pairs.length; k++) {
+                assertArrayEquals(overlappingPairs.get(k), pairs[k]);
+            }
+            assertEquals(groups(parent), groups(index.edgeSharingGroups()));
+        }
+        assertTrue(small > LAYERS * SHAPES / 4 && large > LAYERS * SHAPES / 4);
+    }
+
+    /**
+     * Shape made of the cells under a random step function, its corners in either winding
+     */
+    private static final class Staircase {
+        private final Set<Long> cells = new HashSet<>();
+        private final PackedShape2D shape;
+
+        Staircase(Random random, int shear) {
+            int x0 = random.nextInt(40);
+            int y0 = random.nextInt(40);
+            int width = random.nextBoolean() ? 1 + random.nextInt(4) : 16 + random.nextInt(30);
+            int[] height = new int[width];
+            height[0] = 1 + random.nextInt(6);
+            for (int x = 1; x < width; x++) {
+                height[x] = random.nextInt(5) == 0 ? height[x - 1] : 1 + random.nextInt(6);
+            }
+            for (int x = 0; x < width; x++) {
+                for (int y = 0; y < height[x]; y++) {
+                    cells.add((long) (x0 + x) << 32 | (y0 + y));
+                }
+            }
+
+            List<long[]> corners = new ArrayList<>();
+            corners.add(new long[]{x0, y0});
+            corners.add(new long[]{x0 + width, y0});
+            corners.add(new long[]{x0 + width, y0 + height[width - 1]});
+            for (int x = width - 1; x > 0; x--) {
+                if (height[x - 1] != height[x]) {
+                    corners.add(new long[]{x0 + x, y0 + height[x]});
+                    corners.add(new long[]{x0 + x, y0 + height[x - 1]});
+                }
+            }
+            corners.add(new long[]{x0, y0 + height[0]});
+            if (random.nextBoolean()) {
+                List<long[]> reversed = new ArrayList<>(corners.subList(1, corners.size()));
+                Collections.reverse(reversed);
+                reversed.add(0, corners.get(0));
+                corners = reversed;
+            }
+            corners.add(corners.get(0));
+
+            PackedShape2D.Builder builder = new PackedShape2D.Builder();
+            for (long[] corner : corners) {
+                builder.add(corner[0] + shear * corner[1], corner[1]);
+            }
+            shape = builder.build();
+        }
+
+        boolean overlaps(Staircase other) {
+            for (long cell : cells) {
+                if (other.cells.contains(cell)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static boolean touches(PackedShape2D a, PackedShape2D b) {
+        for (int i = 0; i < a.size() - 1; i++) {
+            for (int j = 0; j < b.size() - 1; j++) {
+                if (segmentsMeet(a, i, b, j)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean sharesEdge(PackedShape2D a, PackedShape2D b) {
+        for (int i = 0; i < a.size() - 1; i++) {
+            for (int j = 0; j < b.size() - 1; j++) {
+                if (orientation(a, i, b, j) == 0 && orientation(a, i, b, j + 1) == 0) {
+                    // Collinear, compare along the axis the edge is not constant in
+                    boolean alongX = a.getX(i) != a.getX(i + 1);
+                    double a0 = alongX ? a.getX(i) : a.getY(i);
+                    double a1 = alongX ? a.getX(i + 1) : a.getY(i + 1);
+                    double b0 = alongX ? b.getX(j) : b.getY(j);
+                    double b1 = alongX ? b.getX(j + 1) : b.getY(j + 1);
+                    if (Math.max(Math.min(a0, a1), Math.min(b0, b1)) < Math.min(Math.max(a0, a1), Math.max(b0, b1))) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean segmentsMeet(PackedShape2D a, int i, PackedShape2D b, int j) {
+        long d1 = orientation(b, j, a, i);
+        long d2 = orientation(b, j, a, i + 1);
+        long d3 = orientation(a, i, b, j);
+        long d4 = orientation(a, i, b, j + 1);
+        if (d1 * d2 < 0 && d3 * d4 < 0) {
+            return true;
+        }
+        return d1 == 0 && inBox(a, i, b, j) || d2 == 0 && inBox(a, i + 1, b, j)
+                || d3 == 0 && inBox(b, j, a, i) || d4 == 0 && inBox(b, j + 1, a, i);
+    }
+
+    /**
+     * Sign of the turn from edge i of a to point k of b, in exact long arithmetic
+     */
+    private static long orientation(PackedShape2D a, int i, PackedShape2D b, int k) {
+        long ax = (long) a.getX(i);
+        long ay = (long) a.getY(i);
+        long cross = ((long) a.getX(i + 1) - ax) * ((long) b.getY(k) - ay)
+                - ((long) a.getY(i + 1) - ay) * ((long) b.getX(k) - ax);
+        return Long.signum(cross);
+    }
+
+    private static boolean inBox(PackedShape2D p, int k, PackedShape2D s, int j) {
+        double x = p.getX(k);
+        double y = p.getY(k);
+        return x >= Math.min(s.getX(j), s.getX(j + 1)) && x <= Math.max(s.getX(j), s.getX(j + 1))
+                && y >= Math.min(s.getY(j), s.getY(j + 1)) && y <= Math.max(s.getY(j), s.getY(j + 1));
+    }
+
+    private static int root(int[] parent, int shape) {
+        while (parent[shape] != shape) {
+            shape = parent[shape];
+        }
+        return shape;
+    }
+
+    private static Set<List<Integer>> groups(int[] parent) {
+        List<List<Integer>> byRoot = new ArrayList<>();
+        for (int s = 0; s < parent.length; s++) {
+            byRoot.add(new ArrayList<>());
+        }
+        for (int s = 0; s < parent.length; s++) {
+            byRoot.get(root(parent, s)).add(s);
+        }
+        Set<List<Integer>> groups = new HashSet<>();
+        for (List<Integer> group : byRoot) {
+            if (!group.isEmpty()) {
+                groups.add(group);
+            }
+        }
+        return groups;
+    }
+
+    private static Set<List<Integer>> groups(int[][] groups) {
+        Set<List<Integer>> result = new HashSet<>();
+        for (int[] group : groups) {
+            result.add(Arrays.stream(group).boxed().toList());
+        }
+        return result;
+    }
+
+    private static int[] toArray(List<Integer> values) {
+        return values.stream().mapToInt(Integer::intValue).toArray();
+    }
+}
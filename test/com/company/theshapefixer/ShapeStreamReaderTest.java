@@ -0,0 +1,181 @@
+package com.company.theshapefixer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Every number must come out as Double.parseDouble rounds it, on the fast path and on the fallback, and
+ * anything that is not a plain decimal number must be rejected
+ */
+class ShapeStreamReaderTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void readsEveryLineLayout() throws IOException {
+        List<List<Point2D>> shapes = read("""
+                # A comment line, then a blank one
+
+                0 0 2 0 2 2 0 0
+                {0, 0}, {2, 0}, {2, 2}, {0, 0}\r
+                [(0;0) (2;0)]\t[(2;2) (0;0)]
+                """);
+        assertEquals(3, shapes.size());
+        List<Point2D> square = List.of(new Point2D(0, 0), new Point2D(2, 0), new Point2D(2, 2), new Point2D(0, 0));
+        for (List<Point2D> shape : shapes) {
+            assertEquals(square, shape);
+        }
+    }
+
+    @Test
+    void readsSignsAndExponents() throws IOException {
+        String[] numbers = {"0", "-0", "+0", "-0.0", "7", "-7", "+7", "1.5", "-1.5", ".5", "-.5", "3.", "007",
+                "0.000123", "1e3", "1E3", "1e+3", "1e-3", "-2.5E-2", "1e22", "1e23", "1e-22", "1e-23", "123e-30",
+                "1.7976931348623157e308", "4.9e-324", "2e-324", "1e-400", "-1e-400", "0e999999", "12e00000000"};
+        assertNumbers(numbers);
+    }
+
+    @Test
+    void readsLongMantissas() throws IOException {
+        String[] numbers = {"9007199254740992", "9007199254740993", "9007199254740995", "18014398509481985",
+                "12345678901234567890", "-12345678901234567890.5", "0.1000000000000000055511151231257827",
+                "0.30000000000000004", "3.141592653589793238462643383279", "2.2250738585072011e-308",
+                "2.2250738585072012e-308", "123456789012345678e-20", "0.00000000000000000000000123456789012345678"};
+        assertNumbers(numbers);
+
+        Random random = new Random(7);
+        String[] randomNumbers = new String[20000];
+        for (int i = 0; i < randomNumbers.length; i++) {
+            randomNumbers[i] = switch (random.nextInt(3)) {
+                case 0 -> Double.toString((random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(60) - 30));
+                case 1 -> Long.toString(random.nextLong() >> random.nextInt(64));
+                default -> randomDecimal(random);
+            };
+        }
+        assertNumbers(randomNumbers);
+    }
+
+    @Test
+    void rejectsWhatIsNotADecimalNumber() {
+        String[] malformed = {"1f", "1F", "1d", "1D", "1.5f", "NaN", "-NaN", "Infinity", "-Infinity", "+Infinity",
+                "0x1p3", "0x10", "-0X1P-2", "1e", "1e+", "1E-", "e5", ".", "-", "+", "-.", ".e1", "--1", "+-1",
+                "1-", "1.2.3", "1e2.5", "1e2e3", "1x", "abc", "1_000"};
+        for (String number : malformed) {
+            IOException e = assertThrows(IOException.class, () -> read("0 0 1 1\n0 " + number + " 1 1\n"), number);
+            assertTrue(e.getMessage().contains("'" + number + "' on line 2"), e.getMessage());
+        }
+        for (String number : new String[]{"1e309", "-1e400", "1.8e308", "99999999999999999999e300"}) {
+            assertThrows(IOException.class, () -> read("0 " + number), number);
+        }
+    }
+
+    @Test
+    void rejectsOddNumberOfCoordinates() {
+        IOException e = assertThrows(IOException.class, () -> read("0 0 1 1\n0 0 1\n"));
+        assertTrue(e.getMessage().contains("line 2"), e.getMessage());
+        assertThrows(IOException.class, () -> read("0 0 1"));
+    }
+
+    @Test
+    void readsTheSameFromEverySource() throws IOException {
+        Random random = new Random(8);
+        StringBuilder text = new StringBuilder();
+        for (int s = 0; s < 500; s++) {
+            int points = 1 + random.nextInt(random.nextBoolean() ? 5 : 50);
+            for (int i = 0; i < 2 * points; i++) {
+                text.append(i == 0 ? "" : random.nextBoolean() ? " " : ", ").append(randomDecimal(random));
+            }
+            text.append(random.nextInt(10) == 0 ? "\r\n" : "\n");
+        }
+        List<List<Point2D>> expected = read(text.toString());
+        assertEquals(500, expected.size());
+
+        byte[] bytes = text.toString().getBytes(StandardCharsets.US_ASCII);
+        assertEquals(expected, collect(consumer -> new ShapeStreamReader().read(new ByteArrayInputStream(bytes), consumer)));
+        Path file = directory.resolve("shapes.txt");
+        Files.write(file, bytes);
+        // Windows of odd sizes end inside numbers and lines
+        for (long window : new long[]{1 << 28, 4096, 1000, 13}) {
+            try (FileChannel channel = FileChannel.open(file)) {
+                assertEquals(expected, collect(consumer -> new ShapeStreamReader(window).read(channel, consumer)),
+                        "window " + window);
+            }
+        }
+    }
+
+    @Test
+    void readsNothingFromAnEmptyStream() throws IOException {
+        assertEquals(List.of(), read(""));
+        assertEquals(List.of(), read("\n\n# Only a comment\n"));
+        Path file = directory.resolve("empty.txt");
+        Files.write(file, new byte[0]);
+        try (FileChannel channel = FileChannel.open(file)) {
+            assertEquals(0, new ShapeStreamReader().read(channel, shape -> {
+            }));
+        }
+    }
+
+    private static void assertNumbers(String[] numbers) throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (String number : numbers) {
+            text.append("0 ").append(number).append('\n');
+        }
+        List<List<Point2D>> shapes = read(text.toString());
+        assertEquals(numbers.length, shapes.size());
+        for (int i = 0; i < numbers.length; i++) {
+            // Compares the bits, so -0.0 must stay -0.0
+            assertEquals(Double.parseDouble(numbers[i]), shapes.get(i).get(0).y(), numbers[i]);
+        }
+    }
+
+    /**
+     * Up to 30 digits with the point anywhere and an exponent now and then, so both short mantissas and ones
+     * too long for the fast path occur
+     */
+    private static String randomDecimal(Random random) {
+        StringBuilder number = new StringBuilder(random.nextInt(4) == 0 ? "-" : "");
+        int digits = 1 + random.nextInt(random.nextBoolean() ? 8 : 30);
+        int point = random.nextInt(digits + 2) - 1;
+        for (int i = 0; i < digits; i++) {
+            if (i == point) {
+                number.append('.');
+            }
+            number.append((char) ('0' + random.nextInt(10)));
+        }
+        if (random.nextInt(3) == 0) {
+            number.append(random.nextBoolean() ? 'e' : 'E').append(random.nextInt(80) - 40);
+        }
+        return number.toString();
+    }
+
+    private static List<List<Point2D>> read(String text) throws IOException {
+        return collect(consumer -> new ShapeStreamReader().read(new StringReader(text), consumer));
+    }
+
+    private interface Source {
+        void read(Consumer<Shape2D> consumer) throws IOException;
+    }
+
+    private static List<List<Point2D>> collect(Source source) throws IOException {
+        List<List<Point2D>> shapes = new ArrayList<>();
+        source.read(shape -> shapes.add(new ArrayList<>(shape.getPoints())));  // The shape is reused
+        return shapes;
+    }
+}
@@ -0,0 +1,189 @@
+package com.company.theshapefixer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Whenever a prefilter tier decides a shape, its verdict must be the one of the full checks. The shapes
+ * aim at each tier and at the edges of the collinearity tolerance, where a tier that accepts too early
+ * would differ.
+ */
+class ValidationPrefilterTest {
+
+    private static final int SHAPES = 40000;
+
+    @Test
+    void verdictMatchesTheFullChecks() {
+        Random random = new Random(11);
+        TheShapeFixer fixer = new TheShapeFixer();
+        // Decided shapes per tier and verdict
+        int[][] decided = new int[ValidationTier.values().length][2];
+        ValidatorContext context = ValidatorContext.acquire();
+        try {
+            for (int t = 0; t < SHAPES; t++) {
+                PackedShape2D shape = switch (t % 4) {
+                    case 0 -> tiny(random);
+                    case 1 -> convex(random);
+                    case 2 -> rectilinear(random);
+                    default -> turningBack(random);
+                };
+                ValidationOutcome outcome = ValidationPrefilter.check(shape, context);
+                if (outcome == null) {
+                    continue;
+                }
+                decided[outcome.tier().ordinal()][outcome.valid() ? 1 : 0]++;
+                assertEquals(fixer.validateDetailed(shape).isValid(), outcome.valid(),
+                        "shape " + t + " " + outcome.tier() + " " + shape.getPoints());
+            }
+        } finally {
+            context.release();
+        }
+
+        // Rectangles with a point folded back are already rejected by the neighbour check
+        int minimum = SHAPES / 100;
+        String counts = Arrays.deepToString(decided);
+        assertTrue(decided[ValidationTier.TRIVIAL.ordinal()][0] > minimum, counts);
+        assertTrue(decided[ValidationTier.TRIVIAL.ordinal()][1] > minimum, counts);
+        assertTrue(decided[ValidationTier.CONVEX.ordinal()][1] > minimum, counts);
+        assertTrue(decided[ValidationTier.RECTILINEAR.ordinal()][1] > minimum, counts);
+    }
+
+    /**
+     * Up to eight grid points, often touching or crossing, sometimes left open
+     */
+    private static PackedShape2D tiny(Random random) {
+        int points = 1 + random.nextInt(ValidationPrefilter.TINY_SIZE - 1);
+        int grid = 2 + random.nextInt(4);
+        List<double[]> corners = new ArrayList<>();
+        for (int i = 0; i < points; i++) {
+            corners.add(new double[]{random.nextInt(grid), random.nextInt(grid)});
+        }
+        return closed(corners, scale(random), random.nextInt(10) > 0);
+    }
+
+    /**
+     * Points on an ellipse in angle order, some of them pushed towards the line through their neighbours
+     * by about the collinearity tolerance, at scales where the tolerance matters and where it does not
+     */
+    private static PackedShape2D convex(Random random) {
+        int points = ValidationPrefilter.TINY_SIZE + 1 + random.nextInt(60);
+        double[] angles = new double[points];
+        for (int i = 0; i < points; i++) {
+            angles[i] = random.nextDouble() * 2 * Math.PI;
+        }
+        Arrays.sort(angles);
+        double width = 1 + random.nextDouble() * 10;
+        List<double[]> corners = new ArrayList<>();
+        for (double angle : angles) {
+            corners.add(new double[]{width * Math.cos(angle), Math.sin(angle)});
+        }
+        double scale = scale(random);
+        if (random.nextBoolean()) {
+            // Move a vertex onto the chord of its neighbours, then off it by a multiple of the tolerance
+            int b = 1 + random.nextInt(points - 2);
+            double[] a = corners.get(b - 1);
+            double[] c = corners.get(b + 1);
+            double dx = c[0] - a[0];
+            double dy = c[1] - a[1];
+            double length = Math.hypot(dx, dy);
+            double offset = (random.nextInt(5) - 1) * SegmentPassingThroughPoint.COLLINEARITY_EPSILON
+                    / (length * scale * scale);
+            corners.set(b, new double[]{(a[0] + c[0]) / 2 + dy / length * offset,
+                    (a[1] + c[1]) / 2 - dx / length * offset});
+        }
+        if (random.nextInt(10) == 0) {
+            // Same points but winding around twice
+            List<double[]> twice = new ArrayList<>();
+            for (int i = 0; i < points; i++) {
+                twice.add(corners.get(i * 2 % points));
+            }
+            corners = twice;
+        }
+        return closed(corners, scale, true);
+    }
+
+    /**
+     * Axis-aligned box with extra points along its sides, in order or with one of them out of order, of a
+     * width that is sometimes about the collinearity tolerance
+     */
+    private static PackedShape2D rectilinear(Random random) {
+        double width = random.nextInt(3) == 0 ? (0.5 + random.nextDouble()) * 1e-7 : 1 + random.nextInt(20);
+        double height = 1 + random.nextInt(20);
+        double[][] box = {{0, 0}, {width, 0}, {width, height}, {0, height}};
+        List<double[]> corners = new ArrayList<>();
+        for (int side = 0; side < 4; side++) {
+            double[] from = box[side];
+            double[] to = box[(side + 1) % 4];
+            corners.add(from);
+            int extra = random.nextInt(4);
+            double[] steps = new double[extra];
+            for (int k = 0; k < extra; k++) {
+                steps[k] = random.nextBoolean() ? (1 + random.nextInt(9)) / 10.0 : random.nextDouble();
+            }
+            Arrays.sort(steps);
+            if (extra > 1 && random.nextInt(4) == 0) {
+                double swap = steps[0];
+                steps[0] = steps[extra - 1];
+                steps[extra - 1] = swap;
+            }
+            for (double s : steps) {
+                corners.add(new double[]{from[0] + s * (to[0] - from[0]), from[1] + s * (to[1] - from[1])});
+            }
+        }
+        if (random.nextInt(8) == 0) {
+            // A point repeated further along
+            corners.add(random.nextInt(corners.size()), corners.get(random.nextInt(corners.size())));
+        }
+        int start = random.nextInt(corners.size());
+        List<double[]> rotated = new ArrayList<>(corners.subList(start, corners.size()));
+        rotated.addAll(corners.subList(0, start));
+        return closed(rotated, random.nextBoolean() ? 1 : scale(random), true);
+    }
+
+    /**
+     * Star with an edge folded back over the next one, two neighbouring points equal, or a point in the middle
+     * of an edge
+     */
+    private static PackedShape2D turningBack(Random random) {
+        int points = ValidationPrefilter.TINY_SIZE + 1 + random.nextInt(30);
+        List<double[]> corners = new ArrayList<>();
+        for (int i = 0; i < points; i++) {
+            double angle = (i + random.nextDouble() * 0.8) * 2 * Math.PI / points;
+            double radius = 0.5 + random.nextDouble() / 2;
+            corners.add(new double[]{radius * Math.cos(angle), radius * Math.sin(angle)});
+        }
+        int b = random.nextInt(points);
+        double[] a = corners.get(b);
+        double[] c = corners.get((b + 1) % points);
+        switch (random.nextInt(4)) {
+            case 0 -> corners.add(b + 1, new double[]{a[0] + (c[0] - a[0]) * 1.5, a[1] + (c[1] - a[1]) * 1.5});
+            case 1 -> corners.add(b + 1, a.clone());
+            case 2 -> corners.add(b + 1, new double[]{a[0] + (c[0] - a[0]) / 2, a[1] + (c[1] - a[1]) / 2});
+            default -> {
+            }
+        }
+        return closed(corners, scale(random), true);
+    }
+
+    private static double scale(Random random) {
+        return Math.pow(10, random.nextInt(9) - 4);
+    }
+
+    private static PackedShape2D closed(List<double[]> corners, double scale, boolean close) {
+        PackedShape2D.Builder builder = new PackedShape2D.Builder();
+        for (double[] corner : corners) {
+            builder.add(corner[0] * scale, corner[1] * scale);
+        }
+        if (close && !corners.isEmpty()) {
+            builder.add(corners.get(0)[0] * scale, corners.get(0)[1] * scale);
+        }
+        return builder.build();
+    }
+}
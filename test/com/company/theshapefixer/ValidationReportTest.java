@@ -0,0 +1,70 @@
+package com.company.theshapefixer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Repairing from a detailed validation report must give what repairing the shape gives
+ */
+class ValidationReportTest {
+
+    private static final int SHAPES = 5000;
+
+    @Test
+    void repairFromReportMatchesRepair() {
+        Random random = new Random(18);
+        TheShapeFixer fixer = new TheShapeFixer();
+        int multiContour = 0;
+        for (int t = 0; t < SHAPES; t++) {
+            PackedShape2D shape = randomContours(random);
+            ValidationReport report = fixer.validateDetailed(shape);
+            if (!report.violations(ViolationType.NESTED_CONTOUR).isEmpty()
+                    || !report.violations(ViolationType.OPEN_SHAPE).isEmpty()) {
+                multiContour++;
+            }
+            assertEquals(fixer.repair(shape).getPoints(), fixer.repair(report).getPoints(), "shape " + t);
+        }
+        assertTrue(multiContour > SHAPES / 2);
+    }
+
+    @Test
+    void repairFromHandBuiltReportMatchesRepair() {
+        Random random = new Random(7);
+        TheShapeFixer fixer = new TheShapeFixer();
+        for (int t = 0; t < 200; t++) {
+            PackedShape2D shape = randomContours(random);
+            ValidationReport report = new ValidationReport(shape, fixer.validateDetailed(shape).violations());
+            assertEquals(fixer.repair(shape).getPoints(), fixer.repair(report).getPoints(), "shape " + t);
+        }
+    }
+
+    /**
+     * Up to four contours of grid points, most of them starting at the same point so they nest, some of
+     * them left open
+     */
+    private static PackedShape2D randomContours(Random random) {
+        PackedShape2D.Builder builder = new PackedShape2D.Builder();
+        int contours = 1 + random.nextInt(4);
+        for (int c = 0; c < contours; c++) {
+            int points = 3 + random.nextInt(random.nextBoolean() ? 6 : 80);
+            int grid = 1 + random.nextInt(6);
+            double x0 = c == 0 || random.nextInt(3) > 0 ? 0 : random.nextInt(4) * grid;
+            double y0 = c == 0 || random.nextInt(3) > 0 ? 0 : random.nextInt(4) * grid;
+            builder.add(x0, y0);
+            for (int i = 1; i < points; i++) {
+                builder.add(x0 + random.nextInt(grid * 3), y0 + random.nextInt(grid * 3));
+            }
+            if (random.nextInt(5) > 0) {
+                builder.add(x0, y0);
+            }
+        }
+        if (random.nextInt(4) > 0) {
+            builder.add(0, 0);
+        }
+        return builder.build();
+    }
+}